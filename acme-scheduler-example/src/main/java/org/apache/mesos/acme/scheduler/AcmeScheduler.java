@@ -16,6 +16,8 @@ import org.apache.mesos.acme.state.AcmeStateService;
 import org.apache.mesos.acme.state.AcmeStateServiceFactory;
 import org.apache.mesos.offer.LogOperationRecorder;
 import org.apache.mesos.offer.OfferAccepter;
+import org.apache.mesos.offer.OfferCache;
+import org.apache.mesos.offer.OfferEvaluator;
 import org.apache.mesos.reconciliation.DefaultReconciler;
 import org.apache.mesos.reconciliation.Reconciler;
 import org.apache.mesos.scheduler.plan.Block;
@@ -32,6 +34,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Observable;
 
@@ -39,6 +42,8 @@ import java.util.Observable;
  */
 public class AcmeScheduler extends Observable implements Scheduler, Runnable {
   private static final Logger logger = LoggerFactory.getLogger(AcmeScheduler.class);
+  private static final long OFFER_TTL_MS = 30 * 1000;
+  private static final int MAX_BLOCKS_PER_CYCLE = 8;
 
   //private Environment environment;//TODO(nick): fixbugs
   //private AcmeSchedulerConfiguration configuration;//TODO(nick): fixbugs
@@ -46,6 +51,7 @@ public class AcmeScheduler extends Observable implements Scheduler, Runnable {
   private final DefaultStageScheduler stageScheduler;  // from dcos-commons
   private final AcmeRepairScheduler repairScheduler;
   private final OfferAccepter offerAccepter;           // from dcos-commons
+  private final OfferCache offerCache;                 // from dcos-commons
   private final Reconciler reconciler;                 // from dcos-commons
   private final DefaultStageManager stageManager;      // from dcos-commons
   private final AcmeStateService acmeState;
@@ -97,8 +103,10 @@ public class AcmeScheduler extends Observable implements Scheduler, Runnable {
     // 9. register as a listener to task status events.
     addObserver(stageManager);
 
-    // 10. create the stageScheduler
-    stageScheduler = new DefaultStageScheduler(offerAccepter);  // from dcos-commons
+    // 10. create the stageScheduler, which holds unused offers so that newly pending blocks
+    // can be matched against them without waiting for the next round of offers.
+    offerCache = new OfferCache(OFFER_TTL_MS);  // from dcos-commons
+    stageScheduler = new DefaultStageScheduler(offerAccepter, new OfferEvaluator(), offerCache);  // from dcos-commons
 
     // 11. and the repairScheduler
     repairScheduler = new AcmeRepairScheduler();  // acme created.
@@ -111,11 +119,14 @@ public class AcmeScheduler extends Observable implements Scheduler, Runnable {
 
   @Override
   public void registered(SchedulerDriver driver, FrameworkID frameworkId, MasterInfo masterInfo) {
+    // held offers are declined in the background once they expire
+    offerCache.start(driver);
 
   }
 
   @Override
   public void reregistered(SchedulerDriver driver, MasterInfo masterInfo) {
+    offerCache.start(driver);
 
   }
 
@@ -123,23 +134,24 @@ public class AcmeScheduler extends Observable implements Scheduler, Runnable {
   public void resourceOffers(SchedulerDriver driver, List<Offer> offers) {
     reconciler.reconcile(driver);
 
-    List<OfferID> acceptedOffers = new ArrayList<OfferID>();
-
     if (reconciler.isReconciled()) {
-      // get the current block, which checks status
-      Block block = stageManager.getCurrentBlock();
-      // see if the block wants to be scheduled
-      acceptedOffers = stageScheduler.resourceOffers(driver, offers, block);
-      List<Offer> unacceptedOffers = filterAcceptedOffers(offers, acceptedOffers);
-      acceptedOffers.addAll(repairScheduler.resourceOffers(driver, unacceptedOffers, block));
+      // get the current blocks, which checks status, and schedule them together against the new
+      // and held offers
+      List<Block> blocks = stageManager.getCurrentBlocks(MAX_BLOCKS_PER_CYCLE);
+      stageScheduler.resourceOffersForBlocks(driver, offers, blocks);
+      synchronized (offerCache) {
+        Block block = blocks.isEmpty() ? null : blocks.get(0);
+        List<OfferID> repairedOffers = repairScheduler.resourceOffers(driver, offerCache.getOffers(), block);
+        offerCache.removeAll(repairedOffers);
+      }
+    } else {
+      offerCache.add(offers);
     }
-
-    declineOffers(driver, acceptedOffers, offers);
   }
 
   @Override
   public void offerRescinded(SchedulerDriver driver, OfferID offerId) {
-
+    stageScheduler.offerRescinded(offerId);
   }
 
   @Override
@@ -149,6 +161,12 @@ public class AcmeScheduler extends Observable implements Scheduler, Runnable {
 
     setChanged();
     notifyObservers(status);        // notifies blocks and state objects to record
+
+    // blocks may have become pending, try to start them against any held offers
+    if (reconciler.isReconciled()) {
+      stageScheduler.resourceOffersForBlocks(
+        driver, Collections.<Offer>emptyList(), stageManager.getCurrentBlocks(MAX_BLOCKS_PER_CYCLE));
+    }
   }
 
   @Override
@@ -158,7 +176,8 @@ public class AcmeScheduler extends Observable implements Scheduler, Runnable {
 
   @Override
   public void disconnected(SchedulerDriver driver) {
-
+    // restarted by reregistered()
+    offerCache.close();
   }
 
   @Override
@@ -173,7 +192,7 @@ public class AcmeScheduler extends Observable implements Scheduler, Runnable {
 
   @Override
   public void error(SchedulerDriver driver, String message) {
-
+    offerCache.close();
   }
 
   public AcmeStateService getAcmeState() {
@@ -183,40 +202,4 @@ public class AcmeScheduler extends Observable implements Scheduler, Runnable {
   public StageManager getStageManager() {
     return null;
   }
-
-  private void declineOffers(SchedulerDriver driver, List<OfferID> acceptedOffers, List<Offer> offers) {
-    for (Offer offer : offers) {
-      if (!acceptedOffers.contains(offer.getId())) {
-        declineOffer(driver, offer);
-      }
-    }
-  }
-
-  private void declineOffer(SchedulerDriver driver, Offer offer) {
-    OfferID offerId = offer.getId();
-    logger.info("Scheduler declining offer: {}", offerId);
-    driver.declineOffer(offerId);
-  }
-
-  private List<Offer> filterAcceptedOffers(List<Offer> offers, List<OfferID> acceptedOfferIds) {
-    List<Offer> filteredOffers = new ArrayList<Offer>();
-
-    for (Offer offer : offers) {
-      if (!offerAccepted(offer, acceptedOfferIds)) {
-        filteredOffers.add(offer);
-      }
-    }
-
-    return filteredOffers;
-  }
-
-  private boolean offerAccepted(Offer offer, List<OfferID> acceptedOfferIds) {
-    for (OfferID acceptedOfferId : acceptedOfferIds) {
-      if (acceptedOfferId.equals(offer.getId())) {
-        return true;
-      }
-    }
-
-    return false;
-  }
 }
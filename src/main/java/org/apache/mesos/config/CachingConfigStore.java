@@ -0,0 +1,199 @@
+package org.apache.mesos.config;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.NodeCache;
+import org.apache.curator.framework.recipes.cache.NodeCacheListener;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.curator.framework.state.ConnectionStateListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CachingConfigStore is a {@link ConfigStore} which decorates a {@link CuratorConfigStore},
+ * keeping recently used configurations and the target configuration ID in memory.
+ *
+ * Configurations are immutable once stored, as each is stored against a new random UUID, so parsed
+ * configurations are kept until they are cleared or evicted as the least recently used. Configs are
+ * cached by UUID alone, so all fetches through one store are expected to use the same factory.
+ *
+ * The target configuration ID is watched with a Curator {@link NodeCache} which shares the session
+ * of the decorated store, so that changes made by other processes become visible once their watch
+ * fires. It is read through to Zookeeper while the connection is suspended or lost.
+ *
+ * @param <T> The {@code Configuration} object to be serialized and deserialized in the
+ *            implementation of this interface
+ */
+public class CachingConfigStore<T extends Configuration> implements ConfigStore<T>, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(CachingConfigStore.class);
+
+    private static final int DEFAULT_MAX_CONFIGS = 100;
+
+    private final CuratorConfigStore<T> store;
+    private final NodeCache targetCache;
+    private final ConnectionStateListener connectionStateListener;
+
+    // Guarded by 'this'
+    private final Map<UUID, T> configs;
+
+    private volatile boolean targetValid = true;
+
+    /**
+     * Creates a new {@link ConfigStore} which caches up to a default number of configurations.
+     *
+     * @param store The store to read from and write through to
+     * @throws ConfigStoreException if watching the target configuration fails
+     */
+    public CachingConfigStore(CuratorConfigStore<T> store) throws ConfigStoreException {
+        this(store, DEFAULT_MAX_CONFIGS);
+    }
+
+    /**
+     * Creates a new {@link ConfigStore} which caches configurations.
+     *
+     * @param store The store to read from and write through to
+     * @param maxConfigs The number of parsed configurations to keep in memory
+     * @throws ConfigStoreException if watching the target configuration fails
+     */
+    public CachingConfigStore(CuratorConfigStore<T> store, final int maxConfigs) throws ConfigStoreException {
+        this.store = store;
+        this.configs = new LinkedHashMap<UUID, T>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, T> eldest) {
+                return size() > maxConfigs;
+            }
+        };
+
+        final String targetPath = store.getTargetPath();
+        this.targetCache = new NodeCache(store.getClient(), targetPath);
+        this.targetCache.getListenable().addListener(new NodeCacheListener() {
+            @Override
+            public void nodeChanged() throws Exception {
+                logger.info("Target configuration in '{}' changed to {}", targetPath, getCachedTarget());
+            }
+        });
+        this.connectionStateListener = new ConnectionStateListener() {
+            @Override
+            public void stateChanged(CuratorFramework client, ConnectionState newState) {
+                // The NodeCache refreshes its data on reconnection.
+                targetValid = newState.isConnected();
+            }
+        };
+        store.getClient().getConnectionStateListenable().addListener(connectionStateListener);
+
+        try {
+            targetCache.start(true);
+        } catch (Exception e) {
+            throw new ConfigStoreException(String.format(
+                    "Failed to watch target configuration at path '%s'", targetPath), e);
+        }
+    }
+
+    /**
+     * Stops watching the target configuration. The decorated store is left open.
+     */
+    @Override
+    public void close() {
+        store.getClient().getConnectionStateListenable().removeListener(connectionStateListener);
+        try {
+            targetCache.close();
+        } catch (Exception e) {
+            logger.warn("Failed to stop watching target configuration", e);
+        }
+    }
+
+    @Override
+    public UUID store(T config) throws ConfigStoreException {
+        UUID id = store.store(config);
+        synchronized (this) {
+            configs.put(id, config);
+        }
+        return id;
+    }
+
+    @Override
+    public T fetch(UUID id, ConfigurationFactory<T> factory) throws ConfigStoreException {
+        synchronized (this) {
+            T config = configs.get(id);
+            if (config != null) {
+                return config;
+            }
+        }
+
+        T config = store.fetch(id, factory);
+        synchronized (this) {
+            configs.put(id, config);
+        }
+        return config;
+    }
+
+    @Override
+    public void clear(UUID id) throws ConfigStoreException {
+        synchronized (this) {
+            configs.remove(id);
+        }
+        store.clear(id);
+    }
+
+    @Override
+    public Collection<UUID> list() throws ConfigStoreException {
+        return store.list();
+    }
+
+    /**
+     * Stores the target configuration ID, and reloads the cached ID so that it is returned by
+     * {@link #getTargetConfig()} immediately.
+     */
+    @Override
+    public void setTargetConfig(UUID id) throws ConfigStoreException {
+        store.setTargetConfig(id);
+        try {
+            targetCache.rebuild();
+        } catch (Exception e) {
+            // The watch will deliver the change instead.
+            logger.warn("Failed to reload target configuration after setting it to {}", id, e);
+        }
+    }
+
+    /**
+     * Returns the target configuration ID from memory, unless it hasn't been loaded or the
+     * connection to Zookeeper is suspended.
+     */
+    @Override
+    public UUID getTargetConfig() throws ConfigStoreException {
+        if (targetValid) {
+            UUID target = getCachedTarget();
+            if (target != null) {
+                return target;
+            }
+        }
+        return store.getTargetConfig();
+    }
+
+    /**
+     * Returns the number of parsed configurations which are currently cached.
+     */
+    synchronized int getCachedConfigCount() {
+        return configs.size();
+    }
+
+    private UUID getCachedTarget() {
+        ChildData data = targetCache.getCurrentData();
+        if (data == null || data.getData() == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(new String(data.getData(), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
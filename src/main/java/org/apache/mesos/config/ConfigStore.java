@@ -1,6 +1,9 @@
 package org.apache.mesos.config;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -67,4 +70,48 @@ public interface ConfigStore<T extends Configuration> {
      * @throws ConfigStoreException if reading or deserializing the ID fails, or no value is set
      */
     UUID getTargetConfig() throws ConfigStoreException;
+
+    /**
+     * Fetches the two configurations with the provided UUIDs and returns the fields which differ
+     * between them, or an empty diff if the UUIDs are the same.
+     *
+     * @param oldId The UUID of the configuration being replaced, eg the one a Task was launched with
+     * @param newId The UUID of the replacing configuration, eg the current target
+     * @param factory The deserializer implementation for the configuration data
+     * @throws ConfigStoreException if retrieval, deserialization or comparison fails
+     */
+    default ConfigurationDiff diff(UUID oldId, UUID newId, ConfigurationFactory<T> factory)
+            throws ConfigStoreException {
+        if (oldId.equals(newId)) {
+            return ConfigurationDiff.empty();
+        }
+        return ConfigurationDiff.between(fetch(oldId, factory), fetch(newId, factory));
+    }
+
+    /**
+     * Deletes every stored configuration which is neither the target configuration nor one of the
+     * provided referenced IDs, such as the target configurations of all stored Tasks, and returns
+     * the IDs which were deleted.
+     *
+     * A configuration which is stored but not yet referenced by a Task or set as the target will
+     * also be deleted, so this shouldn't be called while a new configuration is being deployed.
+     *
+     * @param referencedIds The IDs of configurations which are in use and must be kept
+     * @throws ConfigStoreException if the target configuration can't be read, or listing or
+     *                              deletion fails
+     */
+    default Collection<UUID> clearUnreferenced(Collection<UUID> referencedIds) throws ConfigStoreException {
+        Set<UUID> keptIds = new HashSet<>(referencedIds);
+        // Fails rather than risk deleting the target configuration when it can't be read
+        keptIds.add(getTargetConfig());
+
+        Collection<UUID> clearedIds = new ArrayList<>();
+        for (UUID id : list()) {
+            if (!keptIds.contains(id)) {
+                clear(id);
+                clearedIds.add(id);
+            }
+        }
+        return clearedIds;
+    }
 }
@@ -0,0 +1,196 @@
+package org.apache.mesos.config;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * ConfigurationDiff lists the fields which differ between two {@link Configuration}s, by comparing
+ * their {@link Configuration#toJsonString()} representations structurally. This allows a
+ * scheduler to tell whether a new target configuration affects a given Task, rather than treating
+ * every Task which references an older configuration as out of date.
+ *
+ * Fields are named by their path from the root of the JSON document, with object members joined by
+ * '.' and array elements indexed in brackets, eg "pods[0].cpus". A field which is added, removed,
+ * or changes type is listed by its own path, without listing the fields nested within it. A change
+ * of the whole document is listed as the empty path "".
+ */
+public class ConfigurationDiff {
+
+    private static final ConfigurationDiff EMPTY = new ConfigurationDiff(new TreeSet<String>());
+
+    private final SortedSet<String> changedFields;
+
+    private ConfigurationDiff(SortedSet<String> changedFields) {
+        this.changedFields = Collections.unmodifiableSortedSet(changedFields);
+    }
+
+    /**
+     * Returns a diff in which no fields differ.
+     */
+    public static ConfigurationDiff empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns the fields which differ between the provided configurations.
+     *
+     * @throws ConfigStoreException if either configuration can't be rendered as JSON
+     */
+    public static ConfigurationDiff between(Configuration oldConfig, Configuration newConfig)
+            throws ConfigStoreException {
+        return between(toJson(oldConfig), toJson(newConfig));
+    }
+
+    /**
+     * Returns the fields which differ between the provided JSON documents.
+     *
+     * @throws ConfigStoreException if either document can't be parsed
+     */
+    public static ConfigurationDiff between(String oldJson, String newJson) throws ConfigStoreException {
+        if (Objects.equals(oldJson, newJson)) {
+            return empty();
+        }
+        SortedSet<String> changedFields = new TreeSet<>();
+        compare("", parse(oldJson), parse(newJson), changedFields);
+        return new ConfigurationDiff(changedFields);
+    }
+
+    /**
+     * Returns whether no fields differ.
+     */
+    public boolean isEmpty() {
+        return changedFields.isEmpty();
+    }
+
+    /**
+     * Returns the paths of the fields which differ, in sorted order.
+     */
+    public SortedSet<String> getChangedFields() {
+        return changedFields;
+    }
+
+    /**
+     * Returns whether the provided field, any field within it, or any field containing it differs.
+     *
+     * @param field The path of a field, eg "pods[0]"
+     */
+    public boolean affects(String field) {
+        for (String changedField : changedFields) {
+            if (isWithin(changedField, field) || isWithin(field, changedField)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether any of the provided fields are {@link #affects(String) affected}, such as the
+     * fields which a Task's definition is derived from.
+     */
+    public boolean affectsAny(Collection<String> fields) {
+        for (String field : fields) {
+            if (affects(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ConfigurationDiff)) {
+            return false;
+        }
+        return changedFields.equals(((ConfigurationDiff) o).changedFields);
+    }
+
+    @Override
+    public int hashCode() {
+        return changedFields.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigurationDiff" + changedFields;
+    }
+
+    /**
+     * Returns whether the first path is the second path or is nested within it.
+     */
+    private static boolean isWithin(String path, String parentPath) {
+        if (parentPath.isEmpty() || path.equals(parentPath)) {
+            return true;
+        }
+        if (!path.startsWith(parentPath)) {
+            return false;
+        }
+        char separator = path.charAt(parentPath.length());
+        return separator == '.' || separator == '[';
+    }
+
+    private static void compare(String path, Object oldValue, Object newValue, Collection<String> changedFields) {
+        if (oldValue instanceof JSONObject && newValue instanceof JSONObject) {
+            JSONObject oldObject = (JSONObject) oldValue;
+            JSONObject newObject = (JSONObject) newValue;
+            SortedSet<String> keys = new TreeSet<>(oldObject.keySet());
+            keys.addAll(newObject.keySet());
+            for (String key : keys) {
+                String keyPath = path.isEmpty() ? key : path + "." + key;
+                if (!oldObject.has(key) || !newObject.has(key)) {
+                    changedFields.add(keyPath);
+                } else {
+                    compare(keyPath, oldObject.get(key), newObject.get(key), changedFields);
+                }
+            }
+        } else if (oldValue instanceof JSONArray && newValue instanceof JSONArray) {
+            JSONArray oldArray = (JSONArray) oldValue;
+            JSONArray newArray = (JSONArray) newValue;
+            for (int i = 0; i < Math.max(oldArray.length(), newArray.length()); i++) {
+                String indexPath = path + "[" + i + "]";
+                if (i >= oldArray.length() || i >= newArray.length()) {
+                    changedFields.add(indexPath);
+                } else {
+                    compare(indexPath, oldArray.get(i), newArray.get(i), changedFields);
+                }
+            }
+        } else if (!valueEquals(oldValue, newValue)) {
+            changedFields.add(path);
+        }
+    }
+
+    private static boolean valueEquals(Object oldValue, Object newValue) {
+        if (oldValue instanceof Number && newValue instanceof Number) {
+            // Parsing may produce an Integer, Long or Double for equal values
+            return new BigDecimal(oldValue.toString()).compareTo(new BigDecimal(newValue.toString())) == 0;
+        }
+        return Objects.equals(oldValue, newValue);
+    }
+
+    private static String toJson(Configuration config) throws ConfigStoreException {
+        try {
+            return config.toJsonString();
+        } catch (Exception e) {
+            throw new ConfigStoreException("Failed to render configuration as JSON: " + config, e);
+        }
+    }
+
+    private static Object parse(String json) throws ConfigStoreException {
+        try {
+            return new JSONTokener(json).nextValue();
+        } catch (JSONException e) {
+            throw new ConfigStoreException("Failed to parse configuration JSON: " + json, e);
+        }
+    }
+}
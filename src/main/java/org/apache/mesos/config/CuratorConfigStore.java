@@ -1,12 +1,20 @@
 package org.apache.mesos.config;
 
+import java.io.Closeable;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
 
 import org.apache.curator.RetryPolicy;
+import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.mesos.storage.CuratorClientPool;
 import org.apache.mesos.storage.CuratorPersister;
 import org.apache.zookeeper.KeeperException;
 
@@ -23,11 +31,21 @@ import org.slf4j.LoggerFactory;
  *         -> [Config-ID-0] (contains serialized config)
  *         -> [Config-ID-1] (contains serialized config)
  *         -> ...
+ *     -> ConfigHashes/
+ *         -> [SHA-256 of serialized config] (contains Config-ID)
+ *         -> ...
+ *
+ * When deduplication is enabled, storing a configuration whose serialized form matches that of an
+ * existing one returns the existing ID instead of storing a copy. ConfigHashes indexes the stored
+ * configurations by content for this purpose, and is only written to by deduplicating stores.
+ *
+ * Stores which are created from a connection string share their Zookeeper client with other stores
+ * using the same connection string, via the default {@link CuratorClientPool}.
  *
  * @param <T> The {@code Configuration} object to be serialized and deserialized in the
  *            implementation of this interface
  */
-public class CuratorConfigStore<T extends Configuration> implements ConfigStore<T> {
+public class CuratorConfigStore<T extends Configuration> implements ConfigStore<T>, Closeable {
     private static final Logger logger = LoggerFactory.getLogger(CuratorConfigStore.class);
 
     private static final int DEFAULT_CURATOR_POLL_DELAY_MS = 1000;
@@ -35,9 +53,12 @@ public class CuratorConfigStore<T extends Configuration> implements ConfigStore<
 
     private static final String TARGET_PATH_NAME = "ConfigTarget";
     private static final String CONFIGURATIONS_PATH_NAME = "Configurations";
+    private static final String HASHES_PATH_NAME = "ConfigHashes";
 
     private final CuratorPersister curator;
+    private final boolean deduplicate;
     private final String configurationsPath;
+    private final String hashesPath;
     private final String targetPath;
 
     /**
@@ -59,16 +80,73 @@ public class CuratorConfigStore<T extends Configuration> implements ConfigStore<
      * @param retryPolicy The custom {@link RetryPolicy}
      */
     public CuratorConfigStore(String rootPath, String connectionString, RetryPolicy retryPolicy) {
+        this(rootPath, connectionString, retryPolicy, false);
+    }
+
+    /**
+     * Creates a new {@link ConfigStore} which uses Curator with a custom {@link RetryPolicy}.
+     *
+     * @param rootPath The path to store data in, eg "/FrameworkName"
+     * @param connectionString The host/port of the ZK server, eg "master.mesos:2181"
+     * @param retryPolicy The custom {@link RetryPolicy}
+     * @param deduplicate Whether storing a configuration identical to a stored one should return
+     *                    the ID of the stored one
+     */
+    public CuratorConfigStore(
+            String rootPath, String connectionString, RetryPolicy retryPolicy, boolean deduplicate) {
+        this(rootPath, new CuratorPersister(connectionString, retryPolicy), deduplicate);
+    }
+
+    /**
+     * Creates a new {@link ConfigStore} which uses the provided started Curator client, which may be
+     * shared with other stores. The client is left open by {@link #close()}.
+     *
+     * @param rootPath The path to store data in, eg "/FrameworkName"
+     * @param client The client to read and write data with
+     */
+    public CuratorConfigStore(String rootPath, CuratorFramework client) {
+        this(rootPath, client, false);
+    }
+
+    /**
+     * Creates a new {@link ConfigStore} which uses the provided started Curator client, which may be
+     * shared with other stores. The client is left open by {@link #close()}.
+     *
+     * @param rootPath The path to store data in, eg "/FrameworkName"
+     * @param client The client to read and write data with
+     * @param deduplicate Whether storing a configuration identical to a stored one should return
+     *                    the ID of the stored one
+     */
+    public CuratorConfigStore(String rootPath, CuratorFramework client, boolean deduplicate) {
+        this(rootPath, new CuratorPersister(client), deduplicate);
+    }
+
+    private CuratorConfigStore(String rootPath, CuratorPersister curator, boolean deduplicate) {
         if (!rootPath.startsWith("/")) {
+            curator.close();
             throw new IllegalArgumentException("rootPath must start with '/': " + rootPath);
         }
-        this.curator = new CuratorPersister(connectionString, retryPolicy);
+        this.curator = curator;
+        this.deduplicate = deduplicate;
         this.targetPath = rootPath + "/" + TARGET_PATH_NAME;
         this.configurationsPath = rootPath + "/" + CONFIGURATIONS_PATH_NAME;
+        this.hashesPath = rootPath + "/" + HASHES_PATH_NAME;
+    }
+
+    /**
+     * Releases the Zookeeper client, if it was acquired by this store.
+     */
+    @Override
+    public void close() {
+        curator.close();
     }
 
     @Override
     public UUID store(T config) throws ConfigStoreException {
+        if (deduplicate) {
+            return storeDeduplicated(config);
+        }
+
         UUID id = UUID.randomUUID();
         String path = getConfigPath(id);
         try {
@@ -98,6 +176,7 @@ public class CuratorConfigStore<T extends Configuration> implements ConfigStore<
     public void clear(UUID id) throws ConfigStoreException {
         String path = getConfigPath(id);
         try {
+            clearHash(id, curator.fetch(path));
             curator.clear(path);
         } catch (KeeperException.NoNodeException e) {
             // Clearing a non-existent Configuration should not
@@ -153,6 +232,73 @@ public class CuratorConfigStore<T extends Configuration> implements ConfigStore<
         }
     }
 
+    /**
+     * Returns the ID of a stored configuration with the same content as the provided one, or
+     * stores it along with its content hash. The hash is only trusted once the content it points to
+     * has been compared, so an entry which is stale or collides is replaced.
+     */
+    private UUID storeDeduplicated(T config) throws ConfigStoreException {
+        String hashPath = null;
+        try {
+            byte[] bytes = config.getBytes();
+            hashPath = hashesPath + "/" + hash(bytes);
+            try {
+                UUID existingId = UUID.fromString(new String(curator.fetch(hashPath), StandardCharsets.UTF_8));
+                if (Arrays.equals(bytes, curator.fetch(getConfigPath(existingId)))) {
+                    logger.info("Configuration matches stored configuration '{}'", existingId);
+                    return existingId;
+                }
+            } catch (KeeperException.NoNodeException e) {
+                // No matching configuration is stored
+            }
+
+            UUID id = UUID.randomUUID();
+            Map<String, byte[]> pathBytesMap = new LinkedHashMap<>();
+            pathBytesMap.put(getConfigPath(id), bytes);
+            pathBytesMap.put(hashPath, id.toString().getBytes(StandardCharsets.UTF_8));
+            curator.store(pathBytesMap);
+            return id;
+        } catch (Exception e) {
+            throw new ConfigStoreException(String.format(
+                    "Failed to serialize or store configuration with hash path '%s': %s",
+                    hashPath, config), e);
+        }
+    }
+
+    /**
+     * Removes the content hash entry of a configuration which is being cleared, if it has one.
+     */
+    private void clearHash(UUID id, byte[] bytes) throws Exception {
+        String hashPath = hashesPath + "/" + hash(bytes);
+        try {
+            if (id.toString().equals(new String(curator.fetch(hashPath), StandardCharsets.UTF_8))) {
+                curator.clear(hashPath);
+            }
+        } catch (KeeperException.NoNodeException e) {
+            // Not indexed, or already removed
+        }
+    }
+
+    private static String hash(byte[] bytes) throws NoSuchAlgorithmException {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Returns the client which the data is read from, so that watches may be registered against the
+     * same session.
+     */
+    CuratorFramework getClient() {
+        return curator.getClient();
+    }
+
+    String getTargetPath() {
+        return targetPath;
+    }
+
     private String getConfigPath(UUID id) {
         return configurationsPath + "/" + id.toString();
     }
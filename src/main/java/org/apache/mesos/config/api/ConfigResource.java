@@ -1,17 +1,22 @@
 package org.apache.mesos.config.api;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
-import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 
+import org.apache.mesos.config.CachingConfigStore;
 import org.apache.mesos.config.ConfigStore;
 import org.apache.mesos.config.Configuration;
 import org.apache.mesos.config.ConfigurationFactory;
+import org.apache.mesos.util.EntityTags;
 import org.json.JSONArray;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,6 +24,13 @@ import org.slf4j.LoggerFactory;
 /**
  * A read-only API for accessing active and inactive configurations from persistent storage.
  *
+ * Configurations are immutable once stored, so a configuration's ID is used as the ETag of its
+ * content, and a client which sends it back in an If-None-Match header receives a 304 (Not
+ * Modified) response without the configuration being read. When the {@link ConfigStore} is a
+ * {@link CachingConfigStore}, the JSON of recently served configurations is also kept in memory for
+ * as long as the store returns the same configuration object, which it does until the
+ * configuration is cleared.
+ *
  * @param <T> The configuration type which is being stored by the framework.
  */
 @Path("/v1/configurations")
@@ -26,38 +38,62 @@ public class ConfigResource<T extends Configuration> {
 
     private static final Logger logger = LoggerFactory.getLogger(ConfigResource.class);
 
+    private static final int MAX_CACHED_CONFIGS = 16;
+
     private final ConfigStore<T> configStore;
     private final ConfigurationFactory<T> configFactory;
+    // Other stores return a new object from every fetch, which would never match a cached entry
+    private final boolean cacheJson;
+
+    // Guarded by 'this'
+    private final Map<UUID, CachedConfig<T>> configJson =
+            new LinkedHashMap<UUID, CachedConfig<T>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<UUID, CachedConfig<T>> eldest) {
+                    return size() > MAX_CACHED_CONFIGS;
+                }
+            };
 
     public ConfigResource(ConfigStore<T> configStore, ConfigurationFactory<T> configFactory) {
         this.configStore = configStore;
         this.configFactory = configFactory;
+        this.cacheJson = configStore instanceof CachingConfigStore;
+    }
+
+    public Response getConfigurationIds() {
+        return getConfigurationIds(null);
     }
 
     /**
      * Produces an ID listing of all stored configurations.
      */
     @GET
-    public Response getConfigurationIds() {
+    public Response getConfigurationIds(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         try {
-            JSONArray configArray = new JSONArray(configStore.list());
-            return Response.ok(configArray.toString(), MediaType.APPLICATION_JSON).build();
+            String json = new JSONArray(configStore.list()).toString();
+            return EntityTags.okOrNotModified(json, EntityTags.fromContent(json), ifNoneMatch);
         } catch (Exception ex) {
             logger.error("Failed to fetch list of configuration ids", ex);
             return Response.serverError().build();
         }
     }
 
+    public Response getConfiguration(String configurationId) {
+        return getConfiguration(configurationId, null);
+    }
+
     /**
      * Produces the content of the provided configuration ID, or returns an error if that ID doesn't
      * exist or the data couldn't be read.
      */
     @Path("/{configurationId}")
     @GET
-    public Response getConfiguration(@PathParam("configurationId") String configurationId) {
+    public Response getConfiguration(
+            @PathParam("configurationId") String configurationId,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         try {
             logger.info("Attempting to fetch config with id '{}'", configurationId);
-            return fetchConfig(UUID.fromString(configurationId));
+            return fetchConfig(UUID.fromString(configurationId), ifNoneMatch);
         } catch (Exception ex) {
             // Warning instead of Error: Subject to user input
             logger.warn(String.format(
@@ -66,30 +102,38 @@ public class ConfigResource<T extends Configuration> {
         }
     }
 
+    public Response getTargetId() {
+        return getTargetId(null);
+    }
+
     /**
      * Produces the ID of the current target configuration, or returns an error if reading that
      * data failed.
      */
     @Path("/targetId")
     @GET
-    public Response getTargetId() {
+    public Response getTargetId(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         try {
             // return a JSONArray to line up with getConfigurationIds()
-            JSONArray configArray = new JSONArray(Arrays.asList(configStore.getTargetConfig()));
-            return Response.ok(configArray.toString(), MediaType.APPLICATION_JSON).build();
+            String json = new JSONArray(Arrays.asList(configStore.getTargetConfig())).toString();
+            return EntityTags.okOrNotModified(json, EntityTags.fromContent(json), ifNoneMatch);
         } catch (Exception ex) {
             logger.error("Failed to fetch target configuration", ex);
             return Response.serverError().build();
         }
     }
 
+    public Response getTarget() {
+        return getTarget(null);
+    }
+
     /**
      * Produces the content of the current target configuration, or returns an error if reading that
      * data failed.
      */
     @Path("/target")
     @GET
-    public Response getTarget() {
+    public Response getTarget(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         UUID targetId;
         try {
             targetId = configStore.getTargetConfig();
@@ -98,7 +142,7 @@ public class ConfigResource<T extends Configuration> {
             return Response.serverError().build();
         }
         try {
-            return fetchConfig(targetId);
+            return fetchConfig(targetId, ifNoneMatch);
         } catch (Exception ex) {
             logger.error(String.format("Failed to fetch target configuration '%s'", targetId), ex);
             return Response.serverError().build();
@@ -106,11 +150,49 @@ public class ConfigResource<T extends Configuration> {
     }
 
     /**
-     * Returns an HTTP response containing the content of the requested configuration.
+     * Returns an HTTP response containing the content of the requested configuration, or a 304
+     * response if the client already has it.
      */
-    private Response fetchConfig(UUID id) throws Exception {
-        // return the content provided by the config verbatim, treat as plaintext
-        return Response.ok(configStore.fetch(id, configFactory).toJsonString(),
-                MediaType.APPLICATION_JSON).build();
+    private Response fetchConfig(UUID id, String ifNoneMatch) throws Exception {
+        String etag = id.toString();
+        if (EntityTags.matches(etag, ifNoneMatch)) {
+            return EntityTags.okOrNotModified(null, etag, ifNoneMatch);
+        }
+
+        T config = configStore.fetch(id, configFactory);
+        if (!cacheJson) {
+            // return the content provided by the config verbatim, treat as plaintext
+            return EntityTags.okOrNotModified(config.toJsonString(), etag, ifNoneMatch);
+        }
+
+        String json;
+        synchronized (this) {
+            CachedConfig<T> cached = configJson.get(id);
+            json = cached != null && cached.config == config ? cached.json : null;
+        }
+        if (json == null) {
+            json = config.toJsonString();
+            synchronized (this) {
+                configJson.put(id, new CachedConfig<>(config, json));
+            }
+        }
+        return EntityTags.okOrNotModified(json, etag, ifNoneMatch);
+    }
+
+    /**
+     * Returns the number of configurations whose JSON is currently cached.
+     */
+    synchronized int getCachedCount() {
+        return configJson.size();
+    }
+
+    private static class CachedConfig<T> {
+        private final T config;
+        private final String json;
+
+        private CachedConfig(T config, String json) {
+            this.config = config;
+            this.json = json;
+        }
     }
 }
@@ -0,0 +1,17 @@
+package org.apache.mesos.offer;
+
+import org.apache.mesos.Protos.Offer;
+
+/**
+ * OfferFitFunction preferring the Offer which would have the least unreserved resources left over
+ * once an OfferRequirement is fulfilled.  This packs tasks tightly onto Agents.
+ */
+public class BestFitFunction implements OfferFitFunction {
+
+  public double score(OfferRequirement offerRequirement, MesosResourcePool pool) {
+    return -pool.getUnreservedScalarFractionRemaining();
+  }
+
+  public void selected(OfferRequirement offerRequirement, Offer offer) {
+  }
+}
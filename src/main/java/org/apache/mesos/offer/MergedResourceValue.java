@@ -0,0 +1,184 @@
+package org.apache.mesos.offer;
+
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.Value;
+import org.apache.mesos.Protos.Value.Range;
+import org.apache.mesos.protobuf.ValueBuilder;
+import org.apache.mesos.util.Algorithms;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A mutable amount of a single named resource within a {@link MesosResourcePool}.
+ * Scalars are held as a double and ranges as a sorted array of coalesced [begin, end] pairs so that
+ * consuming and releasing resources does not build intermediate {@link Value} protobufs.  Values are
+ * only converted to and from protobufs at the boundary of the pool.
+ */
+final class MergedResourceValue {
+  private final Value.Type type;
+  private double scalar;
+  private long[] ranges = new long[0];
+  private int rangeCount;
+  private long[] incoming = new long[0];
+  private long[] result = new long[0];
+  private Set<String> items;
+
+  MergedResourceValue(Value.Type type) {
+    this.type = type;
+    if (type == Value.Type.SET) {
+      this.items = new TreeSet<String>();
+    }
+  }
+
+  /**
+   * Returns an independent copy of this value.
+   */
+  MergedResourceValue copy() {
+    MergedResourceValue copy = new MergedResourceValue(type);
+    copy.scalar = scalar;
+    copy.ranges = ranges.clone();
+    copy.rangeCount = rangeCount;
+    if (items != null) {
+      copy.items.addAll(items);
+    }
+    return copy;
+  }
+
+  Value.Type getType() {
+    return type;
+  }
+
+  double getScalar() {
+    return scalar;
+  }
+
+  void add(Resource resource) {
+    switch (type) {
+      case SCALAR:
+        scalar += resource.getScalar().getValue();
+        break;
+      case RANGES:
+        addRanges(resource.getRanges().getRangeList());
+        break;
+      case SET:
+        items.addAll(resource.getSet().getItemList());
+        break;
+      default:
+        break;
+    }
+  }
+
+  void add(Value value) {
+    switch (type) {
+      case SCALAR:
+        scalar += value.getScalar().getValue();
+        break;
+      case RANGES:
+        addRanges(value.getRanges().getRangeList());
+        break;
+      case SET:
+        items.addAll(value.getSet().getItemList());
+        break;
+      default:
+        break;
+    }
+  }
+
+  void subtract(Value value) {
+    switch (type) {
+      case SCALAR:
+        scalar -= value.getScalar().getValue();
+        break;
+      case RANGES:
+        subtractRanges(value.getRanges().getRangeList());
+        break;
+      case SET:
+        items.removeAll(value.getSet().getItemList());
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Returns whether this value is sufficient to satisfy the desired value.
+   */
+  boolean contains(Value desired) {
+    if (desired.getType() != type) {
+      return false;
+    }
+
+    switch (type) {
+      case SCALAR:
+        return desired.getScalar().getValue() <= scalar;
+      case RANGES:
+        int desiredCount = normalize(desired.getRanges().getRangeList());
+        return Algorithms.containsIntervals(ranges, rangeCount, incoming, desiredCount);
+      case SET:
+        return items.containsAll(desired.getSet().getItemList());
+      default:
+        return false;
+    }
+  }
+
+  Value toValue() {
+    ValueBuilder builder = new ValueBuilder(type);
+
+    switch (type) {
+      case SCALAR:
+        return builder.setScalar(scalar).build();
+      case RANGES:
+        return builder.setRanges(Algorithms.intervalsToRanges(ranges, rangeCount)).build();
+      case SET:
+        return builder.setSet(Value.Set.newBuilder().addAllItem(items).build()).build();
+      default:
+        return builder.build();
+    }
+  }
+
+  /**
+   * Returns whether the available value is sufficient to satisfy the desired value.  Scalars are
+   * compared directly without building any intermediate state.
+   */
+  static boolean sufficient(Value desired, Value available) {
+    if (desired == null) {
+      return true;
+    } else if (available == null || desired.getType() != available.getType()) {
+      return false;
+    } else if (desired.getType() == Value.Type.SCALAR) {
+      return desired.getScalar().getValue() <= available.getScalar().getValue();
+    }
+
+    MergedResourceValue availableValue = new MergedResourceValue(available.getType());
+    availableValue.add(available);
+    return availableValue.contains(desired);
+  }
+
+  private void addRanges(List<Range> rangeList) {
+    int addedCount = normalize(rangeList);
+    result = Algorithms.ensureIntervalCapacity(result, rangeCount + addedCount);
+    int resultCount = Algorithms.unionIntervals(ranges, rangeCount, incoming, addedCount, result);
+    swapResult(resultCount);
+  }
+
+  private void subtractRanges(List<Range> rangeList) {
+    int subtractedCount = normalize(rangeList);
+    result = Algorithms.ensureIntervalCapacity(result, rangeCount + subtractedCount);
+    int resultCount = Algorithms.subtractIntervals(ranges, rangeCount, incoming, subtractedCount, result);
+    swapResult(resultCount);
+  }
+
+  private void swapResult(int resultCount) {
+    long[] previous = ranges;
+    ranges = result;
+    rangeCount = resultCount;
+    result = previous;
+  }
+
+  private int normalize(List<Range> rangeList) {
+    incoming = Algorithms.ensureIntervalCapacity(incoming, rangeList.size());
+    return Algorithms.normalizeRanges(rangeList, incoming);
+  }
+}
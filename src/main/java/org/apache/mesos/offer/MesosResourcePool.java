@@ -4,7 +4,6 @@ import org.apache.mesos.Protos.Offer;
 import org.apache.mesos.Protos.Resource;
 import org.apache.mesos.Protos.Resource.DiskInfo;
 import org.apache.mesos.Protos.Value;
-import org.apache.mesos.protobuf.ValueUtils;
 import org.apache.mesos.protobuf.ResourceBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,40 +12,123 @@ import java.util.*;
 
 /**
  * A representation of the pool of resources available in a single Offer.
+ * Unreserved mergeable resources are tracked as {@link MergedResourceValue}s and only converted to
+ * {@link Value} protobufs when requested through {@link #getUnreservedMergedPool()}.
  **/
 public class MesosResourcePool {
   private static final Logger logger = LoggerFactory.getLogger(MesosResourcePool.class);
 
   private Offer offer;
-  private Collection<MesosResource> mesosResources;
-  private Map<String, List<MesosResource>> unreservedAtomicPool;
-  private Map<String, Value> unreservedMergedPool;
+  private Map<String, NavigableMap<Double, List<MesosResource>>> unreservedAtomicPool;
+  private Map<String, MergedResourceValue> unreservedMergedPool;
+  private Map<String, Double> offeredUnreservedScalars;
   private Map<String, MesosResource> reservedPool;
 
   public MesosResourcePool(Offer offer) {
-    this.offer = offer;
-    this.mesosResources = getMesosResourcesInternal();
-    this.unreservedAtomicPool = getUnreservedAtomicPool(offer);
-    this.unreservedMergedPool = getUnreservedMergedPool(offer);
-    this.reservedPool = getReservedPool(offer);
+    this(OfferResources.create(offer));
+  }
+
+  /**
+   * Creates a pool from an Offer's already classified resources.  The provided OfferResources are
+   * not modified, so they may be shared by many pools built for the same Offer.
+   */
+  public MesosResourcePool(OfferResources offerResources) {
+    this.offer = offerResources.getOffer();
+    this.unreservedAtomicPool = getUnreservedAtomicPool(offerResources);
+    this.unreservedMergedPool = getUnreservedMergedPool(offerResources);
+    this.offeredUnreservedScalars = getUnreservedScalars(unreservedMergedPool);
+    this.reservedPool = getReservedPool(offerResources);
+  }
+
+  private MesosResourcePool(MesosResourcePool other) {
+    this.offer = other.offer;
+    this.unreservedAtomicPool = new HashMap<String, NavigableMap<Double, List<MesosResource>>>();
+    for (Map.Entry<String, NavigableMap<Double, List<MesosResource>>> entry : other.unreservedAtomicPool.entrySet()) {
+      NavigableMap<Double, List<MesosResource>> sizedPool = new TreeMap<Double, List<MesosResource>>();
+      for (Map.Entry<Double, List<MesosResource>> sizedEntry : entry.getValue().entrySet()) {
+        sizedPool.put(sizedEntry.getKey(), new ArrayList<MesosResource>(sizedEntry.getValue()));
+      }
+      this.unreservedAtomicPool.put(entry.getKey(), sizedPool);
+    }
+    this.unreservedMergedPool = new HashMap<String, MergedResourceValue>();
+    for (Map.Entry<String, MergedResourceValue> entry : other.unreservedMergedPool.entrySet()) {
+      this.unreservedMergedPool.put(entry.getKey(), entry.getValue().copy());
+    }
+    this.offeredUnreservedScalars = other.offeredUnreservedScalars;
+    this.reservedPool = new HashMap<String, MesosResource>(other.reservedPool);
+  }
+
+  /**
+   * Returns an independent copy of this pool, so that resources may be tentatively consumed from
+   * the copy and discarded if a requirement cannot be satisfied in full.
+   */
+  public MesosResourcePool copy() {
+    return new MesosResourcePool(this);
   }
 
   public Offer getOffer() {
     return offer;
   }
 
+  /**
+   * Returns a snapshot of the unreserved atomic resources remaining in this pool, ordered from
+   * smallest to largest.
+   */
   public Map<String, List<MesosResource>> getUnreservedAtomicPool() {
-    return unreservedAtomicPool;
+    Map<String, List<MesosResource>> pool = new HashMap<String, List<MesosResource>>();
+
+    for (Map.Entry<String, NavigableMap<Double, List<MesosResource>>> entry : unreservedAtomicPool.entrySet()) {
+      List<MesosResource> resList = new ArrayList<MesosResource>();
+      for (List<MesosResource> sizedResources : entry.getValue().values()) {
+        resList.addAll(sizedResources);
+      }
+      pool.put(entry.getKey(), resList);
+    }
+
+    return pool;
   }
 
+  /**
+   * Returns a snapshot of the unreserved mergeable resources remaining in this pool.
+   */
   public Map<String, Value> getUnreservedMergedPool() {
-    return unreservedMergedPool;
+    Map<String, Value> pool = new HashMap<String, Value>();
+
+    for (Map.Entry<String, MergedResourceValue> entry : unreservedMergedPool.entrySet()) {
+      pool.put(entry.getKey(), entry.getValue().toValue());
+    }
+
+    return pool;
   }
 
   public Map<String, MesosResource> getReservedPool() {
     return reservedPool;
   }
 
+  /**
+   * Returns the fraction of the unreserved scalar resources originally present in the Offer which
+   * have not yet been consumed from this pool, averaged across resource names.  A pool whose Offer
+   * contained no unreserved scalar resources reports 0.
+   */
+  public double getUnreservedScalarFractionRemaining() {
+    double fractionSum = 0;
+    int count = 0;
+
+    for (Map.Entry<String, Double> entry : offeredUnreservedScalars.entrySet()) {
+      double offered = entry.getValue();
+      if (offered <= 0) {
+        continue;
+      }
+
+      MergedResourceValue remainingValue = unreservedMergedPool.get(entry.getKey());
+      double remaining = remainingValue == null ? 0 : remainingValue.getScalar();
+      fractionSum += remaining / offered;
+      count++;
+    }
+
+    return count == 0 ? 0 : fractionSum / count;
+  }
+
   public MesosResource consume(ResourceRequirement resReq) {
     if (resReq.expectsResource()) {
       logger.info("Retrieving reserved resource");
@@ -78,14 +160,14 @@ public class MesosResourcePool {
   }
 
   private void releaseMergedResource(MesosResource mesRes) {
-    Value currValue = unreservedMergedPool.get(mesRes.getName());
+    MergedResourceValue currValue = unreservedMergedPool.get(mesRes.getName());
 
     if (currValue == null) {
-      currValue = ValueUtils.getZero(mesRes.getType());
+      currValue = new MergedResourceValue(mesRes.getType());
+      unreservedMergedPool.put(mesRes.getName(), currValue);
     }
 
-    Value updatedValue = ValueUtils.add(currValue, mesRes.getValue());
-    unreservedMergedPool.put(mesRes.getName(), updatedValue);
+    currValue.add(mesRes.getResource());
   }
 
   private void releaseAtomicResource(MesosResource mesRes) {
@@ -101,14 +183,7 @@ public class MesosResourcePool {
     }
 
     Resource releasedResource = resBuilder.build();
-
-    List<MesosResource> resList = unreservedAtomicPool.get(mesRes.getName());
-    if (resList == null) {
-      resList = new ArrayList<MesosResource>();
-    }
-
-    resList.add(new MesosResource(releasedResource));
-    unreservedAtomicPool.put(mesRes.getName(), resList);
+    addAtomicResource(unreservedAtomicPool, new MesosResource(releasedResource));
   }
 
   private MesosResource consumeReserved(ResourceRequirement resReq) {
@@ -129,26 +204,29 @@ public class MesosResourcePool {
     return mesRes;
   }
 
+  /**
+   * Consumes the smallest unreserved atomic resource which satisfies the requirement.
+   */
   private MesosResource consumeAtomic(ResourceRequirement resReq) {
-    Value desiredValue = resReq.getValue();
-    List<MesosResource> atomicResources = unreservedAtomicPool.get(resReq.getName());
-    List<MesosResource> filteredResources = new ArrayList<>();
+    NavigableMap<Double, List<MesosResource>> atomicResources = unreservedAtomicPool.get(resReq.getName());
     MesosResource sufficientResource = null;
 
     if (atomicResources != null) {
-      for (MesosResource mesRes : atomicResources) {
-        if (sufficientValue(desiredValue, mesRes.getValue())) {
-          sufficientResource = mesRes;
-        } else {
-          filteredResources.add(mesRes);
+      Value desiredValue = resReq.getValue();
+      double desiredSize = desiredValue == null ? 0 : desiredValue.getScalar().getValue();
+      Map.Entry<Double, List<MesosResource>> entry = atomicResources.ceilingEntry(desiredSize);
+      if (entry != null) {
+        List<MesosResource> sizedResources = entry.getValue();
+        sufficientResource = sizedResources.remove(sizedResources.size() - 1);
+
+        if (sizedResources.isEmpty()) {
+          atomicResources.remove(entry.getKey());
         }
-      }
-    }
 
-    if (filteredResources.size() == 0) {
-      unreservedAtomicPool.remove(resReq.getName());
-    } else {
-      unreservedAtomicPool.put(resReq.getName(), filteredResources);
+        if (atomicResources.isEmpty()) {
+          unreservedAtomicPool.remove(resReq.getName());
+        }
+      }
     }
 
     if (sufficientResource == null) {
@@ -161,10 +239,10 @@ public class MesosResourcePool {
 
   private MesosResource consumeUnreservedMerged(ResourceRequirement resReq) {
     Value desiredValue = resReq.getValue();
-    Value availableValue = unreservedMergedPool.get(resReq.getName());
+    MergedResourceValue availableValue = unreservedMergedPool.get(resReq.getName());
 
-    if (sufficientValue(desiredValue, availableValue)) {
-      unreservedMergedPool.put(resReq.getName(), ValueUtils.subtract(availableValue, desiredValue));
+    if (availableValue != null && availableValue.contains(desiredValue)) {
+      availableValue.subtract(desiredValue);
       Resource resource = ResourceBuilder.getResource(resReq.getName(), desiredValue);
       return new MesosResource(resource);
     } else {
@@ -173,114 +251,77 @@ public class MesosResourcePool {
   }
 
   private boolean sufficientValue(Value desired, Value available) {
-    if (desired == null) {
-      return true;
-    } else if (available == null) {
-      return false;
-    }
-
-    Value difference = ValueUtils.subtract(desired, available);
-    return ValueUtils.compare(difference, ValueUtils.getZero(desired.getType())) <= 0;
+    return MergedResourceValue.sufficient(desired, available);
   }
 
-  private Collection<MesosResource> getMesosResourcesInternal() {
-    Collection<MesosResource> mesRsrcs = new ArrayList<MesosResource>();
+  private static void addAtomicResource(
+      Map<String, NavigableMap<Double, List<MesosResource>>> pool,
+      MesosResource mesResource) {
+    NavigableMap<Double, List<MesosResource>> sizedPool = pool.get(mesResource.getName());
+    if (sizedPool == null) {
+      sizedPool = new TreeMap<Double, List<MesosResource>>();
+      pool.put(mesResource.getName(), sizedPool);
+    }
 
-    for (Resource resource : offer.getResourcesList()) {
-      mesRsrcs.add(new MesosResource(resource));
+    double size = mesResource.getResource().getScalar().getValue();
+    List<MesosResource> resList = sizedPool.get(size);
+    if (resList == null) {
+      resList = new ArrayList<MesosResource>();
+      sizedPool.put(size, resList);
     }
 
-    return mesRsrcs;
+    resList.add(mesResource);
   }
 
-  private Map<String, MesosResource> getReservedPool(Offer offer) {
+  private static Map<String, MesosResource> getReservedPool(OfferResources offerResources) {
     Map<String, MesosResource> reservedPool = new HashMap<String, MesosResource>();
 
-    for (MesosResource mesResource : mesosResources) {
-      if (mesResource.hasResourceId()) {
-        reservedPool.put(mesResource.getResourceId(), mesResource);
-      }
+    for (MesosResource mesResource : offerResources.getReservedResources()) {
+      reservedPool.put(mesResource.getResourceId(), mesResource);
     }
 
     return reservedPool;
   }
 
-  private Map<String, List<MesosResource>> getUnreservedAtomicPool(Offer offer) {
-    Map<String, List<MesosResource>> pool = new HashMap<String, List<MesosResource>>();
-
-    for (MesosResource mesResource : getUnreservedAtomicResources()) {
-      String name = mesResource.getName();
-      List<MesosResource> resList = pool.get(name);
-
-      if (resList == null) {
-        resList = new ArrayList<MesosResource>();
-      }
+  private static Map<String, NavigableMap<Double, List<MesosResource>>> getUnreservedAtomicPool(
+      OfferResources offerResources) {
+    Map<String, NavigableMap<Double, List<MesosResource>>> pool =
+        new HashMap<String, NavigableMap<Double, List<MesosResource>>>();
 
-      resList.add(mesResource);
-      pool.put(name, resList);
+    for (MesosResource mesResource : offerResources.getUnreservedAtomicResources()) {
+      addAtomicResource(pool, mesResource);
     }
 
     return pool;
   }
 
-  private Map<String, Value> getUnreservedMergedPool(Offer offer) {
-    Map<String, Value> pool = new HashMap<String, Value>();
+  private static Map<String, MergedResourceValue> getUnreservedMergedPool(OfferResources offerResources) {
+    Map<String, MergedResourceValue> pool = new HashMap<String, MergedResourceValue>();
 
-    for (MesosResource mesResource : getUnreservedMergedResources()) {
+    for (MesosResource mesResource : offerResources.getUnreservedMergedResources()) {
       String name = mesResource.getName();
-      Value currValue = pool.get(name);
+      MergedResourceValue currValue = pool.get(name);
 
       if (currValue == null) {
-        currValue = ValueUtils.getZero(mesResource.getType());
+        currValue = new MergedResourceValue(mesResource.getType());
+        pool.put(name, currValue);
       }
 
-      pool.put(name, ValueUtils.add(currValue, mesResource.getValue()));
+      currValue.add(mesResource.getResource());
     }
 
     return pool;
   }
 
-  private Collection<MesosResource> getAtomicResources() {
-    Collection<MesosResource> atomicResources = new ArrayList<MesosResource>();
-
-    for (MesosResource mesResource : mesosResources) {
-      if (mesResource.isAtomic()) {
-        atomicResources.add(mesResource);
-      }
-    }
-
-    return atomicResources;
-  }
-
-  private Collection<MesosResource> getMergedResources() {
-    Collection<MesosResource> mergedResources = new ArrayList<MesosResource>();
-
-    for (MesosResource mesResource : mesosResources) {
-      if (!mesResource.isAtomic()) {
-        mergedResources.add(mesResource);
-      }
-    }
-
-    return mergedResources;
-  }
-
-  private Collection<MesosResource> getUnreservedAtomicResources() {
-    return getUnreservedResources(getAtomicResources());
-  }
-
-  private Collection<MesosResource> getUnreservedMergedResources() {
-    return getUnreservedResources(getMergedResources());
-  }
-
-  private Collection<MesosResource> getUnreservedResources(Collection<MesosResource> mesResources) {
-    Collection<MesosResource> unreservedResources = new ArrayList<MesosResource>();
+  private static Map<String, Double> getUnreservedScalars(Map<String, MergedResourceValue> mergedPool) {
+    Map<String, Double> scalars = new HashMap<String, Double>();
 
-    for (MesosResource mesResource : mesResources) {
-      if (!mesResource.hasResourceId()) {
-        unreservedResources.add(mesResource);
+    for (Map.Entry<String, MergedResourceValue> entry : mergedPool.entrySet()) {
+      if (entry.getValue().getType() == Value.Type.SCALAR) {
+        scalars.put(entry.getKey(), entry.getValue().getScalar());
       }
     }
 
-    return unreservedResources;
+    return scalars;
   }
 }
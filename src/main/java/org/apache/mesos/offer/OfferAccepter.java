@@ -4,6 +4,7 @@ import com.google.inject.Inject;
 import org.apache.mesos.Protos.Filters;
 import org.apache.mesos.Protos.Offer.Operation;
 import org.apache.mesos.Protos.OfferID;
+import org.apache.mesos.Protos.SlaveID;
 import org.apache.mesos.SchedulerDriver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,8 +12,10 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -48,10 +51,7 @@ public class OfferAccepter {
       return new ArrayList<OfferID>();
     }
 
-    List<OfferID> offerIds = getOfferIds(recommendations);
-    List<Operation> operations = getOperations(recommendations);
-
-    logOperations(operations);
+    Map<SlaveID, List<OfferRecommendation>> recommendationsByAgent = groupByAgent(recommendations);
 
     try {
       record(recommendations);
@@ -60,10 +60,20 @@ public class OfferAccepter {
       return new ArrayList<OfferID>();
     }
 
-    if (operations.size() > 0) {
-      driver.acceptOffers(offerIds, operations, filters);
-    } else {
-      logger.warn("No Operations to perform.");
+    // Mesos only accepts several Offers together when they are from the same agent, so Offers are
+    // accepted with one call per agent rather than one per Offer.
+    List<OfferID> offerIds = new ArrayList<OfferID>();
+    for (Map.Entry<SlaveID, List<OfferRecommendation>> entry : recommendationsByAgent.entrySet()) {
+      List<OfferID> agentOfferIds = getOfferIds(entry.getValue());
+      List<Operation> operations = getOperations(entry.getValue());
+      logOperations(operations);
+
+      if (operations.size() > 0) {
+        driver.acceptOffers(agentOfferIds, operations, filters);
+      } else {
+        logger.warn("No Operations to perform for agent: {}", entry.getKey().getValue());
+      }
+      offerIds.addAll(agentOfferIds);
     }
 
     return offerIds;
@@ -93,13 +103,30 @@ public class OfferAccepter {
   }
 
   private static List<OfferID> getOfferIds(List<OfferRecommendation> recommendations) {
-    Set<OfferID> offerIdSet = new HashSet<OfferID>();
+    Set<OfferID> offerIds = new LinkedHashSet<OfferID>();
 
     for (OfferRecommendation recommendation : recommendations) {
-      offerIdSet.add(recommendation.getOffer().getId());
+      offerIds.add(recommendation.getOffer().getId());
+    }
+
+    return new ArrayList<OfferID>(offerIds);
+  }
+
+  private static Map<SlaveID, List<OfferRecommendation>> groupByAgent(List<OfferRecommendation> recommendations) {
+    Map<SlaveID, List<OfferRecommendation>> recommendationsByAgent =
+        new LinkedHashMap<SlaveID, List<OfferRecommendation>>();
+
+    for (OfferRecommendation recommendation : recommendations) {
+      SlaveID agentId = recommendation.getOffer().getSlaveId();
+      List<OfferRecommendation> agentRecommendations = recommendationsByAgent.get(agentId);
+      if (agentRecommendations == null) {
+        agentRecommendations = new ArrayList<OfferRecommendation>();
+        recommendationsByAgent.put(agentId, agentRecommendations);
+      }
+      agentRecommendations.add(recommendation);
     }
 
-    return new ArrayList<OfferID>(offerIdSet);
+    return recommendationsByAgent;
   }
 
   private static void logOperations(List<Operation> operations) {
@@ -0,0 +1,211 @@
+package org.apache.mesos.offer;
+
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.OfferID;
+import org.apache.mesos.SchedulerDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The OfferCache holds Offers which were not used when they were received, so that work which
+ * becomes ready between offer rounds may be matched against them immediately.  Offers are held for
+ * a configurable time to live, after which they are declined, and are dropped as soon as Mesos
+ * rescinds them.
+ *
+ * Mesos sends no new Offers for resources which the framework is holding, so once the cache has
+ * been given a driver via {@link #start(SchedulerDriver)} it declines expired Offers in the
+ * background until it is closed.  Expiry holds the cache's lock, so callers which evaluate and
+ * accept held Offers while synchronized on the cache, as {@link
+ * org.apache.mesos.scheduler.plan.DefaultStageScheduler} does, never have an Offer declined while
+ * they are using it.
+ *
+ * When an {@link OfferResourceIndex} is provided, it is kept in sync with the held Offers.
+ */
+public class OfferCache implements Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(OfferCache.class);
+
+  private final long ttlMs;
+  private final OfferResourceIndex resourceIndex;
+  private final Map<OfferID, CachedOffer> offers = new LinkedHashMap<>();
+  private ScheduledExecutorService expiryExecutor;
+
+  public OfferCache(long ttlMs) {
+    this(ttlMs, null);
+  }
+
+  public OfferCache(long ttlMs, OfferResourceIndex resourceIndex) {
+    this.ttlMs = ttlMs;
+    this.resourceIndex = resourceIndex;
+  }
+
+  /**
+   * Adds newly received Offers to the cache.  Offers which are already held keep their original
+   * receive time.
+   */
+  public synchronized void add(Collection<Offer> newOffers) {
+    long now = System.currentTimeMillis();
+
+    for (Offer offer : newOffers) {
+      if (!offers.containsKey(offer.getId())) {
+        offers.put(offer.getId(), new CachedOffer(offer, now));
+        if (resourceIndex != null) {
+          resourceIndex.addOffer(offer);
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes an Offer which has been accepted, declined or rescinded.
+   */
+  public synchronized void remove(OfferID offerId) {
+    if (offers.remove(offerId) != null && resourceIndex != null) {
+      resourceIndex.removeOffer(offerId);
+    }
+  }
+
+  public synchronized void removeAll(Collection<OfferID> offerIds) {
+    for (OfferID offerId : offerIds) {
+      remove(offerId);
+    }
+  }
+
+  /**
+   * Drops an Offer which Mesos has rescinded.
+   */
+  public void offerRescinded(OfferID offerId) {
+    logger.info("Dropping rescinded offer: {}", offerId.getValue());
+    remove(offerId);
+  }
+
+  /**
+   * Returns the held Offers which have not yet expired, in the order they were received.
+   */
+  public synchronized List<Offer> getOffers() {
+    long now = System.currentTimeMillis();
+    List<Offer> heldOffers = new ArrayList<>();
+
+    for (CachedOffer cachedOffer : offers.values()) {
+      if (!cachedOffer.isExpired(now, ttlMs)) {
+        heldOffers.add(cachedOffer.getOffer());
+      }
+    }
+
+    return heldOffers;
+  }
+
+  /**
+   * Removes and returns the Offers which have been held for longer than the time to live.
+   */
+  public synchronized List<Offer> removeExpired() {
+    long now = System.currentTimeMillis();
+    List<Offer> expiredOffers = new ArrayList<>();
+
+    Iterator<CachedOffer> iterator = offers.values().iterator();
+    while (iterator.hasNext()) {
+      CachedOffer cachedOffer = iterator.next();
+      if (cachedOffer.isExpired(now, ttlMs)) {
+        iterator.remove();
+        expiredOffers.add(cachedOffer.getOffer());
+        if (resourceIndex != null) {
+          resourceIndex.removeOffer(cachedOffer.getOffer().getId());
+        }
+      }
+    }
+
+    return expiredOffers;
+  }
+
+  /**
+   * Starts declining expired Offers in the background through the provided driver, at half the
+   * time to live.  Calling this again, such as after the framework re-registers, switches to the
+   * new driver.
+   */
+  public synchronized void start(final SchedulerDriver driver) {
+    if (expiryExecutor != null) {
+      expiryExecutor.shutdownNow();
+    }
+    expiryExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "OfferCache-expiry");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    long intervalMs = Math.max(1, ttlMs / 2);
+    expiryExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          declineExpired(driver);
+        } catch (RuntimeException e) {
+          logger.error("Failed to decline expired offers", e);
+        }
+      }
+    }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops declining expired Offers in the background.  Held Offers are kept, and the cache may be
+   * started again.
+   */
+  @Override
+  public synchronized void close() {
+    if (expiryExecutor != null) {
+      expiryExecutor.shutdownNow();
+      expiryExecutor = null;
+    }
+  }
+
+  /**
+   * Declines and removes the Offers which have been held for longer than the time to live.
+   *
+   * @return the IDs of the declined Offers
+   */
+  public synchronized List<OfferID> declineExpired(SchedulerDriver driver) {
+    List<OfferID> declinedOfferIds = new ArrayList<>();
+
+    for (Offer offer : removeExpired()) {
+      logger.info("Declining expired offer: {}", offer.getId().getValue());
+      driver.declineOffer(offer.getId());
+      declinedOfferIds.add(offer.getId());
+    }
+
+    return declinedOfferIds;
+  }
+
+  public synchronized int size() {
+    return offers.size();
+  }
+
+  private static class CachedOffer {
+    private final Offer offer;
+    private final long receivedMs;
+
+    private CachedOffer(Offer offer, long receivedMs) {
+      this.offer = offer;
+      this.receivedMs = receivedMs;
+    }
+
+    private Offer getOffer() {
+      return offer;
+    }
+
+    private boolean isExpired(long nowMs, long ttlMs) {
+      return nowMs - receivedMs >= ttlMs;
+    }
+  }
+}
@@ -26,16 +26,191 @@ import java.util.*;
 public class OfferEvaluator {
   private static final Logger logger = LoggerFactory.getLogger(OfferEvaluator.class);
 
-  public OfferEvaluator() { }
+  private final OfferFitFunction fitFunction;
+  private final OfferResourceIndex resourceIndex;
+
+  public OfferEvaluator() {
+    this(null, null);
+  }
+
+  public OfferEvaluator(OfferFitFunction fitFunction) {
+    this(fitFunction, null);
+  }
+
+  /**
+   * Creates an OfferEvaluator which evaluates every {@link Offer} in a batch and returns the
+   * {@link OfferRecommendation}s for the Offer ranked highest by the provided {@link OfferFitFunction}.
+   * When no fit function is provided the first Offer which satisfies the requirement is used.
+   * When an {@link OfferResourceIndex} is provided, resource pools are built from the Offer
+   * resources it holds rather than by parsing each Offer again.  Offers which it doesn't hold are
+   * parsed as usual, and aren't added to it.
+   */
+  public OfferEvaluator(OfferFitFunction fitFunction, OfferResourceIndex resourceIndex) {
+    this.fitFunction = fitFunction;
+    this.resourceIndex = resourceIndex;
+  }
 
   public List<OfferRecommendation> evaluate(OfferRequirement offerRequirement, List<Offer> offers) {
+    if (fitFunction == null) {
+      for (Offer offer : offers) {
+        List<OfferRecommendation> recommendations = evaluate(offerRequirement, offer);
+        if (!recommendations.isEmpty()) {
+          return recommendations;
+        }
+      }
+      return Collections.emptyList();
+    }
+
+    List<OfferFit> fits = new ArrayList<OfferFit>();
+    for (Offer offer : offers) {
+      fits.add(fit(offerRequirement, offer));
+    }
+    return select(offerRequirement, fits);
+  }
+
+  /**
+   * Evaluates several OfferRequirements against the same batch of Offers in a single pass.  Each
+   * requirement is fitted against the resources left over by the requirements placed before it, so
+   * no resource in an Offer is recommended twice.  Offers are selected as in
+   * {@link #evaluate(OfferRequirement, List)}.
+   *
+   * @return the recommendations for each requirement in order, empty where a requirement could not
+   *         be satisfied
+   */
+  public List<List<OfferRecommendation>> evaluate(List<OfferRequirement> offerRequirements, List<Offer> offers) {
+    Map<Protos.OfferID, MesosResourcePool> pools = new HashMap<Protos.OfferID, MesosResourcePool>();
+    List<List<OfferRecommendation>> allRecommendations = new ArrayList<List<OfferRecommendation>>();
+
+    for (OfferRequirement offerRequirement : offerRequirements) {
+      OfferFit bestFit = fitRemaining(offerRequirement, offers, pools);
+      if (bestFit == null) {
+        allRecommendations.add(Collections.<OfferRecommendation>emptyList());
+        continue;
+      }
+
+      pools.put(bestFit.getOffer().getId(), bestFit.getPool());
+      if (fitFunction != null) {
+        fitFunction.selected(offerRequirement, bestFit.getOffer());
+      }
+      allRecommendations.add(bestFit.getRecommendations());
+    }
+
+    return allRecommendations;
+  }
+
+  /**
+   * Fits the OfferRequirement against a copy of the resources remaining in each Offer, and returns
+   * the fit which {@link #selectFit(List)} selects, or null if no Offer satisfies it.  Pools for
+   * Offers which have none yet are added to {@code pools}.
+   */
+  OfferFit fitRemaining(
+      OfferRequirement offerRequirement, List<Offer> offers, Map<Protos.OfferID, MesosResourcePool> pools) {
+    OfferFit bestFit = null;
+
     for (Offer offer : offers) {
-      List<OfferRecommendation> recommendations = evaluate(offerRequirement, offer);
-      if (recommendations != null) {
-        return recommendations;
+      if (!offerMeetsPlacementConstraints(offerRequirement, offer)) {
+        continue;
+      }
+
+      OfferFit fit = fit(offerRequirement, offer, getRemainingPool(offer, pools).copy());
+      if (fit.getRecommendations().isEmpty()) {
+        continue;
+      }
+
+      if (fitFunction == null) {
+        return fit;
+      }
+
+      if (bestFit == null || fit.getScore() > bestFit.getScore()) {
+        bestFit = fit;
       }
     }
-    return Collections.emptyList();
+
+    return bestFit;
+  }
+
+  /**
+   * Returns the pool of resources remaining in the Offer, adding a new pool to {@code pools} if the
+   * Offer has none yet.
+   */
+  MesosResourcePool getRemainingPool(Offer offer, Map<Protos.OfferID, MesosResourcePool> pools) {
+    MesosResourcePool pool = pools.get(offer.getId());
+    if (pool == null) {
+      pool = getPool(offer);
+      pools.put(offer.getId(), pool);
+    }
+    return pool;
+  }
+
+  /**
+   * Fits the OfferRequirement against a single Offer, building its {@link MesosResourcePool} once
+   * and scoring the remaining pool if a fit function is configured.
+   */
+  OfferFit fit(OfferRequirement offerRequirement, Offer offer) {
+    return fit(offerRequirement, offer, null);
+  }
+
+  /**
+   * Fits the OfferRequirement against a single Offer, consuming resources from the provided pool,
+   * or from a new pool for the Offer if none is provided.  The returned fit holds the pool.
+   */
+  OfferFit fit(OfferRequirement offerRequirement, Offer offer, MesosResourcePool pool) {
+    if (!offerMeetsPlacementConstraints(offerRequirement, offer)) {
+      return new OfferFit(offer, Collections.emptyList(), 0, null);
+    }
+
+    if (pool == null) {
+      pool = getPool(offer);
+    }
+    List<OfferRecommendation> recommendations = evaluate(offerRequirement, offer, pool);
+    if (fitFunction == null || recommendations.isEmpty()) {
+      return new OfferFit(offer, recommendations, 0, pool);
+    }
+
+    double score = fitFunction.score(offerRequirement, pool);
+    logger.info("Offer: '{}' on host: '{}' scored: {}", offer.getId().getValue(), offer.getHostname(), score);
+    return new OfferFit(offer, recommendations, score, pool);
+  }
+
+  /**
+   * Selects the recommendations to return from a list of fits ordered as their Offers were received.
+   * Without a fit function the first satisfying Offer is selected, otherwise the highest scoring one,
+   * with ties going to the earlier Offer.
+   */
+  List<OfferRecommendation> select(OfferRequirement offerRequirement, List<OfferFit> fits) {
+    OfferFit bestFit = selectFit(fits);
+    if (bestFit == null) {
+      return Collections.emptyList();
+    }
+
+    if (fitFunction != null) {
+      fitFunction.selected(offerRequirement, bestFit.getOffer());
+    }
+    return bestFit.getRecommendations();
+  }
+
+  /**
+   * Returns the fit selected as in {@link #select(OfferRequirement, List)}, or null if no fit
+   * satisfies the requirement.
+   */
+  OfferFit selectFit(List<OfferFit> fits) {
+    OfferFit bestFit = null;
+
+    for (OfferFit fit : fits) {
+      if (fit.getRecommendations().isEmpty()) {
+        continue;
+      }
+
+      if (fitFunction == null) {
+        return fit;
+      }
+
+      if (bestFit == null || fit.getScore() > bestFit.getScore()) {
+        bestFit = fit;
+      }
+    }
+
+    return bestFit;
   }
 
   private boolean offerMeetsPlacementConstraints(OfferRequirement offerReq, Offer offer) {
@@ -66,8 +241,18 @@ public class OfferEvaluator {
       return Collections.emptyList();
     }
 
-    MesosResourcePool pool = new MesosResourcePool(offer);
+    return evaluate(offerRequirement, offer, getPool(offer));
+  }
+
+  private MesosResourcePool getPool(Offer offer) {
+    if (resourceIndex != null) {
+      return resourceIndex.getPool(offer);
+    }
 
+    return new MesosResourcePool(offer);
+  }
+
+  private List<OfferRecommendation> evaluate(OfferRequirement offerRequirement, Offer offer, MesosResourcePool pool) {
     List<OfferRecommendation> unreserves = new ArrayList<OfferRecommendation>();
     List<OfferRecommendation> reserves = new ArrayList<OfferRecommendation>();
     List<OfferRecommendation> creates = new ArrayList<OfferRecommendation>();
@@ -140,6 +325,43 @@ public class OfferEvaluator {
     return recommendations;
   }
 
+  /**
+   * The outcome of fitting an OfferRequirement against a single Offer.
+   */
+  static class OfferFit {
+    private final Offer offer;
+    private final List<OfferRecommendation> recommendations;
+    private final double score;
+    private final MesosResourcePool pool;
+
+    OfferFit(Offer offer, List<OfferRecommendation> recommendations, double score, MesosResourcePool pool) {
+      this.offer = offer;
+      this.recommendations = recommendations;
+      this.score = score;
+      this.pool = pool;
+    }
+
+    public Offer getOffer() {
+      return offer;
+    }
+
+    public List<OfferRecommendation> getRecommendations() {
+      return recommendations;
+    }
+
+    public double getScore() {
+      return score;
+    }
+
+    /**
+     * Returns the resources remaining in the Offer once the recommendations are applied, or null if
+     * the Offer was not evaluated.
+     */
+    public MesosResourcePool getPool() {
+      return pool;
+    }
+  }
+
   private static class FulfilledRequirement {
     private List<Resource> fulfilledResources = new ArrayList<Resource>();
     private List<OfferRecommendation> unreserveRecommendations = new ArrayList<OfferRecommendation>();
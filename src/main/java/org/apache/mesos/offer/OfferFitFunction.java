@@ -0,0 +1,22 @@
+package org.apache.mesos.offer;
+
+import org.apache.mesos.Protos.Offer;
+
+/**
+ * OfferFitFunction Interface.
+ * An OfferFitFunction ranks the Offers which are able to satisfy an {@link OfferRequirement} so that
+ * the {@link OfferEvaluator} may select the best of them rather than the first.
+ */
+public interface OfferFitFunction {
+  /**
+   * Returns a score for an Offer which satisfies the provided OfferRequirement.  Higher scores are
+   * preferred.  The provided pool reflects the resources remaining in the Offer after the
+   * requirement has been fulfilled.
+   */
+  double score(OfferRequirement offerRequirement, MesosResourcePool pool);
+
+  /**
+   * Notifies the function that the provided Offer was selected to fulfill the OfferRequirement.
+   */
+  void selected(OfferRequirement offerRequirement, Offer offer);
+}
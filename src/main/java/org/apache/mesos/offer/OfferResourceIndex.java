@@ -0,0 +1,59 @@
+package org.apache.mesos.offer;
+
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.OfferID;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An index of the resources in each held Offer.  Each {@link Offer}'s resources are parsed and
+ * classified once when the Offer is added, and the resulting {@link OfferResources} are shared by
+ * every {@link MesosResourcePool} built for that Offer.
+ *
+ * The index is maintained incrementally by its owner, such as an {@link OfferCache}: Offers are
+ * added as they are received and must be removed once they have been accepted, declined or
+ * rescinded.  Building a pool never adds an Offer to the index.
+ */
+public class OfferResourceIndex {
+  private final Map<OfferID, OfferResources> offerResources = new HashMap<>();
+
+  /**
+   * Adds an Offer to the index, returning its classified resources.  Adding an Offer which is
+   * already present returns the existing classification.
+   */
+  public synchronized OfferResources addOffer(Offer offer) {
+    OfferResources resources = offerResources.get(offer.getId());
+    if (resources != null) {
+      return resources;
+    }
+
+    resources = OfferResources.create(offer);
+    offerResources.put(offer.getId(), resources);
+    return resources;
+  }
+
+  public synchronized void removeOffer(OfferID offerId) {
+    offerResources.remove(offerId);
+  }
+
+  /**
+   * Returns a new resource pool for the Offer.  The Offer's indexed resources are used if it has
+   * been added, and otherwise its resources are classified for this pool alone.
+   */
+  public MesosResourcePool getPool(Offer offer) {
+    OfferResources resources;
+    synchronized (this) {
+      resources = offerResources.get(offer.getId());
+    }
+    return new MesosResourcePool(resources != null ? resources : OfferResources.create(offer));
+  }
+
+  public synchronized boolean contains(OfferID offerId) {
+    return offerResources.containsKey(offerId);
+  }
+
+  public synchronized int size() {
+    return offerResources.size();
+  }
+}
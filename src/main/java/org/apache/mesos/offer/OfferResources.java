@@ -0,0 +1,69 @@
+package org.apache.mesos.offer;
+
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.Resource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The resources of a single {@link Offer}, parsed into {@link MesosResource}s and classified in a
+ * single pass.  Instances are immutable so that they may be shared by every
+ * {@link MesosResourcePool} built for the same Offer.
+ */
+public final class OfferResources {
+  private final Offer offer;
+  private final List<MesosResource> reservedResources;
+  private final List<MesosResource> unreservedAtomicResources;
+  private final List<MesosResource> unreservedMergedResources;
+
+  private OfferResources(
+      Offer offer,
+      List<MesosResource> reservedResources,
+      List<MesosResource> unreservedAtomicResources,
+      List<MesosResource> unreservedMergedResources) {
+    this.offer = offer;
+    this.reservedResources = Collections.unmodifiableList(reservedResources);
+    this.unreservedAtomicResources = Collections.unmodifiableList(unreservedAtomicResources);
+    this.unreservedMergedResources = Collections.unmodifiableList(unreservedMergedResources);
+  }
+
+  public static OfferResources create(Offer offer) {
+    List<MesosResource> reserved = new ArrayList<MesosResource>();
+    List<MesosResource> unreservedAtomic = new ArrayList<MesosResource>();
+    List<MesosResource> unreservedMerged = new ArrayList<MesosResource>();
+
+    for (Resource resource : offer.getResourcesList()) {
+      MesosResource mesResource = new MesosResource(resource);
+      if (mesResource.hasResourceId()) {
+        reserved.add(mesResource);
+      } else if (mesResource.isAtomic()) {
+        unreservedAtomic.add(mesResource);
+      } else {
+        unreservedMerged.add(mesResource);
+      }
+    }
+
+    return new OfferResources(offer, reserved, unreservedAtomic, unreservedMerged);
+  }
+
+  public Offer getOffer() {
+    return offer;
+  }
+
+  /**
+   * Returns the resources which carry a resource ID reservation label.
+   */
+  public List<MesosResource> getReservedResources() {
+    return reservedResources;
+  }
+
+  public List<MesosResource> getUnreservedAtomicResources() {
+    return unreservedAtomicResources;
+  }
+
+  public List<MesosResource> getUnreservedMergedResources() {
+    return unreservedMergedResources;
+  }
+}
@@ -0,0 +1,126 @@
+package org.apache.mesos.offer;
+
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.OfferID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * An {@link OfferEvaluator} which fits an {@link OfferRequirement} against each {@link Offer} of a
+ * batch concurrently on a {@link ForkJoinPool}.  Fits are merged in the order the Offers were
+ * received, so the returned {@link OfferRecommendation}s are those the sequential OfferEvaluator
+ * would return for the same batch.  Several OfferRequirements evaluated together are fitted
+ * against the Offers concurrently in the same way, one requirement after another.  Batches smaller
+ * than the configured threshold are evaluated on the calling thread.
+ */
+public class ParallelOfferEvaluator extends OfferEvaluator {
+  private static final Logger logger = LoggerFactory.getLogger(ParallelOfferEvaluator.class);
+  private static final int DEFAULT_MIN_PARALLEL_OFFERS = 16;
+
+  private final ForkJoinPool forkJoinPool;
+  private final int minParallelOffers;
+
+  public ParallelOfferEvaluator(ForkJoinPool forkJoinPool) {
+    this(null, forkJoinPool);
+  }
+
+  public ParallelOfferEvaluator(OfferFitFunction fitFunction, ForkJoinPool forkJoinPool) {
+    this(fitFunction, forkJoinPool, DEFAULT_MIN_PARALLEL_OFFERS);
+  }
+
+  public ParallelOfferEvaluator(OfferFitFunction fitFunction, ForkJoinPool forkJoinPool, int minParallelOffers) {
+    this(fitFunction, null, forkJoinPool, minParallelOffers);
+  }
+
+  public ParallelOfferEvaluator(
+      OfferFitFunction fitFunction,
+      OfferResourceIndex resourceIndex,
+      ForkJoinPool forkJoinPool,
+      int minParallelOffers) {
+    super(fitFunction, resourceIndex);
+    this.forkJoinPool = forkJoinPool;
+    this.minParallelOffers = minParallelOffers;
+  }
+
+  @Override
+  public List<OfferRecommendation> evaluate(OfferRequirement offerRequirement, List<Offer> offers) {
+    if (offers.size() < minParallelOffers) {
+      return super.evaluate(offerRequirement, offers);
+    }
+
+    List<Callable<OfferFit>> tasks = new ArrayList<Callable<OfferFit>>();
+    for (Offer offer : offers) {
+      tasks.add(() -> fit(offerRequirement, offer));
+    }
+
+    List<OfferFit> fits;
+    try {
+      fits = invokeAll(tasks);
+    } catch (InterruptedException ex) {
+      logger.error("Interrupted while evaluating offers in parallel, evaluating sequentially", ex);
+      Thread.currentThread().interrupt();
+      return super.evaluate(offerRequirement, offers);
+
+    return select(offerRequirement, fits);
+  }
+
+  /**
+   * Fits each of several OfferRequirements against every Offer concurrently.  The requirements are
+   * still placed one after another, each against the resources left over by those before it.
+   */
+  @Override
+  OfferFit fitRemaining(
+      OfferRequirement offerRequirement, List<Offer> offers, Map<OfferID, MesosResourcePool> pools) {
+    if (offers.size() < minParallelOffers) {
+      return super.fitRemaining(offerRequirement, offers, pools);
+    }
+
+    // Pools are added up front, so that the tasks only read the map.
+    List<Callable<OfferFit>> tasks = new ArrayList<Callable<OfferFit>>();
+    for (Offer offer : offers) {
+      MesosResourcePool pool = getRemainingPool(offer, pools);
+      tasks.add(() -> fit(offerRequirement, offer, pool.copy()));
+    }
+
+    List<OfferFit> fits;
+    try {
+      fits = invokeAll(tasks);
+    } catch (InterruptedException ex) {
+      logger.error("Interrupted while evaluating offers in parallel, evaluating sequentially", ex);
+      Thread.currentThread().interrupt();
+      return super.fitRemaining(offerRequirement, offers, pools);
+
+    return selectFit(fits);
+  }
+
+  /**
+   * Runs the tasks on the pool and returns their fits in order.  A failure in any task is thrown to
+   * the caller rather than hidden by evaluating the batch again sequentially.
+   */
+  private List<OfferFit> invokeAll(List<Callable<OfferFit>> tasks) throws InterruptedException {
+    List<OfferFit> fits = new ArrayList<OfferFit>();
+    for (Future<OfferFit> future : forkJoinPool.invokeAll(tasks)) {
+      try {
+        fits.add(future.get());
+      } catch (ExecutionException ex) {
+        Throwable cause = ex.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IllegalStateException("Failed to evaluate offers in parallel", cause);
+      }
+    }
+    return fits;
+  }
+}
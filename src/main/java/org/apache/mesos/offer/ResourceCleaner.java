@@ -110,9 +110,17 @@ public class ResourceCleaner {
      */
     private static Collection<Resource> getExpectedResources(StateStore stateStore)
             throws StateStoreException {
+        return getExpectedResources(stateStore.fetchTasks());
+    }
+
+    /**
+     * Returns a list of all expected resources, which are extracted from the provided
+     * {@link TaskInfo}s, for use with {@link #ResourceCleaner(Collection)}.
+     */
+    public static Collection<Resource> getExpectedResources(Collection<Protos.TaskInfo> taskInfos) {
         Collection<Resource> resources = new ArrayList<>();
 
-        for (Protos.TaskInfo taskInfo : stateStore.fetchTasks()) {
+        for (Protos.TaskInfo taskInfo : taskInfos) {
             // get all resources from both the task level and the executor level
             resources.addAll(taskInfo.getResourcesList());
             if (taskInfo.hasExecutor()) {
@@ -0,0 +1,24 @@
+package org.apache.mesos.offer;
+
+import org.apache.mesos.Protos.Offer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * OfferFitFunction preferring Offers from hosts which have been selected the fewest times by this
+ * function.  Ties are broken in favor of the Offer which would have the most resources left over.
+ */
+public class SpreadByHostFitFunction implements OfferFitFunction {
+  private final Map<String, Integer> selectionCounts = new ConcurrentHashMap<>();
+
+  public double score(OfferRequirement offerRequirement, MesosResourcePool pool) {
+    Integer count = selectionCounts.get(pool.getOffer().getHostname());
+    double fraction = Math.min(pool.getUnreservedScalarFractionRemaining(), 1.0);
+    return (count == null ? 0 : -count) + fraction / 2;
+  }
+
+  public void selected(OfferRequirement offerRequirement, Offer offer) {
+    selectionCounts.merge(offer.getHostname(), 1, Integer::sum);
+  }
+}
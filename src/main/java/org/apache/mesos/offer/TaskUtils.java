@@ -134,6 +134,24 @@ public class TaskUtils {
     throw new TaskException("TaskInfo does not contain label with key: " + TARGET_CONFIGURATION_KEY);
   }
 
+  /**
+   * Returns the IDs of the configurations in a {@link ConfigStore} associated with the provided {@link TaskInfo}s.
+   * TaskInfos which do not indicate a valid target configuration are skipped.
+   * @param taskInfos are the TaskInfos from which the configuration IDs will be extracted.
+   * @return the distinct IDs of the target configurations of the provided {@link TaskInfo}s
+   */
+  public static Set<UUID> getTargetConfigurations(Collection<TaskInfo> taskInfos) {
+    Set<UUID> targetConfigurationIds = new HashSet<>();
+    for (TaskInfo taskInfo : taskInfos) {
+      try {
+        targetConfigurationIds.add(getTargetConfiguration(taskInfo));
+      } catch (TaskException | IllegalArgumentException e) {
+        // No valid target configuration
+      }
+    }
+    return targetConfigurationIds;
+  }
+
   private static TaskInfo clearTargetConfigurationLabel(TaskInfo taskInfo) {
     List<Label> filteredLabels = new ArrayList<>();
 
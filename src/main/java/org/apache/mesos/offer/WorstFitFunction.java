@@ -0,0 +1,17 @@
+package org.apache.mesos.offer;
+
+import org.apache.mesos.Protos.Offer;
+
+/**
+ * OfferFitFunction preferring the Offer which would have the most unreserved resources left over
+ * once an OfferRequirement is fulfilled.  This spreads load evenly across Agents.
+ */
+public class WorstFitFunction implements OfferFitFunction {
+
+  public double score(OfferRequirement offerRequirement, MesosResourcePool pool) {
+    return pool.getUnreservedScalarFractionRemaining();
+  }
+
+  public void selected(OfferRequirement offerRequirement, Offer offer) {
+  }
+}
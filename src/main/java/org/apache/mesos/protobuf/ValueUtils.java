@@ -135,7 +135,7 @@ public class ValueUtils {
 
     if (Algorithms.rangesEqual(list1, list2)) {
       return 0;
-    } else if (Algorithms.subtractRanges(list1, list2).size() == 0) {
+    } else if (Algorithms.rangesContain(list2, list1)) {
       return -1;
     } else {
       return 1;
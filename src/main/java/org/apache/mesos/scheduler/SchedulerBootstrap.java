@@ -0,0 +1,214 @@
+package org.apache.mesos.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mesos.Protos.FrameworkID;
+import org.apache.mesos.Protos.TaskInfo;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.config.ConfigStore;
+import org.apache.mesos.offer.TaskException;
+import org.apache.mesos.offer.TaskUtils;
+import org.apache.mesos.state.StateStore;
+import org.apache.mesos.state.StateStoreException;
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the persisted state which a scheduler needs at startup into a {@link SchedulerSnapshot}.
+ * The FrameworkID, TaskInfos, TaskStatuses and target configuration ID are each read on their own
+ * thread, so that startup waits for the slowest read rather than for the sum of all of them.
+ *
+ * As the reads aren't made in one transaction, TaskStatuses of Tasks which were cleared while the
+ * TaskInfos were read are left out of the snapshot.
+ */
+public class SchedulerBootstrap {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SchedulerBootstrap.class);
+
+  public static final String FRAMEWORK_ID_PHASE = "frameworkId";
+  public static final String TASKS_PHASE = "tasks";
+  public static final String STATUSES_PHASE = "statuses";
+  public static final String TARGET_CONFIG_PHASE = "targetConfig";
+  public static final String TOTAL_PHASE = "total";
+
+  private final StateStore stateStore;
+  private final ConfigStore<?> configStore;
+
+  public SchedulerBootstrap(StateStore stateStore, ConfigStore<?> configStore) {
+    this.stateStore = stateStore;
+    this.configStore = configStore;
+  }
+
+  /**
+   * Returns a snapshot of the stored state. A FrameworkID or target configuration ID which is
+   * missing from storage is treated as not having been stored yet, as on the first launch of a
+   * framework.
+   *
+   * @throws StateStoreException if any of the stored state can't be read
+   */
+  public SchedulerSnapshot load() throws StateStoreException {
+    final Map<String, Long> phaseTimingsMs = new ConcurrentHashMap<>();
+    long startNanos = System.nanoTime();
+
+    ExecutorService executor = Executors.newFixedThreadPool(4, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "SchedulerBootstrap-load");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    try {
+      Future<FrameworkID> frameworkId = executor.submit(timed(FRAMEWORK_ID_PHASE, phaseTimingsMs,
+          new Callable<FrameworkID>() {
+            @Override
+            public FrameworkID call() throws Exception {
+              try {
+                return stateStore.fetchFrameworkId();
+              } catch (Exception e) {
+                if (!isNotFound(e)) {
+                  throw e;
+                }
+                LOGGER.info("No FrameworkID stored, framework will register as new");
+                return null;
+              }
+            }
+          }));
+      Future<UUID> targetConfigId = executor.submit(timed(TARGET_CONFIG_PHASE, phaseTimingsMs,
+          new Callable<UUID>() {
+            @Override
+            public UUID call() throws Exception {
+              try {
+                return configStore.getTargetConfig();
+              } catch (Exception e) {
+                if (!isNotFound(e)) {
+                  throw e;
+                }
+                LOGGER.info("No target configuration stored");
+                return null;
+              }
+            }
+          }));
+      Future<Collection<TaskInfo>> tasks = executor.submit(timed(TASKS_PHASE, phaseTimingsMs,
+          new Callable<Collection<TaskInfo>>() {
+            @Override
+            public Collection<TaskInfo> call() {
+              return stateStore.fetchTasks();
+            }
+          }));
+      Future<Collection<TaskStatus>> statuses = executor.submit(timed(STATUSES_PHASE, phaseTimingsMs,
+          new Callable<Collection<TaskStatus>>() {
+            @Override
+            public Collection<TaskStatus> call() {
+              return stateStore.fetchStatuses();
+            }
+          }));
+
+      Collection<TaskInfo> loadedTasks = get(tasks);
+      SchedulerSnapshot snapshot = new SchedulerSnapshot(
+          get(frameworkId),
+          get(targetConfigId),
+          loadedTasks,
+          selectStatusesOfTasks(get(statuses), loadedTasks),
+          withTotal(phaseTimingsMs, startNanos));
+      LOGGER.info("Loaded {} tasks and {} statuses at startup, phase timings (ms): {}",
+          snapshot.getTasks().size(), snapshot.getTaskStatuses().size(), snapshot.getPhaseTimingsMs());
+      return snapshot;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns the TaskStatuses which belong to one of the provided TaskInfos.
+   */
+  private static Collection<TaskStatus> selectStatusesOfTasks(
+      Collection<TaskStatus> statuses, Collection<TaskInfo> tasks) {
+    Set<String> taskNames = new HashSet<>();
+    for (TaskInfo taskInfo : tasks) {
+      taskNames.add(taskInfo.getName());
+    }
+
+    Collection<TaskStatus> selectedStatuses = new ArrayList<>();
+    for (TaskStatus status : statuses) {
+      try {
+        if (taskNames.contains(TaskUtils.toTaskName(status.getTaskId()))) {
+          selectedStatuses.add(status);
+          continue;
+        }
+      } catch (TaskException e) {
+        // Fall through to log the status as skipped
+      }
+      LOGGER.warn("Skipping TaskStatus without a matching TaskInfo: {}", status);
+    }
+    return selectedStatuses;
+  }
+
+  /**
+   * Returns whether the provided exception was caused by the requested data not being stored.
+   */
+  private static boolean isNotFound(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof KeeperException.NoNodeException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the timings of all phases, which have completed, in a consistent order.
+   */
+  private static Map<String, Long> withTotal(Map<String, Long> phaseTimingsMs, long startNanos) {
+    Map<String, Long> timings = new LinkedHashMap<>();
+    for (String phase : new String[] {FRAMEWORK_ID_PHASE, TASKS_PHASE, STATUSES_PHASE, TARGET_CONFIG_PHASE}) {
+      timings.put(phase, phaseTimingsMs.get(phase));
+    }
+    timings.put(TOTAL_PHASE, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    return timings;
+  }
+
+  private static <T> Callable<T> timed(
+      final String phase, final Map<String, Long> phaseTimingsMs, final Callable<T> callable) {
+    return new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        long startNanos = System.nanoTime();
+        try {
+          return callable.call();
+        } finally {
+          phaseTimingsMs.put(phase, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+      }
+    };
+  }
+
+  private static <T> T get(Future<T> future) throws StateStoreException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StateStoreException("Interrupted while loading scheduler state", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof StateStoreException) {
+        throw (StateStoreException) e.getCause();
+      }
+      throw new StateStoreException("Failed to load scheduler state", e.getCause());
+    }
+  }
+}
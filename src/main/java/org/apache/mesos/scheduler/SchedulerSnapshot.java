@@ -0,0 +1,89 @@
+package org.apache.mesos.scheduler;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.mesos.Protos.FrameworkID;
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.TaskInfo;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.offer.ResourceCleaner;
+import org.apache.mesos.reconciliation.TaskStatusProvider;
+
+/**
+ * An in-memory copy of the persisted scheduler state which is needed at startup, as loaded by a
+ * {@link SchedulerBootstrap}. It may be handed to a
+ * {@link org.apache.mesos.scheduler.plan.ReconciliationBlock} as its {@link TaskStatusProvider},
+ * and provides the expected resources for a {@link ResourceCleaner}, so that neither reads the
+ * stores again.
+ */
+public class SchedulerSnapshot implements TaskStatusProvider {
+
+  private final FrameworkID frameworkId;
+  private final UUID targetConfigId;
+  private final Collection<TaskInfo> tasks;
+  private final Set<TaskStatus> statuses;
+  private final Map<String, Long> phaseTimingsMs;
+
+  SchedulerSnapshot(
+      FrameworkID frameworkId,
+      UUID targetConfigId,
+      Collection<TaskInfo> tasks,
+      Collection<TaskStatus> statuses,
+      Map<String, Long> phaseTimingsMs) {
+    this.frameworkId = frameworkId;
+    this.targetConfigId = targetConfigId;
+    this.tasks = Collections.unmodifiableCollection(tasks);
+    this.statuses = Collections.unmodifiableSet(new LinkedHashSet<>(statuses));
+    this.phaseTimingsMs = Collections.unmodifiableMap(new LinkedHashMap<>(phaseTimingsMs));
+  }
+
+  /**
+   * Returns the stored FrameworkID, or {@code null} if the framework hasn't registered yet.
+   */
+  public FrameworkID getFrameworkId() {
+    return frameworkId;
+  }
+
+  /**
+   * Returns the ID of the target configuration, or {@code null} if none has been set yet.
+   */
+  public UUID getTargetConfigId() {
+    return targetConfigId;
+  }
+
+  /**
+   * Returns all stored TaskInfos.
+   */
+  public Collection<TaskInfo> getTasks() {
+    return tasks;
+  }
+
+  /**
+   * Returns the stored TaskStatuses of the Tasks in {@link #getTasks()}.
+   */
+  @Override
+  public Set<TaskStatus> getTaskStatuses() {
+    return statuses;
+  }
+
+  /**
+   * Returns the resources which are reserved by the stored Tasks.
+   */
+  public Collection<Resource> getExpectedResources() {
+    return ResourceCleaner.getExpectedResources(tasks);
+  }
+
+  /**
+   * Returns how long each phase of loading this snapshot took, in milliseconds, keyed by phase
+   * name. The phases ran in parallel, so the "total" entry is the wall time of the whole load.
+   */
+  public Map<String, Long> getPhaseTimingsMs() {
+    return phaseTimingsMs;
+  }
+}
@@ -3,6 +3,8 @@ package org.apache.mesos.scheduler.plan;
 import org.apache.mesos.Protos;
 import org.apache.mesos.offer.OfferRequirement;
 
+import java.util.Collections;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -81,6 +83,18 @@ public interface Block extends Completable {
      */
     void update(Protos.TaskStatus status);
 
+    /**
+     * Returns the names of the tasks which this Block launches, as produced by
+     * {@link org.apache.mesos.offer.TaskUtils#toTaskName(Protos.TaskID)}. These must not change
+     * for the lifetime of the Block. {@link StageManager}s use them to deliver each
+     * {@link Protos.TaskStatus} only to the Block which owns the task. Blocks which return an
+     * empty set, the default, receive every status update while their {@link Phase} is current.
+     * {@link DefaultBlock} declares the names of the tasks it launches.
+     */
+    default Set<String> getTaskNames() {
+        return Collections.emptySet();
+    }
+
     /**
      * Returns the unique identifier of the block.
      */
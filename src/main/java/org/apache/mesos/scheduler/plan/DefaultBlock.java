@@ -0,0 +1,152 @@
+package org.apache.mesos.scheduler.plan;
+
+import org.apache.mesos.Protos;
+import org.apache.mesos.offer.InvalidRequirementException;
+import org.apache.mesos.offer.OfferRequirement;
+import org.apache.mesos.offer.TaskRequirement;
+import org.apache.mesos.offer.TaskUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Block which launches a fixed set of tasks. The Block declares the names of those tasks through
+ * {@link #getTaskNames()}, so that a {@link StageManager} delivers it only the status updates for
+ * its own tasks. It is complete once every one of its tasks is running, and returns to Pending, to
+ * be launched again with new TaskIDs, if any of them terminates before then.
+ */
+public class DefaultBlock implements Block {
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultBlock.class);
+
+    private final UUID id = UUID.randomUUID();
+    private final String name;
+    private final Collection<Protos.TaskInfo> taskInfos;
+    private final Set<String> taskNames;
+    private final Set<Protos.TaskID> launchedTaskIds = new HashSet<>();
+    private final Set<Protos.TaskID> runningTaskIds = new HashSet<>();
+    private Status status = Status.Pending;
+
+    /**
+     * Factory method.
+     * @param name The user-visible name of the Block
+     * @param taskInfos The tasks which the Block launches, each with a unique name
+     * @return A new DefaultBlock
+     */
+    public static DefaultBlock create(String name, Collection<Protos.TaskInfo> taskInfos) {
+        return new DefaultBlock(name, taskInfos);
+    }
+
+    private DefaultBlock(String name, Collection<Protos.TaskInfo> taskInfos) {
+        this.name = name;
+        this.taskInfos = Collections.unmodifiableList(new ArrayList<>(taskInfos));
+
+        Set<String> names = new HashSet<>();
+        for (Protos.TaskInfo taskInfo : taskInfos) {
+            names.add(taskInfo.getName());
+        }
+        this.taskNames = Collections.unmodifiableSet(names);
+    }
+
+    @Override
+    public synchronized boolean isPending() {
+        return status == Status.Pending;
+    }
+
+    @Override
+    public synchronized boolean isInProgress() {
+        return status == Status.InProgress;
+    }
+
+    @Override
+    public synchronized boolean isComplete() {
+        return status == Status.Complete;
+    }
+
+    /**
+     * Returns a new {@link OfferRequirement} for the Block's tasks, which assigns each of them a
+     * new TaskID, or {@code null} if the tasks are malformed.
+     */
+    @Override
+    public synchronized OfferRequirement start() {
+        launchedTaskIds.clear();
+        runningTaskIds.clear();
+        try {
+            OfferRequirement offerRequirement = new OfferRequirement(taskInfos);
+            for (TaskRequirement taskRequirement : offerRequirement.getTaskRequirements()) {
+                launchedTaskIds.add(taskRequirement.getTaskInfo().getTaskId());
+            }
+            return offerRequirement;
+        } catch (InvalidRequirementException e) {
+            logger.error("Failed to create OfferRequirement for block '{}'", name, e);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void updateOfferStatus(boolean accepted) {
+        if (status == Status.Pending && accepted) {
+            status = Status.InProgress;
+        }
+    }
+
+    @Override
+    public synchronized void restart() {
+        status = Status.Pending;
+        runningTaskIds.clear();
+    }
+
+    @Override
+    public synchronized void forceComplete() {
+        status = Status.Complete;
+    }
+
+    @Override
+    public synchronized void update(Protos.TaskStatus taskStatus) {
+        // Statuses for tasks of an earlier launch carry TaskIDs which are no longer current.
+        if (status != Status.InProgress || !launchedTaskIds.contains(taskStatus.getTaskId())) {
+            return;
+        }
+
+        if (taskStatus.getState() == Protos.TaskState.TASK_RUNNING) {
+            runningTaskIds.add(taskStatus.getTaskId());
+            if (runningTaskIds.containsAll(launchedTaskIds)) {
+                status = Status.Complete;
+            }
+        } else if (TaskUtils.isTerminated(taskStatus)) {
+            logger.info("Task '{}' of block '{}' terminated, relaunching: state = {}",
+                    taskStatus.getTaskId().getValue(), name, taskStatus.getState());
+            status = Status.Pending;
+            runningTaskIds.clear();
+        }
+    }
+
+    /**
+     * Returns the names of the tasks which this Block launches.
+     */
+    @Override
+    public Set<String> getTaskNames() {
+        return taskNames;
+    }
+
+    @Override
+    public UUID getId() {
+        return id;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized String getMessage() {
+        return String.format("Block '%s' is %s: tasks = %s", name, status, taskNames);
+    }
+}
@@ -1,10 +1,13 @@
 package org.apache.mesos.scheduler.plan;
 
 import org.apache.mesos.Protos;
+import org.apache.mesos.offer.TaskException;
+import org.apache.mesos.offer.TaskUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Provides the default implementation of a {@link StageManager}.
@@ -20,6 +23,13 @@ public class DefaultStageManager implements StageManager {
   protected final Map<UUID, PhaseStrategy> phaseStrategies = new HashMap<>();
   protected volatile Stage stage;
 
+  /**
+   * Maps task names and Block IDs to their owners in {@code stage}, and holds the dependencies of
+   * its Phases. Rebuilt whenever the Stage is set.
+   */
+  private volatile BlockIndex blockIndex;
+  private final AtomicLong unknownTaskStatusCount = new AtomicLong();
+
   private final PhaseStrategyFactory strategyFactory;
 
   public DefaultStageManager(final Stage stage,
@@ -33,6 +43,7 @@ public class DefaultStageManager implements StageManager {
   public void setStage(final Stage stage) {
     LOGGER.info("Setting stage : state = {}", stage);
     this.stage = stage;
+    this.blockIndex = new BlockIndex(stage);
   }
 
   @Override
@@ -41,26 +52,78 @@ public class DefaultStageManager implements StageManager {
   }
 
   /**
-   * Returns the first {@link Phase} in the {@link Stage} which isn't marked complete.
+   * Returns the first {@link Phase} in the {@link Stage} which isn't marked complete and whose
+   * dependencies are complete.
    */
   @Override
   public Phase getCurrentPhase() {
-    for (Phase phase : stage.getPhases()) {
-      if (!phase.isComplete()) {
-        LOGGER.debug("Phase {} is NOT complete.", phase.getId());
-        return phase;
-      } else {
+    List<Phase> currentPhases = getCurrentPhases();
+    return currentPhases.isEmpty() ? null : currentPhases.get(0);
+  }
+
+  /**
+   * Returns every {@link Phase} in the {@link Stage} which isn't marked complete and whose
+   * dependencies, as reported by {@link Stage#getDependencies(Phase)} when the Stage was set, are
+   * all complete.
+   */
+  @Override
+  public List<Phase> getCurrentPhases() {
+    final BlockIndex index = blockIndex;
+    Set<UUID> completePhaseIds = new HashSet<>();
+    for (Phase phase : index.getPhases()) {
+      if (phase.isComplete()) {
+        completePhaseIds.add(phase.getId());
+      }
+    }
+
+    List<Phase> currentPhases = new ArrayList<>();
+    for (Phase phase : index.getPhases()) {
+      if (completePhaseIds.contains(phase.getId())) {
         LOGGER.debug("Phase {} is complete.", phase.getId());
+      } else if (!dependenciesComplete(index.getDependencies(phase.getId()), completePhaseIds)) {
+        LOGGER.debug("Phase {} is waiting on dependencies.", phase.getId());
+      } else {
+        LOGGER.debug("Phase {} is NOT complete.", phase.getId());
+        currentPhases.add(phase);
       }
     }
-    LOGGER.debug("All phases are complete.");
-    return null;
+    if (currentPhases.isEmpty()) {
+      LOGGER.debug("No phases are ready.");
+    }
+    return currentPhases;
   }
 
+  /**
+   * Returns the first Block which {@link #getCurrentBlocks(int)} would return, or {@code null} if
+   * no current {@link Phase} has a Block which is ready.
+   */
   @Override
   public Block getCurrentBlock() {
-    PhaseStrategy currPhase = getCurrentPhaseStrategy();
-    return (currPhase != null) ? currPhase.getCurrentBlock() : null;
+    List<Block> blocks = getCurrentBlocks(1);
+    return blocks.isEmpty() ? null : blocks.get(0);
+  }
+
+  /**
+   * Returns up to {@code maxBlocks} Blocks from every current {@link Phase} whose Block
+   * dependencies are complete, so that independent Phases make progress at the same time.
+   */
+  @Override
+  public List<Block> getCurrentBlocks(int maxBlocks) {
+    List<Block> blocks = new ArrayList<>();
+    for (Phase phase : getCurrentPhases()) {
+      int remaining = maxBlocks - blocks.size();
+      if (remaining <= 0) {
+        break;
+      }
+
+      PhaseStrategy strategy = getStrategy(phase);
+      if (strategy == null) {
+        continue;
+      }
+
+      blocks.addAll(strategy.getCurrentBlocks(remaining, this::dependenciesComplete));
+    }
+    return blocks;
   }
 
   @Override
@@ -68,28 +131,38 @@ public class DefaultStageManager implements StageManager {
     return stage.isComplete();
   }
 
+  /**
+   * Proceeds with every current {@link Phase}, see {@link #getCurrentPhases()}.
+   */
   @Override
   public void proceed() {
     LOGGER.info("Proceeding with staged execution");
-    final PhaseStrategy currPhase = getCurrentPhaseStrategy();
-    if (currPhase != null) {
+    final List<PhaseStrategy> currPhases = getCurrentPhaseStrategies();
+    if (currPhases.isEmpty()) {
+      LOGGER.info("No phase to proceed");
+      return;
+    }
+    for (PhaseStrategy currPhase : currPhases) {
       currPhase.proceed();
       LOGGER.info("Proceeding with current phase: phase = {}",
         currPhase);
-    } else {
-      LOGGER.info("No phase to proceed");
     }
   }
 
+  /**
+   * Interrupts every current {@link Phase}, see {@link #getCurrentPhases()}.
+   */
   @Override
   public void interrupt() {
     LOGGER.info("Interrupting staged execution");
-    final PhaseStrategy currPhase = getCurrentPhaseStrategy();
-    if (currPhase != null) {
+    final List<PhaseStrategy> currPhases = getCurrentPhaseStrategies();
+    if (currPhases.isEmpty()) {
+      LOGGER.info("No phase to interrupt");
+      return;
+    }
+    for (PhaseStrategy currPhase : currPhases) {
       currPhase.interrupt();
       LOGGER.info("Interrupted current phase: phase = {}", currPhase);
-    } else {
-      LOGGER.info("No phase to interrupt");
     }
   }
 
@@ -112,6 +185,31 @@ public class DefaultStageManager implements StageManager {
       blockId);
   }
 
+  @Override
+  public boolean setParallelism(final int parallelism) {
+    LOGGER.info("Setting parallelism : parallelism = {}", parallelism);
+    boolean applied = false;
+
+    if (strategyFactory instanceof ParallelStrategyFactory) {
+      ((ParallelStrategyFactory) strategyFactory).setParallelism(parallelism);
+      applied = true;
+    }
+
+    synchronized (phaseStrategies) {
+      for (PhaseStrategy strategy : phaseStrategies.values()) {
+        if (strategy instanceof ParallelPhaseStrategy) {
+          ((ParallelPhaseStrategy) strategy).setParallelism(parallelism);
+          applied = true;
+        }
+      }
+    }
+
+    if (!applied) {
+      LOGGER.info("No phase strategy supports parallelism");
+    }
+    return applied;
+  }
+
   @Override
   public void forceComplete(final UUID phaseId, final UUID blockId) {
     LOGGER.info(
@@ -126,27 +224,50 @@ public class DefaultStageManager implements StageManager {
       blockId);
   }
 
+  /**
+   * Delivers the status to the Block which declared its task through {@link Block#getTaskNames()},
+   * and to every Block of the current Phases which does not declare its tasks, such as a
+   * {@link ReconciliationBlock}. Statuses which no Block received are counted, see
+   * {@link #getUnknownTaskStatusCount()}.
+   */
   @Override
   public void update(final Protos.TaskStatus status) {
     LOGGER.info("Received status update : status = {}", status);
 
-    final PhaseStrategy currentPhaseStrategy = getCurrentPhaseStrategy();
-    if (currentPhaseStrategy != null) {
-      final Phase currentPhase = currentPhaseStrategy.getPhase();
-      if (currentPhase != null) {
-        final List<? extends Block> blocks = currentPhase.getBlocks();
-        for (Block block : blocks) {
+    final BlockIndex index = blockIndex;
+    final String taskName = getTaskName(status);
+    final Block owner = (taskName != null) ? index.getBlockForTask(taskName) : null;
+    boolean delivered = false;
+    if (owner != null) {
+      LOGGER.info("Updating block '{}' with status", owner.getName());
+      owner.update(status);
+      delivered = true;
+    }
+
+    if (index.hasUntrackedBlocks()) {
+      for (Phase currentPhase : getCurrentPhases()) {
+        for (Block block : index.getUntrackedBlocks(currentPhase.getId())) {
           LOGGER.info("Updating block '{}' with status", block.getName());
           block.update(status);
+          delivered = true;
         }
-      } else {
-        LOGGER.info("currentPhase is null. No blocks to receive status");
       }
-    } else {
-      LOGGER.info("currentPhaseStrategy is null. No blocks to receive status");
+    }
+
+    if (!delivered) {
+      unknownTaskStatusCount.incrementAndGet();
+      LOGGER.info("No block received status for task '{}'", taskName);
     }
   }
 
+  /**
+   * Returns the number of status updates which no Block received: no Block declared the task, and
+   * no current {@link Phase} had a Block which leaves its tasks undeclared.
+   */
+  public long getUnknownTaskStatusCount() {
+    return unknownTaskStatusCount.get();
+  }
+
   @Override
   public boolean hasDecisionPoint(final Block block) {
     UUID phaseId = getPhaseId(block);
@@ -158,15 +279,20 @@ public class DefaultStageManager implements StageManager {
   }
 
   private UUID getPhaseId(final Block block) {
-    for (Phase phase : stage.getPhases()) {
-      for (Block blk : phase.getBlocks()) {
-        if (block.getId().equals(blk.getId())) {
-          return phase.getId();
-        }
-      }
+    return blockIndex.getPhaseId(block.getId());
+  }
+
+  private static String getTaskName(final Protos.TaskStatus status) {
+    if (status == null || !status.hasTaskId()) {
+      return null;
     }
 
-    return null;
+    try {
+      return TaskUtils.toTaskName(status.getTaskId());
+    } catch (TaskException e) {
+      LOGGER.warn("Unable to extract task name from status: {}", e.getMessage());
+      return null;
+    }
   }
 
   @Override
@@ -235,9 +361,44 @@ public class DefaultStageManager implements StageManager {
     }
   }
 
-  private PhaseStrategy getCurrentPhaseStrategy() {
-    Phase phase = getCurrentPhase();
-    return phase != null ? getStrategy(phase) : null;
+  private boolean dependenciesComplete(final Block block) {
+    for (UUID dependencyId : stage.getDependencies(block)) {
+      Block dependency = getBlock(dependencyId);
+      if (dependency != null && !dependency.isComplete()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether every Phase in {@code dependencies} is complete. Dependencies are listed latest
+   * first, so with the default dependencies on every earlier Phase the check stops at the nearest
+   * incomplete Phase, and finding the current Phases stays linear in the number of Phases.
+   */
+  private static boolean dependenciesComplete(
+    final List<UUID> dependencies, final Set<UUID> completePhaseIds) {
+    for (UUID dependencyId : dependencies) {
+      if (!completePhaseIds.contains(dependencyId)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Block getBlock(final UUID blockId) {
+    return blockIndex.getBlock(blockId);
+  }
+
+  private List<PhaseStrategy> getCurrentPhaseStrategies() {
+    List<PhaseStrategy> strategies = new ArrayList<>();
+    for (Phase phase : getCurrentPhases()) {
+      PhaseStrategy strategy = getStrategy(phase);
+      if (strategy != null) {
+        strategies.add(strategy);
+      }
+    }
+    return strategies;
   }
 
   /**
@@ -303,4 +464,91 @@ public class DefaultStageManager implements StageManager {
 
     return null;
   }
+
+  /**
+   * Immutable lookup tables from task names and Block IDs to the Blocks and Phases of a Stage, and
+   * from each Phase to the Phases it depends on.
+   */
+  private static final class BlockIndex {
+    private final List<Phase> phases = new ArrayList<>();
+    private final Map<UUID, List<UUID>> phaseDependencies = new HashMap<>();
+    private final Map<String, Block> blocksByTaskName = new HashMap<>();
+    private final Map<UUID, Block> blocksById = new HashMap<>();
+    private final Map<UUID, UUID> phaseIdsByBlockId = new HashMap<>();
+    private final Map<UUID, List<Block>> untrackedBlocksByPhaseId = new HashMap<>();
+
+    private BlockIndex(final Stage stage) {
+      if (stage == null) {
+        return;
+      }
+
+      phases.addAll(stage.getPhases());
+      final Map<UUID, Integer> positions = new HashMap<>();
+      for (Phase phase : phases) {
+        positions.put(phase.getId(), positions.size());
+      }
+
+      for (Phase phase : phases) {
+        // Latest first. Dependencies outside of the Stage can never complete, and are kept last.
+        List<UUID> dependencies = new ArrayList<>(stage.getDependencies(phase));
+        dependencies.sort(Comparator.comparing(
+          (UUID dependencyId) -> positions.getOrDefault(dependencyId, -1)).reversed());
+        phaseDependencies.put(phase.getId(), dependencies);
+
+        for (Block block : phase.getBlocks()) {
+          blocksById.put(block.getId(), block);
+          phaseIdsByBlockId.put(block.getId(), phase.getId());
+
+          Set<String> taskNames = block.getTaskNames();
+          if (taskNames == null || taskNames.isEmpty()) {
+            List<Block> untrackedBlocks = untrackedBlocksByPhaseId.get(phase.getId());
+            if (untrackedBlocks == null) {
+              untrackedBlocks = new ArrayList<>();
+              untrackedBlocksByPhaseId.put(phase.getId(), untrackedBlocks);
+            }
+            untrackedBlocks.add(block);
+            continue;
+          }
+
+          for (String taskName : taskNames) {
+            Block previous = blocksByTaskName.put(taskName, block);
+            if (previous != null && previous != block) {
+              LOGGER.warn("Task '{}' is claimed by blocks '{}' and '{}', using the latter",
+                taskName, previous.getName(), block.getName());
+            }
+          }
+        }
+      }
+    }
+
+    private List<Phase> getPhases() {
+      return phases;
+    }
+
+    private List<UUID> getDependencies(final UUID phaseId) {
+      List<UUID> dependencies = phaseDependencies.get(phaseId);
+      return (dependencies != null) ? dependencies : Collections.<UUID>emptyList();
+    }
+
+    private Block getBlockForTask(final String taskName) {
+      return blocksByTaskName.get(taskName);
+    }
+
+    private Block getBlock(final UUID blockId) {
+      return blocksById.get(blockId);
+    }
+
+    private UUID getPhaseId(final UUID blockId) {
+      return phaseIdsByBlockId.get(blockId);
+    }
+
+    private boolean hasUntrackedBlocks() {
+      return !untrackedBlocksByPhaseId.isEmpty();
+    }
+
+    private List<Block> getUntrackedBlocks(final UUID phaseId) {
+      List<Block> untrackedBlocks = untrackedBlocksByPhaseId.get(phaseId);
+      return (untrackedBlocks != null) ? untrackedBlocks : Collections.<Block>emptyList();
+    }
+  }
 }
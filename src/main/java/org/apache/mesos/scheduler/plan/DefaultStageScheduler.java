@@ -4,6 +4,7 @@ import com.google.inject.Inject;
 import org.apache.mesos.Protos;
 import org.apache.mesos.SchedulerDriver;
 import org.apache.mesos.offer.OfferAccepter;
+import org.apache.mesos.offer.OfferCache;
 import org.apache.mesos.offer.OfferEvaluator;
 import org.apache.mesos.offer.OfferRecommendation;
 import org.apache.mesos.offer.OfferRequirement;
@@ -22,6 +23,10 @@ public class DefaultStageScheduler implements StageScheduler {
 
     private final OfferAccepter offerAccepter;
     private final OfferEvaluator offerEvaluator;
+    private final OfferCache offerCache;
+    // Held while offers are evaluated and accepted. When offers are cached this is the cache, whose
+    // expiry then can't decline an offer which is being used.
+    private final Object offerLock;
 
     @Inject
     public DefaultStageScheduler(OfferAccepter offerAccepter) {
@@ -29,8 +34,21 @@ public class DefaultStageScheduler implements StageScheduler {
     }
 
     public DefaultStageScheduler(OfferAccepter offerAccepter, OfferEvaluator offerEvaluator) {
+        this(offerAccepter, offerEvaluator, null);
+    }
+
+    /**
+     * Creates a scheduler which holds unused offers in the provided {@link OfferCache}. Offers
+     * passed to {@link #resourceOffers(SchedulerDriver, List, Block)} are added to the cache and
+     * every evaluation considers all held offers, so callers should only decline offers once the
+     * cache has expired them. Offers are evaluated and accepted while synchronized on the cache.
+     */
+    public DefaultStageScheduler(
+            OfferAccepter offerAccepter, OfferEvaluator offerEvaluator, OfferCache offerCache) {
         this.offerAccepter = offerAccepter;
         this.offerEvaluator = offerEvaluator;
+        this.offerCache = offerCache;
+        this.offerLock = (offerCache != null) ? offerCache : new Object();
     }
 
     @Override
@@ -44,6 +62,130 @@ public class DefaultStageScheduler implements StageScheduler {
             return acceptedOffers;
         }
 
+        synchronized (offerLock) {
+            List<Protos.Offer> candidateOffers = offers;
+            if (offerCache != null) {
+                offerCache.add(offers);
+                candidateOffers = offerCache.getOffers();
+            }
+
+            return scheduleBlock(driver, candidateOffers, block);
+        }
+    }
+
+    /**
+     * Processes the provided {@code offers} against several {@code blocks} in a single evaluation
+     * pass, such as those returned by {@link StageManager#getCurrentBlocks(int)}. Blocks are
+     * assigned to offers in order, each against the resources left over by the blocks before it,
+     * and all resulting operations are accepted together, grouped per offer.
+     *
+     * @return a list of zero or more of the provided offers which were accepted to fulfill offer
+     *         requirements returned by the blocks
+     */
+    public List<Protos.OfferID> resourceOffersForBlocks(
+            SchedulerDriver driver, List<Protos.Offer> offers, List<? extends Block> blocks) {
+        List<Protos.OfferID> acceptedOffers = new ArrayList<>();
+
+        if (driver == null || offers == null || blocks == null) {
+            logger.error("Unexpected null argument encountered: driver='{}' offers='{}' blocks='{}'",
+                    driver, offers, blocks);
+            return acceptedOffers;
+        }
+
+        synchronized (offerLock) {
+            List<Protos.Offer> candidateOffers = offers;
+            if (offerCache != null) {
+                offerCache.add(offers);
+                candidateOffers = offerCache.getOffers();
+            }
+
+            List<Block> startedBlocks = new ArrayList<>();
+            List<OfferRequirement> offerReqs = new ArrayList<>();
+            for (Block block : blocks) {
+                if (block == null || !block.isPending()) {
+                    continue;
+                }
+
+                logger.info("Processing resource offers for block: {}", block.getName());
+                OfferRequirement offerReq = block.start();
+                if (offerReq == null) {
+                    logger.info("No OfferRequirement for block: {}", block.getName());
+                    block.updateOfferStatus(false);
+                    continue;
+                }
+
+                startedBlocks.add(block);
+                offerReqs.add(offerReq);
+            }
+
+            if (startedBlocks.isEmpty()) {
+                return acceptedOffers;
+            }
+
+            List<List<OfferRecommendation>> blockRecommendations =
+                    offerEvaluator.evaluate(offerReqs, candidateOffers);
+            List<OfferRecommendation> recommendations = new ArrayList<>();
+            for (int i = 0; i < startedBlocks.size(); i++) {
+                if (blockRecommendations.get(i).isEmpty()) {
+                    logger.warn(
+                            "Unable to find any offers which fulfill requirement provided by block {}: {}",
+                            startedBlocks.get(i).getName(), offerReqs.get(i));
+                }
+                recommendations.addAll(blockRecommendations.get(i));
+            }
+
+            if (!recommendations.isEmpty()) {
+                acceptedOffers = offerAccepter.accept(driver, recommendations);
+                if (offerCache != null) {
+                    offerCache.removeAll(acceptedOffers);
+                }
+            }
+
+            // notify each block of its own offer outcome:
+            for (int i = 0; i < startedBlocks.size(); i++) {
+                List<OfferRecommendation> recs = blockRecommendations.get(i);
+                startedBlocks.get(i).updateOfferStatus(
+                        !recs.isEmpty() && acceptedOffers.contains(recs.get(0).getOffer().getId()));
+            }
+
+            return acceptedOffers;
+        }
+    }
+
+    /**
+     * Attempts to start the provided {@code block} against the offers currently held in the
+     * {@link OfferCache}, without waiting for the next round of offers. Returns an empty list if
+     * this scheduler has no cache.
+     */
+    public List<Protos.OfferID> resourceOffers(SchedulerDriver driver, Block block) {
+        if (offerCache == null) {
+            logger.info("No offer cache, unable to match block against held offers.");
+            return new ArrayList<>();
+        }
+
+        if (driver == null) {
+            logger.error("Unexpected null argument encountered: driver='{}'", driver);
+            return new ArrayList<>();
+        }
+
+        synchronized (offerLock) {
+            return scheduleBlock(driver, offerCache.getOffers(), block);
+        }
+    }
+
+    /**
+     * Drops a rescinded offer from the {@link OfferCache}, if any.
+     */
+    public void offerRescinded(Protos.OfferID offerId) {
+        if (offerCache != null) {
+            offerCache.offerRescinded(offerId);
+        }
+    }
+
+    private List<Protos.OfferID> scheduleBlock(
+            SchedulerDriver driver, List<Protos.Offer> offers, Block block) {
+        List<Protos.OfferID> acceptedOffers = new ArrayList<>();
+
         if (block == null) {
             logger.info("Ignoring resource offers for null block.");
             return acceptedOffers;
@@ -76,6 +218,9 @@ public class DefaultStageScheduler implements StageScheduler {
         }
 
         acceptedOffers = offerAccepter.accept(driver, recommendations);
+        if (offerCache != null) {
+            offerCache.removeAll(acceptedOffers);
+        }
         // notify block of offer outcome:
         block.updateOfferStatus(!acceptedOffers.isEmpty());
         return acceptedOffers;
@@ -0,0 +1,308 @@
+package org.apache.mesos.scheduler.plan;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.*;
+
+/**
+ * A {@link Stage} whose {@link Phase}s and {@link Block}s form a dependency graph rather than a
+ * strict sequence. A Phase may start once every Phase it depends on is complete, and a Block may
+ * start once every Block it depends on is complete, so independent Phases, such as those for
+ * separate service roles, can be processed at the same time. Phases without dependencies have none,
+ * unlike in a {@link DefaultStage} where every Phase depends on the Phases before it.
+ * <p>
+ * Instances are immutable and are constructed using a fluent style builder, which rejects cyclic
+ * dependencies. Blocks of a Phase processed by a serial {@link PhaseStrategy} are started in order,
+ * so the builder must be given the {@link PhaseStrategyFactory} which will process the Stage when
+ * any Phase is processed in parallel, see {@link Builder#setStrategyFactory(PhaseStrategyFactory)}.
+ */
+public class DependencyStage implements Stage {
+
+    /**
+     * Fluent style builder class for {@link DependencyStage}.
+     */
+    public static final class Builder {
+
+        private final List<Phase> phases = new ArrayList<>();
+        private final Map<UUID, Set<UUID>> phaseDependencies = new HashMap<>();
+        private final Map<UUID, Set<UUID>> blockDependencies = new HashMap<>();
+        private PhaseStrategyFactory strategyFactory;
+        private List<String> errors = Collections.emptyList();
+
+        private Builder() {
+        }
+
+        public Builder addPhase(final Phase phase) {
+            if (phase != null) {
+                this.phases.add(phase);
+            }
+            return this;
+        }
+
+        public Builder addPhases(Collection<? extends Phase> phases) {
+            if (phases != null) {
+                for (Phase phase : phases) {
+                    addPhase(phase);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Declares that {@code dependent} may not start until {@code dependency} is complete.
+         */
+        public Builder addDependency(final Phase dependent, final Phase dependency) {
+            addEdge(phaseDependencies, dependent.getId(), dependency.getId());
+            return this;
+        }
+
+        /**
+         * Declares that {@code dependent} may not start until {@code dependency} is complete. The
+         * Blocks may belong to different Phases.
+         */
+        public Builder addDependency(final Block dependent, final Block dependency) {
+            addEdge(blockDependencies, dependent.getId(), dependency.getId());
+            return this;
+        }
+
+        /**
+         * Sets the factory which will create the strategies of the Stage's Phases. Phases whose
+         * strategy is a {@link ParallelPhaseStrategy} may start their Blocks in any order, so a
+         * Block of such a Phase may depend on a later Block of the same Phase. When no factory is
+         * set, every Phase is taken to be processed serially.
+         */
+        public Builder setStrategyFactory(PhaseStrategyFactory strategyFactory) {
+            this.strategyFactory = strategyFactory;
+            return this;
+        }
+
+        public Builder setErrors(List<String> errors) {
+            if (errors != null) {
+                this.errors = errors;
+            }
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if a dependency refers to a Phase or Block which is not
+         *                                  part of the Stage, or if the dependencies contain a cycle,
+         *                                  counting the order of the Blocks within each serial Phase
+         */
+        public DependencyStage build() {
+            Set<UUID> parallelPhaseIds = new HashSet<>();
+            if (strategyFactory != null) {
+                for (Phase phase : phases) {
+                    if (strategyFactory.getStrategy(phase) instanceof ParallelPhaseStrategy) {
+                        parallelPhaseIds.add(phase.getId());
+                    }
+                }
+            }
+            return new DependencyStage(phases, phaseDependencies, blockDependencies, parallelPhaseIds, errors);
+        }
+
+        private static void addEdge(Map<UUID, Set<UUID>> edges, UUID dependent, UUID dependency) {
+            Set<UUID> dependencies = edges.get(dependent);
+            if (dependencies == null) {
+                dependencies = new HashSet<>();
+                edges.put(dependent, dependencies);
+            }
+            dependencies.add(dependency);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final List<Phase> phases;
+    private final Map<UUID, Set<UUID>> phaseDependencies;
+    private final Map<UUID, Set<UUID>> blockDependencies;
+    private final List<String> errors;
+
+    private DependencyStage(
+            final List<Phase> phases,
+            final Map<UUID, Set<UUID>> phaseDependencies,
+            final Map<UUID, Set<UUID>> blockDependencies,
+            final Set<UUID> parallelPhaseIds,
+            final List<String> errors) {
+        this.phaseDependencies = copyOf(phaseDependencies);
+        this.blockDependencies = copyOf(blockDependencies);
+        this.errors = errors;
+        this.phases = ImmutableList.copyOf(
+                sortPhases(phases, this.phaseDependencies, this.blockDependencies, parallelPhaseIds));
+    }
+
+    /**
+     * @return The contained {@link Phase}s, ordered so that every Phase follows the Phases it
+     * depends on. Phases which are independent of each other keep the order they were added in.
+     */
+    @Override
+    public List<? extends Phase> getPhases() {
+        return phases;
+    }
+
+    @Override
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public Set<UUID> getDependencies(Phase phase) {
+        Set<UUID> dependencies = phaseDependencies.get(phase.getId());
+        return dependencies != null ? dependencies : Collections.<UUID>emptySet();
+    }
+
+    @Override
+    public Set<UUID> getDependencies(Block block) {
+        Set<UUID> dependencies = blockDependencies.get(block.getId());
+        return dependencies != null ? dependencies : Collections.<UUID>emptySet();
+    }
+
+    /**
+     * @return True if all {@link Block}s in all {@link Phase}s are complete.
+     */
+    @Override
+    public boolean isComplete() {
+        for (Phase phase : phases) {
+            if (!phase.isComplete()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<UUID, Set<UUID>> copyOf(Map<UUID, Set<UUID>> edges) {
+        ImmutableMap.Builder<UUID, Set<UUID>> builder = ImmutableMap.builder();
+        for (Map.Entry<UUID, Set<UUID>> entry : edges.entrySet()) {
+            builder.put(entry.getKey(), ImmutableSet.copyOf(entry.getValue()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Orders the Phases topologically and verifies that the combined Phase and Block dependencies
+     * can be satisfied. Each Phase is modelled as two nodes, one for the Phase becoming ready and
+     * one for it completing, so that the check stays linear in the number of dependencies: a Phase
+     * becomes ready once its dependencies complete, its Blocks start once it is ready, and it
+     * completes once its Blocks complete. Within a serial Phase, each Block is also taken to follow
+     * the Block before it, as it does under a serial {@link PhaseStrategy}, so a Block may not depend
+     * on a later Block of its own Phase, directly or through other Phases.
+     */
+    private static List<Phase> sortPhases(
+            final List<Phase> phases,
+            final Map<UUID, Set<UUID>> phaseDependencies,
+            final Map<UUID, Set<UUID>> blockDependencies,
+            final Set<UUID> parallelPhaseIds) {
+        Map<UUID, Phase> phasesById = new LinkedHashMap<>();
+        Set<UUID> blockIds = new HashSet<>();
+        for (Phase phase : phases) {
+            phasesById.put(phase.getId(), phase);
+            for (Block block : phase.getBlocks()) {
+                blockIds.add(block.getId());
+            }
+        }
+
+        // Node names: "r:" + phase id when ready, "c:" + phase id when complete, "b:" + block id.
+        Map<String, List<String>> successors = new LinkedHashMap<>();
+        Map<String, Integer> inDegree = new HashMap<>();
+        for (Phase phase : phases) {
+            addNode(successors, inDegree, "r:" + phase.getId());
+            addNode(successors, inDegree, "c:" + phase.getId());
+            boolean serial = !parallelPhaseIds.contains(phase.getId());
+            Block previous = null;
+            for (Block block : phase.getBlocks()) {
+                addNode(successors, inDegree, "b:" + block.getId());
+                addEdge(successors, inDegree, "r:" + phase.getId(), "b:" + block.getId());
+                addEdge(successors, inDegree, "b:" + block.getId(), "c:" + phase.getId());
+                if (serial && previous != null) {
+                    // A serial PhaseStrategy only offers a Block once the Blocks before it are done.
+                    addEdge(successors, inDegree, "b:" + previous.getId(), "b:" + block.getId());
+                }
+                previous = block;
+            }
+            addEdge(successors, inDegree, "r:" + phase.getId(), "c:" + phase.getId());
+        }
+
+        for (Map.Entry<UUID, Set<UUID>> entry : phaseDependencies.entrySet()) {
+            for (UUID dependency : entry.getValue()) {
+                if (!phasesById.containsKey(entry.getKey()) || !phasesById.containsKey(dependency)) {
+                    throw new IllegalArgumentException(String.format(
+                            "Dependency refers to a phase outside of the stage: %s -> %s",
+                            entry.getKey(), dependency));
+                }
+                addEdge(successors, inDegree, "c:" + dependency, "r:" + entry.getKey());
+            }
+        }
+
+        for (Map.Entry<UUID, Set<UUID>> entry : blockDependencies.entrySet()) {
+            for (UUID dependency : entry.getValue()) {
+                if (!blockIds.contains(entry.getKey()) || !blockIds.contains(dependency)) {
+                    throw new IllegalArgumentException(String.format(
+                            "Dependency refers to a block outside of the stage: %s -> %s",
+                            entry.getKey(), dependency));
+                }
+                addEdge(successors, inDegree, "b:" + dependency, "b:" + entry.getKey());
+            }
+        }
+
+        Deque<String> ready = new ArrayDeque<>();
+        for (Map.Entry<String, Integer> entry : inDegree.entrySet()) {
+            if (entry.getValue() == 0) {
+                ready.add(entry.getKey());
+            }
+        }
+
+        List<Phase> sortedPhases = new ArrayList<>(phases.size());
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            String node = ready.poll();
+            visited++;
+            if (node.startsWith("r:")) {
+                sortedPhases.add(phasesById.get(UUID.fromString(node.substring(2))));
+            }
+
+            for (String successor : successors.get(node)) {
+                int remaining = inDegree.get(successor) - 1;
+                inDegree.put(successor, remaining);
+                if (remaining == 0) {
+                    ready.add(successor);
+                }
+            }
+        }
+
+        if (visited != successors.size()) {
+            throw new IllegalArgumentException("Stage dependencies contain a cycle");
+        }
+
+        // Order phases by their depth in the graph, keeping independent phases in the order they
+        // were added. Visiting them in topological order means dependencies are always ranked first.
+        final Map<UUID, Integer> depths = new HashMap<>();
+        for (Phase phase : sortedPhases) {
+            int depth = 0;
+            Set<UUID> dependencies = phaseDependencies.get(phase.getId());
+            if (dependencies != null) {
+                for (UUID dependency : dependencies) {
+                    depth = Math.max(depth, depths.get(dependency) + 1);
+                }
+            }
+            depths.put(phase.getId(), depth);
+        }
+
+        List<Phase> orderedPhases = new ArrayList<>(phases);
+        orderedPhases.sort(Comparator.comparing(phase -> depths.get(phase.getId())));
+        return orderedPhases;
+    }
+
+    private static void addNode(Map<String, List<String>> successors, Map<String, Integer> inDegree, String node) {
+        successors.put(node, new ArrayList<>());
+        inDegree.put(node, 0);
+    }
+
+    private static void addEdge(
+            Map<String, List<String>> successors, Map<String, Integer> inDegree, String from, String to) {
+        successors.get(from).add(to);
+        inDegree.put(to, inDegree.get(to) + 1);
+    }
+}
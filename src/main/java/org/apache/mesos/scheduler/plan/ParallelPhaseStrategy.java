@@ -0,0 +1,190 @@
+package org.apache.mesos.scheduler.plan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Provides a strategy which allows up to N Blocks of a Phase to be InProgress at once. Blocks are
+ * started in Phase order as earlier Blocks complete. The strategy is manually interruptable, but it
+ * does not admit decision points. The parallelism may be changed while the Phase is running; Blocks
+ * which are already InProgress are not affected when it is lowered.
+ */
+public class ParallelPhaseStrategy implements PhaseStrategy {
+
+    private final Phase phase;
+    private final AtomicInteger parallelism;
+    private final AtomicBoolean interrupted = new AtomicBoolean(false);
+
+    public ParallelPhaseStrategy(Phase phase, int parallelism) {
+        this(phase, new AtomicInteger(validateParallelism(parallelism)));
+    }
+
+    /**
+     * Creates a strategy whose parallelism is read from the provided counter, so that several
+     * strategies created by a {@link ParallelStrategyFactory} may share a single setting.
+     */
+    ParallelPhaseStrategy(Phase phase, AtomicInteger parallelism) {
+        this.phase = phase;
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism.get();
+    }
+
+    /**
+     * Sets the maximum number of Blocks which may be InProgress at once.
+     *
+     * @throws IllegalArgumentException if the parallelism is less than 1
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism.set(validateParallelism(parallelism));
+    }
+
+    /**
+     * Returns the first Pending Block if another Block may be started within the parallelism, or
+     * {@code null} if none may be.
+     */
+    @Override
+    public Block getCurrentBlock() {
+        List<Block> blocks = getCurrentBlocks(1);
+        return blocks.isEmpty() ? null : blocks.get(0);
+    }
+
+    /**
+     * Returns up to {@code maxBlocks} Pending Blocks, limited so that no more than the configured
+     * parallelism are InProgress once they have been started.
+     */
+    @Override
+    public List<Block> getCurrentBlocks(int maxBlocks) {
+        return getCurrentBlocks(maxBlocks, block -> true);
+    }
+
+    /**
+     * Returns up to {@code maxBlocks} ready Pending Blocks, limited so that no more than the
+     * configured parallelism are InProgress once they have been started. Blocks which aren't ready
+     * are skipped, so that they don't hold back the Blocks after them.
+     */
+    @Override
+    public synchronized List<Block> getCurrentBlocks(int maxBlocks, Predicate<Block> isReady) {
+        List<Block> blocks = new ArrayList<>();
+        if (interrupted.get()) {
+            return blocks;
+        }
+
+        int inProgress = 0;
+        for (Block block : phase.getBlocks()) {
+            if (block.isInProgress()) {
+                inProgress++;
+            }
+        }
+
+        int available = Math.min(maxBlocks, parallelism.get() - inProgress);
+        for (Block block : phase.getBlocks()) {
+            if (blocks.size() >= available) {
+                break;
+            }
+
+            if (block.isPending() && isReady.test(block)) {
+                blocks.add(block);
+            }
+        }
+
+        return blocks;
+    }
+
+    @Override
+    public void proceed() {
+        interrupted.set(false);
+    }
+
+    @Override
+    public void interrupt() {
+        interrupted.set(true);
+    }
+
+    @Override
+    public boolean isInterrupted() {
+        return getStatus() == Status.Waiting;
+    }
+
+    @Override
+    public void restart(UUID blockId) {
+        Block block = getBlock(blockId);
+        if (block != null) {
+            block.restart();
+        }
+    }
+
+    @Override
+    public void forceComplete(UUID blockId) {
+        Block block = getBlock(blockId);
+        if (block != null) {
+            block.forceComplete();
+        }
+    }
+
+    @Override
+    public Status getStatus() {
+        if (phase == null || phase.getBlocks().isEmpty()) {
+            return Status.Complete;
+        }
+
+        boolean anyComplete = false;
+        boolean anyInProgress = false;
+        boolean anyIncomplete = false;
+        for (Block block : phase.getBlocks()) {
+            if (block.isComplete()) {
+                anyComplete = true;
+            } else if (block.isInProgress()) {
+                anyIncomplete = true;
+                anyInProgress = true;
+            } else if (!block.isPending()) {
+                return Status.Error;
+            } else {
+                anyIncomplete = true;
+            }
+        }
+
+        if (!anyIncomplete) {
+            return Status.Complete;
+        } else if (interrupted.get()) {
+            return Status.Waiting;
+        } else if (anyInProgress || anyComplete) {
+            return Status.InProgress;
+        } else {
+            return Status.Pending;
+        }
+    }
+
+    @Override
+    public Phase getPhase() {
+        return phase;
+    }
+
+    @Override
+    public boolean hasDecisionPoint(Block block) {
+        return false;
+    }
+
+    private Block getBlock(UUID blockId) {
+        if (blockId == null || phase == null) {
+            return null;
+        }
+        return phase.getBlock(blockId);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the parallelism is less than 1
+     */
+    static int validateParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        return parallelism;
+    }
+}
@@ -0,0 +1,41 @@
+package org.apache.mesos.scheduler.plan;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates ParallelPhaseStrategy objects when provided Phases. All strategies generated by a
+ * factory share its parallelism, so changing it applies to every Phase.
+ */
+public class ParallelStrategyFactory implements PhaseStrategyFactory {
+
+    private final AtomicInteger parallelism;
+
+    public ParallelStrategyFactory(int parallelism) {
+        this.parallelism = new AtomicInteger(ParallelPhaseStrategy.validateParallelism(parallelism));
+    }
+
+    public int getParallelism() {
+        return parallelism.get();
+    }
+
+    /**
+     * Sets the maximum number of Blocks which may be InProgress at once in each Phase.
+     *
+     * @throws IllegalArgumentException if the parallelism is less than 1
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism.set(ParallelPhaseStrategy.validateParallelism(parallelism));
+    }
+
+    @Override
+    public PhaseStrategy getStrategy(Phase phase) {
+        if (phase == null) {
+            return null;
+        } else if (phase instanceof ReconciliationPhase) {
+            return ReconciliationStrategy.create(
+                    (ReconciliationPhase) phase);
+        } else {
+            return new ParallelPhaseStrategy(phase, parallelism);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package org.apache.mesos.scheduler.plan;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Predicate;
 
 /**
  * A Phase PhaseStrategy governs when Blocks should be returned for procesing.
@@ -13,6 +17,42 @@ public interface PhaseStrategy {
      */
     Block getCurrentBlock();
 
+    /**
+     * Strategies which allow Blocks to be processed in parallel may return more than one Block,
+     * so that they can be scheduled against the same round of offers. By default only the
+     * current Block is returned.
+     *
+     * @param maxBlocks The maximum number of Blocks to return.
+     * @return Up to maxBlocks Blocks selected by the strategy for execution.
+     */
+    default List<Block> getCurrentBlocks(int maxBlocks) {
+        Block block = getCurrentBlock();
+        if (block == null || maxBlocks < 1) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(block);
+    }
+
+    /**
+     * Returns up to maxBlocks Blocks selected by the strategy for execution which are also ready,
+     * such as because the Blocks they depend on are complete. By default the Blocks returned by
+     * {@link #getCurrentBlocks(int)} are filtered, so a Block which isn't ready holds back the
+     * Blocks after it, as under a serial strategy.
+     *
+     * @param maxBlocks The maximum number of Blocks to return.
+     * @param isReady Whether a Block may be started.
+     * @return Up to maxBlocks ready Blocks selected by the strategy for execution.
+     */
+    default List<Block> getCurrentBlocks(int maxBlocks, Predicate<Block> isReady) {
+        List<Block> blocks = new ArrayList<>();
+        for (Block block : getCurrentBlocks(maxBlocks)) {
+            if (isReady.test(block)) {
+                blocks.add(block);
+            }
+        }
+        return blocks;
+    }
+
     /**
      * If the current Stage is interrupted at this Phase. This phase should
      * now proceed with execution.
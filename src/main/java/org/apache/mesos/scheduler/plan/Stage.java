@@ -1,6 +1,10 @@
 package org.apache.mesos.scheduler.plan;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 
 /**
  * Defines the interface for one or more {@link Phase}s, along with any errors encountered while
@@ -30,4 +34,29 @@ public interface Stage extends Completable {
      * state.
      */
     List<String> getErrors();
+
+    /**
+     * Returns the IDs of the {@link Phase}s which must be complete before the provided Phase may
+     * start. By default each Phase depends on every Phase before it, so that Phases are processed
+     * strictly in list order.
+     */
+    default Set<UUID> getDependencies(Phase phase) {
+        Set<UUID> dependencies = new HashSet<>();
+        for (Phase earlierPhase : getPhases()) {
+            if (earlierPhase.getId().equals(phase.getId())) {
+                return dependencies;
+            }
+            dependencies.add(earlierPhase.getId());
+        }
+        return dependencies;
+    }
+
+    /**
+     * Returns the IDs of the {@link Block}s which must be complete before the provided Block may
+     * start, in addition to the ordering imposed by the {@link PhaseStrategy} of its Phase. By
+     * default Blocks have no dependencies.
+     */
+    default Set<UUID> getDependencies(Block block) {
+        return Collections.emptySet();
+    }
 }
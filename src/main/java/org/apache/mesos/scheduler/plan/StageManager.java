@@ -2,6 +2,7 @@ package org.apache.mesos.scheduler.plan;
 
 import org.apache.mesos.Protos;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Observer;
 import java.util.UUID;
@@ -17,8 +18,29 @@ public interface StageManager extends Observer {
 
     Phase getCurrentPhase();
 
+    /**
+     * Returns every incomplete Phase whose dependencies are complete. By default only the
+     * {@link #getCurrentPhase()} is returned.
+     */
+    default List<Phase> getCurrentPhases() {
+        Phase phase = getCurrentPhase();
+        return phase == null ? Collections.<Phase>emptyList() : Collections.singletonList(phase);
+    }
+
     Block getCurrentBlock();
 
+    /**
+     * Returns up to maxBlocks Blocks of the current Phases which may be scheduled together. By
+     * default only the {@link #getCurrentBlock()} is returned.
+     */
+    default List<Block> getCurrentBlocks(int maxBlocks) {
+        Block block = getCurrentBlock();
+        if (block == null || maxBlocks < 1) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(block);
+    }
+
     boolean isComplete();
 
     void proceed();
@@ -29,6 +51,18 @@ public interface StageManager extends Observer {
 
     void restart(UUID phaseId, UUID blockId);
 
+    /**
+     * Sets the maximum number of Blocks which may be InProgress at once in each Phase.
+     *
+     * @return false if the Phase strategies in use do not support parallel execution, as is the
+     *     case by default
+     * @throws IllegalArgumentException if the strategies reject the parallelism, such as because it
+     *     is less than 1
+     */
+    default boolean setParallelism(int parallelism) {
+        return false;
+    }
+
     void forceComplete(UUID phaseId, UUID blockId);
 
     void update(Protos.TaskStatus status);
@@ -7,9 +7,16 @@ import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.apache.mesos.scheduler.plan.Block;
+import org.apache.mesos.scheduler.plan.Stage;
 import org.apache.mesos.scheduler.plan.StageManager;
 import org.apache.mesos.scheduler.plan.Status;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
 /**
  * Immutable JSON serialization object for a Block.
  */
@@ -20,6 +27,7 @@ class BlockInfo {
     private final String name;
     private final String message;
     private final Boolean hasDecisionPoint;
+    private final List<String> dependencies;
 
     @JsonCreator
     public static BlockInfo create(
@@ -27,18 +35,35 @@ class BlockInfo {
             @JsonProperty("status") final Status status,
             @JsonProperty("name") final String name,
             @JsonProperty("message") final String message,
-            @JsonProperty("has_decision_point") final boolean hasDecisionPoint) {
-        return new BlockInfo(id, status, name, message, hasDecisionPoint);
+            @JsonProperty("has_decision_point") final boolean hasDecisionPoint,
+            @JsonProperty("dependencies") final List<String> dependencies) {
+        return new BlockInfo(id, status, name, message, hasDecisionPoint, dependencies);
     }
 
     public static BlockInfo forBlock(final Block block,
                                      final StageManager stageManager) {
+        Stage stage = stageManager.getStage();
         return create(
                 block.getId().toString(),
                 Block.getStatus(block),
                 block.getName(),
                 block.getMessage(),
-                stageManager.hasDecisionPoint(block));
+                stageManager.hasDecisionPoint(block),
+                toStrings(stage != null ? stage.getDependencies(block) : null));
+    }
+
+    /**
+     * Returns the provided IDs as sorted strings, or an empty list if there are none.
+     */
+    static List<String> toStrings(final Collection<UUID> ids) {
+        List<String> strings = new ArrayList<>();
+        if (ids != null) {
+            for (UUID id : ids) {
+                strings.add(id.toString());
+            }
+        }
+        Collections.sort(strings);
+        return strings;
     }
 
     private BlockInfo(
@@ -46,12 +71,14 @@ class BlockInfo {
             final Status status,
             final String name,
             final String message,
-            final boolean hasDecisionPoint) {
+            final boolean hasDecisionPoint,
+            final List<String> dependencies) {
         this.id = id;
         this.status = status;
         this.name = name;
         this.message = message;
         this.hasDecisionPoint = hasDecisionPoint;
+        this.dependencies = dependencies;
     }
 
     @JsonProperty("has_decision_point")
@@ -59,6 +86,14 @@ class BlockInfo {
         return hasDecisionPoint;
     }
 
+    /**
+     * Returns the IDs of the Blocks which must be complete before this Block may start.
+     */
+    @JsonProperty("dependencies")
+    public List<String> getDependencies() {
+        return dependencies;
+    }
+
     @JsonProperty("id")
     public String getId() {
         return id;
@@ -7,6 +7,7 @@ import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.apache.mesos.scheduler.plan.Block;
 import org.apache.mesos.scheduler.plan.Phase;
+import org.apache.mesos.scheduler.plan.Stage;
 import org.apache.mesos.scheduler.plan.StageManager;
 import org.apache.mesos.scheduler.plan.Status;
 
@@ -23,14 +24,16 @@ class PhaseInfo {
     private final String name;
     private final List<BlockInfo> blocks;
     private final Status status;
+    private final List<String> dependencies;
 
     @JsonCreator
     public static PhaseInfo create(
             @JsonProperty("id") final String id,
             @JsonProperty("name") final String name,
             @JsonProperty("blocks") final List<BlockInfo> blocks,
-            @JsonProperty("status") final Status status) {
-        return new PhaseInfo(id, name, blocks, status);
+            @JsonProperty("status") final Status status,
+            @JsonProperty("dependencies") final List<String> dependencies) {
+        return new PhaseInfo(id, name, blocks, status, dependencies);
     }
 
     public static PhaseInfo forPhase(
@@ -39,18 +42,25 @@ class PhaseInfo {
         for (Block block : phase.getBlocks()) {
             info.add(BlockInfo.forBlock(block, stageManager));
         }
+        Stage stage = stageManager.getStage();
         return create(phase.getId().toString(),
                 phase.getName(),
                 info,
-                stageManager.getPhaseStatus(phase.getId()));
+                stageManager.getPhaseStatus(phase.getId()),
+                BlockInfo.toStrings(stage != null ? stage.getDependencies(phase) : null));
     }
 
     private PhaseInfo(
-            final String id, final String name, final List<BlockInfo> blocks, final Status status) {
+            final String id,
+            final String name,
+            final List<BlockInfo> blocks,
+            final Status status,
+            final List<String> dependencies) {
         this.id = id;
         this.name = name;
         this.blocks = blocks;
         this.status = status;
+        this.dependencies = dependencies;
     }
 
     @JsonProperty("blocks")
@@ -73,6 +83,14 @@ class PhaseInfo {
         return status;
     }
 
+    /**
+     * Returns the IDs of the Phases which must be complete before this Phase may start.
+     */
+    @JsonProperty("dependencies")
+    public List<String> getDependencies() {
+        return dependencies;
+    }
+
     @Override
     public boolean equals(Object o) {
         return EqualsBuilder.reflectionEquals(this, o);
@@ -80,7 +98,7 @@ class PhaseInfo {
 
     @Override
     public int hashCode() {
-        return Objects.hash(getId(), getName(), getBlocks(), getStatus());
+        return Objects.hash(getId(), getName(), getBlocks(), getStatus(), getDependencies());
     }
 
     @Override
@@ -62,6 +62,34 @@ public class StageResource {
         return new CommandResultInfo("Received cmd: interrupt");
     }
 
+    /**
+     * Sets the maximum number of Blocks which may be InProgress at once in each Phase.
+     */
+    @POST
+    @Path("/parallelism")
+    public Response parallelismCommand(@QueryParam("value") int parallelism) {
+        boolean applied;
+        try {
+            applied = manager.setParallelism(parallelism);
+        } catch (IllegalArgumentException e) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity(new CommandResultInfo(e.getMessage()))
+                    .build();
+        }
+
+        if (!applied) {
+            return Response
+                    .status(Response.Status.CONFLICT)
+                    .entity(new CommandResultInfo("Parallel execution is not supported by this plan"))
+                    .build();
+        }
+
+        return Response
+                .ok(new CommandResultInfo("Received cmd: parallelism=" + parallelism))
+                .build();
+    }
+
     @POST
     @Path("/forceComplete")
     public CommandResultInfo forceCompleteCommand(
@@ -0,0 +1,711 @@
+package org.apache.mesos.state;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
+import org.apache.curator.framework.recipes.cache.TreeCacheListener;
+import org.apache.mesos.Protos;
+import org.apache.mesos.storage.Versioned;
+import org.apache.zookeeper.KeeperException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CachingStateStore is a {@link StateStore} which decorates a {@link CuratorStateStore}, keeping
+ * every TaskInfo and TaskStatus in memory. Writes go through to Zookeeper before the cache is
+ * updated, and reads of Tasks are served from memory. Storing a TaskStatus is validated against the
+ * cached TaskInfo, so it costs a single Zookeeper write.
+ *
+ * The cache is kept coherent with changes made by other processes using a Curator {@link TreeCache}
+ * on the Tasks node, which shares the session of the decorated store. Changes made elsewhere become
+ * visible once their watch fires, while changes made through this store are visible immediately.
+ * Reads go through to Zookeeper until the initial contents have been loaded, and again while the
+ * connection to Zookeeper is suspended or lost. The {@link TreeCache} doesn't retain node contents,
+ * as they are held here, and Zookeeper is never read while the cache is locked.
+ *
+ * Tasks are also indexed in memory by agent, state and target configuration, so that queries such
+ * as {@link #fetchTasksByState(Protos.TaskState)} cost time proportional to their result.
+ *
+ * Every change to the cached TaskInfos and TaskStatuses, whether made through this store or
+ * elsewhere, is published to listeners which {@link #subscribe(StateStoreListener)} to it, in the
+ * order in which the cache applied them.
+ */
+public class CachingStateStore implements StateStore, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingStateStore.class);
+
+    private static final long DEFAULT_INIT_TIMEOUT_MS = 10 * 1000;
+
+    private final CuratorStateStore store;
+    private final String tasksRootPath;
+    private final TreeCache treeCache;
+    private final CountDownLatch initialized = new CountDownLatch(1);
+
+    // All guarded by 'this'
+    private final Map<String, Protos.TaskInfo> tasks = new HashMap<>();
+    private final Map<String, Protos.TaskStatus> statuses = new HashMap<>();
+    private final Map<String, PendingWrite> pendingWrites = new HashMap<>();
+    private final Map<String, Object> pendingReads = new HashMap<>();
+    private final TaskIndex index = new TaskIndex();
+    private final TaskChangeLog changeLog = new TaskChangeLog();
+    private boolean valid = false;
+
+    /**
+     * Creates a new {@link StateStore} which caches the contents of a new {@link CuratorStateStore}.
+     *
+     * @param rootPath The path to store data in, eg "/FrameworkName"
+     * @param connectionString The host/port of the ZK server, eg "master.mesos:2181"
+     */
+    public CachingStateStore(String rootPath, String connectionString) {
+        this(new CuratorStateStore(rootPath, connectionString));
+    }
+
+    /**
+     * Creates a new {@link StateStore} which caches the contents of the provided store, waiting for
+     * a default period for the initial contents to be loaded.
+     *
+     * @param store The store to read from and write through to
+     */
+    public CachingStateStore(CuratorStateStore store) {
+        this(store, DEFAULT_INIT_TIMEOUT_MS);
+    }
+
+    /**
+     * Creates a new {@link StateStore} which caches the contents of the provided store.
+     *
+     * @param store The store to read from and write through to
+     * @param initTimeoutMs How long to wait for the initial contents to be loaded. Reads go through
+     *                      to the underlying store until loading completes.
+     * @throws StateStoreException if watching the underlying storage fails
+     */
+    public CachingStateStore(CuratorStateStore store, long initTimeoutMs) throws StateStoreException {
+        this.store = store;
+        this.tasksRootPath = store.getTasksRootPath();
+        this.treeCache = TreeCache.newBuilder(store.getClient(), tasksRootPath).setCacheData(false).build();
+        this.treeCache.getListenable().addListener(new TreeCacheListener() {
+            @Override
+            public void childEvent(CuratorFramework client, TreeCacheEvent event) throws Exception {
+                handleEvent(event);
+            }
+        });
+
+        try {
+            treeCache.start();
+            if (!initialized.await(initTimeoutMs, TimeUnit.MILLISECONDS)) {
+                logger.warn("Cache of '{}' wasn't loaded after {}ms, reading through until it is",
+                        tasksRootPath, initTimeoutMs);
+            }
+        } catch (Exception e) {
+            throw new StateStoreException(String.format("Failed to watch Tasks in '%s'", tasksRootPath), e);
+        }
+    }
+
+    /**
+     * Stops watching the underlying storage, and closes all subscriptions. The decorated store is
+     * left open.
+     */
+    @Override
+    public void close() {
+        treeCache.close();
+        changeLog.close();
+    }
+
+    // Framework ID
+
+    @Override
+    public void storeFrameworkId(Protos.FrameworkID fwkId) throws StateStoreException {
+        store.storeFrameworkId(fwkId);
+    }
+
+    @Override
+    public void clearFrameworkId() throws StateStoreException {
+        store.clearFrameworkId();
+    }
+
+    @Override
+    public Protos.FrameworkID fetchFrameworkId() throws StateStoreException {
+        return store.fetchFrameworkId();
+    }
+
+    // Write Tasks
+
+    @Override
+    public void storeTasks(Collection<Protos.TaskInfo> taskInfos) throws StateStoreException {
+        Map<String, PendingWrite> writes = new HashMap<>();
+        for (Protos.TaskInfo taskInfo : taskInfos) {
+            writes.put(getTaskInfoPath(taskInfo.getName()), new PendingWrite(taskInfo.toByteArray()));
+        }
+        beginWrites(writes);
+
+        try {
+            store.storeTasks(taskInfos);
+        } catch (StateStoreException e) {
+            // Some of the Tasks may have been written before the failure.
+            for (Protos.TaskInfo taskInfo : taskInfos) {
+                reload(taskInfo.getName());
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            for (Protos.TaskInfo taskInfo : taskInfos) {
+                putTask(taskInfo);
+            }
+            completeWrites(writes);
+        }
+    }
+
+    @Override
+    public void storeStatus(Protos.TaskStatus status) throws StateStoreException {
+        String taskName = CuratorStateStore.getTaskName(status);
+        CuratorStateStore.validateTaskId(fetchTaskForStatus(taskName), status);
+
+        Map<String, PendingWrite> writes = Collections.singletonMap(
+                getTaskStatusPath(taskName), new PendingWrite(status.toByteArray()));
+        beginWrites(writes);
+
+        try {
+            store.storeStatus(taskName, status);
+        } catch (StateStoreException e) {
+            reload(taskName);
+            throw e;
+        }
+
+        synchronized (this) {
+            putStatus(taskName, status);
+            completeWrites(writes);
+        }
+    }
+
+    @Override
+    public void storeStatuses(Collection<Protos.TaskStatus> statuses) throws StateStoreException {
+        Map<String, Protos.TaskStatus> statusesByTaskName = new LinkedHashMap<>();
+        Map<String, PendingWrite> writes = new HashMap<>();
+        for (Protos.TaskStatus status : statuses) {
+            String taskName = CuratorStateStore.getTaskName(status);
+            CuratorStateStore.validateTaskId(fetchTaskForStatus(taskName), status);
+            statusesByTaskName.put(taskName, status);
+            writes.put(getTaskStatusPath(taskName), new PendingWrite(status.toByteArray()));
+        }
+        beginWrites(writes);
+
+        try {
+            store.storeStatuses(statusesByTaskName);
+        } catch (StateStoreException e) {
+            for (String taskName : statusesByTaskName.keySet()) {
+                reload(taskName);
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            for (Map.Entry<String, Protos.TaskStatus> entry : statusesByTaskName.entrySet()) {
+                putStatus(entry.getKey(), entry.getValue());
+            }
+            completeWrites(writes);
+        }
+    }
+
+    @Override
+    public void clearTask(String taskName) throws StateStoreException {
+        Map<String, PendingWrite> writes = new HashMap<>();
+        writes.put(getTaskInfoPath(taskName), new PendingWrite(null));
+        writes.put(getTaskStatusPath(taskName), new PendingWrite(null));
+        beginWrites(writes);
+
+        try {
+            store.clearTask(taskName);
+        } catch (StateStoreException e) {
+            reload(taskName);
+            throw e;
+        }
+
+        synchronized (this) {
+            removeTask(taskName);
+            removeStatus(taskName);
+            completeWrites(writes);
+        }
+    }
+
+    // Read Tasks
+
+    @Override
+    public Collection<String> fetchTaskNames() throws StateStoreException {
+        synchronized (this) {
+            if (valid) {
+                return new ArrayList<>(tasks.keySet());
+            }
+        }
+        return store.fetchTaskNames();
+    }
+
+    @Override
+    public Collection<Protos.TaskInfo> fetchTasks() throws StateStoreException {
+        synchronized (this) {
+            if (valid) {
+                return new ArrayList<>(tasks.values());
+            }
+        }
+        return store.fetchTasks();
+    }
+
+    @Override
+    public Protos.TaskInfo fetchTask(String taskName) throws StateStoreException {
+        synchronized (this) {
+            if (valid) {
+                Protos.TaskInfo taskInfo = tasks.get(taskName);
+                if (taskInfo == null) {
+                    throw new StateStoreException(String.format(
+                            "Failed to retrieve TaskInfo for TaskName: %s", taskName));
+                }
+                return taskInfo;
+            }
+        }
+        return store.fetchTask(taskName);
+    }
+
+    @Override
+    public Collection<Protos.TaskStatus> fetchStatuses() throws StateStoreException {
+        synchronized (this) {
+            if (valid) {
+                return new ArrayList<>(statuses.values());
+            }
+        }
+        return store.fetchStatuses();
+    }
+
+    @Override
+    public Protos.TaskStatus fetchStatus(String taskName) throws StateStoreException {
+        synchronized (this) {
+            if (valid) {
+                Protos.TaskStatus status = statuses.get(taskName);
+                if (status == null) {
+                    throw new StateStoreException(String.format(
+                            "Failed to retrieve TaskStatus for TaskName: %s", taskName));
+                }
+                return status;
+            }
+        }
+        return store.fetchStatus(taskName);
+    }
+
+    // Versioned Tasks
+
+    /**
+     * Reads through to the underlying store, as versions aren't cached.
+     */
+    @Override
+    public Versioned<Protos.TaskInfo> fetchVersionedTask(String taskName) throws StateStoreException {
+        return store.fetchVersionedTask(taskName);
+    }
+
+    /**
+     * Reads through to the underlying store, as versions aren't cached.
+     */
+    @Override
+    public Versioned<Protos.TaskStatus> fetchVersionedStatus(String taskName) throws StateStoreException {
+        return store.fetchVersionedStatus(taskName);
+    }
+
+    @Override
+    public int storeTask(Protos.TaskInfo taskInfo, int expectedVersion) throws StateStoreException {
+        Map<String, PendingWrite> writes = Collections.singletonMap(
+                getTaskInfoPath(taskInfo.getName()), new PendingWrite(taskInfo.toByteArray()));
+        beginWrites(writes);
+
+        int version;
+        try {
+            version = store.storeTask(taskInfo, expectedVersion);
+        } catch (StateStoreException e) {
+            // On a conflict, the cache may also be behind the write which won.
+            reload(taskInfo.getName());
+            throw e;
+        }
+
+        synchronized (this) {
+            putTask(taskInfo);
+            completeWrites(writes);
+        }
+        return version;
+    }
+
+    @Override
+    public int storeStatus(Protos.TaskStatus status, int expectedVersion) throws StateStoreException {
+        String taskName = CuratorStateStore.getTaskName(status);
+        CuratorStateStore.validateTaskId(fetchTaskForStatus(taskName), status);
+
+        Map<String, PendingWrite> writes = Collections.singletonMap(
+                getTaskStatusPath(taskName), new PendingWrite(status.toByteArray()));
+        beginWrites(writes);
+
+        int version;
+        try {
+            version = store.storeStatus(taskName, status, expectedVersion);
+        } catch (StateStoreException e) {
+            reload(taskName);
+            throw e;
+        }
+
+        synchronized (this) {
+            putStatus(taskName, status);
+            completeWrites(writes);
+        }
+        return version;
+    }
+
+    // Query Tasks
+
+    @Override
+    public Collection<Protos.TaskInfo> fetchTasksByAgent(Protos.SlaveID agentId) throws StateStoreException {
+        synchronized (this) {
+            if (valid) {
+                return getTasks(index.getTasksByAgent(agentId.getValue()));
+            }
+        }
+        return store.fetchTasksByAgent(agentId);
+    }
+
+    @Override
+    public Collection<Protos.TaskInfo> fetchTasksByState(Protos.TaskState state) throws StateStoreException {
+        synchronized (this) {
+            if (valid) {
+                return getTasks(index.getTasksByState(state));
+            }
+        }
+        return store.fetchTasksByState(state);
+    }
+
+    @Override
+    public Collection<Protos.TaskInfo> fetchTasksByConfig(UUID configId) throws StateStoreException {
+        synchronized (this) {
+            if (valid) {
+                return getTasks(index.getTasksByConfig(configId));
+            }
+        }
+        return store.fetchTasksByConfig(configId);
+    }
+
+    // Subscribe to Changes
+
+    @Override
+    public StateStoreSubscription subscribe(StateStoreListener listener, long fromVersion)
+            throws StateStoreException {
+        return changeLog.subscribe(listener, fromVersion);
+    }
+
+    // Internals
+
+    /**
+     * Returns the TaskInfo which a status of the named Task must match.
+     */
+    private Protos.TaskInfo fetchTaskForStatus(String taskName) throws StateStoreException {
+        try {
+            return fetchTask(taskName);
+        } catch (Exception e) {
+            throw new StateStoreException(String.format(
+                    "Unable to retrieve matching TaskInfo for the provided TaskStatus name %s. " +
+                    "Call storeTasks() before calling storeStatus()", taskName), e);
+        }
+    }
+
+    /**
+     * Returns whether reads are currently being served from memory.
+     */
+    synchronized boolean isCacheValid() {
+        return valid;
+    }
+
+    /**
+     * Applies an event from the {@link TreeCache}. Events are delivered one at a time, so the lock
+     * is only held while the cache is updated, and not while any node is read.
+     */
+    private void handleEvent(TreeCacheEvent event) {
+        switch (event.getType()) {
+            case NODE_ADDED:
+            case NODE_UPDATED:
+                onNodeChanged(event.getData());
+                break;
+            case NODE_REMOVED:
+                onNodeRemoved(event.getData());
+                break;
+            default:
+                onConnectionEvent(event);
+                break;
+        }
+    }
+
+    private synchronized void onConnectionEvent(TreeCacheEvent event) {
+        switch (event.getType()) {
+            case INITIALIZED:
+                logger.info("Loaded {} Tasks from '{}'", tasks.size(), tasksRootPath);
+                valid = true;
+                initialized.countDown();
+                break;
+            case CONNECTION_SUSPENDED:
+            case CONNECTION_LOST:
+                logger.warn("Connection {}, reading Tasks through from '{}'", event.getType(), tasksRootPath);
+                valid = false;
+                break;
+            case CONNECTION_RECONNECTED:
+                // The TreeCache refreshes every node on reconnection, so any changes which were
+                // missed are delivered as events following this one.
+                logger.info("Connection reconnected, serving Tasks from cache");
+                valid = initialized.getCount() == 0;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void onNodeChanged(ChildData data) {
+        String[] names = splitPath(data.getPath());
+        if (names != null && names.length == 2) {
+            onChildEvent(names[0], names[1], data.getData());
+        }
+    }
+
+    private void onNodeRemoved(ChildData data) {
+        String[] names = splitPath(data.getPath());
+        if (names == null) {
+            return;
+        }
+
+        if (names.length == 1) {
+            // The Task node itself is removed after its children.
+            onChildEvent(names[0], CuratorStateStore.TASK_INFO_PATH_NAME, null);
+            onChildEvent(names[0], CuratorStateStore.TASK_STATUS_PATH_NAME, null);
+        } else {
+            onChildEvent(names[0], names[1], null);
+        }
+    }
+
+    /**
+     * Applies the content of a node reported by the {@link TreeCache}, where null bytes mean that
+     * the node was removed.
+     *
+     * While a write made by this store is pending, events for the same path may describe earlier
+     * states of the node, and are ignored until the write itself is seen. Once the write has
+     * completed, ZK guarantees a later event whose content is at least as recent, but a write made
+     * elsewhere in the meantime may have replaced the content first. As such an event can't be told
+     * apart from an earlier one, the node is read again to resolve it.
+     */
+    private void onChildEvent(String taskName, String childName, byte[] bytes) {
+        String path = path(taskName, childName);
+        try {
+            bytes = store.decode(path, bytes);
+        } catch (Exception e) {
+            // The node may have been rewritten since this event, replacing the chunks it refers to.
+            bytes = fetchNode(path);
+        }
+
+        Object read;
+        synchronized (this) {
+            PendingWrite pending = pendingWrites.get(path);
+            if (pending == null || Arrays.equals(pending.bytes, bytes)) {
+                pendingWrites.remove(path);
+                applyNode(taskName, childName, bytes);
+                return;
+            } else if (!pending.completed) {
+                return;
+            }
+            pendingWrites.remove(path);
+            read = beginRead(path);
+        }
+        completeRead(taskName, childName, read);
+    }
+
+    /**
+     * Updates the cached entry of a node, where null bytes mean that the node was removed. Must be
+     * called while holding the lock.
+     */
+    private void applyNode(String taskName, String childName, byte[] bytes) {
+        // The content is at least as recent as that of any read which is underway.
+        pendingReads.remove(path(taskName, childName));
+        try {
+            if (CuratorStateStore.TASK_INFO_PATH_NAME.equals(childName)) {
+                if (bytes != null) {
+                    putTask(Protos.TaskInfo.parseFrom(bytes));
+                } else {
+                    removeTask(taskName);
+                }
+            } else if (CuratorStateStore.TASK_STATUS_PATH_NAME.equals(childName)) {
+                if (bytes != null) {
+                    putStatus(taskName, Protos.TaskStatus.parseFrom(bytes));
+                } else {
+                    removeStatus(taskName);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to parse data at '{}', dropping it from the cache", path(taskName, childName), e);
+            removeTask(taskName);
+            removeStatus(taskName);
+        }
+    }
+
+    /**
+     * Registers a read of a node which is about to be made without holding the lock, and returns a
+     * token to pass to {@link #completeRead(String, String, Object)}. Must be called while holding
+     * the lock.
+     */
+    private Object beginRead(String path) {
+        Object read = new Object();
+        pendingReads.put(path, read);
+        return read;
+    }
+
+    /**
+     * Reads a node without holding the lock, and applies its content unless the cached entry has
+     * since been updated by an event or a write has since begun, as either is at least as recent.
+     */
+    private void completeRead(String taskName, String childName, Object read) {
+        String path = path(taskName, childName);
+        byte[] bytes = fetchNode(path);
+        synchronized (this) {
+            if (pendingReads.remove(path, read) && !pendingWrites.containsKey(path)) {
+                applyNode(taskName, childName, bytes);
+            }
+        }
+    }
+
+    /**
+     * Returns the cached TaskInfos of the named Tasks. Tasks which have a status but no TaskInfo
+     * are skipped, as in {@link StateStore#fetchTasksByState(Protos.TaskState)}.
+     */
+    private Collection<Protos.TaskInfo> getTasks(Collection<String> taskNames) {
+        Collection<Protos.TaskInfo> taskInfos = new ArrayList<>(taskNames.size());
+        for (String taskName : taskNames) {
+            Protos.TaskInfo taskInfo = tasks.get(taskName);
+            if (taskInfo != null) {
+                taskInfos.add(taskInfo);
+            }
+        }
+        return taskInfos;
+    }
+
+    // The cache may be told of the same content more than once, such as when the TreeCache reports
+    // a write which was already applied, so only actual changes are published.
+
+    private void putTask(Protos.TaskInfo taskInfo) {
+        if (!taskInfo.equals(tasks.put(taskInfo.getName(), taskInfo))) {
+            index.putTask(taskInfo);
+            changeLog.taskUpdated(taskInfo);
+        }
+    }
+
+    private void removeTask(String taskName) {
+        if (tasks.remove(taskName) != null) {
+            index.removeTask(taskName);
+            changeLog.taskRemoved(taskName);
+        }
+    }
+
+    private void putStatus(String taskName, Protos.TaskStatus status) {
+        if (!status.equals(statuses.put(taskName, status))) {
+            index.putStatus(taskName, status);
+            changeLog.statusUpdated(taskName, status);
+        }
+    }
+
+    private void removeStatus(String taskName) {
+        if (statuses.remove(taskName) != null) {
+            index.removeStatus(taskName);
+            changeLog.statusRemoved(taskName);
+        }
+    }
+
+    /**
+     * Returns the content of a node, or null if it doesn't exist or can't be read.
+     */
+    private byte[] fetchNode(String path) {
+        try {
+            return store.decode(path, store.getClient().getData().forPath(path));
+        } catch (KeeperException.NoNodeException e) {
+            return null;
+        } catch (Exception e) {
+            logger.error("Failed to read '{}', dropping it from the cache", path, e);
+            return null;
+        }
+    }
+
+    private synchronized void beginWrites(Map<String, PendingWrite> writes) {
+        pendingWrites.putAll(writes);
+    }
+
+    /**
+     * Marks writes as completed, unless they have since been superseded or resolved.
+     */
+    private void completeWrites(Map<String, PendingWrite> writes) {
+        for (Map.Entry<String, PendingWrite> entry : writes.entrySet()) {
+            if (pendingWrites.get(entry.getKey()) == entry.getValue()) {
+                entry.getValue().completed = true;
+            }
+        }
+    }
+
+    /**
+     * Refreshes the cached entries of a Task from the underlying store, after a write whose outcome
+     * is unknown.
+     */
+    private void reload(String taskName) {
+        Object infoRead;
+        Object statusRead;
+        synchronized (this) {
+            pendingWrites.remove(getTaskInfoPath(taskName));
+            pendingWrites.remove(getTaskStatusPath(taskName));
+            infoRead = beginRead(getTaskInfoPath(taskName));
+            statusRead = beginRead(getTaskStatusPath(taskName));
+        }
+        completeRead(taskName, CuratorStateStore.TASK_INFO_PATH_NAME, infoRead);
+        completeRead(taskName, CuratorStateStore.TASK_STATUS_PATH_NAME, statusRead);
+    }
+
+    /**
+     * Splits a path below the Tasks node into the Task name and, if present, the child node name.
+     */
+    private String[] splitPath(String path) {
+        String prefix = tasksRootPath + "/";
+        if (!path.startsWith(prefix)) {
+            return null;
+        }
+        String[] names = path.substring(prefix.length()).split("/");
+        return names.length <= 2 ? names : null;
+    }
+
+    private String getTaskInfoPath(String taskName) {
+        return path(taskName, CuratorStateStore.TASK_INFO_PATH_NAME);
+    }
+
+    private String getTaskStatusPath(String taskName) {
+        return path(taskName, CuratorStateStore.TASK_STATUS_PATH_NAME);
+    }
+
+    private String path(String taskName, String childName) {
+        return tasksRootPath + "/" + taskName + "/" + childName;
+    }
+
+    /**
+     * A write made by this store which the {@link TreeCache} has not reported yet.
+     */
+    private static class PendingWrite {
+        private final byte[] bytes; // null when the node is being removed
+        private boolean completed = false;
+
+        private PendingWrite(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package org.apache.mesos.state;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mesos.Protos;
+import org.apache.mesos.offer.TaskException;
+import org.apache.mesos.offer.TaskUtils;
+import org.apache.mesos.storage.Versioned;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CoalescingStateStore is a {@link StateStore} which decorates another store, buffering TaskStatus
+ * writes so that a Task whose status changes many times in quick succession, such as while it is
+ * flapping, costs one write per flush interval rather than one per update. Only the latest status
+ * of each Task is kept, and buffered statuses are written in the background, in one batch per flush.
+ * Statuses of terminated Tasks are written before {@link #storeStatus(Protos.TaskStatus)} returns.
+ *
+ * Statuses are validated against the stored TaskInfo when they are buffered, as in any other store,
+ * so decorating a {@link CachingStateStore} avoids a read per update. Reads of statuses see
+ * buffered values. Buffered statuses which have not been flushed are lost if the process exits
+ * without calling {@link #close()}, and will be re-sent by Mesos during reconciliation.
+ */
+public class CoalescingStateStore implements StateStore, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoalescingStateStore.class);
+
+    private static final long DEFAULT_FLUSH_INTERVAL_MS = 100;
+
+    private final StateStore store;
+    private final ScheduledExecutorService executor;
+
+    // Held while writing statuses to the underlying store, so that they are written in order
+    private final Object flushLock = new Object();
+
+    // Guarded by 'this'. Entries remain until they have been written, so that reads see them. Only
+    // statuses of stored Tasks are accepted, and each Task has at most one entry, so the size is
+    // bounded by the number of Tasks even while the underlying store is unavailable.
+    private final Map<String, Protos.TaskStatus> dirtyStatuses = new LinkedHashMap<>();
+
+    /**
+     * Creates a new {@link StateStore} which flushes buffered statuses at a default interval.
+     *
+     * @param store The store to write through to
+     */
+    public CoalescingStateStore(StateStore store) {
+        this(store, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    /**
+     * Creates a new {@link StateStore} which flushes buffered statuses at the provided interval.
+     *
+     * @param store The store to write through to
+     * @param flushIntervalMs How often buffered statuses are written to the underlying store
+     */
+    public CoalescingStateStore(StateStore store, long flushIntervalMs) {
+        this.store = store;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "CoalescingStateStore-flush");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops flushing in the background, after writing any buffered statuses.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(DEFAULT_FLUSH_INTERVAL_MS * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Writes all buffered statuses to the underlying store in one batch. If the batch fails, the
+     * statuses are written one at a time: those whose Task has since been cleared or replaced in the
+     * underlying store can never be written, and are dropped, while those which fail to be written
+     * for any other reason are kept and retried on the next flush.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, Protos.TaskStatus> statuses;
+            synchronized (this) {
+                statuses = new LinkedHashMap<>(dirtyStatuses);
+            }
+            if (statuses.isEmpty()) {
+                return;
+            }
+
+            try {
+                store.storeStatuses(new ArrayList<>(statuses.values()));
+                markClean(statuses);
+                return;
+            } catch (StateStoreException e) {
+                logger.warn("Failed to store {} buffered statuses together, storing them individually",
+                        statuses.size(), e);
+            }
+
+            for (Map.Entry<String, Protos.TaskStatus> entry : statuses.entrySet()) {
+                String taskName = entry.getKey();
+                Protos.TaskStatus status = entry.getValue();
+                try {
+                    write(taskName, status);
+                } catch (StateStoreMismatchException e) {
+                    logger.warn("Dropping status of '{}', whose Task has been replaced: {}", taskName, status);
+                    markClean(Collections.singletonMap(taskName, status));
+                } catch (StateStoreException e) {
+                    if (isCleared(taskName)) {
+                        logger.warn("Dropping status of '{}', whose Task has been cleared: {}", taskName, status);
+                        markClean(Collections.singletonMap(taskName, status));
+                    } else {
+                        logger.error("Failed to store status of '{}', retrying on next flush", taskName, e);
+                    }
+                }
+            }
+        }
+    }
+
+    // Framework ID
+
+    @Override
+    public void storeFrameworkId(Protos.FrameworkID fwkId) throws StateStoreException {
+        store.storeFrameworkId(fwkId);
+    }
+
+    @Override
+    public void clearFrameworkId() throws StateStoreException {
+        store.clearFrameworkId();
+    }
+
+    @Override
+    public Protos.FrameworkID fetchFrameworkId() throws StateStoreException {
+        return store.fetchFrameworkId();
+    }
+
+    // Write Tasks
+
+    @Override
+    public void storeTasks(Collection<Protos.TaskInfo> tasks) throws StateStoreException {
+        synchronized (flushLock) {
+            // Buffered statuses belong to the TaskInfos being replaced, and must be written first.
+            for (Protos.TaskInfo taskInfo : tasks) {
+                Protos.TaskStatus status;
+                synchronized (this) {
+                    status = dirtyStatuses.get(taskInfo.getName());
+                }
+                if (status != null) {
+                    try {
+                        write(taskInfo.getName(), status);
+                    } catch (StateStoreException e) {
+                        logger.error("Dropping status of replaced Task '{}'", taskInfo.getName(), e);
+                        markClean(Collections.singletonMap(taskInfo.getName(), status));
+                    }
+                }
+            }
+            store.storeTasks(tasks);
+        }
+    }
+
+    @Override
+    public void storeStatus(Protos.TaskStatus status) throws StateStoreException {
+        String taskName = CuratorStateStore.getTaskName(status);
+
+        Protos.TaskInfo taskInfo;
+        try {
+            taskInfo = store.fetchTask(taskName);
+        } catch (Exception e) {
+            throw new StateStoreException(String.format(
+                    "Unable to retrieve matching TaskInfo for the provided TaskStatus name %s. " +
+                    "Call storeTasks() before calling storeStatus()", taskName), e);
+        }
+        CuratorStateStore.validateTaskId(taskInfo, status);
+
+        if (!TaskUtils.isTerminated(status)) {
+            synchronized (this) {
+                dirtyStatuses.put(taskName, status);
+            }
+            return;
+        }
+
+        synchronized (flushLock) {
+            Protos.TaskStatus previousStatus;
+            synchronized (this) {
+                previousStatus = dirtyStatuses.put(taskName, status);
+            }
+            try {
+                write(taskName, status);
+            } catch (StateStoreException e) {
+                synchronized (this) {
+                    if (previousStatus != null) {
+                        dirtyStatuses.replace(taskName, status, previousStatus);
+                    } else {
+                        dirtyStatuses.remove(taskName, status);
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Writes the statuses through to the underlying store, replacing any buffered statuses of the
+     * same Tasks.
+     */
+    @Override
+    public void storeStatuses(Collection<Protos.TaskStatus> statuses) throws StateStoreException {
+        synchronized (flushLock) {
+            Map<String, Protos.TaskStatus> replaced = new LinkedHashMap<>();
+            synchronized (this) {
+                for (Protos.TaskStatus status : statuses) {
+                    String taskName = CuratorStateStore.getTaskName(status);
+                    Protos.TaskStatus dirtyStatus = dirtyStatuses.get(taskName);
+                    if (dirtyStatus != null) {
+                        replaced.put(taskName, dirtyStatus);
+                    }
+                }
+            }
+            store.storeStatuses(statuses);
+            markClean(replaced);
+        }
+    }
+
+    @Override
+    public void clearTask(String taskName) throws StateStoreException {
+        synchronized (flushLock) {
+            synchronized (this) {
+                dirtyStatuses.remove(taskName);
+            }
+            store.clearTask(taskName);
+        }
+    }
+
+    // Read Tasks
+
+    @Override
+    public Collection<String> fetchTaskNames() throws StateStoreException {
+        return store.fetchTaskNames();
+    }
+
+    @Override
+    public Collection<Protos.TaskInfo> fetchTasks() throws StateStoreException {
+        return store.fetchTasks();
+    }
+
+    @Override
+    public Protos.TaskInfo fetchTask(String taskName) throws StateStoreException {
+        return store.fetchTask(taskName);
+    }
+
+    @Override
+    public Collection<Protos.TaskStatus> fetchStatuses() throws StateStoreException {
+        Map<String, Protos.TaskStatus> dirty;
+        Collection<Protos.TaskStatus> stored;
+        synchronized (flushLock) {
+            synchronized (this) {
+                dirty = new LinkedHashMap<>(dirtyStatuses);
+            }
+            stored = store.fetchStatuses();
+        }
+        if (dirty.isEmpty()) {
+            return stored;
+        }
+
+        Collection<Protos.TaskStatus> statuses = new ArrayList<>();
+        for (Protos.TaskStatus status : stored) {
+            Protos.TaskStatus dirtyStatus = null;
+            try {
+                dirtyStatus = dirty.remove(TaskUtils.toTaskName(status.getTaskId()));
+            } catch (TaskException e) {
+                logger.warn("Failed to parse the Task Name of stored status: {}", status, e);
+            }
+            statuses.add(dirtyStatus != null ? dirtyStatus : status);
+        }
+        statuses.addAll(dirty.values());
+        return statuses;
+    }
+
+    @Override
+    public Protos.TaskStatus fetchStatus(String taskName) throws StateStoreException {
+        synchronized (this) {
+            Protos.TaskStatus status = dirtyStatuses.get(taskName);
+            if (status != null) {
+                return status;
+            }
+        }
+        return store.fetchStatus(taskName);
+    }
+
+    // Versioned Tasks
+
+    @Override
+    public Versioned<Protos.TaskInfo> fetchVersionedTask(String taskName) throws StateStoreException {
+        return store.fetchVersionedTask(taskName);
+    }
+
+    /**
+     * Writes any buffered status of the Task first, so that the returned version includes it.
+     */
+    @Override
+    public Versioned<Protos.TaskStatus> fetchVersionedStatus(String taskName) throws StateStoreException {
+        synchronized (flushLock) {
+            flushTask(taskName);
+            return store.fetchVersionedStatus(taskName);
+        }
+    }
+
+    @Override
+    public int storeTask(Protos.TaskInfo taskInfo, int expectedVersion) throws StateStoreException {
+        synchronized (flushLock) {
+            // A buffered status belongs to the TaskInfo being replaced, and must be written first.
+            flushTask(taskInfo.getName());
+            return store.storeTask(taskInfo, expectedVersion);
+        }
+    }
+
+    /**
+     * Writes any buffered status of the Task first, so that a status buffered since the expected
+     * version was read counts as a conflicting change rather than overwriting this one later.
+     */
+    @Override
+    public int storeStatus(Protos.TaskStatus status, int expectedVersion) throws StateStoreException {
+        String taskName = CuratorStateStore.getTaskName(status);
+        synchronized (flushLock) {
+            flushTask(taskName);
+            return store.storeStatus(status, expectedVersion);
+        }
+    }
+
+    // Query Tasks
+
+    @Override
+    public Collection<Protos.TaskInfo> fetchTasksByAgent(Protos.SlaveID agentId) throws StateStoreException {
+        return store.fetchTasksByAgent(agentId);
+    }
+
+    @Override
+    public Collection<Protos.TaskInfo> fetchTasksByState(Protos.TaskState state) throws StateStoreException {
+        Map<String, Protos.TaskStatus> dirty;
+        Collection<Protos.TaskInfo> stored;
+        synchronized (flushLock) {
+            synchronized (this) {
+                dirty = new LinkedHashMap<>(dirtyStatuses);
+            }
+            stored = store.fetchTasksByState(state);
+        }
+        if (dirty.isEmpty()) {
+            return stored;
+        }
+
+        // Buffered statuses may move Tasks into or out of the requested state.
+        Collection<Protos.TaskInfo> tasks = new ArrayList<>();
+        Set<String> taskNames = new HashSet<>();
+        for (Protos.TaskInfo taskInfo : stored) {
+            Protos.TaskStatus dirtyStatus = dirty.get(taskInfo.getName());
+            if (dirtyStatus == null || dirtyStatus.getState() == state) {
+                tasks.add(taskInfo);
+                taskNames.add(taskInfo.getName());
+            }
+        }
+        for (Map.Entry<String, Protos.TaskStatus> entry : dirty.entrySet()) {
+            if (entry.getValue().getState() == state && !taskNames.contains(entry.getKey())) {
+                tasks.add(store.fetchTask(entry.getKey()));
+            }
+        }
+        return tasks;
+    }
+
+    @Override
+    public Collection<Protos.TaskInfo> fetchTasksByConfig(UUID configId) throws StateStoreException {
+        return store.fetchTasksByConfig(configId);
+    }
+
+    // Subscribe to Changes
+
+    /**
+     * Subscribes to the changes of the underlying store. Buffered statuses are delivered once they
+     * have been flushed.
+     */
+    @Override
+    public StateStoreSubscription subscribe(StateStoreListener listener, long fromVersion)
+            throws StateStoreException {
+        return store.subscribe(listener, fromVersion);
+    }
+
+    // Internals
+
+    /**
+     * Returns the names of Tasks whose statuses have not been written yet.
+     */
+    synchronized List<String> getDirtyTaskNames() {
+        return new ArrayList<>(dirtyStatuses.keySet());
+    }
+
+    /**
+     * Returns whether the Task is known to have been cleared from the underlying store.
+     */
+    private boolean isCleared(String taskName) {
+        try {
+            return !store.fetchTaskNames().contains(taskName);
+        } catch (StateStoreException e) {
+            logger.error("Failed to fetch Task Names", e);
+            return false;
+        }
+    }
+
+    /**
+     * Marks the provided statuses clean, except for those which have since been replaced.
+     */
+    private synchronized void markClean(Map<String, Protos.TaskStatus> statuses) {
+        for (Map.Entry<String, Protos.TaskStatus> entry : statuses.entrySet()) {
+            dirtyStatuses.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Writes the buffered status of a Task, if any. Must be called while holding the flush lock.
+     */
+    private void flushTask(String taskName) throws StateStoreException {
+        Protos.TaskStatus status;
+        synchronized (this) {
+            status = dirtyStatuses.get(taskName);
+        }
+        if (status != null) {
+            write(taskName, status);
+        }
+    }
+
+    /**
+     * Writes a status to the underlying store, and marks it clean unless it has since been replaced.
+     * Must be called while holding the flush lock.
+     */
+    private void write(String taskName, Protos.TaskStatus status) throws StateStoreException {
+        store.storeStatus(status);
+        markClean(Collections.singletonMap(taskName, status));
+    }
+}
@@ -1,15 +1,23 @@
 package org.apache.mesos.state;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.apache.curator.RetryPolicy;
+import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.mesos.Protos;
 import org.apache.mesos.offer.TaskException;
 import org.apache.mesos.offer.TaskUtils;
+import org.apache.mesos.storage.CuratorClientPool;
 import org.apache.mesos.storage.CuratorPersister;
+import org.apache.mesos.storage.Persister;
+import org.apache.mesos.storage.Versioned;
 import org.apache.zookeeper.KeeperException;
 
 import org.slf4j.Logger;
@@ -36,20 +44,23 @@ import org.slf4j.LoggerFactory;
  *
  * Note that for frameworks which don't use custom executors, the same structure is used, except
  * where ExecutorName values are equal to TaskName values.
+ *
+ * Stores which are created from a connection string share their Zookeeper client with other stores
+ * using the same connection string, via the default {@link CuratorClientPool}.
  */
-public class CuratorStateStore implements StateStore {
+public class CuratorStateStore implements StateStore, Closeable {
 
     private static final Logger logger = LoggerFactory.getLogger(CuratorStateStore.class);
 
     private static final int DEFAULT_CURATOR_POLL_DELAY_MS = 1000;
     private static final int DEFAULT_CURATOR_MAX_RETRIES = 3;
 
-    private static final String TASK_INFO_PATH_NAME = "TaskInfo";
-    private static final String TASK_STATUS_PATH_NAME = "TaskStatus";
+    static final String TASK_INFO_PATH_NAME = "TaskInfo";
+    static final String TASK_STATUS_PATH_NAME = "TaskStatus";
     private static final String FWK_ID_PATH_NAME = "FrameworkID";
     private static final String TASKS_ROOT_NAME = "Tasks";
 
-    private final CuratorPersister curator;
+    private final Persister persister;
     private final TaskPathMapper taskPathMapper;
     private final String fwkIdPath;
 
@@ -72,18 +83,51 @@ public class CuratorStateStore implements StateStore {
      * @param retryPolicy The custom {@link RetryPolicy}
      */
     public CuratorStateStore(String rootPath, String connectionString, RetryPolicy retryPolicy) {
-        this.curator = new CuratorPersister(connectionString, retryPolicy);
+        this(rootPath, new CuratorPersister(connectionString, retryPolicy));
+    }
+
+    /**
+     * Creates a new {@link StateStore} which uses the provided started Curator client, which may be
+     * shared with other stores. The client is left open by {@link #close()}.
+     *
+     * @param rootPath The path to store data in, eg "/FrameworkName"
+     * @param client The client to read and write data with
+     */
+    public CuratorStateStore(String rootPath, CuratorFramework client) {
+        this(rootPath, new CuratorPersister(client));
+    }
+
+    /**
+     * Creates a new {@link StateStore} which keeps the same node structure in the provided
+     * {@link Persister}, such as a {@link CuratorPersister} which compresses values. Missing nodes
+     * must be reported with {@link KeeperException.NoNodeException}.
+     *
+     * @param rootPath The path to store data in, eg "/FrameworkName"
+     * @param persister The storage for the data
+     */
+    public CuratorStateStore(String rootPath, Persister persister) {
+        this.persister = persister;
         this.taskPathMapper = new TaskPathMapper(rootPath);
         this.fwkIdPath = rootPath + "/" + FWK_ID_PATH_NAME;
     }
 
+    /**
+     * Closes the underlying {@link Persister}, releasing any client or files which it holds.
+     */
+    @Override
+    public void close() throws IOException {
+        if (persister instanceof Closeable) {
+            ((Closeable) persister).close();
+        }
+    }
+
     // Framework ID
 
     @Override
     public void storeFrameworkId(Protos.FrameworkID fwkId) throws StateStoreException {
         try {
             logger.debug("Storing FrameworkID in '{}'", fwkIdPath);
-            curator.store(fwkIdPath, fwkId.toByteArray());
+            persister.store(fwkIdPath, fwkId.toByteArray());
         } catch (Exception e) {
             throw new StateStoreException(String.format(
                     "Failed to store FrameworkID in '%s'", fwkIdPath), e);
@@ -94,7 +138,7 @@ public class CuratorStateStore implements StateStore {
     public void clearFrameworkId() throws StateStoreException {
         try {
             logger.debug("Clearing FrameworkID at '{}'", fwkIdPath);
-            curator.clear(fwkIdPath);
+            persister.clear(fwkIdPath);
         } catch (KeeperException.NoNodeException e) {
             // Clearing a non-existent FrameworkID should not result in an exception from us.
             logger.warn("Cleared unset FrameworkID, continuing silently", e);
@@ -108,7 +152,7 @@ public class CuratorStateStore implements StateStore {
     public Protos.FrameworkID fetchFrameworkId() throws StateStoreException {
         try {
             logger.debug("Fetching FrameworkID from '{}'", fwkIdPath);
-            byte[] bytes = curator.fetch(fwkIdPath);
+            byte[] bytes = persister.fetch(fwkIdPath);
             if (bytes.length > 0) {
                 return Protos.FrameworkID.parseFrom(bytes);
             } else {
@@ -125,28 +169,25 @@ public class CuratorStateStore implements StateStore {
 
     @Override
     public void storeTasks(Collection<Protos.TaskInfo> tasks) throws StateStoreException {
+        // All TaskInfos are written in one transaction, so that a failure leaves none of them stored.
+        Map<String, byte[]> taskBytesMap = new LinkedHashMap<>();
         for (Protos.TaskInfo taskInfo : tasks) {
             String path = taskPathMapper.getTaskInfoPath(taskInfo.getName());
             logger.debug("Storing Taskinfo for {} in '{}'", taskInfo.getName(), path);
-            try {
-                curator.store(path, taskInfo.toByteArray());
-            } catch (Exception e) {
-                // exit early, without proceeding to other tasks:
-                throw new StateStoreException(String.format(
-                        "Failed to store TaskInfo in '%s'", path), e);
-            }
+            taskBytesMap.put(path, taskInfo.toByteArray());
         }
-    }
 
-    @Override
-    public void storeStatus(Protos.TaskStatus status) throws StateStoreException {
-        String taskName;
         try {
-            taskName = TaskUtils.toTaskName(status.getTaskId());
-        } catch (TaskException e) {
+            persister.store(taskBytesMap);
+        } catch (Exception e) {
             throw new StateStoreException(String.format(
-                    "Failed to parse the Task Name from TaskStatus.task_id: '%s'", status), e);
+                    "Failed to store TaskInfos in '%s'", taskBytesMap.keySet()), e);
         }
+    }
+
+    @Override
+    public void storeStatus(Protos.TaskStatus status) throws StateStoreException {
+        String taskName = getTaskName(status);
 
         // Validate that a TaskInfo with the exact same UUID is currently present. We intentionally
         // ignore TaskStatuses whose TaskID doesn't (exactly) match the current TaskInfo: We will
@@ -159,31 +200,73 @@ public class CuratorStateStore implements StateStore {
                     "Unable to retrieve matching TaskInfo for the provided TaskStatus name %s. " +
                     "Call storeTasks() before calling storeStatus()", taskName), e);
         }
-        if (!taskInfo.getTaskId().getValue().equals(status.getTaskId().getValue())) {
-            throw new StateStoreException(String.format(
-                    "Task ID '%s' of updated status doesn't match Task ID '%s' of current TaskInfo."
-                    + " Task IDs must exactly match before status may be updated."
-                    + " NewTaskStatus[%s] CurrentTaskInfo[%s]",
-                    status.getTaskId().getValue(), taskInfo.getTaskId().getValue(),
-                    status, taskInfo));
-        }
+        validateTaskId(taskInfo, status);
 
+        storeStatus(taskName, status);
+    }
+
+    /**
+     * Writes the TaskStatus of the named Task without validating it against the stored TaskInfo.
+     * Callers must have already performed the validation done by {@link #storeStatus(Protos.TaskStatus)}.
+     */
+    void storeStatus(String taskName, Protos.TaskStatus status) throws StateStoreException {
         String path = taskPathMapper.getTaskStatusPath(taskName);
         logger.debug("Storing status for '{}' in '{}'", taskName, path);
 
         try {
-            curator.store(path, status.toByteArray());
+            persister.store(path, status.toByteArray());
         } catch (Exception e) {
             throw new StateStoreException(e);
         }
     }
 
+    @Override
+    public void storeStatuses(Collection<Protos.TaskStatus> statuses) throws StateStoreException {
+        Map<String, Protos.TaskStatus> statusesByTaskName = new LinkedHashMap<>();
+        for (Protos.TaskStatus status : statuses) {
+            String taskName = getTaskName(status);
+            Protos.TaskInfo taskInfo;
+            try {
+                taskInfo = fetchTask(taskName);
+            } catch (Exception e) {
+                throw new StateStoreException(String.format(
+                        "Unable to retrieve matching TaskInfo for the provided TaskStatus name %s. " +
+                        "Call storeTasks() before calling storeStatuses()", taskName), e);
+            }
+            validateTaskId(taskInfo, status);
+            statusesByTaskName.put(taskName, status);
+        }
+
+        storeStatuses(statusesByTaskName);
+    }
+
+    /**
+     * Writes the TaskStatuses of the named Tasks in one transaction, without validating them against
+     * the stored TaskInfos. Callers must have already performed the validation done by
+     * {@link #storeStatuses(Collection)}.
+     */
+    void storeStatuses(Map<String, Protos.TaskStatus> statusesByTaskName) throws StateStoreException {
+        Map<String, byte[]> statusBytesMap = new LinkedHashMap<>();
+        for (Map.Entry<String, Protos.TaskStatus> entry : statusesByTaskName.entrySet()) {
+            String path = taskPathMapper.getTaskStatusPath(entry.getKey());
+            logger.debug("Storing status for '{}' in '{}'", entry.getKey(), path);
+            statusBytesMap.put(path, entry.getValue().toByteArray());
+        }
+
+        try {
+            persister.store(statusBytesMap);
+        } catch (Exception e) {
+            throw new StateStoreException(String.format(
+                    "Failed to store TaskStatuses in '%s'", statusBytesMap.keySet()), e);
+        }
+    }
+
     @Override
     public void clearTask(String taskName) throws StateStoreException {
         String path = taskPathMapper.getTaskPath(taskName);
         logger.debug("Clearing Task at '{}'", path);
         try {
-            curator.clear(path);
+            persister.clear(path);
         } catch (KeeperException.NoNodeException e) {
             // Clearing a non-existent Task should not result in an exception from us.
             logger.warn("Cleared nonexistent Task, continuing silently: {}", taskName, e);
@@ -201,7 +284,7 @@ public class CuratorStateStore implements StateStore {
         logger.debug("Fetching task names from '{}'", path);
         try {
             Collection<String> taskNames = new ArrayList<>();
-            for (String childNode : curator.getChildren(path)) {
+            for (String childNode : persister.getChildren(path)) {
                 taskNames.add(childNode);
             }
             return taskNames;
@@ -216,15 +299,24 @@ public class CuratorStateStore implements StateStore {
 
     @Override
     public Collection<Protos.TaskInfo> fetchTasks() throws StateStoreException {
-        Collection<Protos.TaskInfo> taskInfos = new ArrayList<>();
+        Collection<String> paths = new ArrayList<>();
         for (String taskName : fetchTaskNames()) {
-            try {
-                byte[] bytes = curator.fetch(taskPathMapper.getTaskInfoPath(taskName));
+            paths.add(taskPathMapper.getTaskInfoPath(taskName));
+        }
+
+        Collection<Protos.TaskInfo> taskInfos = new ArrayList<>();
+        try {
+            Map<String, byte[]> results = persister.fetch(paths);
+            for (String path : paths) {
+                byte[] bytes = results.get(path);
+                if (bytes == null) {
+                    // We should always have a TaskInfo for every entry
+                    throw new KeeperException.NoNodeException(path);
+                }
                 taskInfos.add(Protos.TaskInfo.parseFrom(bytes));
-            } catch (Exception e) {
-                // Throw even for NoNodeException: We should always have a TaskInfo for every entry
-                throw new StateStoreException(e);
             }
+        } catch (Exception e) {
+            throw new StateStoreException(e);
         }
         return taskInfos;
     }
@@ -234,7 +326,7 @@ public class CuratorStateStore implements StateStore {
         String path = taskPathMapper.getTaskInfoPath(taskName);
         logger.debug("Fetching TaskInfo {} from '{}'", taskName, path);
         try {
-            byte[] bytes = curator.fetch(path);
+            byte[] bytes = persister.fetch(path);
             if (bytes.length > 0) {
                 return Protos.TaskInfo.parseFrom(bytes);
             } else {
@@ -249,18 +341,20 @@ public class CuratorStateStore implements StateStore {
 
     @Override
     public Collection<Protos.TaskStatus> fetchStatuses() throws StateStoreException {
-        Collection<Protos.TaskStatus> taskStatuses = new ArrayList<>();
+        Collection<String> paths = new ArrayList<>();
         for (String taskName : fetchTaskNames()) {
-            try {
-                byte[] bytes = curator.fetch(taskPathMapper.getTaskStatusPath(taskName));
+            paths.add(taskPathMapper.getTaskStatusPath(taskName));
+        }
+
+        Collection<Protos.TaskStatus> taskStatuses = new ArrayList<>();
+        try {
+            // Task nodes which don't contain a TaskStatus node are omitted. This may occur if the
+            // only contents are a TaskInfo.
+            for (byte[] bytes : persister.fetch(paths).values()) {
                 taskStatuses.add(Protos.TaskStatus.parseFrom(bytes));
-            } catch (KeeperException.NoNodeException e) {
-                // The task node exists, but it doesn't contain a TaskStatus node. This may occur if
-                // the only contents are a TaskInfo.
-                continue;
-            } catch (Exception e) {
-                throw new StateStoreException(e);
             }
+        } catch (Exception e) {
+            throw new StateStoreException(e);
         }
         return taskStatuses;
     }
@@ -270,7 +364,7 @@ public class CuratorStateStore implements StateStore {
         String path = taskPathMapper.getTaskStatusPath(taskName);
         logger.debug("Fetching status for '{}' in '{}'", taskName, path);
         try {
-            byte[] bytes = curator.fetch(path);
+            byte[] bytes = persister.fetch(path);
             if (bytes.length > 0) {
                 return Protos.TaskStatus.parseFrom(bytes);
             } else {
@@ -282,8 +376,145 @@ public class CuratorStateStore implements StateStore {
         }
     }
 
+    // Versioned Tasks
+
+    /**
+     * Fetches the TaskInfo for a particular Task along with its version, for use with
+     * {@link #storeTask(Protos.TaskInfo, int)}.
+     *
+     * @throws StateStoreException if no data was found for the requested name, or if fetching the
+     *                             TaskInfo otherwise fails
+     */
+    @Override
+    public Versioned<Protos.TaskInfo> fetchVersionedTask(String taskName) throws StateStoreException {
+        String path = taskPathMapper.getTaskInfoPath(taskName);
+        logger.debug("Fetching versioned TaskInfo {} from '{}'", taskName, path);
+        try {
+            Versioned<byte[]> versioned = persister.fetchVersioned(path);
+            return new Versioned<>(Protos.TaskInfo.parseFrom(versioned.getValue()), versioned.getVersion());
+        } catch (Exception e) {
+            throw new StateStoreException(e);
+        }
+    }
+
+    /**
+     * Fetches the TaskStatus for a particular Task along with its version, for use with
+     * {@link #storeStatus(Protos.TaskStatus, int)}.
+     *
+     * @throws StateStoreException if no data was found for the requested Task, or if fetching the
+     *                             TaskStatus otherwise fails
+     */
+    @Override
+    public Versioned<Protos.TaskStatus> fetchVersionedStatus(String taskName) throws StateStoreException {
+        String path = taskPathMapper.getTaskStatusPath(taskName);
+        logger.debug("Fetching versioned status for '{}' in '{}'", taskName, path);
+        try {
+            Versioned<byte[]> versioned = persister.fetchVersioned(path);
+            return new Versioned<>(Protos.TaskStatus.parseFrom(versioned.getValue()), versioned.getVersion());
+        } catch (Exception e) {
+            throw new StateStoreException(e);
+        }
+    }
+
+    /**
+     * Stores a TaskInfo only if the stored TaskInfo hasn't changed since it was read, so that
+     * concurrent schedulers can't overwrite each other's changes.
+     *
+     * @param expectedVersion The version returned by {@link #fetchVersionedTask(String)}, or
+     *                        {@link Persister#ABSENT_VERSION} if the Task must not exist yet
+     * @return The version of the stored TaskInfo
+     * @throws StateStoreConflictException if the stored TaskInfo is not at the expected version
+     */
+    @Override
+    public int storeTask(Protos.TaskInfo taskInfo, int expectedVersion) throws StateStoreException {
+        String path = taskPathMapper.getTaskInfoPath(taskInfo.getName());
+        logger.debug("Storing TaskInfo for {} at version {} in '{}'", taskInfo.getName(), expectedVersion, path);
+        return storeVersioned(path, taskInfo.toByteArray(), expectedVersion);
+    }
+
+    /**
+     * Stores a TaskStatus only if the stored TaskStatus hasn't changed since it was read. The
+     * TaskStatus is validated against the stored TaskInfo as in {@link #storeStatus(Protos.TaskStatus)}.
+     *
+     * @param expectedVersion The version returned by {@link #fetchVersionedStatus(String)}, or
+     *                        {@link Persister#ABSENT_VERSION} if the Task must not have a status yet
+     * @return The version of the stored TaskStatus
+     * @throws StateStoreConflictException if the stored TaskStatus is not at the expected version
+     */
+    @Override
+    public int storeStatus(Protos.TaskStatus status, int expectedVersion) throws StateStoreException {
+        String taskName = getTaskName(status);
+        validateTaskId(fetchTask(taskName), status);
+        return storeStatus(taskName, status, expectedVersion);
+    }
+
+    /**
+     * Stores a TaskStatus only if the stored TaskStatus is at the expected version, without
+     * validating it against the stored TaskInfo, for decorators which have already done so.
+     */
+    int storeStatus(String taskName, Protos.TaskStatus status, int expectedVersion) throws StateStoreException {
+        String path = taskPathMapper.getTaskStatusPath(taskName);
+        logger.debug("Storing status for '{}' at version {} in '{}'", taskName, expectedVersion, path);
+        return storeVersioned(path, status.toByteArray(), expectedVersion);
+    }
+
     // Internals
 
+    private int storeVersioned(String path, byte[] bytes, int expectedVersion) throws StateStoreException {
+        try {
+            return persister.store(path, bytes, expectedVersion);
+        } catch (KeeperException.BadVersionException e) {
+            throw new StateStoreConflictException(String.format(
+                    "'%s' was changed by another writer since version %d", path, expectedVersion), e);
+        } catch (Exception e) {
+            throw new StateStoreException(e);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the data isn't stored in Zookeeper
+     */
+    CuratorFramework getClient() {
+        if (!(persister instanceof CuratorPersister)) {
+            throw new IllegalStateException("StateStore isn't backed by Zookeeper: " + persister);
+        }
+        return ((CuratorPersister) persister).getClient();
+    }
+
+    /**
+     * Returns the value held in the data of a node which was read directly from Zookeeper.
+     */
+    byte[] decode(String path, byte[] data) throws Exception {
+        if (data == null || !(persister instanceof CuratorPersister)) {
+            return data;
+        }
+        return ((CuratorPersister) persister).decode(path, data);
+    }
+
+    String getTasksRootPath() {
+        return taskPathMapper.getTasksRootPath();
+    }
+
+    static String getTaskName(Protos.TaskStatus status) throws StateStoreException {
+        try {
+            return TaskUtils.toTaskName(status.getTaskId());
+        } catch (TaskException e) {
+            throw new StateStoreException(String.format(
+                    "Failed to parse the Task Name from TaskStatus.task_id: '%s'", status), e);
+        }
+    }
+
+    static void validateTaskId(Protos.TaskInfo taskInfo, Protos.TaskStatus status) throws StateStoreException {
+        if (!taskInfo.getTaskId().getValue().equals(status.getTaskId().getValue())) {
+            throw new StateStoreMismatchException(String.format(
+                    "Task ID '%s' of updated status doesn't match Task ID '%s' of current TaskInfo."
+                    + " Task IDs must exactly match before status may be updated."
+                    + " NewTaskStatus[%s] CurrentTaskInfo[%s]",
+                    status.getTaskId().getValue(), taskInfo.getTaskId().getValue(),
+                    status, taskInfo));
+        }
+    }
+
     private static class TaskPathMapper {
         private final String tasksRootPath;
 
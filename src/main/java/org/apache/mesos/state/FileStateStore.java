@@ -0,0 +1,27 @@
+package org.apache.mesos.state;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.mesos.storage.FilePersister;
+
+/**
+ * FileStateStore is an implementation of {@link StateStore} which persists data in a local
+ * directory using a {@link FilePersister}, for test clusters and single-scheduler deployments which
+ * don't need Zookeeper. Data is organized in the same structure as in {@link CuratorStateStore},
+ * below a root path of "/".
+ *
+ * The directory may only be opened by one store at a time.
+ */
+public class FileStateStore extends CuratorStateStore {
+
+    /**
+     * Creates a new {@link StateStore} which stores data in the provided directory.
+     *
+     * @param directory The directory to store data in, which is created if needed
+     * @throws IOException if the directory can't be read, or is in use by another store
+     */
+    public FileStateStore(File directory) throws IOException {
+        super("", new FilePersister(directory));
+    }
+}
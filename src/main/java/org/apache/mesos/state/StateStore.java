@@ -1,9 +1,16 @@
 package org.apache.mesos.state;
 
 import org.apache.mesos.Protos;
+import org.apache.mesos.offer.TaskException;
 import org.apache.mesos.offer.TaskUtils;
+import org.apache.mesos.storage.Persister;
+import org.apache.mesos.storage.Versioned;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
 
 /**
  * This interface should be implemented in order to store and fetch TaskInfo
@@ -81,6 +88,20 @@ public interface StateStore {
     void storeStatus(Protos.TaskStatus status) throws StateStoreException;
 
 
+    /**
+     * Stores the TaskStatuses of several Tasks in one transaction, so that a failure leaves none
+     * of them stored. Each TaskStatus must meet the requirements of {@link #storeStatus(TaskStatus)},
+     * and belong to a different Task.
+     *
+     * @param statuses The statuses to be stored, which each meet the above requirements
+     * @throws StateStoreMismatchException if the TaskId of any status doesn't match that of its
+     * stored TaskInfo
+     * @throws StateStoreException if storing the TaskStatuses fails, or if any TaskId is
+     * malformed, or if any matching TaskInfo wasn't stored first
+     */
+    void storeStatuses(Collection<Protos.TaskStatus> statuses) throws StateStoreException;
+
+
     /**
      * Removes all data associated with a particular Task including any stored TaskInfo and/or
      * TaskStatus.
@@ -148,4 +169,177 @@ public interface StateStore {
      *                             TaskStatus information otherwise fails
      */
     Protos.TaskStatus fetchStatus(String taskName) throws StateStoreException;
+
+
+    // Versioned Tasks
+
+
+    /**
+     * Fetches the TaskInfo for a particular Task along with its version, for use with
+     * {@link #storeTask(Protos.TaskInfo, int)}. Versions are read from the underlying storage, so
+     * that they reflect changes made by other writers.
+     *
+     * @param taskName The name of the Task
+     * @return The corresponding TaskInfo object and its version
+     * @throws StateStoreException if no data was found for the requested name, or if fetching the
+     *                             TaskInfo otherwise fails
+     */
+    Versioned<Protos.TaskInfo> fetchVersionedTask(String taskName) throws StateStoreException;
+
+
+    /**
+     * Fetches the TaskStatus for a particular Task along with its version, for use with
+     * {@link #storeStatus(Protos.TaskStatus, int)}.
+     *
+     * @param taskName The name of the Task which should have its status retrieved
+     * @return The TaskStatus associated with a particular Task and its version
+     * @throws StateStoreException if no data was found for the requested Task, or if fetching the
+     *                             TaskStatus otherwise fails
+     */
+    Versioned<Protos.TaskStatus> fetchVersionedStatus(String taskName) throws StateStoreException;
+
+
+    /**
+     * Stores a TaskInfo only if the stored TaskInfo hasn't changed since it was read, so that
+     * concurrent schedulers can't overwrite each other's changes.
+     *
+     * @param taskInfo The TaskInfo to be stored
+     * @param expectedVersion The version returned by {@link #fetchVersionedTask(String)}, or
+     *                        {@link Persister#ABSENT_VERSION} if the Task must not exist yet
+     * @return The version of the stored TaskInfo
+     * @throws StateStoreConflictException if the stored TaskInfo is not at the expected version
+     * @throws StateStoreException if storing the TaskInfo otherwise fails
+     */
+    int storeTask(Protos.TaskInfo taskInfo, int expectedVersion) throws StateStoreException;
+
+
+    /**
+     * Stores a TaskStatus only if the stored TaskStatus hasn't changed since it was read. The
+     * TaskStatus must meet the requirements of {@link #storeStatus(Protos.TaskStatus)}.
+     *
+     * @param status The status to be stored
+     * @param expectedVersion The version returned by {@link #fetchVersionedStatus(String)}, or
+     *                        {@link Persister#ABSENT_VERSION} if the Task must not have a status yet
+     * @return The version of the stored TaskStatus
+     * @throws StateStoreConflictException if the stored TaskStatus is not at the expected version
+     * @throws StateStoreException if storing the TaskStatus otherwise fails, or if its TaskId is
+     * malformed, or if its matching TaskInfo wasn't stored first
+     */
+    int storeStatus(Protos.TaskStatus status, int expectedVersion) throws StateStoreException;
+
+
+    // Query Tasks
+
+
+    /**
+     * Fetches the TaskInfos of all Tasks which were launched on a particular agent.
+     * Implementations which keep Tasks in memory should answer this from an index rather than
+     * scanning every Task, as this default implementation does.
+     *
+     * @param agentId The agent whose Tasks should be returned
+     * @return The matching TaskInfos, or an empty list if none are found
+     * @throws StateStoreException if fetching the TaskInfo information fails
+     */
+    default Collection<Protos.TaskInfo> fetchTasksByAgent(Protos.SlaveID agentId)
+            throws StateStoreException {
+        Collection<Protos.TaskInfo> tasks = new ArrayList<>();
+        for (Protos.TaskInfo taskInfo : fetchTasks()) {
+            if (taskInfo.hasSlaveId() && taskInfo.getSlaveId().equals(agentId)) {
+                tasks.add(taskInfo);
+            }
+        }
+        return tasks;
+    }
+
+
+    /**
+     * Fetches the TaskInfos of all Tasks whose latest stored {@link TaskStatus} is in a particular
+     * state. Tasks which lack a TaskStatus are never returned.
+     *
+     * @param state The state of the Tasks which should be returned
+     * @return The matching TaskInfos, or an empty list if none are found
+     * @throws StateStoreException if fetching the TaskInfo or TaskStatus information fails
+     */
+    default Collection<Protos.TaskInfo> fetchTasksByState(Protos.TaskState state)
+            throws StateStoreException {
+        Set<String> taskNames = new HashSet<>();
+        for (Protos.TaskStatus status : fetchStatuses()) {
+            if (status.getState() != state) {
+                continue;
+            }
+            try {
+                taskNames.add(TaskUtils.toTaskName(status.getTaskId()));
+            } catch (TaskException e) {
+                throw new StateStoreException(String.format(
+                        "Failed to parse the Task Name from TaskStatus.task_id: '%s'", status), e);
+            }
+        }
+
+        Collection<Protos.TaskInfo> tasks = new ArrayList<>();
+        for (Protos.TaskInfo taskInfo : fetchTasks()) {
+            if (taskNames.contains(taskInfo.getName())) {
+                tasks.add(taskInfo);
+            }
+        }
+        return tasks;
+    }
+
+
+    /**
+     * Fetches the TaskInfos of all Tasks which are labeled with a particular target configuration,
+     * as set by {@link TaskUtils#setTargetConfiguration(Protos.TaskInfo, UUID)}.
+     *
+     * @param configId The target configuration of the Tasks which should be returned
+     * @return The matching TaskInfos, or an empty list if none are found
+     * @throws StateStoreException if fetching the TaskInfo information fails
+     */
+    default Collection<Protos.TaskInfo> fetchTasksByConfig(UUID configId) throws StateStoreException {
+        Collection<Protos.TaskInfo> tasks = new ArrayList<>();
+        for (Protos.TaskInfo taskInfo : fetchTasks()) {
+            try {
+                if (configId.equals(TaskUtils.getTargetConfiguration(taskInfo))) {
+                    tasks.add(taskInfo);
+                }
+            } catch (TaskException | IllegalArgumentException e) {
+                // No valid target configuration
+            }
+        }
+        return tasks;
+    }
+
+
+    // Subscribe to Changes
+
+
+    /**
+     * Subscribes a listener to the TaskInfo and TaskStatus changes which are made to this store
+     * from now on. To follow the contents of the store without missing changes, subscribe before
+     * reading its current contents, and treat changes which were already read as idempotent.
+     *
+     * @param listener The listener to deliver changes to
+     * @return A subscription which stops delivery when closed
+     * @throws StateStoreException if this store doesn't support subscriptions
+     */
+    default StateStoreSubscription subscribe(StateStoreListener listener) throws StateStoreException {
+        return subscribe(listener, -1);
+    }
+
+
+    /**
+     * Subscribes a listener to the changes which follow a particular version, such as the version
+     * of a subscription which was closed earlier. If changes following that version are no longer
+     * retained, the listener is told so via {@link StateStoreListener#onChangesDropped(long)}.
+     *
+     * @param listener The listener to deliver changes to
+     * @param fromVersion The version of the last change which the listener has seen, or a negative
+     *                    value to only deliver changes which are made from now on
+     * @return A subscription which stops delivery when closed
+     * @throws StateStoreException if this store doesn't support subscriptions, or if the version
+     *                             is later than the latest change
+     */
+    default StateStoreSubscription subscribe(StateStoreListener listener, long fromVersion)
+            throws StateStoreException {
+        throw new StateStoreException(String.format(
+                "%s doesn't support subscriptions, use a CachingStateStore", getClass().getSimpleName()));
+    }
 }
@@ -0,0 +1,13 @@
+package org.apache.mesos.state;
+
+/**
+ * Exception that indicates that a conditional write to the state store was rejected, because the
+ * stored value was changed by another writer since it was read. The caller may re-read the value
+ * and retry.
+ */
+public class StateStoreConflictException extends StateStoreException {
+
+    public StateStoreConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
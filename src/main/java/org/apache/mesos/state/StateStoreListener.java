@@ -0,0 +1,24 @@
+package org.apache.mesos.state;
+
+/**
+ * A StateStoreListener receives the changes made to a {@link StateStore} after subscribing to it
+ * with {@link StateStore#subscribe(StateStoreListener)}. Calls for one subscription are made in
+ * order from a single thread at a time, and never from the thread which made the change.
+ */
+public interface StateStoreListener {
+
+    /**
+     * Called for each change, in version order.
+     */
+    void onChange(TaskChange change);
+
+    /**
+     * Called when changes which this listener has not received yet are no longer retained, because
+     * it fell too far behind or resumed from a version which is too old. The listener should re-read
+     * any state it depends on from the store, and will then receive the changes which follow
+     * {@code version}.
+     *
+     * @param version The version of the latest change which will not be delivered
+     */
+    void onChangesDropped(long version);
+}
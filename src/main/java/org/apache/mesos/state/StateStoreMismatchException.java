@@ -0,0 +1,13 @@
+package org.apache.mesos.state;
+
+/**
+ * Exception that indicates that a TaskStatus was rejected because its TaskId doesn't match that of
+ * the stored TaskInfo of its Task, which has been replaced since the status was produced. Storing
+ * the same status again will never succeed.
+ */
+public class StateStoreMismatchException extends StateStoreException {
+
+    public StateStoreMismatchException(String message) {
+        super(message);
+    }
+}
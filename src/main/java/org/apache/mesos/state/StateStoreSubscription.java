@@ -0,0 +1,20 @@
+package org.apache.mesos.state;
+
+import java.io.Closeable;
+
+/**
+ * A StateStoreSubscription is returned by {@link StateStore#subscribe(StateStoreListener)}, and
+ * stops the delivery of changes to its listener when closed.
+ */
+public interface StateStoreSubscription extends Closeable {
+
+    /**
+     * Returns the version of the latest change which was delivered or dropped, which may be passed
+     * to {@link StateStore#subscribe(StateStoreListener, long)} to resume from where this
+     * subscription stopped.
+     */
+    long getVersion();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,66 @@
+package org.apache.mesos.state;
+
+import org.apache.mesos.Protos;
+
+/**
+ * A TaskChange describes a single change to the TaskInfo or TaskStatus of a Task in a
+ * {@link StateStore}, as delivered to a {@link StateStoreListener}. Changes carry increasing
+ * versions, in the order in which they were applied to the store.
+ */
+public class TaskChange {
+
+    /**
+     * The kind of change which was made.
+     */
+    public enum Type {
+        TASK_UPDATED,
+        TASK_REMOVED,
+        STATUS_UPDATED,
+        STATUS_REMOVED
+    }
+
+    private final long version;
+    private final Type type;
+    private final String taskName;
+    private final Protos.TaskInfo taskInfo;
+    private final Protos.TaskStatus status;
+
+    TaskChange(long version, Type type, String taskName, Protos.TaskInfo taskInfo, Protos.TaskStatus status) {
+        this.version = version;
+        this.type = type;
+        this.taskName = taskName;
+        this.taskInfo = taskInfo;
+        this.status = status;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getTaskName() {
+        return taskName;
+    }
+
+    /**
+     * Returns the new TaskInfo of a {@link Type#TASK_UPDATED} change, or null otherwise.
+     */
+    public Protos.TaskInfo getTaskInfo() {
+        return taskInfo;
+    }
+
+    /**
+     * Returns the new TaskStatus of a {@link Type#STATUS_UPDATED} change, or null otherwise.
+     */
+    public Protos.TaskStatus getStatus() {
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TaskChange[version=%d, type=%s, taskName=%s]", version, type, taskName);
+    }
+}
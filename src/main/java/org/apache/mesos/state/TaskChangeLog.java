@@ -0,0 +1,201 @@
+package org.apache.mesos.state;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.mesos.Protos;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * TaskChangeLog retains the most recent changes made to a store, and delivers them to subscribed
+ * {@link StateStoreListener}s. Each subscription reads the log from its own position on a thread of
+ * a shared pool, so slow listeners never block writers or each other. Instead, a listener which
+ * falls further behind than the log retains is told that changes were dropped, and continues from
+ * the oldest change which is still retained.
+ *
+ * Versions are assigned in-process, starting after zero, and are not persisted.
+ */
+class TaskChangeLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskChangeLog.class);
+
+    static final int DEFAULT_CAPACITY = 10000;
+
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private final ExecutorService executor;
+
+    // All guarded by 'this'. The change with version v is at index v % capacity.
+    private final TaskChange[] changes;
+    private final Set<Subscription> subscriptions = new HashSet<>();
+    private long latestVersion = 0;
+
+    TaskChangeLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The number of changes to retain for listeners which are behind
+     */
+    TaskChangeLog(int capacity) {
+        this.changes = new TaskChange[capacity];
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "TaskChangeLog-delivery");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    void taskUpdated(Protos.TaskInfo taskInfo) {
+        append(TaskChange.Type.TASK_UPDATED, taskInfo.getName(), taskInfo, null);
+    }
+
+    void taskRemoved(String taskName) {
+        append(TaskChange.Type.TASK_REMOVED, taskName, null, null);
+    }
+
+    void statusUpdated(String taskName, Protos.TaskStatus status) {
+        append(TaskChange.Type.STATUS_UPDATED, taskName, null, status);
+    }
+
+    void statusRemoved(String taskName) {
+        append(TaskChange.Type.STATUS_REMOVED, taskName, null, null);
+    }
+
+    /**
+     * Subscribes a listener to the changes which follow the provided version, or to changes which
+     * follow the latest version if it is negative.
+     */
+    synchronized StateStoreSubscription subscribe(StateStoreListener listener, long fromVersion) {
+        if (fromVersion > latestVersion) {
+            throw new StateStoreException(String.format(
+                    "Can't resume from version %d, which is after the latest version %d",
+                    fromVersion, latestVersion));
+        }
+        Subscription subscription = new Subscription(listener, fromVersion < 0 ? latestVersion : fromVersion);
+        subscriptions.add(subscription);
+        subscription.schedule();
+        return subscription;
+    }
+
+    /**
+     * Stops delivering changes to every subscription.
+     */
+    void close() {
+        synchronized (this) {
+            subscriptions.clear();
+        }
+        executor.shutdown();
+    }
+
+    private synchronized void append(TaskChange.Type type, String taskName,
+            Protos.TaskInfo taskInfo, Protos.TaskStatus status) {
+        latestVersion++;
+        changes[(int) (latestVersion % changes.length)] =
+                new TaskChange(latestVersion, type, taskName, taskInfo, status);
+        for (Subscription subscription : subscriptions) {
+            subscription.schedule();
+        }
+    }
+
+    private class Subscription implements StateStoreSubscription, Runnable {
+        private final StateStoreListener listener;
+
+        // Guarded by the enclosing log
+        private long version;
+        private boolean scheduled = false;
+
+        private Subscription(StateStoreListener listener, long version) {
+            this.listener = listener;
+            this.version = version;
+        }
+
+        @Override
+        public long getVersion() {
+            synchronized (TaskChangeLog.this) {
+                return version;
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (TaskChangeLog.this) {
+                subscriptions.remove(this);
+            }
+        }
+
+        /**
+         * Starts delivering changes unless delivery is already underway. Must be called while
+         * holding the log lock.
+         */
+        private void schedule() {
+            if (!scheduled && version < latestVersion && !executor.isShutdown()) {
+                scheduled = true;
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                long droppedVersion = -1;
+                List<TaskChange> batch = new ArrayList<>();
+                synchronized (TaskChangeLog.this) {
+                    if (!subscriptions.contains(this) || version >= latestVersion) {
+                        scheduled = false;
+                        return;
+                    }
+                    long fromVersion = version;
+                    long oldestVersion = Math.max(1, latestVersion - changes.length + 1);
+                    if (fromVersion + 1 < oldestVersion) {
+                        droppedVersion = oldestVersion - 1;
+                        fromVersion = droppedVersion;
+                    }
+                    long lastBatchVersion = Math.min(latestVersion, fromVersion + MAX_BATCH_SIZE);
+                    for (long v = fromVersion + 1; v <= lastBatchVersion; v++) {
+                        batch.add(changes[(int) (v % changes.length)]);
+                    }
+                }
+
+                // The version only advances once the listener has returned, so that it never
+                // reports a change which the listener is still handling as seen.
+                if (droppedVersion >= 0) {
+                    logger.warn("Listener {} fell behind, dropped changes up to version {}", listener, droppedVersion);
+                    try {
+                        listener.onChangesDropped(droppedVersion);
+                    } catch (Exception e) {
+                        logger.error("Listener {} failed to handle dropped changes", listener, e);
+                    }
+                    synchronized (TaskChangeLog.this) {
+                        version = droppedVersion;
+                    }
+                }
+                for (TaskChange change : batch) {
+                    synchronized (TaskChangeLog.this) {
+                        if (!subscriptions.contains(this)) {
+                            break;
+                        }
+                    }
+                    try {
+                        listener.onChange(change);
+                    } catch (Exception e) {
+                        logger.error("Listener {} failed to handle {}", listener, change, e);
+                    }
+                    synchronized (TaskChangeLog.this) {
+                        version = change.getVersion();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.apache.mesos.state;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.mesos.Protos;
+import org.apache.mesos.offer.TaskException;
+import org.apache.mesos.offer.TaskUtils;
+
+/**
+ * TaskIndex maps the agent, state and target configuration of Tasks to their names, so that Tasks
+ * may be looked up by any of them without scanning every Task. It is updated as TaskInfos and
+ * TaskStatuses are stored and removed, and is not thread-safe.
+ */
+class TaskIndex {
+
+    private final Map<String, Set<String>> tasksByAgent = new HashMap<>();
+    private final Map<Protos.TaskState, Set<String>> tasksByState = new EnumMap<>(Protos.TaskState.class);
+    private final Map<UUID, Set<String>> tasksByConfig = new HashMap<>();
+
+    // The keys under which each Task is currently indexed
+    private final Map<String, String> agentOfTask = new HashMap<>();
+    private final Map<String, Protos.TaskState> stateOfTask = new HashMap<>();
+    private final Map<String, UUID> configOfTask = new HashMap<>();
+
+    void putTask(Protos.TaskInfo taskInfo) {
+        String taskName = taskInfo.getName();
+        reindex(tasksByAgent, agentOfTask, taskName,
+                taskInfo.hasSlaveId() ? taskInfo.getSlaveId().getValue() : null);
+        reindex(tasksByConfig, configOfTask, taskName, getTargetConfiguration(taskInfo));
+    }
+
+    void removeTask(String taskName) {
+        reindex(tasksByAgent, agentOfTask, taskName, null);
+        reindex(tasksByConfig, configOfTask, taskName, null);
+    }
+
+    void putStatus(String taskName, Protos.TaskStatus status) {
+        reindex(tasksByState, stateOfTask, taskName, status.getState());
+    }
+
+    void removeStatus(String taskName) {
+        reindex(tasksByState, stateOfTask, taskName, null);
+    }
+
+    Set<String> getTasksByAgent(String agentId) {
+        return get(tasksByAgent, agentId);
+    }
+
+    Set<String> getTasksByState(Protos.TaskState state) {
+        return get(tasksByState, state);
+    }
+
+    Set<String> getTasksByConfig(UUID configId) {
+        return get(tasksByConfig, configId);
+    }
+
+    /**
+     * Returns the target configuration of a Task, or null if it doesn't have a valid one.
+     */
+    static UUID getTargetConfiguration(Protos.TaskInfo taskInfo) {
+        try {
+            return TaskUtils.getTargetConfiguration(taskInfo);
+        } catch (TaskException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static <K> Set<String> get(Map<K, Set<String>> index, K key) {
+        Set<String> taskNames = index.get(key);
+        return taskNames != null ? Collections.unmodifiableSet(taskNames) : Collections.<String>emptySet();
+    }
+
+    /**
+     * Moves a Task to the provided key of an index, or removes it from the index if the key is null.
+     */
+    private static <K> void reindex(
+            Map<K, Set<String>> index, Map<String, K> keyOfTask, String taskName, K key) {
+        K oldKey = key != null ? keyOfTask.put(taskName, key) : keyOfTask.remove(taskName);
+        if (oldKey != null && !oldKey.equals(key)) {
+            Set<String> taskNames = index.get(oldKey);
+            taskNames.remove(taskName);
+            if (taskNames.isEmpty()) {
+                index.remove(oldKey);
+            }
+        }
+        if (key != null) {
+            Set<String> taskNames = index.get(key);
+            if (taskNames == null) {
+                taskNames = new LinkedHashSet<>();
+                index.put(key, taskNames);
+            }
+            taskNames.add(taskName);
+        }
+    }
+}
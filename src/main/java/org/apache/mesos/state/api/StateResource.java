@@ -1,14 +1,23 @@
 package org.apache.mesos.state.api;
 
+import java.io.Closeable;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
-import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 
 import org.apache.mesos.state.StateStore;
+import org.apache.mesos.state.StateStoreException;
+import org.apache.mesos.state.StateStoreListener;
+import org.apache.mesos.state.StateStoreSubscription;
+import org.apache.mesos.state.TaskChange;
+import org.apache.mesos.util.EntityTags;
 import org.json.JSONArray;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,16 +26,69 @@ import com.googlecode.protobuf.format.JsonFormat;
 
 /**
  * A read-only API for accessing task and frameworkId state from persistent storage.
+ *
+ * Responses carry an ETag, and a client which sends it back in an If-None-Match header receives a
+ * 304 (Not Modified) response while the content is unchanged. If the {@link StateStore} supports
+ * {@link StateStore#subscribe(StateStoreListener) subscriptions}, the serialized task data is also
+ * kept in memory, and is dropped as changes to the tasks are delivered.
  */
 @Path("/v1/state")
-public class StateResource {
+public class StateResource implements Closeable {
 
     private static final Logger logger = LoggerFactory.getLogger(StateResource.class);
 
+    private static final String TASK_NAMES_KEY = "tasks";
+    private static final String TASK_INFO_KEY_PREFIX = "info/";
+    private static final String TASK_STATUS_KEY_PREFIX = "status/";
+
     private final StateStore stateStore;
+    private final StateStoreSubscription subscription;
+
+    // Guarded by 'this'. The generation is incremented whenever an entry is invalidated, so that
+    // content which was fetched before an invalidation isn't cached after it.
+    private final Map<String, CachedJson> cache = new HashMap<>();
+    private long generation = 0;
 
     public StateResource(StateStore stateStore) {
         this.stateStore = stateStore;
+        this.subscription = subscribe(stateStore, new StateStoreListener() {
+            @Override
+            public void onChange(TaskChange change) {
+                switch (change.getType()) {
+                case TASK_UPDATED:
+                case TASK_REMOVED:
+                    invalidate(TASK_NAMES_KEY, TASK_INFO_KEY_PREFIX + change.getTaskName());
+                    break;
+                case STATUS_UPDATED:
+                case STATUS_REMOVED:
+                    invalidate(TASK_STATUS_KEY_PREFIX + change.getTaskName());
+                    break;
+                default:
+                    invalidateAll();
+                    break;
+                }
+            }
+
+            @Override
+            public void onChangesDropped(long version) {
+                invalidateAll();
+            }
+        });
+    }
+
+    /**
+     * Stops following changes to the store, and drops any cached data.
+     */
+    @Override
+    public void close() {
+        if (subscription != null) {
+            subscription.close();
+        }
+        invalidateAll();
+    }
+
+    public Response getFrameworkId() {
+        return getFrameworkId(null);
     }
 
     /**
@@ -34,43 +96,62 @@ public class StateResource {
      */
     @Path("/frameworkId")
     @GET
-    public Response getFrameworkId() {
+    public Response getFrameworkId(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         try {
             JSONArray idArray = new JSONArray(
                     Arrays.asList(stateStore.fetchFrameworkId().getValue()));
-            return Response.ok(idArray.toString(), MediaType.APPLICATION_JSON).build();
+            String json = idArray.toString();
+            return EntityTags.okOrNotModified(json, EntityTags.fromContent(json), ifNoneMatch);
         } catch (Exception ex) {
             logger.error("Failed to fetch target configuration", ex);
             return Response.serverError().build();
         }
     }
 
+    public Response getTaskNames() {
+        return getTaskNames(null);
+    }
+
     /**
      * Produces a listing of the names of all stored tasks.
      */
     @Path("/tasks")
     @GET
-    public Response getTaskNames() {
+    public Response getTaskNames(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         try {
-            JSONArray nameArray = new JSONArray(stateStore.fetchTaskNames());
-            return Response.ok(nameArray.toString(), MediaType.APPLICATION_JSON).build();
+            return getCached(TASK_NAMES_KEY, new JsonSupplier() {
+                @Override
+                public String get() throws Exception {
+                    return new JSONArray(stateStore.fetchTaskNames()).toString();
+                }
+            }).toResponse(ifNoneMatch);
         } catch (Exception ex) {
             logger.error("Failed to fetch list of task names", ex);
             return Response.serverError().build();
         }
     }
 
+    public Response getTaskInfo(String taskName) {
+        return getTaskInfo(taskName, null);
+    }
+
     /**
      * Produces the TaskInfo for the provided task name, or returns an error if that name doesn't
      * exist or the data couldn't be read.
      */
     @Path("/tasks/info/{taskName}")
     @GET
-    public Response getTaskInfo(@PathParam("taskName") String taskName) {
+    public Response getTaskInfo(
+            @PathParam("taskName") final String taskName,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         try {
             logger.info("Attempting to fetch TaskInfo for task '{}'", taskName);
-            return Response.ok(new JsonFormat().printToString(stateStore.fetchTask(taskName)),
-                    MediaType.APPLICATION_JSON).build();
+            return getCached(TASK_INFO_KEY_PREFIX + taskName, new JsonSupplier() {
+                @Override
+                public String get() throws Exception {
+                    return new JsonFormat().printToString(stateStore.fetchTask(taskName));
+                }
+            }).toResponse(ifNoneMatch);
         } catch (Exception ex) {
             // Warning instead of Error: Subject to user input
             logger.warn(String.format(
@@ -79,6 +160,10 @@ public class StateResource {
         }
     }
 
+    public Response getTaskStatus(String taskName) {
+        return getTaskStatus(taskName, null);
+    }
+
     /**
      * Produces the TaskStatus for the provided task name, or returns an error if that data doesn't
      * exist or the data couldn't be read. This may fail even if the task name is valid if
@@ -86,11 +171,17 @@ public class StateResource {
      */
     @Path("/tasks/status/{taskName}")
     @GET
-    public Response getTaskStatus(@PathParam("taskName") String taskName) {
+    public Response getTaskStatus(
+            @PathParam("taskName") final String taskName,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         try {
             logger.info("Attempting to fetch TaskInfo for task '{}'", taskName);
-            return Response.ok(new JsonFormat().printToString(stateStore.fetchStatus(taskName)),
-                    MediaType.APPLICATION_JSON).build();
+            return getCached(TASK_STATUS_KEY_PREFIX + taskName, new JsonSupplier() {
+                @Override
+                public String get() throws Exception {
+                    return new JsonFormat().printToString(stateStore.fetchStatus(taskName));
+                }
+            }).toResponse(ifNoneMatch);
         } catch (Exception ex) {
             // Warning instead of Error: Subject to user input
             logger.warn(String.format(
@@ -98,4 +189,73 @@ public class StateResource {
             return Response.serverError().build();
         }
     }
+
+    /**
+     * Returns the number of serialized responses which are currently cached.
+     */
+    synchronized int getCachedCount() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the cached JSON for the provided key, or fetches it, caching it if the store's
+     * changes are being followed.
+     */
+    private CachedJson getCached(String key, JsonSupplier supplier) throws Exception {
+        long fetchGeneration;
+        synchronized (this) {
+            CachedJson cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            fetchGeneration = generation;
+        }
+
+        CachedJson fetched = new CachedJson(supplier.get());
+        synchronized (this) {
+            if (subscription != null && generation == fetchGeneration) {
+                cache.put(key, fetched);
+            }
+        }
+        return fetched;
+    }
+
+    private synchronized void invalidate(String... keys) {
+        generation++;
+        for (String key : keys) {
+            cache.remove(key);
+        }
+    }
+
+    private synchronized void invalidateAll() {
+        generation++;
+        cache.clear();
+    }
+
+    private static StateStoreSubscription subscribe(StateStore stateStore, StateStoreListener listener) {
+        try {
+            return stateStore.subscribe(listener);
+        } catch (StateStoreException e) {
+            logger.info("Not caching state responses: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private interface JsonSupplier {
+        String get() throws Exception;
+    }
+
+    private static class CachedJson {
+        private final String json;
+        private final String etag;
+
+        private CachedJson(String json) {
+            this.json = json;
+            this.etag = EntityTags.fromContent(json);
+        }
+
+        private Response toResponse(String ifNoneMatch) {
+            return EntityTags.okOrNotModified(json, etag, ifNoneMatch);
+        }
+    }
 }
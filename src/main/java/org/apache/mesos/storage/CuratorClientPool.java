@@ -0,0 +1,126 @@
+package org.apache.mesos.storage;
+
+import org.apache.curator.RetryPolicy;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.imps.CuratorFrameworkState;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.curator.framework.state.ConnectionStateListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The CuratorClientPool shares one started {@link CuratorFramework} between all users of the same
+ * Zookeeper connection string, so that stores in one process share a single ZK session, thread pool
+ * and watcher instead of each opening their own. Clients are reference counted through
+ * {@link Lease}s, and are closed once their last lease is closed.
+ *
+ * The {@link RetryPolicy} of the first lease for a connection string applies to every later lease
+ * until the client is closed. Connection state changes of pooled clients are logged, and further
+ * listeners may be added through {@link CuratorFramework#getConnectionStateListenable()}.
+ */
+public class CuratorClientPool {
+    private static final Logger logger = LoggerFactory.getLogger(CuratorClientPool.class);
+
+    private static final CuratorClientPool DEFAULT_POOL = new CuratorClientPool();
+
+    private final Map<String, PooledClient> clients = new HashMap<>();
+
+    /**
+     * Returns the pool used by stores which are created from a connection string.
+     */
+    public static CuratorClientPool getDefault() {
+        return DEFAULT_POOL;
+    }
+
+    /**
+     * Returns a lease on the started client for the provided connection string, creating it if
+     * needed.
+     */
+    public synchronized Lease acquire(final String connectionString, RetryPolicy retryPolicy) {
+        PooledClient pooledClient = clients.get(connectionString);
+        if (pooledClient == null || pooledClient.client.getState() == CuratorFrameworkState.STOPPED) {
+            CuratorFramework client = CuratorFrameworkFactory.newClient(connectionString, retryPolicy);
+            client.getConnectionStateListenable().addListener(new ConnectionStateListener() {
+                @Override
+                public void stateChanged(CuratorFramework client, ConnectionState newState) {
+                    if (newState.isConnected()) {
+                        logger.info("Zookeeper connection to '{}' is {}", connectionString, newState);
+                    } else {
+                        logger.warn("Zookeeper connection to '{}' is {}", connectionString, newState);
+                    }
+                }
+            });
+            client.start();
+            pooledClient = new PooledClient(client);
+            clients.put(connectionString, pooledClient);
+        }
+
+        pooledClient.leases++;
+        return new Lease(connectionString, pooledClient);
+    }
+
+    /**
+     * Returns the number of clients which are currently open.
+     */
+    public synchronized int size() {
+        return clients.size();
+    }
+
+    private synchronized void release(String connectionString, PooledClient pooledClient) {
+        pooledClient.leases--;
+        if (pooledClient.leases == 0) {
+            logger.info("Closing Zookeeper client for '{}'", connectionString);
+            pooledClient.client.close();
+            if (clients.get(connectionString) == pooledClient) {
+                clients.remove(connectionString);
+            }
+        }
+    }
+
+    /**
+     * A reference to a pooled client, which must be closed once it is no longer used.
+     */
+    public class Lease implements Closeable {
+        private final String connectionString;
+        private final PooledClient pooledClient;
+        private boolean closed = false;
+
+        private Lease(String connectionString, PooledClient pooledClient) {
+            this.connectionString = connectionString;
+            this.pooledClient = pooledClient;
+        }
+
+        public CuratorFramework getClient() {
+            return pooledClient.client;
+        }
+
+        /**
+         * Releases the client, closing it if no other leases remain. Closing a lease twice has no
+         * further effect.
+         */
+        @Override
+        public void close() {
+            synchronized (CuratorClientPool.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                release(connectionString, pooledClient);
+            }
+        }
+    }
+
+    private static class PooledClient {
+        private final CuratorFramework client;
+        private int leases = 0;
+
+        private PooledClient(CuratorFramework client) {
+            this.client = client;
+        }
+    }
+}
@@ -2,35 +2,560 @@ package org.apache.mesos.storage;
 
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
-import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
+import org.apache.curator.framework.api.transaction.CuratorTransactionResult;
+import org.apache.curator.framework.api.transaction.OperationType;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The CuratorPersistor implemenation of the Persister interface
  * provides for persistence and retrieval of data from Zookeeper.
+ *
+ * Values may optionally be compressed, and values which would exceed the size limit of a ZNode are
+ * split across child nodes, as described by {@link ValueCodec}. Both forms are always readable, as
+ * are values which were stored as is.
+ *
+ * Persisters which are created from a connection string share a client with every other user of
+ * that connection string through the default {@link CuratorClientPool}, and release it on
+ * {@link #close()}. Persisters which are given a client leave its lifecycle to the caller.
  */
-public class CuratorPersister implements Persister {
-    private CuratorFramework client;
+public class CuratorPersister implements Persister, Closeable {
+    private static final int DEFAULT_MAX_IN_FLIGHT_READS = 64;
+    private static final int MAX_TRANSACTION_ATTEMPTS = 3;
+    private static final int MIN_COMPRESSION_BYTES = 256;
+    // Well below ZK's default 1 MB limit, which also covers the request framing
+    private static final int CHUNK_BYTES = 512 * 1024;
+    // The budget for one multi-op transaction, leaving room below ZK's 1 MB request limit
+    private static final int MAX_TRANSACTION_BYTES = 768 * 1024;
+    // A conservative estimate of the framing and ACL sent with each operation of a transaction
+    private static final int TRANSACTION_OP_OVERHEAD_BYTES = 128;
+    private static final String CHUNK_NAME_PREFIX = "__chunk-";
+
+    private final CuratorFramework client;
+    private final CuratorClientPool.Lease lease;
+    private final boolean compress;
 
     public CuratorPersister(String connectionString, RetryPolicy retryPolicy) {
-        this.client = CuratorFrameworkFactory.newClient(connectionString, retryPolicy);
-        this.client.start();
+        this(connectionString, retryPolicy, false);
+    }
+
+    /**
+     * @param compress Whether values should be compressed when doing so makes them smaller
+     */
+    public CuratorPersister(String connectionString, RetryPolicy retryPolicy, boolean compress) {
+        this(CuratorClientPool.getDefault().acquire(connectionString, retryPolicy), compress);
+    }
+
+    /**
+     * Creates a persister which uses the provided started client. The client is not closed by
+     * {@link #close()}.
+     */
+    public CuratorPersister(CuratorFramework client) {
+        this(client, false);
+    }
+
+    /**
+     * Creates a persister which uses the provided started client. The client is not closed by
+     * {@link #close()}.
+     *
+     * @param compress Whether values should be compressed when doing so makes them smaller
+     */
+    public CuratorPersister(CuratorFramework client, boolean compress) {
+        this.client = client;
+        this.lease = null;
+        this.compress = compress;
+    }
+
+    private CuratorPersister(CuratorClientPool.Lease lease, boolean compress) {
+        this.client = lease.getClient();
+        this.lease = lease;
+        this.compress = compress;
+    }
+
+    /**
+     * Releases the client, if it was acquired from the {@link CuratorClientPool}.
+     */
+    @Override
+    public void close() {
+        if (lease != null) {
+            lease.close();
+        }
+    }
+
+    /**
+     * Returns the underlying client, so that watches may be registered against the same session
+     * which is used for reads and writes.
+     */
+    public CuratorFramework getClient() {
+        return client;
     }
 
     @Override
     public void store(String path, byte[] bytes) throws Exception {
+        byte[] data = encode(path, bytes);
         try {
-            client.create().creatingParentsIfNeeded().forPath(path, bytes);
+            client.create().creatingParentsIfNeeded().forPath(path, data);
         } catch (KeeperException.NodeExistsException e) {
-            client.setData().forPath(path, bytes);
+            Stat stat = client.setData().forPath(path, data);
+            if (stat.getNumChildren() > 0) {
+                removeStaleChunks(path, data);
+            }
         }
     }
 
+    /**
+     * Stores data at a path if it is at the expected version, using the ZNode's data version.
+     *
+     * A value which is split into chunks needs its node to exist before the chunks can be written
+     * below it, so when such a value is stored at {@link #ABSENT_VERSION} the node is first created
+     * empty, and reads as empty until the value is complete.
+     */
+    @Override
+    public int store(String path, byte[] bytes, int expectedVersion) throws Exception {
+        byte[] deflated = deflateIfSmaller(bytes);
+        boolean chunked = isChunked(bytes, deflated);
+        if (expectedVersion == ABSENT_VERSION) {
+            try {
+                client.create().creatingParentsIfNeeded().forPath(
+                        path, chunked ? new byte[0] : encode(path, bytes, deflated, false));
+            } catch (KeeperException.NodeExistsException e) {
+                throw new KeeperException.BadVersionException(path);
+            }
+            if (!chunked) {
+                return 0;
+            }
+            expectedVersion = 0;
+        } else if (chunked && client.checkExists().forPath(path) == null) {
+            // Writing the chunks would otherwise create the node.
+            throw new KeeperException.BadVersionException(path);
+        }
+
+        byte[] data = encode(path, bytes, deflated, chunked);
+        Stat stat;
+        try {
+            stat = client.setData().withVersion(expectedVersion).forPath(path, data);
+        } catch (KeeperException.NoNodeException e) {
+            throw new KeeperException.BadVersionException(path);
+        } catch (KeeperException.BadVersionException e) {
+            if (chunked) {
+                try {
+                    removeStaleChunks(path, client.getData().forPath(path));
+                } catch (KeeperException.NoNodeException noNodeException) {
+                    // The node and its chunks were removed by another writer
+                }
+            }
+            throw e;
+        }
+        if (stat.getNumChildren() > 0) {
+            removeStaleChunks(path, data);
+        }
+        return stat.getVersion();
+    }
+
     @Override
     public byte[] fetch(String path) throws Exception {
-        return client.getData().forPath(path);
+        return decode(path, client.getData().forPath(path));
+    }
+
+    @Override
+    public Versioned<byte[]> fetchVersioned(String path) throws Exception {
+        Stat stat = new Stat();
+        byte[] data = client.getData().storingStatIn(stat).forPath(path);
+        return new Versioned<>(decode(path, data), stat.getVersion());
+    }
+
+    @Override
+    public Map<String, byte[]> fetch(Collection<String> paths) throws Exception {
+        return fetch(paths, DEFAULT_MAX_IN_FLIGHT_READS);
+    }
+
+    /**
+     * Fetches the data at each of the provided paths using pipelined background reads, so that the
+     * fetch takes roughly one round trip per {@code maxInFlight} paths rather than one per path.
+     *
+     * @param maxInFlight The maximum number of reads which may be outstanding at once
+     * @throws KeeperException for the first read which failed for a reason other than the path not
+     *                         existing
+     */
+    public Map<String, byte[]> fetch(Collection<String> paths, int maxInFlight) throws Exception {
+        Map<String, CuratorEvent> events = runPipelined(paths, maxInFlight, new PathOperation() {
+            @Override
+            public void start(String path, BackgroundCallback callback) throws Exception {
+                client.getData().inBackground(callback).forPath(path);
+            }
+        });
+
+        Map<String, byte[]> results = new LinkedHashMap<>();
+        for (Map.Entry<String, CuratorEvent> entry : events.entrySet()) {
+            results.put(entry.getKey(), decode(entry.getKey(), entry.getValue().getData()));
+        }
+        return results;
+    }
+
+    /**
+     * Stores all of the provided data in a single ZK multi-op transaction, so that either every
+     * path is written or none are. Missing parent nodes are created as part of the transaction.
+     *
+     * To keep the transaction within ZK's request size limit, values which don't fit in what
+     * remains of its budget are written as chunks ahead of it, leaving only a small header for the
+     * transaction to commit. Chunks of values which end up not being committed are removed again.
+     *
+     * @throws IllegalArgumentException if the headers of the provided paths exceed the transaction
+     *                                  budget by themselves, in which case nothing is stored and
+     *                                  the caller should store the paths in smaller batches
+     */
+    @Override
+    public void store(Map<String, byte[]> pathBytesMap) throws Exception {
+        if (pathBytesMap.isEmpty()) {
+            return;
+        }
+
+        Map<String, byte[]> encodedPathDataMap = new LinkedHashMap<>();
+        // Nodes which are created as the parents of chunks, to be removed if nothing is committed
+        Set<String> chunkParents = new HashSet<>();
+        try {
+            Set<String> transactionParents = new HashSet<>();
+            long transactionBytes = 0;
+            for (Map.Entry<String, byte[]> entry : pathBytesMap.entrySet()) {
+                String path = entry.getKey();
+                byte[] bytes = entry.getValue();
+
+                long parentBytes = 0;
+                for (String parent : getParents(path)) {
+                    if (!transactionParents.contains(parent)) {
+                        parentBytes += getOperationBytes(parent, 0);
+                    }
+                }
+                if (transactionBytes + parentBytes + getOperationBytes(path, ValueCodec.CHUNKED_HEADER_BYTES)
+                        > MAX_TRANSACTION_BYTES) {
+                    throw new IllegalArgumentException(String.format(
+                            "Storing %d paths atomically exceeds the transaction limit of %d bytes",
+                            pathBytesMap.size(), MAX_TRANSACTION_BYTES));
+                }
+
+                byte[] deflated = deflateIfSmaller(bytes);
+                int inlineLength = (deflated != null ? deflated : bytes).length + ValueCodec.HEADER_BYTES;
+                boolean chunked = isChunked(bytes, deflated)
+                        || transactionBytes + parentBytes + getOperationBytes(path, inlineLength) > MAX_TRANSACTION_BYTES;
+                if (chunked && client.checkExists().forPath(path) == null) {
+                    chunkParents.add(path);
+                }
+                byte[] data = encode(path, bytes, deflated, chunked);
+                encodedPathDataMap.put(path, data);
+
+                transactionParents.addAll(getParents(path));
+                transactionBytes += parentBytes + getOperationBytes(path, data.length);
+            }
+
+            storeTransactionWithRetries(encodedPathDataMap);
+        } catch (Exception e) {
+            // Remove the chunks of every value, as nothing refers to them.
+            for (Map.Entry<String, byte[]> entry : encodedPathDataMap.entrySet()) {
+                removeChunks(entry.getKey(), entry.getValue());
+                if (chunkParents.contains(entry.getKey())) {
+                    removeUnwrittenNode(entry.getKey());
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void storeTransactionWithRetries(Map<String, byte[]> pathDataMap) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                storeTransaction(pathDataMap);
+                return;
+            } catch (KeeperException.NodeExistsException | KeeperException.NoNodeException e) {
+                // Another client created or removed one of the nodes after we checked for it.
+                if (attempt >= MAX_TRANSACTION_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes which an operation writing the provided amount of data to a path
+     * adds to a transaction.
+     */
+    private static long getOperationBytes(String path, int dataLength) {
+        return TRANSACTION_OP_OVERHEAD_BYTES + path.length() + dataLength;
+    }
+
+    private void storeTransaction(Map<String, byte[]> pathDataMap) throws Exception {
+        // Check every path and its parents for existence in one pipelined round.
+        Set<String> paths = new LinkedHashSet<>();
+        for (String path : pathDataMap.keySet()) {
+            paths.addAll(getParents(path));
+            paths.add(path);
+        }
+        Set<String> existingPaths = runPipelined(paths, DEFAULT_MAX_IN_FLIGHT_READS, new PathOperation() {
+            @Override
+            public void start(String path, BackgroundCallback callback) throws Exception {
+                client.checkExists().inBackground(callback).forPath(path);
+            }
+        }).keySet();
+
+        CuratorTransaction transaction = client.inTransaction();
+        Set<String> createdParents = new HashSet<>();
+        for (Map.Entry<String, byte[]> entry : pathDataMap.entrySet()) {
+            for (String parent : getParents(entry.getKey())) {
+                if (!existingPaths.contains(parent) && createdParents.add(parent)) {
+                    transaction = transaction.create().forPath(parent, new byte[0]).and();
+                }
+            }
+
+            if (existingPaths.contains(entry.getKey())) {
+                transaction = transaction.setData().forPath(entry.getKey(), entry.getValue()).and();
+            } else {
+                transaction = transaction.create().forPath(entry.getKey(), entry.getValue()).and();
+            }
+        }
+        // The map is non-empty, so at least one operation has been added.
+        Collection<CuratorTransactionResult> results = ((CuratorTransactionFinal) transaction).commit();
+
+        for (CuratorTransactionResult result : results) {
+            if (result.getType() == OperationType.SET_DATA && result.getResultStat().getNumChildren() > 0) {
+                removeStaleChunks(result.getForPath(), pathDataMap.get(result.getForPath()));
+            }
+        }
+    }
+
+    /**
+     * Returns the value held in the data of a node, reading its chunks if it was split.
+     *
+     * @param path The path of the node, which is needed to find its chunks
+     * @param data The data of the node
+     */
+    public byte[] decode(String path, byte[] data) throws Exception {
+        ValueCodec.Header header = ValueCodec.parseHeader(data);
+        if (header == null) {
+            return data;
+        }
+
+        byte[] payload;
+        if (header.chunked) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (int i = 0; i < header.chunkCount; i++) {
+                out.write(client.getData().forPath(getChunkPath(path, header.generation, i)));
+            }
+            payload = out.toByteArray();
+        } else {
+            payload = ValueCodec.getInlinePayload(data);
+        }
+        return ValueCodec.decodePayload(header, payload);
+    }
+
+    /**
+     * Returns the data to store in the node for a value, after writing any chunks it is split into.
+     * Chunks are written under a new generation, so that readers never combine chunks of different
+     * values.
+     */
+    private byte[] encode(String path, byte[] bytes) throws Exception {
+        byte[] deflated = deflateIfSmaller(bytes);
+        return encode(path, bytes, deflated, isChunked(bytes, deflated));
+    }
+
+    /**
+     * @param deflated The compressed value, or null if it is stored uncompressed
+     * @param chunked Whether the value is written as chunks, which it must be if it
+     *                {@link #isChunked(byte[], byte[]) exceeds} the chunk size
+     */
+    private byte[] encode(String path, byte[] bytes, byte[] deflated, boolean chunked) throws Exception {
+        byte encoding = deflated != null ? ValueCodec.ENCODING_DEFLATE : ValueCodec.ENCODING_RAW;
+        byte[] payload = deflated != null ? deflated : bytes;
+
+        if (chunked) {
+            long generation = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+            int chunkCount = Math.max(1, (payload.length + CHUNK_BYTES - 1) / CHUNK_BYTES);
+            byte[] data = ValueCodec.encodeChunked(encoding, bytes.length, chunkCount, generation);
+            try {
+                for (int i = 0; i < chunkCount; i++) {
+                    byte[] chunk = Arrays.copyOfRange(
+                            payload, i * CHUNK_BYTES, Math.min(payload.length, (i + 1) * CHUNK_BYTES));
+                    client.create().creatingParentsIfNeeded().forPath(getChunkPath(path, generation, i), chunk);
+                }
+            } catch (Exception e) {
+                removeChunks(path, data);
+                throw e;
+            }
+            return data;
+        } else if (encoding == ValueCodec.ENCODING_RAW) {
+            return bytes;
+        } else {
+            return ValueCodec.encodeInline(encoding, bytes.length, payload);
+        }
+    }
+
+    /**
+     * Returns the compressed value if compression is enabled and makes it smaller, or null.
+     */
+    private byte[] deflateIfSmaller(byte[] bytes) {
+        if (compress && bytes.length >= MIN_COMPRESSION_BYTES) {
+            byte[] deflated = ValueCodec.deflate(bytes);
+            if (deflated.length < bytes.length) {
+                return deflated;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isChunked(byte[] bytes, byte[] deflated) {
+        return (deflated != null ? deflated : bytes).length > CHUNK_BYTES;
+    }
+
+    /**
+     * Removes the chunks of a node which don't belong to the value now stored in it.
+     */
+    private void removeStaleChunks(String path, byte[] data) throws Exception {
+        ValueCodec.Header header = ValueCodec.parseHeader(data);
+        String currentPrefix = header != null && header.chunked
+                ? CHUNK_NAME_PREFIX + header.generation + "-"
+                : null;
+
+        for (String child : client.getChildren().forPath(path)) {
+            if (child.startsWith(CHUNK_NAME_PREFIX) && (currentPrefix == null || !child.startsWith(currentPrefix))) {
+                try {
+                    client.delete().forPath(path + "/" + child);
+                } catch (KeeperException.NoNodeException e) {
+                    // Already removed by another writer
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the chunks which the provided node data refers to, if any, such as those of a value
+     * which failed to be stored.
+     */
+    private void removeChunks(String path, byte[] data) {
+        try {
+            ValueCodec.Header header = ValueCodec.parseHeader(data);
+            if (header == null || !header.chunked) {
+                return;
+            }
+            for (int i = 0; i < header.chunkCount; i++) {
+                try {
+                    client.delete().forPath(getChunkPath(path, header.generation, i));
+                } catch (KeeperException.NoNodeException e) {
+                    // Never written, or already removed
+                }
+            }
+        } catch (Exception e) {
+            // Left for removeStaleChunks() on the next write of the path
+        }
+    }
+
+    /**
+     * Removes a node which was created empty, unless it has since been written to.
+     */
+    private void removeUnwrittenNode(String path) {
+        try {
+            client.delete().withVersion(0).forPath(path);
+        } catch (Exception e) {
+            // Written to, given children, or already removed by another writer
+        }
+    }
+
+    private static String getChunkPath(String path, long generation, int index) {
+        return path + "/" + CHUNK_NAME_PREFIX + generation + "-" + index;
+    }
+
+    /**
+     * Returns the ancestors of a path below the root, shallowest first.
+     */
+    private static List<String> getParents(String path) {
+        List<String> parents = new ArrayList<>();
+        for (int i = path.indexOf('/', 1); i > 0; i = path.indexOf('/', i + 1)) {
+            parents.add(path.substring(0, i));
+        }
+        return parents;
+    }
+
+    /**
+     * Runs a background operation against each of the provided paths, keeping at most
+     * {@code maxInFlight} outstanding at once. Returns the events of the successful operations in
+     * the order of the paths, omitting paths which don't exist.
+     */
+    private static Map<String, CuratorEvent> runPipelined(
+            Collection<String> paths, int maxInFlight, PathOperation operation) throws Exception {
+        final Map<String, CuratorEvent> events = new ConcurrentHashMap<>();
+        final AtomicReference<KeeperException> error = new AtomicReference<>();
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        BackgroundCallback callback = new BackgroundCallback() {
+            @Override
+            public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
+                try {
+                    KeeperException.Code code = KeeperException.Code.get(event.getResultCode());
+                    if (code == KeeperException.Code.OK) {
+                        events.put(event.getPath(), event);
+                    } else if (code != KeeperException.Code.NONODE) {
+                        error.compareAndSet(null, KeeperException.create(code, event.getPath()));
+                    }
+                } finally {
+                    inFlight.release();
+                }
+            }
+        };
+
+        try {
+            for (String path : paths) {
+                inFlight.acquire();
+                if (error.get() != null) {
+                    inFlight.release();
+                    break;
+                }
+                try {
+                    operation.start(path, callback);
+                } catch (Exception e) {
+                    inFlight.release();
+                    throw e;
+                }
+            }
+        } finally {
+            // Wait for the outstanding operations to complete.
+            inFlight.acquire(maxInFlight);
+        }
+
+        if (error.get() != null) {
+            throw error.get();
+        }
+
+        Map<String, CuratorEvent> orderedEvents = new LinkedHashMap<>();
+        for (String path : paths) {
+            CuratorEvent event = events.get(path);
+            if (event != null) {
+                orderedEvents.put(path, event);
+            }
+        }
+        return orderedEvents;
+    }
+
+    /**
+     * A background operation against a single path.
+     */
+    private interface PathOperation {
+        void start(String path, BackgroundCallback callback) throws Exception;
     }
 
     @Override
@@ -40,6 +565,12 @@ public class CuratorPersister implements Persister {
 
     @Override
     public Collection<String> getChildren(String path) throws Exception {
-        return client.getChildren().forPath(path);
+        List<String> children = new ArrayList<>();
+        for (String child : client.getChildren().forPath(path)) {
+            if (!child.startsWith(CHUNK_NAME_PREFIX)) {
+                children.add(child);
+            }
+        }
+        return children;
     }
 }
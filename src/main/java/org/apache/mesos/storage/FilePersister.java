@@ -0,0 +1,567 @@
+package org.apache.mesos.storage;
+
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * The FilePersister implementation of the Persister interface stores data in a local directory, for
+ * deployments with a single scheduler which don't need Zookeeper. Paths form a tree with the same
+ * semantics as ZNodes: storing a path creates its missing parents, clearing a path removes its
+ * children, and missing paths are reported with {@link KeeperException.NoNodeException}.
+ *
+ * Changes are appended to a log of checksummed records, and the contents are held in memory so that
+ * reads never touch the disk. Writers wait until their record has been synced to disk, and writers
+ * which arrive while a sync is underway are covered together by the next one. The log is compacted
+ * into a snapshot of the current contents once most of it no longer describes them. A torn record
+ * at the end of the log, as left by a crash during a write, is discarded when the log is opened.
+ *
+ * A record which can't be written is truncated away, and the write fails without changing the
+ * contents. If a sync fails, the contents which are held in memory may no longer match the disk,
+ * so every later read and write fails until the persister is reopened.
+ */
+public class FilePersister implements Persister, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(FilePersister.class);
+
+    private static final String LOG_FILE_NAME = "state.log";
+    private static final String COMPACTION_FILE_NAME = "state.log.compact";
+    private static final String LOCK_FILE_NAME = "lock";
+    private static final long DEFAULT_MIN_COMPACTION_BYTES = 4 * 1024 * 1024;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final int RECORD_HEADER_BYTES = 8; // length + checksum
+    private static final int ENTRY_OVERHEAD_BYTES = 6; // path length + data length
+
+    private static final String ROOT_PATH = "/";
+
+    private final File logFile;
+    private final File compactionFile;
+    private final long minCompactionBytes;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+
+    // Guards 'syncedBytes' and the forcing of the log, and is acquired before 'this'
+    private final Object syncLock = new Object();
+    private long syncedBytes;
+
+    // All guarded by 'this'
+    private final Map<String, Node> nodes = new HashMap<>();
+    private FileChannel channel;
+    private IOException failure; // set once the log may no longer match the contents in memory
+    private long appendedBytes; // total bytes ever appended, including those since compacted away
+    private long logBytes; // size of the current log
+    private long liveBytes; // portion of the log which describes the current contents
+
+    /**
+     * Opens the store in the provided directory, creating it if needed.
+     *
+     * @throws IOException if the directory can't be read, or is in use by another process
+     */
+    public FilePersister(File directory) throws IOException {
+        this(directory, DEFAULT_MIN_COMPACTION_BYTES);
+    }
+
+    /**
+     * Opens the store in the provided directory, creating it if needed.
+     *
+     * @param minCompactionBytes The size below which the log is never compacted
+     * @throws IOException if the directory can't be read, or is in use by another process
+     */
+    public FilePersister(File directory, long minCompactionBytes) throws IOException {
+        Files.createDirectories(directory.toPath());
+        this.logFile = new File(directory, LOG_FILE_NAME);
+        this.compactionFile = new File(directory, COMPACTION_FILE_NAME);
+        this.minCompactionBytes = minCompactionBytes;
+
+        this.lockChannel = FileChannel.open(new File(directory, LOCK_FILE_NAME).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock fileLock;
+        try {
+            fileLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another FilePersister in this process
+            fileLock = null;
+        }
+        this.lock = fileLock;
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException(String.format("Directory '%s' is in use by another process", directory));
+        }
+
+        nodes.put(ROOT_PATH, new Node(new byte[0]));
+        this.channel = openLog(logFile);
+        replay();
+    }
+
+    @Override
+    public void store(String path, byte[] bytes) throws Exception {
+        Map<String, byte[]> pathBytesMap = new HashMap<>();
+        pathBytesMap.put(path, bytes);
+        store(pathBytesMap);
+    }
+
+    /**
+     * Stores all of the provided data in a single log record, so that either every path is stored
+     * or, following a crash during the write, none are.
+     */
+    @Override
+    public void store(Map<String, byte[]> pathBytesMap) throws Exception {
+        if (pathBytesMap.isEmpty()) {
+            return;
+        }
+        for (String path : pathBytesMap.keySet()) {
+            validatePath(path);
+        }
+        byte[] body = encodePut(pathBytesMap);
+
+        long position;
+        synchronized (this) {
+            position = append(body);
+            for (Map.Entry<String, byte[]> entry : pathBytesMap.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+        }
+        awaitSync(position);
+        maybeCompact();
+    }
+
+    /**
+     * Stores data at a path if it is at the expected version. Versions are kept in memory, and are
+     * only meaningful while this persister is open.
+     */
+    @Override
+    public int store(String path, byte[] bytes, int expectedVersion) throws Exception {
+        validatePath(path);
+        byte[] body = encodePut(Collections.singletonMap(path, bytes));
+
+        long position;
+        int version;
+        synchronized (this) {
+            checkNotFailed();
+            Node node = nodes.get(path);
+            if ((node != null ? node.version : ABSENT_VERSION) != expectedVersion) {
+                throw new KeeperException.BadVersionException(path);
+            }
+            position = append(body);
+            put(path, bytes);
+            version = nodes.get(path).version;
+        }
+        awaitSync(position);
+        maybeCompact();
+        return version;
+    }
+
+    @Override
+    public synchronized byte[] fetch(String path) throws Exception {
+        checkNotFailed();
+        Node node = nodes.get(path);
+        if (node == null) {
+            throw new KeeperException.NoNodeException(path);
+        }
+        return node.data;
+    }
+
+    @Override
+    public synchronized Versioned<byte[]> fetchVersioned(String path) throws Exception {
+        checkNotFailed();
+        Node node = nodes.get(path);
+        if (node == null) {
+            throw new KeeperException.NoNodeException(path);
+        }
+        return new Versioned<>(node.data, node.version);
+    }
+
+    @Override
+    public synchronized Map<String, byte[]> fetch(Collection<String> paths) throws Exception {
+        checkNotFailed();
+        Map<String, byte[]> results = new LinkedHashMap<>();
+        for (String path : paths) {
+            Node node = nodes.get(path);
+            if (node != null) {
+                results.put(path, node.data);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void clear(String path) throws Exception {
+        validatePath(path);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(OP_DELETE);
+        out.writeUTF(path);
+
+        long position;
+        synchronized (this) {
+            checkNotFailed();
+            if (!nodes.containsKey(path)) {
+                throw new KeeperException.NoNodeException(path);
+            }
+            position = append(body.toByteArray());
+            delete(path);
+        }
+        awaitSync(position);
+        maybeCompact();
+    }
+
+    @Override
+    public synchronized Collection<String> getChildren(String path) throws Exception {
+        checkNotFailed();
+        Node node = nodes.get(path);
+        if (node == null) {
+            throw new KeeperException.NoNodeException(path);
+        }
+        return new ArrayList<>(node.children);
+    }
+
+    /**
+     * Rewrites the log as a snapshot of the current contents.
+     */
+    public void compact() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                try (FileChannel compacted = FileChannel.open(compactionFile.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    long size = 0;
+                    for (String path : getPathsParentsFirst()) {
+                        Node node = nodes.get(path);
+                        ByteArrayOutputStream body = new ByteArrayOutputStream();
+                        DataOutputStream out = new DataOutputStream(body);
+                        out.writeByte(OP_PUT);
+                        out.writeInt(1);
+                        out.writeUTF(path);
+                        out.writeInt(node.data.length);
+                        out.write(node.data);
+
+                        byte[] record = frame(body.toByteArray());
+                        writeFully(compacted, record);
+                        node.recordBytes = record.length;
+                        size += record.length;
+                    }
+                    compacted.force(true);
+                    logger.info("Compacted '{}' from {} to {} bytes", logFile, logBytes, size);
+                    logBytes = size;
+                    liveBytes = size;
+                }
+
+                channel.close();
+                Files.move(compactionFile.toPath(), logFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                channel = openLog(logFile);
+                channel.position(channel.size());
+                syncedBytes = appendedBytes;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                channel.force(false);
+                channel.close();
+                lock.release();
+                lockChannel.close();
+            }
+        }
+    }
+
+    /**
+     * Opens the log file for reading and appending, creating it if needed.
+     */
+    FileChannel openLog(File file) throws IOException {
+        return FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // Internals
+
+    /**
+     * Appends a record to the log without syncing it. If the record can't be written in full, the
+     * log is truncated back to its previous end, or the persister is failed if that isn't possible.
+     *
+     * @return the position to pass to {@link #awaitSync(long)} to wait for the record to be synced
+     */
+    private long append(byte[] body) throws IOException {
+        checkNotFailed();
+        byte[] record = frame(body);
+        try {
+            writeFully(channel, record);
+        } catch (IOException e) {
+            try {
+                channel.truncate(logBytes);
+                channel.position(logBytes);
+            } catch (IOException truncateException) {
+                e.addSuppressed(truncateException);
+                failure = e;
+            }
+            throw e;
+        }
+        appendedBytes += record.length;
+        logBytes += record.length;
+        return appendedBytes;
+    }
+
+    /**
+     * Waits until the log has been synced up to the provided position. A single sync covers every
+     * record which was appended before it started.
+     */
+    private void awaitSync(long position) throws IOException {
+        synchronized (syncLock) {
+            if (syncedBytes >= position) {
+                return;
+            }
+            long target;
+            FileChannel current;
+            synchronized (this) {
+                checkNotFailed();
+                target = appendedBytes;
+                current = channel;
+            }
+            try {
+                current.force(false);
+            } catch (IOException e) {
+                // The unsynced records have already been applied in memory, and may not be on disk.
+                synchronized (this) {
+                    failure = e;
+                }
+                throw e;
+            }
+            syncedBytes = target;
+        }
+    }
+
+    private void checkNotFailed() throws IOException {
+        if (failure != null) {
+            throw new IOException(String.format(
+                    "Writing to '%s' failed earlier, reopen the persister to recover", logFile), failure);
+        }
+    }
+
+    private void maybeCompact() throws IOException {
+        boolean shouldCompact;
+        synchronized (this) {
+            long garbageBytes = logBytes - liveBytes;
+            shouldCompact = logBytes >= minCompactionBytes && garbageBytes > liveBytes;
+        }
+        if (shouldCompact) {
+            compact();
+        }
+    }
+
+    private void replay() throws IOException {
+        long size = channel.size();
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+        long position = 0;
+        int records = 0;
+        while (position < size) {
+            try {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || length > size - position - RECORD_HEADER_BYTES) {
+                    throw new EOFException();
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                if (checksum(body) != checksum) {
+                    throw new IOException("Checksum mismatch");
+                }
+                apply(body);
+                position += RECORD_HEADER_BYTES + length;
+                records++;
+            } catch (IOException e) {
+                logger.warn("Discarding {} bytes at the end of '{}' following a partial write",
+                        size - position, logFile, e);
+                channel.truncate(position);
+                break;
+            }
+        }
+
+        channel.position(position);
+        logBytes = position;
+        appendedBytes = position;
+        syncedBytes = position;
+        logger.info("Loaded {} records ({} bytes) from '{}'", records, position, logFile);
+    }
+
+    private void apply(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte op = in.readByte();
+        if (op == OP_PUT) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                put(path, data);
+            }
+        } else if (op == OP_DELETE) {
+            String path = in.readUTF();
+            if (nodes.containsKey(path)) {
+                delete(path);
+            }
+        } else {
+            throw new IOException("Unknown record type: " + op);
+        }
+    }
+
+    private void put(String path, byte[] data) {
+        int recordBytes = entryBytes(path, data);
+        Node node = nodes.get(path);
+        if (node == null) {
+            node = new Node(data);
+            nodes.put(path, node);
+            addToParent(path);
+        } else {
+            liveBytes -= node.recordBytes;
+            node.data = data;
+            node.version++;
+        }
+        node.recordBytes = recordBytes;
+        liveBytes += recordBytes;
+    }
+
+    private void addToParent(String path) {
+        String parentPath = getParentPath(path);
+        Node parent = nodes.get(parentPath);
+        if (parent == null) {
+            parent = new Node(new byte[0]);
+            nodes.put(parentPath, parent);
+            addToParent(parentPath);
+        }
+        parent.children.add(getName(path));
+    }
+
+    private void delete(String path) {
+        nodes.get(getParentPath(path)).children.remove(getName(path));
+        deleteTree(path);
+    }
+
+    private void deleteTree(String path) {
+        Node node = nodes.remove(path);
+        liveBytes -= node.recordBytes;
+        for (String child : node.children) {
+            deleteTree(getChildPath(path, child));
+        }
+    }
+
+    /**
+     * Returns every path other than the root, with each path following its parent.
+     */
+    private List<String> getPathsParentsFirst() {
+        List<String> paths = new ArrayList<>();
+        List<String> pending = new ArrayList<>();
+        pending.add(ROOT_PATH);
+        while (!pending.isEmpty()) {
+            String path = pending.remove(pending.size() - 1);
+            if (!path.equals(ROOT_PATH)) {
+                paths.add(path);
+            }
+            for (String child : nodes.get(path).children) {
+                pending.add(getChildPath(path, child));
+            }
+        }
+        return paths;
+    }
+
+    private static byte[] encodePut(Map<String, byte[]> pathBytesMap) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(OP_PUT);
+        out.writeInt(pathBytesMap.size());
+        for (Map.Entry<String, byte[]> entry : pathBytesMap.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().length);
+            out.write(entry.getValue());
+        }
+        return body.toByteArray();
+    }
+
+    private static byte[] frame(byte[] body) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + body.length);
+        record.putInt(body.length);
+        record.putInt(checksum(body));
+        record.put(body);
+        return record.array();
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int entryBytes(String path, byte[] data) {
+        return ENTRY_OVERHEAD_BYTES + path.length() + data.length;
+    }
+
+    private static void validatePath(String path) {
+        if (!path.startsWith("/") || path.endsWith("/") || path.contains("//")) {
+            throw new IllegalArgumentException("Invalid path: " + path);
+        }
+    }
+
+    private static String getParentPath(String path) {
+        int index = path.lastIndexOf('/');
+        return index == 0 ? ROOT_PATH : path.substring(0, index);
+    }
+
+    private static String getName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static String getChildPath(String path, String child) {
+        return path.equals(ROOT_PATH) ? ROOT_PATH + child : path + "/" + child;
+    }
+
+    private static class Node {
+        private byte[] data;
+        private int version = 0;
+        private int recordBytes = 0; // zero for parents which were created implicitly
+        // A HashSet, as in Zookeeper, so that children are listed in the same order
+        private final Set<String> children = new HashSet<>();
+
+        private Node(byte[] data) {
+            this.data = data;
+        }
+    }
+}
@@ -1,13 +1,73 @@
 package org.apache.mesos.storage;
 
+import org.apache.zookeeper.KeeperException;
+
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * This interface should be implemented in order to store and fetch data.
  */
 public interface Persister {
+    /**
+     * The expected version of a path which must not exist yet.
+     */
+    int ABSENT_VERSION = -1;
+
     void store(String path, byte[] bytes) throws Exception;
+
+    /**
+     * Stores data at a path only if its current version is the expected one, so that concurrent
+     * writers can't overwrite each other's changes. Versions start at zero when a path is created,
+     * and increase each time it is stored.
+     *
+     * @param expectedVersion The version returned when the path was last read or stored, or
+     *                        {@link #ABSENT_VERSION} if the path must not exist yet
+     * @return The version of the stored data
+     * @throws org.apache.zookeeper.KeeperException.BadVersionException if the path is not at the
+     *                                                                   expected version
+     */
+    int store(String path, byte[] bytes, int expectedVersion) throws Exception;
+
+    /**
+     * Stores the data for each of the provided paths atomically: either all of it is stored, or an
+     * exception is thrown and none of it is.
+     *
+     * The default implementation stores each path in turn with {@link #store(String, byte[])}, and
+     * so isn't atomic. Implementations which can store several paths atomically should override it.
+     */
+    default void store(Map<String, byte[]> pathBytesMap) throws Exception {
+        for (Map.Entry<String, byte[]> entry : pathBytesMap.entrySet()) {
+            store(entry.getKey(), entry.getValue());
+        }
+    }
+
     byte[] fetch(String path) throws Exception;
+
+    /**
+     * Fetches the data at a path along with its current version.
+     */
+    Versioned<byte[]> fetchVersioned(String path) throws Exception;
+
+    /**
+     * Fetches the data at each of the provided paths. Paths which don't exist are omitted from the
+     * result, and the result is ordered as the paths were provided.
+     *
+     * The default implementation fetches each path in turn with {@link #fetch(String)}.
+     */
+    default Map<String, byte[]> fetch(Collection<String> paths) throws Exception {
+        Map<String, byte[]> results = new LinkedHashMap<>();
+        for (String path : paths) {
+            try {
+                results.put(path, fetch(path));
+            } catch (KeeperException.NoNodeException e) {
+                // Omitted from the result
+            }
+        }
+        return results;
+    }
+
     void clear(String path) throws Exception;
     Collection<String> getChildren(String path) throws Exception;
 }
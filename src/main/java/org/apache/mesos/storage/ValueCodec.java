@@ -0,0 +1,164 @@
+package org.apache.mesos.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The ValueCodec describes how values are laid out by {@link CuratorPersister} when they are
+ * compressed or too large for a single ZNode. Such values begin with a small header:
+ * <code>
+ * [0xFF magic] [version] [encoding] [flags] [decoded length: int]
+ *     -> if chunked: [chunk count: int] [generation: long], with the payload in child nodes
+ *     -> otherwise: the payload
+ * </code>
+ *
+ * Values without a header are stored as is, which is also how they were stored before the codec was
+ * introduced. A leading 0xFF byte can't begin a serialized protobuf, as 7 isn't a valid wire type,
+ * nor valid UTF-8 text, so such values are never mistaken for encoded ones.
+ */
+class ValueCodec {
+
+    static final byte ENCODING_RAW = 0;
+    static final byte ENCODING_DEFLATE = 1;
+
+    private static final byte MAGIC = (byte) 0xFF;
+    private static final byte VERSION = 1;
+    private static final byte FLAG_CHUNKED = 1;
+    static final int HEADER_BYTES = 8;
+    static final int CHUNKED_HEADER_BYTES = HEADER_BYTES + 12;
+
+    private ValueCodec() {
+        // do not instantiate
+    }
+
+    /**
+     * The header of an encoded value.
+     */
+    static class Header {
+        final byte encoding;
+        final int decodedLength;
+        final boolean chunked;
+        final int chunkCount;
+        final long generation;
+
+        private Header(byte encoding, int decodedLength, boolean chunked, int chunkCount, long generation) {
+            this.encoding = encoding;
+            this.decodedLength = decodedLength;
+            this.chunked = chunked;
+            this.chunkCount = chunkCount;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Returns the header of the provided node data, or null if the data is stored as is.
+     */
+    static Header parseHeader(byte[] bytes) throws IOException {
+        if (bytes == null || bytes.length < HEADER_BYTES || bytes[0] != MAGIC) {
+            return null;
+        }
+        if (bytes[1] != VERSION) {
+            throw new IOException("Unsupported value encoding version: " + bytes[1]);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 2, bytes.length - 2);
+        byte encoding = buffer.get();
+        boolean chunked = (buffer.get() & FLAG_CHUNKED) != 0;
+        int decodedLength = buffer.getInt();
+        if (!chunked) {
+            return new Header(encoding, decodedLength, false, 0, 0);
+        }
+        if (bytes.length < CHUNKED_HEADER_BYTES) {
+            throw new IOException("Truncated header of chunked value");
+        }
+        return new Header(encoding, decodedLength, true, buffer.getInt(), buffer.getLong());
+    }
+
+    /**
+     * Returns node data holding the payload after a header.
+     */
+    static byte[] encodeInline(byte encoding, int decodedLength, byte[] payload) {
+        return ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                .put(MAGIC).put(VERSION).put(encoding).put((byte) 0).putInt(decodedLength)
+                .put(payload)
+                .array();
+    }
+
+    /**
+     * Returns node data holding only a header, for a payload which is stored in child nodes.
+     */
+    static byte[] encodeChunked(byte encoding, int decodedLength, int chunkCount, long generation) {
+        return ByteBuffer.allocate(CHUNKED_HEADER_BYTES)
+                .put(MAGIC).put(VERSION).put(encoding).put(FLAG_CHUNKED).putInt(decodedLength)
+                .putInt(chunkCount).putLong(generation)
+                .array();
+    }
+
+    /**
+     * Returns the payload which follows the header of an unchunked value.
+     */
+    static byte[] getInlinePayload(byte[] bytes) {
+        byte[] payload = new byte[bytes.length - HEADER_BYTES];
+        System.arraycopy(bytes, HEADER_BYTES, payload, 0, payload.length);
+        return payload;
+    }
+
+    /**
+     * Returns the decoded value of a payload.
+     */
+    static byte[] decodePayload(Header header, byte[] payload) throws IOException {
+        switch (header.encoding) {
+            case ENCODING_RAW:
+                return payload;
+            case ENCODING_DEFLATE:
+                return inflate(payload, header.decodedLength);
+            default:
+                throw new IOException("Unsupported value encoding: " + header.encoding);
+        }
+    }
+
+    static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 16);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes, int decodedLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            byte[] decoded = new byte[decodedLength];
+            int offset = 0;
+            while (offset < decodedLength && !inflater.finished()) {
+                int inflated = inflater.inflate(decoded, offset, decodedLength - offset);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += inflated;
+            }
+            if (offset != decodedLength) {
+                throw new IOException(String.format(
+                        "Compressed value is truncated: expected %d bytes, got %d", decodedLength, offset));
+            }
+            return decoded;
+        } catch (DataFormatException e) {
+            throw new IOException("Compressed value is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.apache.mesos.storage;
+
+/**
+ * A value along with the version at which it was read, for use in conditional writes such as
+ * {@link Persister#store(String, byte[], int)}.
+ *
+ * @param <T> The type of the value
+ */
+public class Versioned<T> {
+    private final T value;
+    private final int version;
+
+    public Versioned(T value, int version) {
+        this.value = value;
+        this.version = version;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+}
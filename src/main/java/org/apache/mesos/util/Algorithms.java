@@ -1,7 +1,5 @@
 package org.apache.mesos.util;
 
-import org.antlr.v4.runtime.misc.Interval;
-import org.antlr.v4.runtime.misc.IntervalSet;
 import org.apache.mesos.Protos.Value.Range;
 
 import java.util.ArrayList;
@@ -10,101 +8,313 @@ import java.util.List;
 
 /**
  * A utility class for commonly needed algorithms for Mesos frameworks.
+ *
+ * Range algebra is performed on sorted interval buffers: long arrays holding [begin, end] pairs
+ * ordered by begin, with overlapping and adjacent intervals coalesced.  Callers on hot paths may
+ * hold on to buffers and reuse them across operations; the {@link Range} list methods are
+ * conveniences built on top of them.
  */
 public final class Algorithms {
-  public static List<Range> mergeRanges(List<Range> r1, List<Range> r2) {
-    List<Interval> intervals = rangesToIntervals(r1);
-    intervals.addAll(rangesToIntervals(r2));
-    IntervalSet intervalSet = intervalsToIntervalSet(intervals);
+  private static final int INSERTION_SORT_THRESHOLD = 16;
 
-    return intervalsToRanges(intervalSet.getIntervals());
+  public static List<Range> mergeRanges(List<Range> r1, List<Range> r2) {
+    long[] i1 = toIntervals(r1);
+    long[] i2 = toIntervals(r2);
+    long[] out = ensureIntervalCapacity(null, intervalCount(i1) + intervalCount(i2));
+    int count = unionIntervals(i1, intervalCount(i1), i2, intervalCount(i2), out);
+    return intervalsToRanges(out, count);
   }
 
   public static List<Range> subtractRanges(List<Range> minuend, List<Range> subtrahend) {
-    IntervalSet iMinuend = intervalsToIntervalSet(rangesToIntervals(minuend));
-    IntervalSet iSubtrahend = intervalsToIntervalSet(rangesToIntervals(subtrahend));
-    IntervalSet iDifference = IntervalSet.subtract(iMinuend, iSubtrahend);
-    return intervalSetToRanges(iDifference);
+    long[] iMinuend = toIntervals(minuend);
+    long[] iSubtrahend = toIntervals(subtrahend);
+    long[] out = ensureIntervalCapacity(null, intervalCount(iMinuend) + intervalCount(iSubtrahend));
+    int count = subtractIntervals(
+        iMinuend, intervalCount(iMinuend), iSubtrahend, intervalCount(iSubtrahend), out);
+    return intervalsToRanges(out, count);
   }
 
   public static boolean rangesEqual(List<Range> list1, List<Range> list2) {
-    IntervalSet i1 = intervalsToIntervalSet(rangesToIntervals(list1));
-    IntervalSet i2 = intervalsToIntervalSet(rangesToIntervals(list2));
-    return i1.equals(i2);
+    long[] i1 = toIntervals(list1);
+    long[] i2 = toIntervals(list2);
+    if (intervalCount(i1) != intervalCount(i2)) {
+      return false;
+    }
+
+    for (int i = 0; i < i1.length; i++) {
+      if (i1[i] != i2[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns whether every value in the contained ranges is also present in the container ranges.
+   */
+  public static boolean rangesContain(List<Range> container, List<Range> contained) {
+    long[] iContainer = toIntervals(container);
+    long[] iContained = toIntervals(contained);
+    return containsIntervals(iContainer, intervalCount(iContainer), iContained, intervalCount(iContained));
   }
 
   public static List<Range> createRanges(Collection<Integer> elements) {
-    int[] integers = toIntArray(elements);
-    return intervalsToRanges(new IntervalSet(integers).getIntervals());
+    long[] intervals = ensureIntervalCapacity(null, elements.size());
+    int count = 0;
+    for (Integer element : elements) {
+      intervals[2 * count] = element;
+      intervals[2 * count + 1] = element;
+      count++;
+    }
+
+    return intervalsToRanges(intervals, sortIntervals(intervals, count));
+  }
+
+  public static long countValuesInRanges(List<Range> ranges) {
+    long[] intervals = toIntervals(ranges);
+    long count = 0;
+
+    for (int i = 0; i < intervals.length; i += 2) {
+      count += intervals[i + 1] - intervals[i] + 1;
+    }
+
+    return count;
   }
 
-  public static int countValuesInRanges(List<Range> ranges) {
-    return rangesToIntervalSet(ranges).size();
+  /**
+   * Returns a buffer able to hold at least the requested number of intervals, reusing the provided
+   * buffer when it is large enough.  The provided buffer may be null.
+   */
+  public static long[] ensureIntervalCapacity(long[] buffer, int intervalCapacity) {
+    if (buffer == null) {
+      return new long[2 * intervalCapacity];
+    } else if (buffer.length < 2 * intervalCapacity) {
+      return new long[Math.max(2 * intervalCapacity, 2 * buffer.length)];
+    }
+
+    return buffer;
   }
 
-  private static int[] toIntArray(Collection<Integer> integers){
-    int[] output = new int[integers.size()];
+  /**
+   * Writes the provided ranges into the buffer as sorted, coalesced intervals and returns the number
+   * of intervals written.  Ranges whose end precedes their begin are ignored.  The buffer must be
+   * able to hold ranges.size() intervals.
+   */
+  public static int normalizeRanges(List<Range> ranges, long[] out) {
+    int count = 0;
+
+    for (Range range : ranges) {
+      if (range.getEnd() < range.getBegin()) {
+        continue;
+      }
+
+      out[2 * count] = range.getBegin();
+      out[2 * count + 1] = range.getEnd();
+      count++;
+    }
+
+    return sortIntervals(out, count);
+  }
 
+  /**
+   * Writes the union of two sorted interval buffers into out and returns the number of intervals
+   * written.  The out buffer must be distinct from the inputs and able to hold aCount + bCount
+   * intervals.
+   */
+  public static int unionIntervals(long[] a, int aCount, long[] b, int bCount, long[] out) {
     int i = 0;
-    for (Integer input : integers) {
-      output[i] = input;
-      i++;
+    int j = 0;
+    int count = 0;
+
+    while (i < aCount || j < bCount) {
+      if (j >= bCount || (i < aCount && a[2 * i] <= b[2 * j])) {
+        count = appendInterval(out, count, a[2 * i], a[2 * i + 1]);
+        i++;
+      } else {
+        count = appendInterval(out, count, b[2 * j], b[2 * j + 1]);
+        j++;
+      }
     }
 
-    return output;
+    return count;
   }
 
-  private static Interval rangeToInterval(Range range) {
-    return Interval.of((int) range.getBegin(), (int) range.getEnd());
+  /**
+   * Writes the intervals of a which are not present in b into out and returns the number of
+   * intervals written.  The out buffer must be distinct from the inputs and able to hold
+   * aCount + bCount intervals.
+   */
+  public static int subtractIntervals(long[] a, int aCount, long[] b, int bCount, long[] out) {
+    int j = 0;
+    int count = 0;
+
+    for (int i = 0; i < aCount; i++) {
+      long begin = a[2 * i];
+      long end = a[2 * i + 1];
+      boolean remaining = true;
+
+      while (j < bCount && b[2 * j + 1] < begin) {
+        j++;
+      }
+
+      for (int k = j; k < bCount && b[2 * k] <= end; k++) {
+        if (b[2 * k] > begin) {
+          out[2 * count] = begin;
+          out[2 * count + 1] = b[2 * k] - 1;
+          count++;
+        }
+
+        if (b[2 * k + 1] >= end) {
+          remaining = false;
+          break;
+        }
+
+        begin = b[2 * k + 1] + 1;
+      }
+
+      if (remaining) {
+        out[2 * count] = begin;
+        out[2 * count + 1] = end;
+        count++;
+      }
+    }
+
+    return count;
   }
 
-  private static Range intervalToRange(Interval interval) {
-    Range.Builder builder = Range.newBuilder();
-    builder.setBegin(interval.a);
-    builder.setEnd(interval.b);
+  /**
+   * Returns whether every interval of b is contained in the intervals of a.
+   */
+  public static boolean containsIntervals(long[] a, int aCount, long[] b, int bCount) {
+    int i = 0;
+
+    for (int j = 0; j < bCount; j++) {
+      while (i < aCount && a[2 * i + 1] < b[2 * j]) {
+        i++;
+      }
+
+      if (i == aCount || a[2 * i] > b[2 * j] || a[2 * i + 1] < b[2 * j + 1]) {
+        return false;
+      }
+    }
 
-    return builder.build();
+    return true;
   }
 
-  private static List<Interval> rangesToIntervals(List<Range> ranges) {
-    List<Interval> intervals = new ArrayList<Interval>();
+  public static List<Range> intervalsToRanges(long[] intervals, int count) {
+    List<Range> ranges = new ArrayList<Range>(count);
 
-    for (Range range : ranges) {
-      intervals.add(rangeToInterval(range));
+    for (int i = 0; i < count; i++) {
+      ranges.add(Range.newBuilder().setBegin(intervals[2 * i]).setEnd(intervals[2 * i + 1]).build());
     }
 
-    return intervals;
+    return ranges;
   }
 
-  private static IntervalSet rangesToIntervalSet(List<Range> ranges) {
-    return intervalsToIntervalSet(rangesToIntervals(ranges));
+  private static long[] toIntervals(List<Range> ranges) {
+    long[] intervals = new long[2 * ranges.size()];
+    int count = normalizeRanges(ranges, intervals);
+    if (2 * count == intervals.length) {
+      return intervals;
+    }
+
+    long[] trimmed = new long[2 * count];
+    System.arraycopy(intervals, 0, trimmed, 0, trimmed.length);
+    return trimmed;
   }
 
-  private static List<Range> intervalsToRanges(List<Interval> intervals) {
-    List<Range> ranges = new ArrayList<Range>();
+  private static int intervalCount(long[] intervals) {
+    return intervals.length / 2;
+  }
 
-    for (Interval interval : intervals) {
-      ranges.add(intervalToRange(interval));
+  /**
+   * Sorts the first count intervals of the buffer by begin in place, coalescing overlapping and
+   * adjacent intervals, and returns the resulting number of intervals.
+   */
+  private static int sortIntervals(long[] intervals, int count) {
+    if (count > INSERTION_SORT_THRESHOLD) {
+      heapSortIntervals(intervals, count);
+    } else {
+      insertionSortIntervals(intervals, count);
     }
 
-    return ranges;
+    int coalesced = 0;
+    for (int i = 0; i < count; i++) {
+      coalesced = appendInterval(intervals, coalesced, intervals[2 * i], intervals[2 * i + 1]);
+    }
+
+    return coalesced;
   }
 
-  private static IntervalSet intervalsToIntervalSet(List<Interval> intervals) {
-    IntervalSet intervalSet = new IntervalSet();
-    for (Interval interval : intervals) {
-      intervalSet.add(interval.a, interval.b);
+  private static void insertionSortIntervals(long[] intervals, int count) {
+    for (int i = 1; i < count; i++) {
+      long begin = intervals[2 * i];
+      long end = intervals[2 * i + 1];
+      int j = i;
+      while (j > 0 && intervals[2 * (j - 1)] > begin) {
+        intervals[2 * j] = intervals[2 * (j - 1)];
+        intervals[2 * j + 1] = intervals[2 * (j - 1) + 1];
+        j--;
+      }
+      intervals[2 * j] = begin;
+      intervals[2 * j + 1] = end;
+    }
+  }
+
+  private static void heapSortIntervals(long[] intervals, int count) {
+    for (int i = count / 2 - 1; i >= 0; i--) {
+      siftDown(intervals, i, count);
+    }
+
+    for (int end = count - 1; end > 0; end--) {
+      swapIntervals(intervals, 0, end);
+      siftDown(intervals, 0, end);
     }
+  }
+
+  private static void siftDown(long[] intervals, int root, int count) {
+    while (2 * root + 1 < count) {
+      int child = 2 * root + 1;
+      if (child + 1 < count && intervals[2 * (child + 1)] > intervals[2 * child]) {
+        child++;
+      }
+
+      if (intervals[2 * root] >= intervals[2 * child]) {
+        return;
+      }
+
+      swapIntervals(intervals, root, child);
+      root = child;
+    }
+  }
 
-    return intervalSet;
+  private static void swapIntervals(long[] intervals, int i, int j) {
+    long begin = intervals[2 * i];
+    long end = intervals[2 * i + 1];
+    intervals[2 * i] = intervals[2 * j];
+    intervals[2 * i + 1] = intervals[2 * j + 1];
+    intervals[2 * j] = begin;
+    intervals[2 * j + 1] = end;
   }
 
-  private static List<Range> intervalSetToRanges(IntervalSet intervalSet) {
-    if (intervalSet.isNil()) {
-      return new ArrayList<Range>();
+  /**
+   * Appends [begin, end] to the sorted intervals in out, coalescing it with the last interval when
+   * they overlap or are adjacent.  The begin must not precede the begin of the last interval.
+   */
+  private static int appendInterval(long[] out, int count, long begin, long end) {
+    if (count > 0) {
+      long lastEnd = out[2 * count - 1];
+      if (begin <= lastEnd || begin == lastEnd + 1) {
+        if (end > lastEnd) {
+          out[2 * count - 1] = end;
+        }
+        return count;
+      }
     }
 
-    List<Interval> intervals = intervalSet.getIntervals();
-    return intervalsToRanges(intervals);
+    out[2 * count] = begin;
+    out[2 * count + 1] = end;
+    return count + 1;
   }
 }
@@ -0,0 +1,84 @@
+package org.apache.mesos.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * A utility class for serving HTTP responses which carry an ETag, so that clients which poll an
+ * endpoint may send the ETag back in an If-None-Match header and receive a body-less 304 (Not
+ * Modified) response while the content is unchanged.
+ */
+public final class EntityTags {
+
+  private EntityTags() {
+    // do not instantiate
+  }
+
+  /**
+   * Returns an ETag value derived from the provided content.
+   */
+  public static String fromContent(String content) {
+    byte[] digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1").digest(content.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-1
+      throw new IllegalStateException(e);
+    }
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Returns whether the provided If-None-Match header value lists the provided ETag value, or is
+   * the wildcard '*'. Weak comparison is used, as is specified for If-None-Match.
+   *
+   * @param etag The unquoted ETag value of the current content
+   * @param ifNoneMatch The header value sent by the client, or {@code null} if none was sent
+   */
+  public static boolean matches(String etag, String ifNoneMatch) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String tag : ifNoneMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.equals("*")) {
+        return true;
+      }
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+        tag = tag.substring(1, tag.length() - 1);
+      }
+      if (tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns a 304 (Not Modified) response if the client already has the content with the provided
+   * ETag, or a 200 (OK) JSON response with the content otherwise. Both carry the ETag.
+   *
+   * @param json The JSON content, which may be {@code null} if the caller has determined that the
+   *     client already has it
+   * @param etag The unquoted ETag value of the content
+   * @param ifNoneMatch The If-None-Match header value sent by the client, or {@code null}
+   */
+  public static Response okOrNotModified(String json, String etag, String ifNoneMatch) {
+    if (matches(etag, ifNoneMatch)) {
+      return Response.notModified(new EntityTag(etag)).build();
+    }
+    return Response.ok(json, MediaType.APPLICATION_JSON).tag(new EntityTag(etag)).build();
+  }
+}
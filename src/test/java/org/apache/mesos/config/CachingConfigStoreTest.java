@@ -0,0 +1,105 @@
+package org.apache.mesos.config;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+/**
+ * Tests to validate the operation of the {@link CachingConfigStore}.
+ */
+public class CachingConfigStoreTest {
+    private static final String ROOT_ZK_PATH = "/test-root-path";
+    private static final long WAIT_TIMEOUT_MS = 10 * 1000;
+
+    private TestingServer testZk;
+    private CuratorConfigStore<StringConfiguration> curatorStore;
+    private CachingConfigStore<StringConfiguration> store;
+    private StringConfiguration.Factory configFactory;
+
+    @Before
+    public void beforeEach() throws Exception {
+        testZk = new TestingServer();
+        curatorStore = spy(new CuratorConfigStore<StringConfiguration>(ROOT_ZK_PATH, testZk.getConnectString()));
+        store = new CachingConfigStore<>(curatorStore, 2);
+        configFactory = new StringConfiguration.Factory();
+    }
+
+    @After
+    public void afterEach() throws Exception {
+        store.close();
+        curatorStore.close();
+        testZk.close();
+    }
+
+    @Test
+    public void testStoredConfigServedFromMemory() throws Exception {
+        StringConfiguration config = new StringConfiguration("test-config");
+        UUID id = store.store(config);
+        assertEquals(config, store.fetch(id, configFactory));
+        verify(curatorStore, never()).fetch(id, configFactory);
+    }
+
+    @Test
+    public void testFetchedConfigMemoized() throws Exception {
+        StringConfiguration config = new StringConfiguration("test-config");
+        UUID id = curatorStore.store(config);
+
+        assertEquals(config, store.fetch(id, configFactory));
+        assertEquals(config, store.fetch(id, configFactory));
+        verify(curatorStore, times(1)).fetch(id, configFactory);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws Exception {
+        UUID idA = store.store(new StringConfiguration("a"));
+        UUID idB = store.store(new StringConfiguration("b"));
+        store.fetch(idA, configFactory);
+        store.store(new StringConfiguration("c"));
+        assertEquals(2, store.getCachedConfigCount());
+
+        store.fetch(idA, configFactory);
+        verify(curatorStore, never()).fetch(idA, configFactory);
+        assertEquals(new StringConfiguration("b"), store.fetch(idB, configFactory));
+        verify(curatorStore, times(1)).fetch(idB, configFactory);
+    }
+
+    @Test(expected=ConfigStoreException.class)
+    public void testClearedConfigNotServed() throws Exception {
+        UUID id = store.store(new StringConfiguration("test-config"));
+        store.clear(id);
+        store.fetch(id, configFactory);
+    }
+
+    @Test
+    public void testTargetConfigServedFromMemory() throws Exception {
+        UUID id = UUID.randomUUID();
+        store.setTargetConfig(id);
+        assertEquals(id, store.getTargetConfig());
+        assertEquals(id, store.getTargetConfig());
+        verify(curatorStore, never()).getTargetConfig();
+    }
+
+    @Test
+    public void testExternalTargetChangeSeen() throws Exception {
+        store.setTargetConfig(UUID.randomUUID());
+        UUID id = UUID.randomUUID();
+        curatorStore.setTargetConfig(id);
+
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MS;
+        while (!id.equals(store.getTargetConfig()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(id, store.getTargetConfig());
+    }
+
+    @Test(expected=ConfigStoreException.class)
+    public void testUnsetTargetConfig() throws Exception {
+        store.getTargetConfig();
+    }
+}
@@ -0,0 +1,74 @@
+package org.apache.mesos.config;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+
+/**
+ * Tests to validate the operation of the {@link ConfigurationDiff}.
+ */
+public class ConfigurationDiffTest {
+
+    @Test
+    public void testIdenticalConfigs() throws Exception {
+        ConfigurationDiff diff = ConfigurationDiff.between(
+                "{ \"a\": 1, \"b\": [1, 2] }", "{ \"b\": [1, 2], \"a\": 1.0 }");
+        assertTrue(diff.isEmpty());
+        assertFalse(diff.affects("a"));
+    }
+
+    @Test
+    public void testChangedNestedFields() throws Exception {
+        ConfigurationDiff diff = ConfigurationDiff.between(
+                "{ \"pods\": [{ \"cpus\": 1, \"mem\": 256 }, { \"cpus\": 1 }], \"name\": \"x\" }",
+                "{ \"pods\": [{ \"cpus\": 2, \"mem\": 256 }, { \"cpus\": 1 }], \"name\": \"x\" }");
+        assertEquals(new TreeSet<>(Arrays.asList("pods[0].cpus")), diff.getChangedFields());
+        assertTrue(diff.affects("pods"));
+        assertTrue(diff.affects("pods[0]"));
+        assertTrue(diff.affects("pods[0].cpus"));
+        assertFalse(diff.affects("pods[0].mem"));
+        assertFalse(diff.affects("pods[1]"));
+        assertFalse(diff.affects("name"));
+        assertFalse(diff.affects("pod"));
+    }
+
+    @Test
+    public void testAddedAndRemovedFields() throws Exception {
+        ConfigurationDiff diff = ConfigurationDiff.between(
+                "{ \"a\": { \"x\": 1 }, \"list\": [1] }",
+                "{ \"b\": 2, \"list\": [1, 2] }");
+        assertEquals(new TreeSet<>(Arrays.asList("a", "b", "list[1]")), diff.getChangedFields());
+        assertTrue(diff.affects("a.x"));
+        assertFalse(diff.affects("list[0]"));
+    }
+
+    @Test
+    public void testChangedType() throws Exception {
+        ConfigurationDiff diff = ConfigurationDiff.between("{ \"a\": { \"x\": 1 } }", "{ \"a\": [1] }");
+        assertEquals(Collections.singleton("a"), diff.getChangedFields());
+    }
+
+    @Test
+    public void testChangedRoot() throws Exception {
+        ConfigurationDiff diff = ConfigurationDiff.between("{}", "[]");
+        assertEquals(Collections.singleton(""), diff.getChangedFields());
+        assertTrue(diff.affects("anything"));
+    }
+
+    @Test
+    public void testAffectsAny() throws Exception {
+        ConfigurationDiff diff = ConfigurationDiff.between(
+                new StringConfiguration("a"), new StringConfiguration("b"));
+        assertTrue(diff.affectsAny(Arrays.asList("other", "string")));
+        assertFalse(diff.affectsAny(Arrays.asList("other")));
+    }
+
+    @Test(expected=ConfigStoreException.class)
+    public void testInvalidJson() throws Exception {
+        ConfigurationDiff.between("{}", "{");
+    }
+}
@@ -1,12 +1,15 @@
 package org.apache.mesos.config;
 
+import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.curator.test.TestingServer;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.Assert;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.UUID;
 
 /**
@@ -92,6 +95,72 @@ public class CuratorConfigStoreTest {
         store.getTargetConfig();
     }
 
+    @Test
+    public void testDeduplicatedStoreReturnsExistingId() throws Exception {
+        CuratorConfigStore<StringConfiguration> dedupeStore = getTestDeduplicatingConfigStore();
+        UUID testId = dedupeStore.store(testConfig);
+        Assert.assertEquals(testId, dedupeStore.store(new StringConfiguration("test-config")));
+        Assert.assertNotEquals(testId, dedupeStore.store(new StringConfiguration("other-config")));
+        Assert.assertEquals(2, dedupeStore.list().size());
+    }
+
+    @Test
+    public void testDeduplicatedStoreAfterClear() throws Exception {
+        CuratorConfigStore<StringConfiguration> dedupeStore = getTestDeduplicatingConfigStore();
+        UUID testId = dedupeStore.store(testConfig);
+        dedupeStore.clear(testId);
+        UUID newId = dedupeStore.store(testConfig);
+        Assert.assertNotEquals(testId, newId);
+        Assert.assertEquals(testConfig, dedupeStore.fetch(newId, configFactory));
+    }
+
+    @Test
+    public void testDeduplicatedStoreIgnoresUnindexedConfigs() throws Exception {
+        UUID testId = store.store(testConfig);
+        UUID newId = getTestDeduplicatingConfigStore().store(testConfig);
+        Assert.assertNotEquals(testId, newId);
+        Assert.assertEquals(newId, getTestDeduplicatingConfigStore().store(testConfig));
+    }
+
+    @Test
+    public void testClearUnreferenced() throws Exception {
+        UUID targetId = store.store(new StringConfiguration("target"));
+        UUID referencedId = store.store(new StringConfiguration("referenced"));
+        UUID unreferencedId = store.store(new StringConfiguration("unreferenced"));
+        store.setTargetConfig(targetId);
+
+        Assert.assertEquals(
+                Collections.singletonList(unreferencedId),
+                store.clearUnreferenced(Arrays.asList(referencedId)));
+        Assert.assertEquals(2, store.list().size());
+        Assert.assertTrue(store.list().containsAll(Arrays.asList(targetId, referencedId)));
+    }
+
+    @Test
+    public void testClearUnreferencedWithoutTargetFails() throws Exception {
+        UUID testId = store.store(testConfig);
+        try {
+            store.clearUnreferenced(Collections.<UUID>emptyList());
+            Assert.fail("Expected ConfigStoreException");
+        } catch (ConfigStoreException e) {
+            Assert.assertEquals(Arrays.asList(testId), store.list());
+        }
+    }
+
+    @Test
+    public void testDiffConfigs() throws Exception {
+        UUID oldId = store.store(new StringConfiguration("old"));
+        UUID newId = store.store(new StringConfiguration("new"));
+        Assert.assertEquals(
+                Collections.singleton("string"), store.diff(oldId, newId, configFactory).getChangedFields());
+        Assert.assertTrue(store.diff(oldId, oldId, configFactory).isEmpty());
+    }
+
+    private CuratorConfigStore<StringConfiguration> getTestDeduplicatingConfigStore() throws Exception {
+        return new CuratorConfigStore<StringConfiguration>(
+            testRootZkPath, testZk.getConnectString(), new ExponentialBackoffRetry(1000, 3), true);
+    }
+
     public CuratorConfigStore<StringConfiguration> getTestConfigStore() {
         return new CuratorConfigStore<StringConfiguration>(
             testRootZkPath, testZk.getConnectString());
@@ -3,6 +3,7 @@ package org.apache.mesos.config.api;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import org.apache.mesos.config.CachingConfigStore;
 import org.apache.mesos.config.ConfigStore;
 import org.apache.mesos.config.ConfigStoreException;
 import org.apache.mesos.config.ConfigurationFactory;
@@ -115,4 +116,56 @@ public class ConfigResourceTest {
         Response response = resource.getTarget();
         assertEquals(500, response.getStatus());
     }
+
+    @Test
+    public void testGetConfigNotModified() throws Exception {
+        StringConfiguration config = spy(new StringConfiguration("one"));
+        when(mockConfigStore.fetch(ID1, FACTORY)).thenReturn(config);
+        Response response = resource.getConfiguration(ID1.toString(), "\"" + ID1 + "\"");
+        assertEquals(304, response.getStatus());
+        assertEquals(ID1.toString(), response.getEntityTag().getValue());
+        verify(mockConfigStore, never()).fetch(any(UUID.class), any(ConfigurationFactory.class));
+        verify(config, never()).toJsonString();
+    }
+
+    @Test
+    public void testGetTargetJsonNotCachedWithoutCachingStore() throws Exception {
+        when(mockConfigStore.getTargetConfig()).thenReturn(ID2);
+        when(mockConfigStore.fetch(ID2, FACTORY)).thenReturn(CONFIG1);
+        assertEquals(CONFIG1.toJsonString(), (String) resource.getTarget().getEntity());
+        assertEquals(0, resource.getCachedCount());
+    }
+
+    @Test
+    public void testGetTargetJsonCached() throws Exception {
+        @SuppressWarnings("unchecked")
+        CachingConfigStore<StringConfiguration> mockCachingStore = mock(CachingConfigStore.class);
+        resource = new ConfigResource<>(mockCachingStore, FACTORY);
+        StringConfiguration config = spy(new StringConfiguration("one"));
+        when(mockCachingStore.getTargetConfig()).thenReturn(ID2);
+        when(mockCachingStore.fetch(ID2, FACTORY)).thenReturn(config);
+        Response response = resource.getTarget();
+        assertEquals(ID2.toString(), response.getEntityTag().getValue());
+        response = resource.getTarget();
+        assertEquals(200, response.getStatus());
+        assertEquals(CONFIG1.toJsonString(), (String) response.getEntity());
+        verify(config, times(1)).toJsonString();
+        assertEquals(1, resource.getCachedCount());
+
+        // A different object is fetched once the configuration has been reloaded
+        StringConfiguration reloadedConfig = spy(new StringConfiguration("one"));
+        when(mockCachingStore.fetch(ID2, FACTORY)).thenReturn(reloadedConfig);
+        resource.getTarget();
+        verify(reloadedConfig, times(1)).toJsonString();
+    }
+
+    @Test
+    public void testGetTargetIdNotModified() throws ConfigStoreException {
+        when(mockConfigStore.getTargetConfig()).thenReturn(ID2);
+        String etag = resource.getTargetId().getEntityTag().getValue();
+        assertEquals(304, resource.getTargetId("\"" + etag + "\"").getStatus());
+
+        when(mockConfigStore.getTargetConfig()).thenReturn(ID1);
+        assertEquals(200, resource.getTargetId("\"" + etag + "\"").getStatus());
+    }
 }
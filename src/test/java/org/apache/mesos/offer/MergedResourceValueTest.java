@@ -0,0 +1,89 @@
+package org.apache.mesos.offer;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.mesos.Protos.Value;
+import org.apache.mesos.Protos.Value.Range;
+import org.apache.mesos.protobuf.ValueBuilder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MergedResourceValueTest {
+
+  @Test
+  public void testScalarArithmetic() {
+    MergedResourceValue value = new MergedResourceValue(Value.Type.SCALAR);
+    value.add(getScalar(2.0));
+    value.add(getScalar(1.5));
+    value.subtract(getScalar(1.0));
+
+    Assert.assertEquals(2.5, value.getScalar(), 0.0);
+    Assert.assertTrue(value.contains(getScalar(2.5)));
+    Assert.assertFalse(value.contains(getScalar(3.0)));
+    Assert.assertEquals(getScalar(2.5), value.toValue());
+  }
+
+  @Test
+  public void testAddUnsortedOverlappingRanges() {
+    MergedResourceValue value = new MergedResourceValue(Value.Type.RANGES);
+    value.add(getRanges(getRange(10, 20), getRange(1, 5)));
+    value.add(getRanges(getRange(6, 9), getRange(15, 30), getRange(40, 40)));
+
+    Assert.assertEquals(getRanges(getRange(1, 30), getRange(40, 40)), value.toValue());
+  }
+
+  @Test
+  public void testSubtractRanges() {
+    MergedResourceValue value = new MergedResourceValue(Value.Type.RANGES);
+    value.add(getRanges(getRange(1, 100), getRange(200, 300)));
+    value.subtract(getRanges(getRange(250, 260), getRange(1, 10), getRange(50, 210)));
+
+    Assert.assertEquals(
+            getRanges(getRange(11, 49), getRange(211, 249), getRange(261, 300)),
+            value.toValue());
+  }
+
+  @Test
+  public void testContainsRanges() {
+    MergedResourceValue value = new MergedResourceValue(Value.Type.RANGES);
+    value.add(getRanges(getRange(1000, 2000), getRange(3000, 4000)));
+
+    Assert.assertTrue(value.contains(getRanges(getRange(3500, 3600), getRange(1000, 1000))));
+    Assert.assertFalse(value.contains(getRanges(getRange(1500, 3500))));
+    Assert.assertFalse(value.contains(getRanges(getRange(999, 1000))));
+    Assert.assertTrue(value.contains(getRanges()));
+  }
+
+  @Test
+  public void testRangesAboveIntegerMaxValue() {
+    long begin = Integer.MAX_VALUE + 10L;
+    MergedResourceValue value = new MergedResourceValue(Value.Type.RANGES);
+    value.add(getRanges(getRange(begin, begin + 100)));
+    value.subtract(getRanges(getRange(begin, begin + 49)));
+
+    Assert.assertEquals(getRanges(getRange(begin + 50, begin + 100)), value.toValue());
+  }
+
+  @Test
+  public void testSufficientScalar() {
+    Assert.assertTrue(MergedResourceValue.sufficient(getScalar(1.0), getScalar(1.0)));
+    Assert.assertFalse(MergedResourceValue.sufficient(getScalar(2.0), getScalar(1.0)));
+    Assert.assertFalse(MergedResourceValue.sufficient(getScalar(1.0), null));
+    Assert.assertTrue(MergedResourceValue.sufficient(null, getScalar(1.0)));
+  }
+
+  private static Value getScalar(double scalar) {
+    return new ValueBuilder(Value.Type.SCALAR).setScalar(scalar).build();
+  }
+
+  private static Value getRanges(Range... ranges) {
+    List<Range> rangeList = Arrays.asList(ranges);
+    return new ValueBuilder(Value.Type.RANGES).setRanges(rangeList).build();
+  }
+
+  private static Range getRange(long begin, long end) {
+    return Range.newBuilder().setBegin(begin).setEnd(end).build();
+  }
+}
@@ -78,6 +78,23 @@ public class MesosResourcePoolTest {
     Assert.assertEquals(0, pool.getUnreservedAtomicPool().size());
   }
 
+  @Test
+  public void testConsumeSmallestSufficientAtomicResource() {
+    Resource resource = ResourceBuilder.mountVolume(1000.0, testRole, testPrincipal, testContainerPath);
+    ResourceRequirement resReq = new ResourceRequirement(resource);
+    Offer offer = getOffer(Arrays.asList(
+        ResourceBuilder.mountVolume(3000.0, testMountRoot),
+        ResourceBuilder.mountVolume(500.0, testMountRoot),
+        ResourceBuilder.mountVolume(1500.0, testMountRoot)));
+    MesosResourcePool pool = new MesosResourcePool(offer);
+
+    MesosResource resourceToConsume = pool.consume(resReq);
+    Assert.assertEquals(1500.0, resourceToConsume.getResource().getScalar().getValue(), 0.0);
+    Assert.assertEquals(2, pool.getUnreservedAtomicPool().get("disk").size());
+    Assert.assertEquals(3000.0, pool.consume(resReq).getResource().getScalar().getValue(), 0.0);
+    Assert.assertNull(pool.consume(resReq));
+  }
+
   @Test
   public void testConsumeReservedMergedResource() {
     Resource resource = ResourceBuilder.reservedCpus(1.0, testRole, testPrincipal, testResourceId);
@@ -116,6 +133,29 @@ public class MesosResourcePoolTest {
     Assert.assertEquals(null, pool.consume(resReq));
   }
 
+  @Test
+  public void testCopyIsIndependent() {
+    Resource reservedResource = ResourceUtils.getExpectedScalar("mem", 512.0, testResourceId, testRole, testPrincipal);
+    Offer offer = getOffer(Arrays.asList(
+        ResourceBuilder.cpus(2.0),
+        ResourceBuilder.mountVolume(1000.0, testMountRoot),
+        reservedResource));
+    MesosResourcePool pool = new MesosResourcePool(offer);
+    MesosResourcePool copy = pool.copy();
+
+    Assert.assertNotNull(copy.consume(new ResourceRequirement(ResourceBuilder.cpus(2.0))));
+    Assert.assertNotNull(copy.consume(new ResourceRequirement(
+        ResourceBuilder.mountVolume(1000.0, testRole, testPrincipal, testContainerPath))));
+    Assert.assertNotNull(copy.consume(new ResourceRequirement(reservedResource)));
+
+    Assert.assertEquals(0.0, copy.getUnreservedMergedPool().get("cpus").getScalar().getValue(), 0.0);
+    Assert.assertEquals(2.0, pool.getUnreservedMergedPool().get("cpus").getScalar().getValue(), 0.0);
+    Assert.assertNull(copy.getUnreservedAtomicPool().get("disk"));
+    Assert.assertEquals(1, pool.getUnreservedAtomicPool().get("disk").size());
+    Assert.assertTrue(copy.getReservedPool().isEmpty());
+    Assert.assertEquals(1, pool.getReservedPool().size());
+  }
+
   @Test
   public void testReleaseAtomicResource() {
     Resource offerResource = ResourceBuilder.mountVolume(1000.0, testMountRoot);
@@ -139,6 +179,27 @@ public class MesosResourcePoolTest {
     Assert.assertEquals(2, pool.getUnreservedMergedPool().get("cpus").getScalar().getValue(), 0.0);
   }
 
+  @Test
+  public void testConsumeUnreservedRangesResource() {
+    Resource offeredPorts = ResourceBuilder.ports(1000, 2000);
+    ResourceRequirement resReq = new ResourceRequirement(ResourceBuilder.ports(1500, 1599));
+    Offer offer = getOffer(offeredPorts);
+    MesosResourcePool pool = new MesosResourcePool(offer);
+
+    Assert.assertNotNull(pool.consume(resReq));
+    Protos.Value remaining = pool.getUnreservedMergedPool().get("ports");
+    Assert.assertEquals(2, remaining.getRanges().getRangeCount());
+    Assert.assertEquals(1499, remaining.getRanges().getRange(0).getEnd());
+    Assert.assertEquals(1600, remaining.getRanges().getRange(1).getBegin());
+    Assert.assertNull(pool.consume(resReq));
+
+    pool.release(new MesosResource(ResourceBuilder.ports(1500, 1599)));
+    remaining = pool.getUnreservedMergedPool().get("ports");
+    Assert.assertEquals(1, remaining.getRanges().getRangeCount());
+    Assert.assertEquals(1000, remaining.getRanges().getRange(0).getBegin());
+    Assert.assertEquals(2000, remaining.getRanges().getRange(0).getEnd());
+  }
+
   private Offer getOffer(List<Resource> resources) {
     OfferBuilder builder = new OfferBuilder(testOfferId, testFrameworkId, testSlaveId, testHostname);
     return builder.addAllResources(resources).build();
@@ -2,6 +2,7 @@ package org.apache.mesos.offer;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.mesos.protobuf.OfferBuilder;
@@ -12,6 +13,7 @@ import org.apache.mesos.Protos.Offer;
 import org.apache.mesos.Protos.Offer.Operation;
 import org.apache.mesos.Protos.OfferID;
 import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.SlaveID;
 import org.apache.mesos.Protos.TaskInfo;
 import org.apache.mesos.SchedulerDriver;
 
@@ -19,6 +21,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import static org.mockito.Mockito.*;
@@ -81,6 +84,38 @@ public class OfferAccepterTest {
         anyObject());
   }
 
+  @Test
+  public void testAcceptGroupedPerAgent() {
+    Resource resource = ResourceBuilder.cpus(1.0);
+    Offer offer1 = Offer.newBuilder(getOffer(resource))
+        .setId(OfferID.newBuilder().setValue("offer-1"))
+        .build();
+    Offer offer2 = Offer.newBuilder(getOffer(resource))
+        .setId(OfferID.newBuilder().setValue("offer-2"))
+        .build();
+    Offer otherAgentOffer = Offer.newBuilder(getOffer(resource))
+        .setId(OfferID.newBuilder().setValue("offer-3"))
+        .setSlaveId(SlaveID.newBuilder().setValue("other-agent"))
+        .build();
+
+    TestOperationRecorder recorder = new TestOperationRecorder();
+    OfferAccepter accepter = new OfferAccepter(recorder);
+    List<OfferID> acceptedIds = accepter.accept(driver, Arrays.asList(
+        new LaunchOfferRecommendation(offer1, getTaskInfo(resource)),
+        new LaunchOfferRecommendation(otherAgentOffer, getTaskInfo(resource)),
+        new LaunchOfferRecommendation(offer2, getTaskInfo(resource)),
+        new LaunchOfferRecommendation(offer1, getTaskInfo(resource))));
+
+    Assert.assertEquals(Arrays.asList(offer1.getId(), offer2.getId(), otherAgentOffer.getId()), acceptedIds);
+    Assert.assertEquals(4, recorder.getLaunches().size());
+    ArgumentCaptor<Collection> operations = ArgumentCaptor.forClass(Collection.class);
+    verify(driver, times(1)).acceptOffers(
+        eq(Arrays.asList(offer1.getId(), offer2.getId())), operations.capture(), anyObject());
+    Assert.assertEquals(3, operations.getValue().size());
+    verify(driver, times(1)).acceptOffers(eq(Arrays.asList(otherAgentOffer.getId())), operations.capture(), anyObject());
+    Assert.assertEquals(1, operations.getValue().size());
+  }
+
   private List<Offer> getOffers(List<Resource> resources) {
     OfferBuilder builder = new OfferBuilder(
         ResourceTestUtils.testOfferId,
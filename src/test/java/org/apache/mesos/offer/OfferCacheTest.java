@@ -0,0 +1,114 @@
+package org.apache.mesos.offer;
+
+import java.util.*;
+
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.SchedulerDriver;
+import org.apache.mesos.protobuf.OfferBuilder;
+import org.apache.mesos.protobuf.ResourceBuilder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+public class OfferCacheTest {
+
+  private static final long LONG_TTL_MS = 60 * 60 * 1000;
+
+  @Test
+  public void testGetOffersInReceiveOrder() {
+    OfferCache cache = new OfferCache(LONG_TTL_MS);
+    Offer offer1 = getOffer("offer-1");
+    Offer offer2 = getOffer("offer-2");
+    cache.add(Arrays.asList(offer2));
+    cache.add(Arrays.asList(offer1, offer2));
+
+    Assert.assertEquals(Arrays.asList(offer2, offer1), cache.getOffers());
+    Assert.assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testRemove() {
+    OfferCache cache = new OfferCache(LONG_TTL_MS);
+    Offer offer1 = getOffer("offer-1");
+    Offer offer2 = getOffer("offer-2");
+    cache.add(Arrays.asList(offer1, offer2));
+
+    cache.removeAll(Arrays.asList(offer1.getId()));
+    Assert.assertEquals(Arrays.asList(offer2), cache.getOffers());
+
+    cache.offerRescinded(offer2.getId());
+    Assert.assertTrue(cache.getOffers().isEmpty());
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testExpiredOffersAreNotReturned() {
+    OfferCache cache = new OfferCache(0);
+    cache.add(Arrays.asList(getOffer("offer-1")));
+
+    Assert.assertTrue(cache.getOffers().isEmpty());
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(1, cache.removeExpired().size());
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testDeclineExpired() {
+    SchedulerDriver driver = mock(SchedulerDriver.class);
+    Offer offer = getOffer("offer-1");
+
+    OfferCache liveCache = new OfferCache(LONG_TTL_MS);
+    liveCache.add(Arrays.asList(offer));
+    Assert.assertTrue(liveCache.declineExpired(driver).isEmpty());
+    verifyZeroInteractions(driver);
+
+    OfferCache expiredCache = new OfferCache(0);
+    expiredCache.add(Arrays.asList(offer));
+    Assert.assertEquals(Arrays.asList(offer.getId()), expiredCache.declineExpired(driver));
+    verify(driver).declineOffer(offer.getId());
+    Assert.assertEquals(0, expiredCache.size());
+  }
+
+  @Test
+  public void testExpiredOffersDeclinedInBackground() {
+    SchedulerDriver driver = mock(SchedulerDriver.class);
+    Offer offer = getOffer("offer-1");
+    OfferCache cache = new OfferCache(10);
+    cache.add(Arrays.asList(offer));
+
+    cache.start(driver);
+    try {
+      verify(driver, timeout(5000)).declineOffer(offer.getId());
+    } finally {
+      cache.close();
+    }
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testResourceIndexIsKeptInSync() {
+    OfferResourceIndex index = new OfferResourceIndex();
+    OfferCache cache = new OfferCache(LONG_TTL_MS, index);
+    Offer offer1 = getOffer("offer-1");
+    Offer offer2 = getOffer("offer-2");
+    cache.add(Arrays.asList(offer1, offer2));
+    Assert.assertTrue(index.contains(offer1.getId()));
+    Assert.assertTrue(index.contains(offer2.getId()));
+
+    cache.offerRescinded(offer1.getId());
+    Assert.assertFalse(index.contains(offer1.getId()));
+
+    OfferCache expiredCache = new OfferCache(0, index);
+    expiredCache.add(Arrays.asList(offer2));
+    expiredCache.removeExpired();
+    Assert.assertFalse(index.contains(offer2.getId()));
+  }
+
+  private static Offer getOffer(String offerId) {
+    OfferBuilder builder = new OfferBuilder(
+        offerId, ResourceTestUtils.testFrameworkId, ResourceTestUtils.testSlaveId, ResourceTestUtils.testHostname);
+    return builder.addResource(ResourceBuilder.cpus(1.0)).build();
+  }
+}
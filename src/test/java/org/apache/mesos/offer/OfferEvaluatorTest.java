@@ -732,6 +732,153 @@ public class OfferEvaluatorTest {
     Assert.assertEquals(launch0ExecutorId, launch1ExecutorId);
   }
 
+  @Test
+  public void testFirstFitSkipsInsufficientOffer() throws InvalidRequirementException {
+    Resource desiredCpu = ResourceUtils.getDesiredScalar(
+            ResourceTestUtils.testRole, ResourceTestUtils.testPrincipal, "cpus", 2.0);
+    List<Offer> offers = Arrays.asList(
+            getOffer("offer-1", "host-1", ResourceUtils.getUnreservedScalar("cpus", 1.0)),
+            getOffer("offer-2", "host-2", ResourceUtils.getUnreservedScalar("cpus", 2.0)));
+
+    List<OfferRecommendation> recommendations = evaluator.evaluate(getOfferRequirement(desiredCpu), offers);
+    Assert.assertEquals(2, recommendations.size());
+    Assert.assertEquals("offer-2", recommendations.get(0).getOffer().getId().getValue());
+  }
+
+  @Test
+  public void testBestFitSelectsTightestOffer() throws InvalidRequirementException {
+    Resource desiredCpu = ResourceUtils.getDesiredScalar(
+            ResourceTestUtils.testRole, ResourceTestUtils.testPrincipal, "cpus", 1.0);
+    List<Offer> offers = Arrays.asList(
+            getOffer("offer-1", "host-1", ResourceUtils.getUnreservedScalar("cpus", 4.0)),
+            getOffer("offer-2", "host-2", ResourceUtils.getUnreservedScalar("cpus", 0.5)),
+            getOffer("offer-3", "host-3", ResourceUtils.getUnreservedScalar("cpus", 2.0)));
+
+    OfferEvaluator bestFitEvaluator = new OfferEvaluator(new BestFitFunction());
+    List<OfferRecommendation> recommendations = bestFitEvaluator.evaluate(getOfferRequirement(desiredCpu), offers);
+    Assert.assertEquals(2, recommendations.size());
+    for (OfferRecommendation recommendation : recommendations) {
+      Assert.assertEquals("offer-3", recommendation.getOffer().getId().getValue());
+    }
+  }
+
+  @Test
+  public void testWorstFitSelectsLoosestOffer() throws InvalidRequirementException {
+    Resource desiredCpu = ResourceUtils.getDesiredScalar(
+            ResourceTestUtils.testRole, ResourceTestUtils.testPrincipal, "cpus", 1.0);
+    List<Offer> offers = Arrays.asList(
+            getOffer("offer-1", "host-1", ResourceUtils.getUnreservedScalar("cpus", 2.0)),
+            getOffer("offer-2", "host-2", ResourceUtils.getUnreservedScalar("cpus", 4.0)),
+            getOffer("offer-3", "host-3", ResourceUtils.getUnreservedScalar("cpus", 0.5)));
+
+    OfferEvaluator worstFitEvaluator = new OfferEvaluator(new WorstFitFunction());
+    List<OfferRecommendation> recommendations = worstFitEvaluator.evaluate(getOfferRequirement(desiredCpu), offers);
+    Assert.assertEquals(2, recommendations.size());
+    Assert.assertEquals("offer-2", recommendations.get(0).getOffer().getId().getValue());
+  }
+
+  @Test
+  public void testBestFitNoSufficientOffer() throws InvalidRequirementException {
+    Resource desiredCpu = ResourceUtils.getDesiredScalar(
+            ResourceTestUtils.testRole, ResourceTestUtils.testPrincipal, "cpus", 8.0);
+    List<Offer> offers = Arrays.asList(
+            getOffer("offer-1", "host-1", ResourceUtils.getUnreservedScalar("cpus", 2.0)),
+            getOffer("offer-2", "host-2", ResourceUtils.getUnreservedScalar("cpus", 4.0)));
+
+    OfferEvaluator bestFitEvaluator = new OfferEvaluator(new BestFitFunction());
+    Assert.assertEquals(0, bestFitEvaluator.evaluate(getOfferRequirement(desiredCpu), offers).size());
+  }
+
+  @Test
+  public void testSpreadByHostAvoidsSelectedHosts() throws InvalidRequirementException {
+    Resource desiredCpu = ResourceUtils.getDesiredScalar(
+            ResourceTestUtils.testRole, ResourceTestUtils.testPrincipal, "cpus", 1.0);
+    List<Offer> offers = Arrays.asList(
+            getOffer("offer-1", "host-1", ResourceUtils.getUnreservedScalar("cpus", 4.0)),
+            getOffer("offer-2", "host-2", ResourceUtils.getUnreservedScalar("cpus", 2.0)));
+
+    OfferEvaluator spreadEvaluator = new OfferEvaluator(new SpreadByHostFitFunction());
+    List<OfferRecommendation> recommendations = spreadEvaluator.evaluate(getOfferRequirement(desiredCpu), offers);
+    Assert.assertEquals("host-1", recommendations.get(0).getOffer().getHostname());
+
+    recommendations = spreadEvaluator.evaluate(getOfferRequirement(desiredCpu), offers);
+    Assert.assertEquals("host-2", recommendations.get(0).getOffer().getHostname());
+  }
+
+  @Test
+  public void testBatchDoesNotDoubleBookOffer() throws InvalidRequirementException {
+    Resource desiredCpu = ResourceUtils.getDesiredScalar(
+            ResourceTestUtils.testRole, ResourceTestUtils.testPrincipal, "cpus", 1.0);
+    List<Offer> offers = Arrays.asList(
+            getOffer("offer-1", "host-1", ResourceUtils.getUnreservedScalar("cpus", 2.0)),
+            getOffer("offer-2", "host-2", ResourceUtils.getUnreservedScalar("cpus", 1.0)));
+
+    List<List<OfferRecommendation>> recommendations = evaluator.evaluate(
+            Arrays.asList(
+                getOfferRequirement(desiredCpu),
+                getOfferRequirement(desiredCpu),
+                getOfferRequirement(desiredCpu),
+                getOfferRequirement(desiredCpu)),
+            offers);
+
+    Assert.assertEquals(4, recommendations.size());
+    Assert.assertEquals("offer-1", recommendations.get(0).get(0).getOffer().getId().getValue());
+    Assert.assertEquals("offer-1", recommendations.get(1).get(0).getOffer().getId().getValue());
+    Assert.assertEquals("offer-2", recommendations.get(2).get(0).getOffer().getId().getValue());
+    Assert.assertTrue(recommendations.get(3).isEmpty());
+  }
+
+  @Test
+  public void testBatchFailedRequirementDoesNotConsume() throws InvalidRequirementException {
+    Resource desiredCpu = ResourceUtils.getDesiredScalar(
+            ResourceTestUtils.testRole, ResourceTestUtils.testPrincipal, "cpus", 1.0);
+    Resource desiredMem = ResourceUtils.getDesiredScalar(
+            ResourceTestUtils.testRole, ResourceTestUtils.testPrincipal, "mem", 1024.0);
+    List<Offer> offers = Arrays.asList(
+            getOffer("offer-1", "host-1", ResourceUtils.getUnreservedScalar("cpus", 1.0)));
+
+    TaskInfo cpuMemTask = TaskInfo.newBuilder(getTaskInfo(desiredCpu)).addResources(desiredMem).build();
+
+    List<List<OfferRecommendation>> recommendations = evaluator.evaluate(
+            Arrays.asList(
+                new OfferRequirement(Arrays.asList(cpuMemTask)),
+                getOfferRequirement(desiredCpu)),
+            offers);
+
+    Assert.assertTrue(recommendations.get(0).isEmpty());
+    Assert.assertEquals(2, recommendations.get(1).size());
+  }
+
+  @Test
+  public void testBatchBestFitUsesRemainingResources() throws InvalidRequirementException {
+    Resource desiredCpu = ResourceUtils.getDesiredScalar(
+            ResourceTestUtils.testRole, ResourceTestUtils.testPrincipal, "cpus", 1.0);
+    List<Offer> offers = Arrays.asList(
+            getOffer("offer-1", "host-1", ResourceUtils.getUnreservedScalar("cpus", 4.0)),
+            getOffer("offer-2", "host-2", ResourceUtils.getUnreservedScalar("cpus", 2.0)));
+
+    OfferEvaluator bestFitEvaluator = new OfferEvaluator(new BestFitFunction());
+    List<List<OfferRecommendation>> recommendations = bestFitEvaluator.evaluate(
+            Arrays.asList(
+                getOfferRequirement(desiredCpu),
+                getOfferRequirement(desiredCpu),
+                getOfferRequirement(desiredCpu)),
+            offers);
+
+    Assert.assertEquals("offer-2", recommendations.get(0).get(0).getOffer().getId().getValue());
+    Assert.assertEquals("offer-2", recommendations.get(1).get(0).getOffer().getId().getValue());
+    Assert.assertEquals("offer-1", recommendations.get(2).get(0).getOffer().getId().getValue());
+  }
+
+  private static Offer getOffer(String offerId, String hostname, Resource resource) {
+    OfferBuilder builder = new OfferBuilder(
+        offerId,
+        ResourceTestUtils.testFrameworkId,
+        ResourceTestUtils.testSlaveId,
+        hostname);
+    return builder.addResource(resource).build();
+  }
+
   private static Label getFirstLabel(Resource resource) {
     return resource.getReservation().getLabels().getLabels(0);
   }
@@ -0,0 +1,89 @@
+package org.apache.mesos.offer;
+
+import java.util.*;
+
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.protobuf.OfferBuilder;
+import org.apache.mesos.protobuf.ResourceBuilder;
+import org.apache.mesos.protobuf.TaskInfoBuilder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OfferResourceIndexTest {
+
+  private static final String testRole = "test-role";
+  private static final String testPrincipal = "test-principal";
+
+  @Test
+  public void testAddOfferClassifiesOnce() {
+    OfferResourceIndex index = new OfferResourceIndex();
+    Offer offer = getOffer("offer-1", "agent-1", ResourceBuilder.cpus(1.0));
+
+    OfferResources resources = index.addOffer(offer);
+    Assert.assertSame(resources, index.addOffer(offer));
+    Assert.assertEquals(1, resources.getUnreservedMergedResources().size());
+    Assert.assertEquals(1, index.size());
+  }
+
+  @Test
+  public void testGetPoolDoesNotAddOffer() {
+    OfferResourceIndex index = new OfferResourceIndex();
+    Offer offer = getOffer("offer-1", "agent-1", ResourceBuilder.cpus(1.0));
+
+    Assert.assertEquals(1, index.getPool(offer).getUnreservedMergedPool().size());
+    Assert.assertFalse(index.contains(offer.getId()));
+    Assert.assertEquals(0, index.size());
+  }
+
+  @Test
+  public void testRemoveOffer() {
+    OfferResourceIndex index = new OfferResourceIndex();
+    Resource reservedCpus = ResourceBuilder.reservedCpus(1.0, testRole, testPrincipal, "cpus-id");
+    Offer offer = getOffer("offer-1", "agent-1", reservedCpus);
+    index.addOffer(offer);
+
+    index.removeOffer(offer.getId());
+    Assert.assertFalse(index.contains(offer.getId()));
+    Assert.assertEquals(0, index.size());
+  }
+
+  @Test
+  public void testPoolsAreIndependent() {
+    OfferResourceIndex index = new OfferResourceIndex();
+    Resource reservedCpus = ResourceBuilder.reservedCpus(1.0, testRole, testPrincipal, "cpus-id");
+    Offer offer = getOffer("offer-1", "agent-1", reservedCpus);
+
+    MesosResourcePool pool = index.getPool(offer);
+    Assert.assertNotNull(pool.consume(new ResourceRequirement(reservedCpus)));
+    Assert.assertEquals(0, pool.getReservedPool().size());
+    Assert.assertEquals(1, index.getPool(offer).getReservedPool().size());
+  }
+
+  @Test
+  public void testEvaluatorUsesIndex() throws InvalidRequirementException {
+    OfferResourceIndex index = new OfferResourceIndex();
+    OfferEvaluator evaluator = new OfferEvaluator(null, index);
+    Resource desiredCpu = ResourceUtils.getDesiredScalar(testRole, testPrincipal, "cpus", 1.0);
+    Offer offer = getOffer("offer-1", "agent-1", ResourceBuilder.cpus(2.0));
+
+    TaskInfoBuilder taskBuilder = new TaskInfoBuilder(
+        ResourceTestUtils.testTaskId, ResourceTestUtils.testTaskName, ResourceTestUtils.testSlaveId);
+    OfferRequirement offerRequirement = new OfferRequirement(
+        Arrays.asList(taskBuilder.addResource(desiredCpu).build()));
+    index.addOffer(offer);
+    Assert.assertEquals(2, evaluator.evaluate(offerRequirement, Arrays.asList(offer)).size());
+    Assert.assertEquals(1, index.size());
+
+    // Offers which the index doesn't hold are evaluated without being added to it.
+    Offer otherOffer = getOffer("offer-2", "agent-1", ResourceBuilder.cpus(2.0));
+    Assert.assertEquals(2, evaluator.evaluate(offerRequirement, Arrays.asList(otherOffer)).size());
+    Assert.assertFalse(index.contains(otherOffer.getId()));
+  }
+
+  private static Offer getOffer(String offerId, String agentId, Resource resource) {
+    OfferBuilder builder = new OfferBuilder(offerId, ResourceTestUtils.testFrameworkId, agentId, ResourceTestUtils.testHostname);
+    return builder.addResource(resource).build();
+  }
+}
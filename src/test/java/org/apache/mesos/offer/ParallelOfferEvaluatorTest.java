@@ -0,0 +1,232 @@
+package org.apache.mesos.offer;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.Offer.Operation;
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.TaskInfo;
+import org.apache.mesos.protobuf.OfferBuilder;
+import org.apache.mesos.protobuf.TaskInfoBuilder;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelOfferEvaluatorTest {
+
+  private static final ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+
+  @AfterClass
+  public static void afterAll() {
+    forkJoinPool.shutdown();
+  }
+
+  @Test
+  public void testFirstFitMatchesSequential() throws InvalidRequirementException {
+    assertPathsAgree(new OfferEvaluator(), new ParallelOfferEvaluator(null, forkJoinPool, 1));
+  }
+
+  @Test
+  public void testBestFitMatchesSequential() throws InvalidRequirementException {
+    assertPathsAgree(
+            new OfferEvaluator(new BestFitFunction()),
+            new ParallelOfferEvaluator(new BestFitFunction(), forkJoinPool, 1));
+  }
+
+  @Test
+  public void testWorstFitMatchesSequential() throws InvalidRequirementException {
+    assertPathsAgree(
+            new OfferEvaluator(new WorstFitFunction()),
+            new ParallelOfferEvaluator(new WorstFitFunction(), forkJoinPool, 1));
+  }
+
+  @Test
+  public void testSpreadByHostMatchesSequential() throws InvalidRequirementException {
+    assertPathsAgree(
+            new OfferEvaluator(new SpreadByHostFitFunction()),
+            new ParallelOfferEvaluator(new SpreadByHostFitFunction(), forkJoinPool, 1));
+  }
+
+  @Test
+  public void testSmallBatchEvaluatedSequentially() throws InvalidRequirementException {
+    Resource desiredCpu = ResourceUtils.getDesiredScalar(
+            ResourceTestUtils.testRole, ResourceTestUtils.testPrincipal, "cpus", 1.0);
+    List<Offer> offers = Arrays.asList(getOffer(0, 0.5), getOffer(1, 2.0));
+
+    OfferEvaluator evaluator = new ParallelOfferEvaluator(forkJoinPool);
+    List<OfferRecommendation> recommendations = evaluator.evaluate(getOfferRequirement(desiredCpu), offers);
+    Assert.assertEquals(2, recommendations.size());
+    Assert.assertEquals("offer-1", recommendations.get(0).getOffer().getId().getValue());
+  }
+
+  @Test
+  public void testNoSufficientOffer() throws InvalidRequirementException {
+    Resource desiredCpu = ResourceUtils.getDesiredScalar(
+            ResourceTestUtils.testRole, ResourceTestUtils.testPrincipal, "cpus", 100.0);
+
+    OfferEvaluator evaluator = new ParallelOfferEvaluator(null, forkJoinPool, 1);
+    Assert.assertEquals(0, evaluator.evaluate(getOfferRequirement(desiredCpu), getOffers(64)).size());
+  }
+
+  @Test(expected=IllegalStateException.class)
+  public void testFailedFitPropagated() throws InvalidRequirementException {
+    Resource desiredCpu = ResourceUtils.getDesiredScalar(
+            ResourceTestUtils.testRole, ResourceTestUtils.testPrincipal, "cpus", 1.0);
+
+    OfferEvaluator evaluator = new ParallelOfferEvaluator(new FailingFitFunction(), forkJoinPool, 1);
+    evaluator.evaluate(getOfferRequirement(desiredCpu), getOffers(64));
+  }
+
+  @Test(expected=IllegalStateException.class)
+  public void testFailedRequirementsFitPropagated() throws InvalidRequirementException {
+    Resource desiredCpu = ResourceUtils.getDesiredScalar(
+            ResourceTestUtils.testRole, ResourceTestUtils.testPrincipal, "cpus", 1.0);
+
+    OfferEvaluator evaluator = new ParallelOfferEvaluator(new FailingFitFunction(), forkJoinPool, 1);
+    evaluator.evaluate(Arrays.asList(getOfferRequirement(desiredCpu)), getOffers(64));
+  }
+
+  @Test
+  public void testFirstFitRequirementsMatchSequential() throws InvalidRequirementException {
+    assertRequirementPathsAgree(new OfferEvaluator(), new ParallelOfferEvaluator(null, forkJoinPool, 1));
+  }
+
+  @Test
+  public void testBestFitRequirementsMatchSequential() throws InvalidRequirementException {
+    assertRequirementPathsAgree(
+            new OfferEvaluator(new BestFitFunction()),
+            new ParallelOfferEvaluator(new BestFitFunction(), forkJoinPool, 1));
+  }
+
+  @Test
+  public void testRequirementsConsumeRemainingResources() throws InvalidRequirementException {
+    Resource desiredCpu = ResourceUtils.getDesiredScalar(
+            ResourceTestUtils.testRole, ResourceTestUtils.testPrincipal, "cpus", 1.0);
+    List<Offer> offers = Arrays.asList(getOffer(0, 1.5), getOffer(1, 1.0));
+
+    OfferEvaluator evaluator = new ParallelOfferEvaluator(null, forkJoinPool, 1);
+    List<List<OfferRecommendation>> recommendations = evaluator.evaluate(
+            Arrays.asList(
+                    getOfferRequirement(desiredCpu),
+                    getOfferRequirement(desiredCpu),
+                    getOfferRequirement(desiredCpu)),
+            offers);
+    Assert.assertEquals("offer-0", recommendations.get(0).get(0).getOffer().getId().getValue());
+    Assert.assertEquals("offer-1", recommendations.get(1).get(0).getOffer().getId().getValue());
+    Assert.assertTrue(recommendations.get(2).isEmpty());
+  }
+
+  /**
+   * A fit function which fails to score any Offer.
+   */
+  private static class FailingFitFunction implements OfferFitFunction {
+    @Override
+    public double score(OfferRequirement offerRequirement, MesosResourcePool pool) {
+      throw new IllegalStateException("failed");
+    }
+
+    @Override
+    public void selected(OfferRequirement offerRequirement, Offer offer) {
+    }
+  }
+
+  private static void assertRequirementPathsAgree(OfferEvaluator sequential, OfferEvaluator parallel)
+          throws InvalidRequirementException {
+    List<Offer> offers = getOffers(64);
+    List<OfferRequirement> offerRequirements = new ArrayList<>();
+    for (double cpus = 0.5; cpus <= 8.0; cpus += 0.5) {
+      offerRequirements.add(getOfferRequirement(ResourceUtils.getDesiredScalar(
+              ResourceTestUtils.testRole, ResourceTestUtils.testPrincipal, "cpus", cpus)));
+    }
+
+    List<List<OfferRecommendation>> sequentialRecommendations = sequential.evaluate(offerRequirements, offers);
+    List<List<OfferRecommendation>> parallelRecommendations = parallel.evaluate(offerRequirements, offers);
+    Assert.assertEquals(sequentialRecommendations.size(), parallelRecommendations.size());
+    for (int i = 0; i < sequentialRecommendations.size(); i++) {
+      Assert.assertEquals(
+              summarize(sequentialRecommendations.get(i)),
+              summarize(parallelRecommendations.get(i)));
+    }
+  }
+
+  private static void assertPathsAgree(OfferEvaluator sequential, OfferEvaluator parallel)
+          throws InvalidRequirementException {
+    List<Offer> offers = getOffers(64);
+
+    for (double cpus = 0.5; cpus <= 8.0; cpus += 0.5) {
+      Resource desiredCpu = ResourceUtils.getDesiredScalar(
+              ResourceTestUtils.testRole, ResourceTestUtils.testPrincipal, "cpus", cpus);
+      OfferRequirement offerRequirement = getOfferRequirement(desiredCpu);
+
+      Assert.assertEquals(
+              summarize(sequential.evaluate(offerRequirement, offers)),
+              summarize(parallel.evaluate(offerRequirement, offers)));
+    }
+  }
+
+  /**
+   * Reduces recommendations to their Offer, Operation type and resource values, omitting the
+   * randomly generated resource and persistence IDs.
+   */
+  private static List<String> summarize(List<OfferRecommendation> recommendations) {
+    List<String> summary = new ArrayList<>();
+
+    for (OfferRecommendation recommendation : recommendations) {
+      Operation operation = recommendation.getOperation();
+      List<Resource> resources = new ArrayList<>();
+      switch (operation.getType()) {
+        case RESERVE:
+          resources.addAll(operation.getReserve().getResourcesList());
+          break;
+        case LAUNCH:
+          for (TaskInfo taskInfo : operation.getLaunch().getTaskInfosList()) {
+            resources.addAll(taskInfo.getResourcesList());
+          }
+          break;
+        default:
+          break;
+      }
+
+      StringBuilder builder = new StringBuilder()
+              .append(recommendation.getOffer().getId().getValue())
+              .append(':')
+              .append(operation.getType());
+      for (Resource resource : resources) {
+        builder.append(':').append(resource.getName()).append('=').append(resource.getScalar().getValue());
+      }
+      summary.add(builder.toString());
+    }
+
+    return summary;
+  }
+
+  private static List<Offer> getOffers(int count) {
+    Random random = new Random(42);
+    List<Offer> offers = new ArrayList<>();
+
+    for (int i = 0; i < count; i++) {
+      offers.add(getOffer(i, 0.5 * (1 + random.nextInt(16))));
+    }
+
+    return offers;
+  }
+
+  private static Offer getOffer(int index, double cpus) {
+    OfferBuilder builder = new OfferBuilder(
+        "offer-" + index,
+        ResourceTestUtils.testFrameworkId,
+        "slave-" + index,
+        "host-" + (index % 8));
+    return builder.addResource(ResourceUtils.getUnreservedScalar("cpus", cpus)).build();
+  }
+
+  private static OfferRequirement getOfferRequirement(Resource resource) throws InvalidRequirementException {
+    TaskInfoBuilder builder = new TaskInfoBuilder(
+        ResourceTestUtils.testTaskId,
+        ResourceTestUtils.testTaskName,
+        ResourceTestUtils.testSlaveId);
+    return new OfferRequirement(Arrays.asList(builder.addResource(resource).build()));
+  }
+}
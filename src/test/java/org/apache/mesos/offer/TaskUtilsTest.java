@@ -4,6 +4,8 @@ import org.apache.mesos.Protos;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.UUID;
 
 /**
@@ -44,6 +46,16 @@ public class TaskUtilsTest {
         Assert.assertEquals(testTargetConfigurationId, TaskUtils.getTargetConfiguration(taskInfo));
     }
 
+    @Test
+    public void testGetTargetConfigurations() throws Exception {
+        Assert.assertEquals(
+                Collections.singleton(testTargetConfigurationId),
+                TaskUtils.getTargetConfigurations(Arrays.asList(
+                        getTestTaskInfo(),
+                        getTestTaskInfoWithTargetConfiguration(),
+                        getTestTaskInfoWithTargetConfiguration())));
+    }
+
     private Protos.TaskID getTaskId(String value) {
         return Protos.TaskID.newBuilder().setValue(value).build();
     }
@@ -0,0 +1,142 @@
+package org.apache.mesos.scheduler;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.apache.mesos.Protos;
+import org.apache.mesos.config.ConfigStore;
+import org.apache.mesos.config.ConfigStoreException;
+import org.apache.mesos.config.StringConfiguration;
+import org.apache.mesos.offer.TaskUtils;
+import org.apache.mesos.state.StateStore;
+import org.apache.mesos.state.StateStoreException;
+import org.apache.zookeeper.KeeperException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+/**
+ * This class tests the SchedulerBootstrap class.
+ */
+public class SchedulerBootstrapTest {
+  private static final Protos.FrameworkID FRAMEWORK_ID =
+      Protos.FrameworkID.newBuilder().setValue("test-framework-id").build();
+  private static final UUID TARGET_CONFIG_ID = UUID.randomUUID();
+
+  @Mock private StateStore mockStateStore;
+  @Mock private ConfigStore<StringConfiguration> mockConfigStore;
+
+  private SchedulerBootstrap bootstrap;
+
+  @Before
+  public void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+    bootstrap = new SchedulerBootstrap(mockStateStore, mockConfigStore);
+  }
+
+  @Test
+  public void testLoad() throws Exception {
+    Protos.TaskInfo task = getTaskInfo("task");
+    Protos.TaskStatus status = getTaskStatus(task);
+    when(mockStateStore.fetchFrameworkId()).thenReturn(FRAMEWORK_ID);
+    when(mockConfigStore.getTargetConfig()).thenReturn(TARGET_CONFIG_ID);
+    when(mockStateStore.fetchTasks()).thenReturn(Arrays.asList(task));
+    when(mockStateStore.fetchStatuses()).thenReturn(Arrays.asList(status));
+
+    SchedulerSnapshot snapshot = bootstrap.load();
+    assertEquals(FRAMEWORK_ID, snapshot.getFrameworkId());
+    assertEquals(TARGET_CONFIG_ID, snapshot.getTargetConfigId());
+    assertEquals(Arrays.asList(task), new ArrayList<>(snapshot.getTasks()));
+    assertEquals(Collections.singleton(status), snapshot.getTaskStatuses());
+    assertEquals(task.getResourcesList(), snapshot.getExpectedResources());
+    assertEquals(
+        Arrays.asList(
+            SchedulerBootstrap.FRAMEWORK_ID_PHASE,
+            SchedulerBootstrap.TASKS_PHASE,
+            SchedulerBootstrap.STATUSES_PHASE,
+            SchedulerBootstrap.TARGET_CONFIG_PHASE,
+            SchedulerBootstrap.TOTAL_PHASE),
+        Arrays.asList(snapshot.getPhaseTimingsMs().keySet().toArray()));
+  }
+
+  @Test
+  public void testLoadFirstLaunch() throws Exception {
+    when(mockStateStore.fetchFrameworkId()).thenThrow(
+        new StateStoreException(new KeeperException.NoNodeException("/FrameworkID")));
+    when(mockConfigStore.getTargetConfig()).thenThrow(
+        new ConfigStoreException("not found", new KeeperException.NoNodeException("/ConfigTarget")));
+    when(mockStateStore.fetchTasks()).thenReturn(Collections.<Protos.TaskInfo>emptyList());
+    when(mockStateStore.fetchStatuses()).thenReturn(Collections.<Protos.TaskStatus>emptyList());
+
+    SchedulerSnapshot snapshot = bootstrap.load();
+    assertNull(snapshot.getFrameworkId());
+    assertNull(snapshot.getTargetConfigId());
+    assertTrue(snapshot.getTasks().isEmpty());
+    assertTrue(snapshot.getTaskStatuses().isEmpty());
+  }
+
+  @Test
+  public void testLoadSkipsStatusesOfClearedTasks() throws Exception {
+    Protos.TaskInfo task = getTaskInfo("task");
+    Protos.TaskStatus status = getTaskStatus(task);
+    when(mockStateStore.fetchTasks()).thenReturn(Arrays.asList(task));
+    when(mockStateStore.fetchStatuses()).thenReturn(Arrays.asList(status, getTaskStatus(getTaskInfo("cleared"))));
+
+    assertEquals(Collections.singleton(status), bootstrap.load().getTaskStatuses());
+  }
+
+  @Test(expected=StateStoreException.class)
+  public void testLoadTasksFailure() throws Exception {
+    when(mockStateStore.fetchTasks()).thenThrow(new StateStoreException("failed"));
+    when(mockStateStore.fetchStatuses()).thenReturn(Collections.<Protos.TaskStatus>emptyList());
+    bootstrap.load();
+  }
+
+  @Test(expected=StateStoreException.class)
+  public void testLoadFrameworkIdFailure() throws Exception {
+    when(mockStateStore.fetchFrameworkId()).thenThrow(
+        new StateStoreException(new KeeperException.ConnectionLossException()));
+    when(mockStateStore.fetchTasks()).thenReturn(Collections.<Protos.TaskInfo>emptyList());
+    when(mockStateStore.fetchStatuses()).thenReturn(Collections.<Protos.TaskStatus>emptyList());
+    bootstrap.load();
+  }
+
+  @Test
+  public void testLoadTargetConfigFailure() throws Exception {
+    ConfigStoreException failure = new ConfigStoreException("failed", new KeeperException.ConnectionLossException());
+    when(mockConfigStore.getTargetConfig()).thenThrow(failure);
+    when(mockStateStore.fetchTasks()).thenReturn(Collections.<Protos.TaskInfo>emptyList());
+    when(mockStateStore.fetchStatuses()).thenReturn(Collections.<Protos.TaskStatus>emptyList());
+    try {
+      bootstrap.load();
+      fail("Expected the load to fail");
+    } catch (StateStoreException e) {
+      assertSame(failure, e.getCause());
+    }
+  }
+
+  private static Protos.TaskInfo getTaskInfo(String taskName) {
+    return Protos.TaskInfo.newBuilder()
+        .setName(taskName)
+        .setTaskId(TaskUtils.toTaskId(taskName))
+        .setSlaveId(Protos.SlaveID.newBuilder().setValue("test-agent-id"))
+        .addResources(Protos.Resource.newBuilder()
+            .setName("cpus")
+            .setType(Protos.Value.Type.SCALAR)
+            .setScalar(Protos.Value.Scalar.newBuilder().setValue(1.0)))
+        .build();
+  }
+
+  private static Protos.TaskStatus getTaskStatus(Protos.TaskInfo taskInfo) {
+    return Protos.TaskStatus.newBuilder()
+        .setTaskId(taskInfo.getTaskId())
+        .setState(Protos.TaskState.TASK_RUNNING)
+        .build();
+  }
+}
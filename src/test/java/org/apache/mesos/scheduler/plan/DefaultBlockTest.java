@@ -0,0 +1,89 @@
+package org.apache.mesos.scheduler.plan;
+
+import org.apache.mesos.Protos;
+import org.apache.mesos.offer.OfferRequirement;
+import org.apache.mesos.offer.TaskRequirement;
+import org.apache.mesos.offer.TaskUtils;
+import org.apache.mesos.protobuf.TaskInfoBuilder;
+import org.apache.mesos.protobuf.TaskStatusBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * This class tests the {@link DefaultBlock}.
+ */
+public class DefaultBlockTest {
+
+    @Test
+    public void testTaskNamesDeclared() {
+        DefaultBlock block = getBlock("broker-0", "broker-1");
+        Assert.assertEquals(new HashSet<>(Arrays.asList("broker-0", "broker-1")), block.getTaskNames());
+    }
+
+    @Test
+    public void testCompleteOnceAllTasksRunning() {
+        DefaultBlock block = getBlock("broker-0", "broker-1");
+        List<Protos.TaskID> taskIds = getTaskIds(block.start());
+        block.updateOfferStatus(true);
+        Assert.assertTrue(block.isInProgress());
+
+        block.update(getStatus(taskIds.get(0), Protos.TaskState.TASK_RUNNING));
+        Assert.assertTrue(block.isInProgress());
+        block.update(getStatus(taskIds.get(1), Protos.TaskState.TASK_RUNNING));
+        Assert.assertTrue(block.isComplete());
+    }
+
+    @Test
+    public void testRelaunchedOnTermination() {
+        DefaultBlock block = getBlock("broker-0");
+        List<Protos.TaskID> firstTaskIds = getTaskIds(block.start());
+        block.updateOfferStatus(true);
+
+        block.update(getStatus(firstTaskIds.get(0), Protos.TaskState.TASK_FAILED));
+        Assert.assertTrue(block.isPending());
+
+        List<Protos.TaskID> secondTaskIds = getTaskIds(block.start());
+        Assert.assertNotEquals(firstTaskIds, secondTaskIds);
+        block.updateOfferStatus(true);
+
+        // A status from the earlier launch doesn't complete the block.
+        block.update(getStatus(firstTaskIds.get(0), Protos.TaskState.TASK_RUNNING));
+        Assert.assertTrue(block.isInProgress());
+        block.update(getStatus(secondTaskIds.get(0), Protos.TaskState.TASK_RUNNING));
+        Assert.assertTrue(block.isComplete());
+    }
+
+    @Test
+    public void testDeclinedOfferStaysPending() {
+        DefaultBlock block = getBlock("broker-0");
+        Assert.assertNotNull(block.start());
+        block.updateOfferStatus(false);
+        Assert.assertTrue(block.isPending());
+    }
+
+    static DefaultBlock getBlock(String... taskNames) {
+        List<Protos.TaskInfo> taskInfos = new ArrayList<>();
+        for (String taskName : taskNames) {
+            taskInfos.add(new TaskInfoBuilder(
+                    TaskUtils.toTaskId(taskName).getValue(), taskName, "test-slave-id").build());
+        }
+        return DefaultBlock.create("test-block", taskInfos);
+    }
+
+    private static List<Protos.TaskID> getTaskIds(OfferRequirement offerRequirement) {
+        List<Protos.TaskID> taskIds = new ArrayList<>();
+        for (TaskRequirement taskRequirement : offerRequirement.getTaskRequirements()) {
+            taskIds.add(taskRequirement.getTaskInfo().getTaskId());
+        }
+        return taskIds;
+    }
+
+    private static Protos.TaskStatus getStatus(Protos.TaskID taskId, Protos.TaskState state) {
+        return TaskStatusBuilder.createTaskStatus(taskId, state);
+    }
+}
@@ -1,6 +1,7 @@
 package org.apache.mesos.scheduler.plan;
 
 import org.apache.mesos.Protos;
+import org.apache.mesos.offer.TaskUtils;
 import org.apache.mesos.protobuf.TaskStatusBuilder;
 import org.apache.mesos.reconciliation.Reconciler;
 import org.apache.mesos.reconciliation.TaskStatusProvider;
@@ -12,6 +13,7 @@ import org.mockito.MockitoAnnotations;
 import static org.mockito.Mockito.*;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.UUID;
 
 /**
@@ -124,6 +126,31 @@ public class DefaultStageManagerTest {
         Assert.assertEquals(stage.getPhases().get(0).getBlock(0), stageManager.getCurrentBlock());
     }
 
+    @Test
+    public void testGetCurrentBlocks() {
+        Assert.assertEquals(
+                Arrays.asList(stage.getPhases().get(0).getBlock(0)),
+                stageManager.getCurrentBlocks(3));
+        Assert.assertTrue(stageManager.getCurrentBlocks(0).isEmpty());
+    }
+
+    @Test
+    public void testSetParallelism() {
+        Assert.assertFalse(stageManager.setParallelism(2));
+
+        Stage parallelStage = DefaultStage.fromArgs(DefaultPhase.create(
+                UUID.randomUUID(), "phase-0", Arrays.asList(firstBlock, secondBlock)));
+        StageManager parallelManager = new DefaultStageManager(parallelStage, new ParallelStrategyFactory(1));
+        Assert.assertEquals(Arrays.asList(firstBlock), parallelManager.getCurrentBlocks(10));
+        Assert.assertTrue(parallelManager.setParallelism(2));
+        Assert.assertEquals(Arrays.asList(firstBlock, secondBlock), parallelManager.getCurrentBlocks(10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetInvalidParallelism() {
+        new DefaultStageManager(stage, new ParallelStrategyFactory(1)).setParallelism(0);
+    }
+
     @Test
     public void testIsComplete() {
         Assert.assertFalse(stageManager.isComplete());
@@ -228,6 +255,236 @@ public class DefaultStageManagerTest {
         verify(mockBlock, times(1)).update(any());
     }
 
+    @Test
+    public void testIndependentPhasesAreCurrent() {
+        TestBlock dataBlock = new TestBlock();
+        TestBlock indexBlock = new TestBlock();
+        TestBlock brokerBlock = new TestBlock();
+        Phase dataPhase = DefaultPhase.create(UUID.randomUUID(), "data", Arrays.asList(dataBlock));
+        Phase indexPhase = DefaultPhase.create(UUID.randomUUID(), "index", Arrays.asList(indexBlock));
+        Phase brokerPhase = DefaultPhase.create(UUID.randomUUID(), "broker", Arrays.asList(brokerBlock));
+        Stage dagStage = DependencyStage.builder()
+                .addPhase(dataPhase)
+                .addPhase(indexPhase)
+                .addPhase(brokerPhase)
+                .addDependency(indexPhase, dataPhase)
+                .build();
+        StageManager dagManager = new DefaultStageManager(dagStage, stratFactory);
+
+        Assert.assertEquals(Arrays.asList(dataPhase, brokerPhase), dagManager.getCurrentPhases());
+        Assert.assertEquals(dataPhase, dagManager.getCurrentPhase());
+        Assert.assertEquals(Arrays.asList(dataBlock, brokerBlock), dagManager.getCurrentBlocks(10));
+        Assert.assertEquals(Arrays.asList(dataBlock), dagManager.getCurrentBlocks(1));
+
+        dataBlock.setStatus(Status.Complete);
+        Assert.assertEquals(Arrays.asList(brokerPhase, indexPhase), dagManager.getCurrentPhases());
+        Assert.assertEquals(Arrays.asList(brokerBlock, indexBlock), dagManager.getCurrentBlocks(10));
+    }
+
+    @Test
+    public void testBlockDependenciesGateBlocks() {
+        TestBlock block0 = new TestBlock();
+        TestBlock block1 = new TestBlock();
+        Phase phase0 = DefaultPhase.create(UUID.randomUUID(), "phase-0", Arrays.asList(block0));
+        Phase phase1 = DefaultPhase.create(UUID.randomUUID(), "phase-1", Arrays.asList(block1));
+        Stage dagStage = DependencyStage.builder()
+                .addPhase(phase0)
+                .addPhase(phase1)
+                .addDependency(block0, block1)
+                .build();
+        StageManager dagManager = new DefaultStageManager(dagStage, stratFactory);
+
+        Assert.assertEquals(Arrays.asList(phase0, phase1), dagManager.getCurrentPhases());
+        Assert.assertEquals(Arrays.asList(block1), dagManager.getCurrentBlocks(10));
+        Assert.assertEquals(block1, dagManager.getCurrentBlock());
+
+        block1.setStatus(Status.Complete);
+        Assert.assertEquals(Arrays.asList(block0), dagManager.getCurrentBlocks(10));
+        Assert.assertEquals(block0, dagManager.getCurrentBlock());
+    }
+
+    @Test
+    public void testBlockedBlockDoesNotHoldBackParallelPhase() {
+        TestBlock block0 = new TestBlock();
+        TestBlock block1 = new TestBlock();
+        Phase phase = DefaultPhase.create(UUID.randomUUID(), "phase-0", Arrays.asList(block0, block1));
+        ParallelStrategyFactory parallelFactory = new ParallelStrategyFactory(1);
+        Stage dagStage = DependencyStage.builder()
+                .addPhase(phase)
+                .addDependency(block0, block1)
+                .setStrategyFactory(parallelFactory)
+                .build();
+        StageManager dagManager = new DefaultStageManager(dagStage, parallelFactory);
+
+        Assert.assertEquals(Arrays.asList(block1), dagManager.getCurrentBlocks(10));
+        block1.setStatus(Status.Complete);
+        Assert.assertEquals(Arrays.asList(block0), dagManager.getCurrentBlocks(10));
+    }
+
+    @Test
+    public void testLaterPhasesWaitOnEarlierPhases() {
+        TestBlock thirdBlock = new TestBlock();
+        Stage serialStage = DefaultStage.fromList(Arrays.asList(
+                DefaultPhase.create(UUID.randomUUID(), "phase-0", Arrays.asList(firstBlock)),
+                DefaultPhase.create(UUID.randomUUID(), "phase-1", Arrays.asList(secondBlock)),
+                DefaultPhase.create(UUID.randomUUID(), "phase-2", Arrays.asList(thirdBlock))));
+        StageManager serialManager = new DefaultStageManager(serialStage, stratFactory);
+        Assert.assertEquals(Arrays.asList(serialStage.getPhases().get(0)), serialManager.getCurrentPhases());
+
+        // phase-2 still depends on phase-0, not only on the phase before it
+        secondBlock.setStatus(Status.Complete);
+        Assert.assertEquals(Arrays.asList(serialStage.getPhases().get(0)), serialManager.getCurrentPhases());
+
+        firstBlock.setStatus(Status.Complete);
+        Assert.assertEquals(Arrays.asList(serialStage.getPhases().get(2)), serialManager.getCurrentPhases());
+    }
+
+    @Test
+    public void testInterruptProceedIndependentPhases() {
+        TestBlock block0 = new TestBlock();
+        TestBlock block1 = new TestBlock();
+        Stage dagStage = DependencyStage.builder()
+                .addPhase(DefaultPhase.create(UUID.randomUUID(), "phase-0", Arrays.asList(block0)))
+                .addPhase(DefaultPhase.create(UUID.randomUUID(), "phase-1", Arrays.asList(block1)))
+                .build();
+        StageManager dagManager = new DefaultStageManager(dagStage, stratFactory);
+        Assert.assertEquals(Arrays.asList(block0, block1), dagManager.getCurrentBlocks(10));
+
+        dagManager.interrupt();
+        Assert.assertTrue(dagManager.isInterrupted());
+        Assert.assertTrue(dagManager.getCurrentBlocks(10).isEmpty());
+        Assert.assertNull(dagManager.getCurrentBlock());
+
+        dagManager.proceed();
+        Assert.assertFalse(dagManager.isInterrupted());
+        Assert.assertEquals(Arrays.asList(block0, block1), dagManager.getCurrentBlocks(10));
+        Assert.assertEquals(block0, dagManager.getCurrentBlock());
+    }
+
+    @Test
+    public void testUpdateIndependentPhases() {
+        Block otherBlock = mock(Block.class);
+        when(mockBlock.getId()).thenReturn(UUID.randomUUID());
+        when(otherBlock.getId()).thenReturn(UUID.randomUUID());
+        Stage dagStage = DependencyStage.builder()
+                .addPhase(DefaultPhase.create(UUID.randomUUID(), "phase-0", Arrays.asList(mockBlock)))
+                .addPhase(DefaultPhase.create(UUID.randomUUID(), "phase-1", Arrays.asList(otherBlock)))
+                .build();
+        StageManager dagManager = new DefaultStageManager(dagStage, stratFactory);
+        Protos.TaskStatus testStatus = TaskStatusBuilder.createTaskStatus(testTaskId, Protos.TaskState.TASK_RUNNING);
+
+        dagManager.update(testStatus);
+        verify(mockBlock, times(1)).update(testStatus);
+        verify(otherBlock, times(1)).update(testStatus);
+    }
+
+    @Test
+    public void testUpdateRoutedToOwningBlock() {
+        Block ownerBlock = mock(Block.class);
+        Block otherBlock = mock(Block.class);
+        Block untrackedBlock = mock(Block.class);
+        when(ownerBlock.getId()).thenReturn(UUID.randomUUID());
+        when(otherBlock.getId()).thenReturn(UUID.randomUUID());
+        when(untrackedBlock.getId()).thenReturn(UUID.randomUUID());
+        when(ownerBlock.getTaskNames()).thenReturn(Collections.singleton("broker-0"));
+        when(otherBlock.getTaskNames()).thenReturn(Collections.singleton("broker-1"));
+
+        Stage routedStage = DefaultStage.fromArgs(
+                DefaultPhase.create(UUID.randomUUID(), "phase-0", Arrays.asList(untrackedBlock, otherBlock)),
+                DefaultPhase.create(UUID.randomUUID(), "phase-1", Arrays.asList(ownerBlock)));
+        DefaultStageManager routedManager = new DefaultStageManager(routedStage, stratFactory);
+        Protos.TaskStatus testStatus = TaskStatusBuilder.createTaskStatus(
+                TaskUtils.toTaskId("broker-0").getValue(), Protos.TaskState.TASK_RUNNING);
+
+        routedManager.update(testStatus);
+        verify(ownerBlock, times(1)).update(testStatus);
+        verify(otherBlock, never()).update(any());
+        // Blocks which don't declare their tasks still see every status while their phase is current.
+        verify(untrackedBlock, times(1)).update(testStatus);
+        Assert.assertEquals(0, routedManager.getUnknownTaskStatusCount());
+    }
+
+    @Test
+    public void testUpdateDeclaredTaskDeliveredToReconciliation() {
+        when(reconciler.isReconciled()).thenReturn(false);
+        ReconciliationPhase reconciliationPhase = ReconciliationPhase.create(reconciler, taskProvider);
+        TestBlock brokerBlock = new TestBlock("broker-0");
+        Stage reconcilingStage = DefaultStage.fromArgs(
+                reconciliationPhase,
+                DefaultPhase.create(UUID.randomUUID(), "phase-1", Arrays.asList(brokerBlock)));
+        DefaultStageManager reconcilingManager = new DefaultStageManager(reconcilingStage, stratFactory);
+        Protos.TaskStatus testStatus = TaskStatusBuilder.createTaskStatus(
+                TaskUtils.toTaskId("broker-0").getValue(), Protos.TaskState.TASK_RUNNING);
+
+        reconcilingManager.update(testStatus);
+        verify(reconciler, times(1)).update(testStatus);
+        Assert.assertEquals(0, reconcilingManager.getUnknownTaskStatusCount());
+    }
+
+    @Test
+    public void testUpdateRoutedToDefaultBlockByName() {
+        DefaultBlock block0 = DefaultBlockTest.getBlock("broker-0");
+        DefaultBlock block1 = DefaultBlockTest.getBlock("broker-1");
+        Stage routedStage = DefaultStage.fromArgs(
+                DefaultPhase.create(UUID.randomUUID(), "phase-0", Arrays.asList(block0)),
+                DefaultPhase.create(UUID.randomUUID(), "phase-1", Arrays.asList(block1)));
+        DefaultStageManager routedManager = new DefaultStageManager(routedStage, stratFactory);
+
+        // broker-1 belongs to a later phase, but its status still reaches its block by name.
+        Protos.TaskInfo taskInfo = block1.start().getTaskRequirements().iterator().next().getTaskInfo();
+        block1.updateOfferStatus(true);
+        routedManager.update(TaskStatusBuilder.createTaskStatus(
+                taskInfo.getTaskId(), Protos.TaskState.TASK_RUNNING));
+        Assert.assertTrue(block1.isComplete());
+        Assert.assertTrue(block0.isPending());
+        Assert.assertEquals(0, routedManager.getUnknownTaskStatusCount());
+
+        routedManager.update(TaskStatusBuilder.createTaskStatus(
+                TaskUtils.toTaskId("other-0"), Protos.TaskState.TASK_RUNNING));
+        Assert.assertEquals(1, routedManager.getUnknownTaskStatusCount());
+    }
+
+    @Test
+    public void testUpdateUnknownTaskDeliveredToUntrackedBlocks() {
+        Block trackedBlock = mock(Block.class);
+        when(trackedBlock.getId()).thenReturn(UUID.randomUUID());
+        when(trackedBlock.getTaskNames()).thenReturn(Collections.singleton("broker-0"));
+        when(mockBlock.getId()).thenReturn(UUID.randomUUID());
+
+        Stage routedStage = DefaultStage.fromArgs(
+                DefaultPhase.create(UUID.randomUUID(), "phase-0", Arrays.asList(trackedBlock, mockBlock)));
+        DefaultStageManager routedManager = new DefaultStageManager(routedStage, stratFactory);
+
+        Protos.TaskStatus unknownStatus = TaskStatusBuilder.createTaskStatus(
+                TaskUtils.toTaskId("other-0").getValue(), Protos.TaskState.TASK_RUNNING);
+        routedManager.update(unknownStatus);
+        routedManager.update(TaskStatusBuilder.createTaskStatus(testTaskId, Protos.TaskState.TASK_RUNNING));
+
+        verify(trackedBlock, never()).update(any());
+        verify(mockBlock, times(2)).update(any());
+        // The untracked block may own these tasks, so they aren't counted as unknown.
+        Assert.assertEquals(0, routedManager.getUnknownTaskStatusCount());
+    }
+
+    @Test
+    public void testUpdateUnknownTaskCounted() {
+        TestBlock block0 = new TestBlock("broker-0");
+        TestBlock block1 = new TestBlock("broker-1");
+        Stage trackedStage = DefaultStage.fromArgs(
+                DefaultPhase.create(UUID.randomUUID(), "phase-0", Arrays.asList(block0)),
+                DefaultPhase.create(UUID.randomUUID(), "phase-1", Arrays.asList(block1)));
+        DefaultStageManager trackedManager = new DefaultStageManager(trackedStage, stratFactory);
+
+        trackedManager.update(TaskStatusBuilder.createTaskStatus(
+                TaskUtils.toTaskId("broker-1").getValue(), Protos.TaskState.TASK_RUNNING));
+        Assert.assertEquals(0, trackedManager.getUnknownTaskStatusCount());
+
+        trackedManager.update(TaskStatusBuilder.createTaskStatus(
+                TaskUtils.toTaskId("other-0").getValue(), Protos.TaskState.TASK_RUNNING));
+        trackedManager.update(TaskStatusBuilder.createTaskStatus(testTaskId, Protos.TaskState.TASK_RUNNING));
+        Assert.assertEquals(2, trackedManager.getUnknownTaskStatusCount());
+    }
+
     @Test
     public void testHasDecisionPoint() {
         Block firstBlock = stage.getPhases().get(0).getBlock(0);
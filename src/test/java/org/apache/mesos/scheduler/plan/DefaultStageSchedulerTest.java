@@ -13,6 +13,7 @@ import java.util.Optional;
 import org.apache.mesos.SchedulerDriver;
 import org.apache.mesos.offer.InvalidRequirementException;
 import org.apache.mesos.offer.OfferAccepter;
+import org.apache.mesos.offer.OfferCache;
 import org.apache.mesos.offer.OfferEvaluator;
 import org.apache.mesos.offer.OfferRecommendation;
 import org.apache.mesos.offer.OfferRequirement;
@@ -133,6 +134,102 @@ public class DefaultStageSchedulerTest {
         assertTrue(block.isInProgress());
     }
 
+    @Test
+    public void testHeldOffersWithoutCache() {
+        TestBlock block = new TestBlock().setStatus(Status.Pending);
+        assertTrue(scheduler.resourceOffers(mockSchedulerDriver, block).isEmpty());
+        verifyZeroInteractions(mockOfferAccepter, mockOfferEvaluator, mockSchedulerDriver);
+    }
+
+    @Test
+    public void testUnacceptedOffersAreHeld() throws InvalidRequirementException {
+        OfferCache offerCache = new OfferCache(Long.MAX_VALUE);
+        scheduler = new DefaultStageScheduler(mockOfferAccepter, mockOfferEvaluator, offerCache);
+        OfferRequirement requirement = new OfferRequirement(TASKINFOS);
+        TestOfferBlock block = (TestOfferBlock) new TestOfferBlock(requirement)
+                .setStatus(Status.Pending);
+        when(mockOfferEvaluator.evaluate(requirement, OFFERS)).thenReturn(new ArrayList<>());
+
+        assertTrue(scheduler.resourceOffers(mockSchedulerDriver, OFFERS, block).isEmpty());
+        assertEquals(OFFERS, offerCache.getOffers());
+
+        scheduler.offerRescinded(OFFERS.get(0).getId());
+        assertEquals(0, offerCache.size());
+    }
+
+    @Test
+    public void testHeldOffersAccepted() throws InvalidRequirementException {
+        OfferCache offerCache = new OfferCache(Long.MAX_VALUE);
+        offerCache.add(OFFERS);
+        scheduler = new DefaultStageScheduler(mockOfferAccepter, mockOfferEvaluator, offerCache);
+        OfferRequirement requirement = new OfferRequirement(TASKINFOS);
+        TestOfferBlock block = (TestOfferBlock) new TestOfferBlock(requirement)
+                .setStatus(Status.Pending);
+        List<OfferID> acceptedIds = Arrays.asList(OFFERS.get(0).getId());
+        when(mockOfferEvaluator.evaluate(requirement, OFFERS)).thenReturn(RECOMMENDATIONS);
+        when(mockOfferAccepter.accept(mockSchedulerDriver, RECOMMENDATIONS)).thenReturn(acceptedIds);
+
+        assertEquals(acceptedIds, scheduler.resourceOffers(mockSchedulerDriver, block));
+
+        verify(mockOfferEvaluator).evaluate(requirement, OFFERS);
+        assertEquals(0, offerCache.size());
+        assertTrue(block.isInProgress());
+    }
+
+    @Test
+    public void testEvaluateBlocksTogether() throws InvalidRequirementException {
+        OfferRequirement requirement1 = new OfferRequirement(TASKINFOS);
+        OfferRequirement requirement2 = new OfferRequirement(TASKINFOS);
+        OfferRequirement requirement3 = new OfferRequirement(TASKINFOS);
+        TestOfferBlock block1 = (TestOfferBlock) new TestOfferBlock(requirement1)
+                .setStatus(Status.Pending);
+        TestOfferBlock block2 = (TestOfferBlock) new TestOfferBlock(requirement2)
+                .setStatus(Status.Pending);
+        TestOfferBlock block3 = (TestOfferBlock) new TestOfferBlock(requirement3)
+                .setStatus(Status.Pending);
+        TestBlock completeBlock = new TestBlock().setStatus(Status.Complete);
+
+        OfferRecommendation recommendation1 = getRecommendation(OFFERS.get(0));
+        OfferRecommendation recommendation2 = getRecommendation(OFFERS.get(0));
+        when(mockOfferEvaluator.evaluate(Arrays.asList(requirement1, requirement2, requirement3), OFFERS))
+                .thenReturn(Arrays.asList(
+                        Arrays.asList(recommendation1),
+                        new ArrayList<>(),
+                        Arrays.asList(recommendation2)));
+        List<OfferID> acceptedIds = Arrays.asList(OFFERS.get(0).getId());
+        when(mockOfferAccepter.accept(
+                mockSchedulerDriver, Arrays.asList(recommendation1, recommendation2)))
+                .thenReturn(acceptedIds);
+
+        assertEquals(acceptedIds, scheduler.resourceOffersForBlocks(
+                mockSchedulerDriver, OFFERS, Arrays.asList(block1, completeBlock, block2, block3)));
+
+        verify(mockOfferAccepter).accept(
+                mockSchedulerDriver, Arrays.asList(recommendation1, recommendation2));
+        assertTrue(block1.offerStatus.get());
+        assertFalse(block2.offerStatus.get());
+        assertTrue(block3.offerStatus.get());
+        assertTrue(block1.isInProgress());
+        assertTrue(block2.isPending());
+        assertTrue(completeBlock.isComplete());
+    }
+
+    @Test
+    public void testEvaluateBlocksNullParams() {
+        assertTrue(scheduler.resourceOffersForBlocks(
+                null, OFFERS, Arrays.asList(new TestBlock())).isEmpty());
+        assertTrue(scheduler.resourceOffersForBlocks(
+                mockSchedulerDriver, OFFERS, null).isEmpty());
+        verifyZeroInteractions(mockOfferAccepter, mockOfferEvaluator, mockSchedulerDriver);
+    }
+
+    private static OfferRecommendation getRecommendation(Offer offer) {
+        return new OfferRecommendation() {
+            @Override public Operation getOperation() { return null; }
+            @Override public Offer getOffer() { return offer; }
+        };
+    }
+
     private static class TestOfferBlock extends TestBlock {
         private final OfferRequirement requirement;
         private Optional<Boolean> offerStatus = Optional.empty();
@@ -0,0 +1,177 @@
+package org.apache.mesos.scheduler.plan;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * This class tests the {@link DependencyStage}.
+ */
+public class DependencyStageTest {
+
+    @Test
+    public void testPhasesOrderedByDependencies() {
+        Phase data = getPhase("data", new TestBlock());
+        Phase index = getPhase("index", new TestBlock());
+        Phase broker = getPhase("broker", new TestBlock());
+
+        DependencyStage stage = DependencyStage.builder()
+                .addPhase(index)
+                .addPhase(data)
+                .addPhase(broker)
+                .addDependency(index, data)
+                .build();
+
+        Assert.assertEquals(Arrays.asList(data, broker, index), stage.getPhases());
+        Assert.assertEquals(Collections.singleton(data.getId()), stage.getDependencies(index));
+        Assert.assertTrue(stage.getDependencies(data).isEmpty());
+        Assert.assertTrue(stage.getDependencies(broker).isEmpty());
+        Assert.assertTrue(stage.getErrors().isEmpty());
+    }
+
+    @Test
+    public void testBlockDependencies() {
+        TestBlock block0 = new TestBlock();
+        TestBlock block1 = new TestBlock();
+        Phase phase0 = getPhase("phase-0", block0);
+        Phase phase1 = getPhase("phase-1", block1);
+
+        DependencyStage stage = DependencyStage.builder()
+                .addPhases(Arrays.asList(phase0, phase1))
+                .addDependency(block1, block0)
+                .build();
+
+        Assert.assertEquals(Collections.singleton(block0.getId()), stage.getDependencies(block1));
+        Assert.assertTrue(stage.getDependencies(block0).isEmpty());
+    }
+
+    @Test
+    public void testIsComplete() {
+        TestBlock block0 = new TestBlock();
+        TestBlock block1 = new TestBlock();
+        DependencyStage stage = DependencyStage.builder()
+                .addPhase(getPhase("phase-0", block0))
+                .addPhase(getPhase("phase-1", block1))
+                .build();
+
+        Assert.assertFalse(stage.isComplete());
+        block0.setStatus(Status.Complete);
+        Assert.assertFalse(stage.isComplete());
+        block1.setStatus(Status.Complete);
+        Assert.assertTrue(stage.isComplete());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPhaseCycleRejected() {
+        Phase phase0 = getPhase("phase-0", new TestBlock());
+        Phase phase1 = getPhase("phase-1", new TestBlock());
+
+        DependencyStage.builder()
+                .addPhase(phase0)
+                .addPhase(phase1)
+                .addDependency(phase0, phase1)
+                .addDependency(phase1, phase0)
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBlockAgainstPhaseCycleRejected() {
+        TestBlock block0 = new TestBlock();
+        TestBlock block1 = new TestBlock();
+        Phase phase0 = getPhase("phase-0", block0);
+        Phase phase1 = getPhase("phase-1", block1);
+
+        // phase-1 waits for phase-0 to complete, but block-0 waits for block-1 to complete
+        DependencyStage.builder()
+                .addPhase(phase0)
+                .addPhase(phase1)
+                .addDependency(phase1, phase0)
+                .addDependency(block0, block1)
+                .build();
+    }
+
+    @Test
+    public void testEarlierBlockInPhaseAccepted() {
+        TestBlock block0 = new TestBlock();
+        TestBlock block1 = new TestBlock();
+
+        DependencyStage stage = DependencyStage.builder()
+                .addPhase(getPhase("phase-0", block0, block1))
+                .addDependency(block1, block0)
+                .build();
+
+        Assert.assertEquals(Collections.singleton(block0.getId()), stage.getDependencies(block1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLaterBlockInPhaseRejected() {
+        TestBlock block0 = new TestBlock();
+        TestBlock block1 = new TestBlock();
+
+        // A serial strategy keeps offering block-0, which would wait forever on block-1
+        DependencyStage.builder()
+                .addPhase(getPhase("phase-0", block0, block1))
+                .addDependency(block0, block1)
+                .build();
+    }
+
+    @Test
+    public void testLaterBlockInParallelPhaseAccepted() {
+        TestBlock block0 = new TestBlock();
+        TestBlock block1 = new TestBlock();
+
+        // A parallel strategy may start block-1 first
+        DependencyStage stage = DependencyStage.builder()
+                .addPhase(getPhase("phase-0", block0, block1))
+                .addDependency(block0, block1)
+                .setStrategyFactory(new ParallelStrategyFactory(2))
+                .build();
+
+        Assert.assertEquals(Collections.singleton(block1.getId()), stage.getDependencies(block0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLaterBlockInSerialPhaseRejected() {
+        TestBlock block0 = new TestBlock();
+        TestBlock block1 = new TestBlock();
+
+        DependencyStage.builder()
+                .addPhase(getPhase("phase-0", block0, block1))
+                .addDependency(block0, block1)
+                .setStrategyFactory(new DefaultStrategyFactory())
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLaterBlockInPhaseThroughOtherPhaseRejected() {
+        TestBlock block0 = new TestBlock();
+        TestBlock block1 = new TestBlock();
+        TestBlock other = new TestBlock();
+
+        // block-0 waits on other, which waits on block-1, which follows block-0
+        DependencyStage.builder()
+                .addPhase(getPhase("phase-0", block0, block1))
+                .addPhase(getPhase("phase-1", other))
+                .addDependency(block0, other)
+                .addDependency(other, block1)
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownPhaseRejected() {
+        Phase phase0 = getPhase("phase-0", new TestBlock());
+        Phase phase1 = getPhase("phase-1", new TestBlock());
+
+        DependencyStage.builder()
+                .addPhase(phase0)
+                .addDependency(phase0, phase1)
+                .build();
+    }
+
+    private static Phase getPhase(String name, Block... blocks) {
+        return DefaultPhase.create(UUID.randomUUID(), name, Arrays.asList(blocks));
+    }
+}
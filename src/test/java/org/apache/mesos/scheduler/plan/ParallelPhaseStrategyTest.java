@@ -0,0 +1,115 @@
+package org.apache.mesos.scheduler.plan;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.Assert;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * This class tests the {@link ParallelPhaseStrategy}.
+ */
+public class ParallelPhaseStrategyTest {
+    private Phase phase;
+    private TestBlock block0, block1, block2, block3;
+    private ParallelPhaseStrategy strategy;
+
+    @Before
+    public void beforeEach() {
+        block0 = new TestBlock();
+        block1 = new TestBlock();
+        block2 = new TestBlock();
+        block3 = new TestBlock();
+        phase = DefaultPhase.create(
+                UUID.randomUUID(),
+                "phase-0",
+                Arrays.asList(block0, block1, block2, block3));
+
+        strategy = new ParallelPhaseStrategy(phase, 2);
+    }
+
+    @Test
+    public void testBoundedByParallelism() {
+        Assert.assertEquals(Arrays.asList(block0, block1), strategy.getCurrentBlocks(10));
+        Assert.assertEquals(Arrays.asList(block0), strategy.getCurrentBlocks(1));
+
+        block0.setStatus(Status.InProgress);
+        Assert.assertEquals(Arrays.asList(block1), strategy.getCurrentBlocks(10));
+
+        block1.setStatus(Status.InProgress);
+        Assert.assertTrue(strategy.getCurrentBlocks(10).isEmpty());
+        Assert.assertNull(strategy.getCurrentBlock());
+
+        block0.setStatus(Status.Complete);
+        Assert.assertEquals(Arrays.asList(block2), strategy.getCurrentBlocks(10));
+        Assert.assertEquals(block2, strategy.getCurrentBlock());
+    }
+
+    @Test
+    public void testSetParallelism() {
+        block0.setStatus(Status.InProgress);
+        block1.setStatus(Status.InProgress);
+        Assert.assertTrue(strategy.getCurrentBlocks(10).isEmpty());
+
+        strategy.setParallelism(4);
+        Assert.assertEquals(4, strategy.getParallelism());
+        Assert.assertEquals(Arrays.asList(block2, block3), strategy.getCurrentBlocks(10));
+
+        strategy.setParallelism(1);
+        Assert.assertTrue(strategy.getCurrentBlocks(10).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidParallelism() {
+        strategy.setParallelism(0);
+    }
+
+    @Test
+    public void testProceedInterrupt() {
+        strategy.interrupt();
+        Assert.assertTrue(strategy.getCurrentBlocks(10).isEmpty());
+        Assert.assertNull(strategy.getCurrentBlock());
+        Assert.assertEquals(Status.Waiting, strategy.getStatus());
+        Assert.assertTrue(strategy.isInterrupted());
+
+        strategy.proceed();
+        Assert.assertEquals(Arrays.asList(block0, block1), strategy.getCurrentBlocks(10));
+        Assert.assertFalse(strategy.isInterrupted());
+    }
+
+    @Test
+    public void testRestartForceComplete() {
+        block0.setStatus(Status.Complete);
+        strategy.restart(block0.getId());
+        Assert.assertTrue(block0.isPending());
+
+        strategy.forceComplete(block1.getId());
+        Assert.assertTrue(block1.isComplete());
+    }
+
+    @Test
+    public void testGetStatus() {
+        Assert.assertEquals(Status.Pending, strategy.getStatus());
+        block1.setStatus(Status.InProgress);
+        Assert.assertEquals(Status.InProgress, strategy.getStatus());
+        block1.setStatus(Status.Complete);
+        Assert.assertEquals(Status.InProgress, strategy.getStatus());
+        block0.setStatus(Status.Complete);
+        block2.setStatus(Status.Complete);
+        block3.setStatus(Status.Complete);
+        Assert.assertEquals(Status.Complete, strategy.getStatus());
+        Assert.assertFalse(strategy.hasDecisionPoint(block0));
+    }
+
+    @Test
+    public void testFactorySharesParallelism() {
+        ParallelStrategyFactory factory = new ParallelStrategyFactory(1);
+        PhaseStrategy phaseStrategy = factory.getStrategy(phase);
+        Assert.assertTrue(phaseStrategy instanceof ParallelPhaseStrategy);
+        Assert.assertEquals(Arrays.asList(block0), phaseStrategy.getCurrentBlocks(10));
+
+        factory.setParallelism(3);
+        Assert.assertEquals(Arrays.asList(block0, block1, block2), phaseStrategy.getCurrentBlocks(10));
+    }
+}
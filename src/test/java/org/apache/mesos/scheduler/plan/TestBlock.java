@@ -3,6 +3,9 @@ package org.apache.mesos.scheduler.plan;
 import org.apache.mesos.Protos;
 import org.apache.mesos.offer.OfferRequirement;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -11,8 +14,13 @@ import java.util.UUID;
 public class TestBlock implements Block {
 
     private final UUID id = UUID.randomUUID();
+    private final Set<String> taskNames;
     private Status status = Status.Pending;
 
+    public TestBlock(String... taskNames) {
+        this.taskNames = new HashSet<>(Arrays.asList(taskNames));
+    }
+
     public TestBlock setStatus(Status newStatus) {
         status = newStatus;
         return this;
@@ -54,6 +62,11 @@ public class TestBlock implements Block {
         // Left intentionally empty
     }
 
+    @Override
+    public Set<String> getTaskNames() {
+        return taskNames;
+    }
+
     @Override
     public UUID getId() {
         return id;
@@ -116,6 +116,7 @@ public class StageInfoTest {
         assertEquals(phase0Name, phaseInfo.getName());
         assertEquals(phase0Status, phaseInfo.getStatus());
         assertEquals(2, phaseInfo.getBlocks().size());
+        assertTrue(phaseInfo.getDependencies().isEmpty());
 
         BlockInfo blockInfo = phaseInfo.getBlocks().get(0);
         assertEquals(false, blockInfo.getHasDecisionPoint());
@@ -123,6 +124,7 @@ public class StageInfoTest {
         assertEquals(block0Message, blockInfo.getMessage());
         assertEquals(block0Name, blockInfo.getName());
         assertEquals(Status.Pending, blockInfo.getStatus());
+        assertTrue(blockInfo.getDependencies().isEmpty());
 
         blockInfo = phaseInfo.getBlocks().get(1);
         assertEquals(true, blockInfo.getHasDecisionPoint());
@@ -114,4 +114,23 @@ public class StageResourceTest {
     public void testRestartInvalidId() {
         resource.restartCommand("aoeu", "asdf");
     }
+
+    @Test
+    public void testSetParallelism() {
+        when(mockStageManager.setParallelism(4)).thenReturn(true);
+        assertEquals(200, resource.parallelismCommand(4).getStatus());
+        verify(mockStageManager).setParallelism(4);
+    }
+
+    @Test
+    public void testSetParallelismUnsupported() {
+        when(mockStageManager.setParallelism(4)).thenReturn(false);
+        assertEquals(409, resource.parallelismCommand(4).getStatus());
+    }
+
+    @Test
+    public void testSetInvalidParallelism() {
+        when(mockStageManager.setParallelism(0)).thenThrow(new IllegalArgumentException("invalid"));
+        assertEquals(400, resource.parallelismCommand(0).getStatus());
+    }
 }
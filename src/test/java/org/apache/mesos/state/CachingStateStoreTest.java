@@ -0,0 +1,380 @@
+package org.apache.mesos.state;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.apache.curator.test.TestingServer;
+import org.apache.mesos.Protos;
+import org.apache.mesos.Protos.SlaveID;
+import org.apache.mesos.offer.TaskUtils;
+import org.apache.mesos.storage.Persister;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Tests to validate the operation of the {@link CachingStateStore}.
+ */
+public class CachingStateStoreTest {
+    private static final String TASK_NAME = "test-task-name";
+    private static final String ROOT_ZK_PATH = "/test-root-path";
+    private static final long WAIT_TIMEOUT_MS = 10 * 1000;
+
+    private TestingServer testZk;
+    private CuratorStateStore curatorStore;
+    private CachingStateStore store;
+
+    @Before
+    public void beforeEach() throws Exception {
+        testZk = new TestingServer();
+        curatorStore = spy(new CuratorStateStore(ROOT_ZK_PATH, testZk.getConnectString()));
+        store = new CachingStateStore(curatorStore);
+    }
+
+    @After
+    public void afterEach() throws Exception {
+        store.close();
+        testZk.close();
+    }
+
+    @Test
+    public void testCacheLoaded() {
+        assertTrue(store.isCacheValid());
+    }
+
+    @Test
+    public void testLoadsExistingTasks() throws Exception {
+        Protos.TaskInfo task = createTask(TASK_NAME);
+        curatorStore.storeTasks(Arrays.asList(task));
+        Protos.TaskStatus status = createTaskStatus(task.getTaskId());
+        curatorStore.storeStatus(status);
+
+        CachingStateStore newStore = new CachingStateStore(curatorStore);
+        try {
+            assertTrue(newStore.isCacheValid());
+            assertEquals(task, newStore.fetchTask(TASK_NAME));
+            assertEquals(status, newStore.fetchStatus(TASK_NAME));
+            assertEquals(Arrays.asList(TASK_NAME), newStore.fetchTaskNames());
+        } finally {
+            newStore.close();
+        }
+    }
+
+    @Test
+    public void testReadsServedFromCache() throws Exception {
+        Protos.TaskInfo task = createTask(TASK_NAME);
+        store.storeTasks(Arrays.asList(task));
+        Protos.TaskStatus status = createTaskStatus(task.getTaskId());
+        store.storeStatus(status);
+
+        assertEquals(task, store.fetchTask(TASK_NAME));
+        assertEquals(Arrays.asList(task), store.fetchTasks());
+        assertEquals(status, store.fetchStatus(TASK_NAME));
+        assertEquals(Arrays.asList(status), store.fetchStatuses());
+        assertEquals(Arrays.asList(TASK_NAME), store.fetchTaskNames());
+
+        verify(curatorStore, never()).fetchTask(anyString());
+        verify(curatorStore, never()).fetchTasks();
+        verify(curatorStore, never()).fetchStatus(anyString());
+        verify(curatorStore, never()).fetchStatuses();
+        verify(curatorStore, never()).fetchTaskNames();
+    }
+
+    @Test
+    public void testStoreStatusWritesThrough() throws Exception {
+        Protos.TaskInfo task = createTask(TASK_NAME);
+        store.storeTasks(Arrays.asList(task));
+        Protos.TaskStatus status = createTaskStatus(task.getTaskId());
+        store.storeStatus(status);
+
+        verify(curatorStore, never()).fetchTask(anyString());
+        assertEquals(status, new CuratorStateStore(ROOT_ZK_PATH, testZk.getConnectString())
+                .fetchStatus(TASK_NAME));
+    }
+
+    @Test
+    public void testStoreStatusesWritesThrough() throws Exception {
+        Protos.TaskInfo taskA = createTask("a");
+        Protos.TaskInfo taskB = createTask("b");
+        store.storeTasks(Arrays.asList(taskA, taskB));
+        Protos.TaskStatus statusA = createTaskStatus(taskA.getTaskId());
+        Protos.TaskStatus statusB = createTaskStatus(taskB.getTaskId());
+        store.storeStatuses(Arrays.asList(statusA, statusB));
+
+        verify(curatorStore, never()).fetchTask(anyString());
+        assertEquals(statusA, store.fetchStatus("a"));
+        assertEquals(statusB, store.fetchStatus("b"));
+        assertEquals(statusB, new CuratorStateStore(ROOT_ZK_PATH, testZk.getConnectString())
+                .fetchStatus("b"));
+    }
+
+    @Test(expected=StateStoreException.class)
+    public void testStoreStatusWithoutInfo() throws Exception {
+        store.storeStatus(createTaskStatus(TaskUtils.toTaskId(TASK_NAME)));
+    }
+
+    @Test(expected=StateStoreException.class)
+    public void testStoreStatusInfoUuidMismatch() throws Exception {
+        store.storeTasks(Arrays.asList(createTask(TASK_NAME)));
+        store.storeStatus(createTaskStatus(TaskUtils.toTaskId(TASK_NAME)));
+    }
+
+    @Test(expected=StateStoreException.class)
+    public void testStoreClearFetchTask() throws Exception {
+        store.storeTasks(Arrays.asList(createTask(TASK_NAME)));
+        store.clearTask(TASK_NAME);
+        store.fetchTask(TASK_NAME);
+    }
+
+    @Test
+    public void testStoreClearTask() throws Exception {
+        Protos.TaskInfo task = createTask(TASK_NAME);
+        store.storeTasks(Arrays.asList(task));
+        store.storeStatus(createTaskStatus(task.getTaskId()));
+        store.clearTask(TASK_NAME);
+
+        assertTrue(store.fetchTaskNames().isEmpty());
+        assertTrue(store.fetchTasks().isEmpty());
+        assertTrue(store.fetchStatuses().isEmpty());
+        assertTrue(curatorStore.fetchTaskNames().isEmpty());
+    }
+
+    @Test
+    public void testRepeatedStoreTask() throws Exception {
+        store.storeTasks(Arrays.asList(createTask(TASK_NAME)));
+        Protos.TaskInfo task = createTask(TASK_NAME);
+        store.storeTasks(Arrays.asList(task));
+        assertEquals(task, store.fetchTask(TASK_NAME));
+
+        // Events for the first write must not replace the second.
+        Thread.sleep(500);
+        assertEquals(task, store.fetchTask(TASK_NAME));
+    }
+
+    @Test
+    public void testExternalChangesInvalidateCache() throws Exception {
+        CuratorStateStore otherStore = new CuratorStateStore(ROOT_ZK_PATH, testZk.getConnectString());
+
+        Protos.TaskInfo taskA = createTask("a");
+        Protos.TaskInfo taskB = createTask("b");
+        otherStore.storeTasks(Arrays.asList(taskA, taskB));
+        waitForTaskNames("a", "b");
+        assertEquals(taskA, store.fetchTask("a"));
+
+        Protos.TaskStatus status = createTaskStatus(taskA.getTaskId());
+        otherStore.storeStatus(status);
+        waitForStatuses(1);
+        assertEquals(status, store.fetchStatus("a"));
+
+        otherStore.clearTask("a");
+        waitForTaskNames("b");
+        assertTrue(store.fetchStatuses().isEmpty());
+    }
+
+    @Test
+    public void testExternalChangeAfterLocalWrite() throws Exception {
+        CuratorStateStore otherStore = new CuratorStateStore(ROOT_ZK_PATH, testZk.getConnectString());
+
+        store.storeTasks(Arrays.asList(createTask(TASK_NAME)));
+        Protos.TaskInfo otherTask = createTask(TASK_NAME);
+        otherStore.storeTasks(Arrays.asList(otherTask));
+
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MS;
+        while (!otherTask.equals(store.fetchTask(TASK_NAME)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(otherTask, store.fetchTask(TASK_NAME));
+    }
+
+    @Test
+    public void testFailedWriteReloaded() throws Exception {
+        Protos.TaskInfo task = createTask(TASK_NAME);
+        store.storeTasks(Arrays.asList(task));
+        Protos.TaskStatus status = createTaskStatus(task.getTaskId());
+
+        // The write reaches Zookeeper, but its outcome is reported as unknown.
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                invocation.callRealMethod();
+                throw new StateStoreException("connection lost");
+            }
+        }).when(curatorStore).storeStatus(TASK_NAME, status);
+        try {
+            store.storeStatus(status);
+            fail("Expected the store to fail");
+        } catch (StateStoreException e) {
+            // expected
+        }
+
+        assertEquals(status, store.fetchStatus(TASK_NAME));
+        assertEquals(task, store.fetchTask(TASK_NAME));
+    }
+
+    @Test
+    public void testFetchTasksByQueryFromIndex() throws Exception {
+        UUID configId = UUID.randomUUID();
+        Protos.TaskInfo taskA = TaskUtils.setTargetConfiguration(createTask("a"), configId);
+        Protos.TaskInfo taskB = createTask("b");
+        store.storeTasks(Arrays.asList(taskA, taskB));
+        Protos.TaskStatus status = createTaskStatus(taskA.getTaskId());
+        store.storeStatus(status);
+
+        SlaveID agentId = SlaveID.newBuilder().setValue("ignored").build();
+        assertEquals(new HashSet<>(Arrays.asList(taskA, taskB)), new HashSet<>(store.fetchTasksByAgent(agentId)));
+        assertEquals(Arrays.asList(taskA), store.fetchTasksByState(Protos.TaskState.TASK_STAGING));
+        assertEquals(Arrays.asList(taskA), store.fetchTasksByConfig(configId));
+
+        store.storeStatus(status.toBuilder().setState(Protos.TaskState.TASK_LOST).build());
+        assertTrue(store.fetchTasksByState(Protos.TaskState.TASK_STAGING).isEmpty());
+        assertEquals(Arrays.asList(taskA), store.fetchTasksByState(Protos.TaskState.TASK_LOST));
+
+        Protos.TaskInfo newTaskA = TaskUtils.setTargetConfiguration(createTask("a"), UUID.randomUUID());
+        store.storeTasks(Arrays.asList(newTaskA));
+        assertTrue(store.fetchTasksByConfig(configId).isEmpty());
+
+        store.clearTask("a");
+        assertEquals(Arrays.asList(taskB), store.fetchTasksByAgent(agentId));
+        assertTrue(store.fetchTasksByState(Protos.TaskState.TASK_LOST).isEmpty());
+        verify(curatorStore, never()).fetchTasks();
+        verify(curatorStore, never()).fetchStatuses();
+    }
+
+    @Test
+    public void testIndexFollowsExternalChanges() throws Exception {
+        CuratorStateStore otherStore = new CuratorStateStore(ROOT_ZK_PATH, testZk.getConnectString());
+
+        Protos.TaskInfo task = createTask(TASK_NAME);
+        otherStore.storeTasks(Arrays.asList(task));
+        otherStore.storeStatus(createTaskStatus(task.getTaskId()));
+        waitForStatuses(1);
+        assertEquals(Arrays.asList(task), store.fetchTasksByState(Protos.TaskState.TASK_STAGING));
+
+        otherStore.clearTask(TASK_NAME);
+        waitForTaskNames();
+        assertTrue(store.fetchTasksByState(Protos.TaskState.TASK_STAGING).isEmpty());
+    }
+
+    @Test
+    public void testSubscribeReceivesLocalAndExternalChanges() throws Exception {
+        final List<TaskChange> changes = new ArrayList<>();
+        store.subscribe(new StateStoreListener() {
+            @Override
+            public void onChange(TaskChange change) {
+                synchronized (changes) {
+                    changes.add(change);
+                }
+            }
+
+            @Override
+            public void onChangesDropped(long version) {
+                fail("No changes should be dropped");
+            }
+        });
+
+        Protos.TaskInfo task = createTask(TASK_NAME);
+        store.storeTasks(Arrays.asList(task));
+        CuratorStateStore otherStore = new CuratorStateStore(ROOT_ZK_PATH, testZk.getConnectString());
+        Protos.TaskStatus status = createTaskStatus(task.getTaskId());
+        otherStore.storeStatus(status);
+        waitForStatuses(1);
+        store.clearTask(TASK_NAME);
+
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            synchronized (changes) {
+                if (changes.size() >= 4) {
+                    break;
+                }
+            }
+            Thread.sleep(10);
+        }
+        // Allow any duplicate events from the TreeCache to arrive.
+        Thread.sleep(500);
+        synchronized (changes) {
+            assertEquals(4, changes.size());
+            assertEquals(TaskChange.Type.TASK_UPDATED, changes.get(0).getType());
+            assertEquals(task, changes.get(0).getTaskInfo());
+            assertEquals(TaskChange.Type.STATUS_UPDATED, changes.get(1).getType());
+            assertEquals(status, changes.get(1).getStatus());
+            assertEquals(TaskChange.Type.TASK_REMOVED, changes.get(2).getType());
+            assertEquals(TaskChange.Type.STATUS_REMOVED, changes.get(3).getType());
+        }
+    }
+
+    @Test
+    public void testVersionedWritesUpdateCache() throws Exception {
+        Protos.TaskInfo task = createTask(TASK_NAME);
+        assertEquals(0, store.storeTask(task, Persister.ABSENT_VERSION));
+        assertEquals(task, store.fetchTask(TASK_NAME));
+
+        Protos.TaskStatus status = createTaskStatus(task.getTaskId());
+        assertEquals(0, store.storeStatus(status, Persister.ABSENT_VERSION));
+        assertEquals(status, store.fetchStatus(TASK_NAME));
+        assertEquals(0, store.fetchVersionedStatus(TASK_NAME).getVersion());
+        verify(curatorStore, never()).fetchTask(anyString());
+
+        Protos.TaskInfo otherTask = createTask(TASK_NAME);
+        try {
+            store.storeTask(otherTask, Persister.ABSENT_VERSION);
+            fail("Expected a version conflict");
+        } catch (StateStoreConflictException e) {
+            // expected
+        }
+        assertEquals(task, store.fetchTask(TASK_NAME));
+        assertEquals(1, store.storeTask(otherTask, store.fetchVersionedTask(TASK_NAME).getVersion()));
+        assertEquals(otherTask, store.fetchTask(TASK_NAME));
+    }
+
+    @Test
+    public void testFrameworkIdPassesThrough() throws Exception {
+        Protos.FrameworkID fwkId = Protos.FrameworkID.newBuilder().setValue("test-framework-id").build();
+        store.storeFrameworkId(fwkId);
+        assertEquals(fwkId, store.fetchFrameworkId());
+        assertEquals(fwkId, curatorStore.fetchFrameworkId());
+        assertTrue(store.fetchTaskNames().isEmpty());
+    }
+
+    private void waitForTaskNames(String... taskNames) throws Exception {
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MS;
+        while (!new HashSet<>(store.fetchTaskNames()).equals(new HashSet<>(Arrays.asList(taskNames)))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(new HashSet<>(Arrays.asList(taskNames)), new HashSet<>(store.fetchTaskNames()));
+    }
+
+    private void waitForStatuses(int count) throws Exception {
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MS;
+        Collection<Protos.TaskStatus> statuses = store.fetchStatuses();
+        while (statuses.size() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            statuses = store.fetchStatuses();
+        }
+        assertEquals(count, statuses.size());
+    }
+
+    private static Protos.TaskStatus createTaskStatus(Protos.TaskID taskId) {
+        return Protos.TaskStatus.newBuilder()
+                .setTaskId(taskId)
+                .setState(Protos.TaskState.TASK_STAGING)
+                .build();
+    }
+
+    private static Protos.TaskInfo createTask(String taskName) {
+        return Protos.TaskInfo.newBuilder()
+                .setName(taskName)
+                .setTaskId(TaskUtils.toTaskId(taskName))
+                .setSlaveId(SlaveID.newBuilder().setValue("ignored")) // proto field required
+                .build();
+    }
+}
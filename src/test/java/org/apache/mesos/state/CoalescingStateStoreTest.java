@@ -0,0 +1,261 @@
+package org.apache.mesos.state;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.apache.mesos.Protos;
+import org.apache.mesos.Protos.SlaveID;
+import org.apache.mesos.offer.TaskUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests to validate the operation of the {@link CoalescingStateStore}.
+ */
+public class CoalescingStateStoreTest {
+    private static final String TASK_NAME = "test-task-name";
+    private static final long NEVER_MS = 60 * 60 * 1000;
+
+    @Mock private StateStore mockStore;
+    private Protos.TaskInfo task;
+    private CoalescingStateStore store;
+
+    @Before
+    public void beforeEach() {
+        MockitoAnnotations.initMocks(this);
+        task = createTask(TASK_NAME);
+        when(mockStore.fetchTask(TASK_NAME)).thenReturn(task);
+        store = new CoalescingStateStore(mockStore, NEVER_MS);
+    }
+
+    @After
+    public void afterEach() {
+        store.close();
+    }
+
+    @Test
+    public void testStatusesCoalesced() {
+        Protos.TaskStatus starting = createStatus(task, Protos.TaskState.TASK_STARTING);
+        Protos.TaskStatus running = createStatus(task, Protos.TaskState.TASK_RUNNING);
+        store.storeStatus(starting);
+        store.storeStatus(running);
+        verify(mockStore, never()).storeStatus(any(Protos.TaskStatus.class));
+        assertEquals(running, store.fetchStatus(TASK_NAME));
+
+        store.flush();
+        verify(mockStore, times(1)).storeStatuses(Arrays.asList(running));
+        verify(mockStore, never()).storeStatus(any(Protos.TaskStatus.class));
+        assertTrue(store.getDirtyTaskNames().isEmpty());
+    }
+
+    @Test
+    public void testFlushWritesOneBatch() {
+        Protos.TaskInfo otherTask = createTask("other");
+        when(mockStore.fetchTask("other")).thenReturn(otherTask);
+        Protos.TaskStatus running = createStatus(task, Protos.TaskState.TASK_RUNNING);
+        Protos.TaskStatus otherRunning = createStatus(otherTask, Protos.TaskState.TASK_RUNNING);
+        store.storeStatus(running);
+        store.storeStatus(otherRunning);
+
+        store.flush();
+        verify(mockStore, times(1)).storeStatuses(Arrays.asList(running, otherRunning));
+        verify(mockStore, never()).storeStatus(any(Protos.TaskStatus.class));
+        assertTrue(store.getDirtyTaskNames().isEmpty());
+    }
+
+    @Test
+    public void testBackgroundFlush() throws Exception {
+        store.close();
+        store = new CoalescingStateStore(mockStore, 10);
+        Protos.TaskStatus running = createStatus(task, Protos.TaskState.TASK_RUNNING);
+        store.storeStatus(running);
+
+        verify(mockStore, timeout(5000)).storeStatuses(Arrays.asList(running));
+    }
+
+    @Test
+    public void testTerminalStatusWrittenImmediately() {
+        store.storeStatus(createStatus(task, Protos.TaskState.TASK_RUNNING));
+        Protos.TaskStatus failed = createStatus(task, Protos.TaskState.TASK_FAILED);
+        store.storeStatus(failed);
+
+        verify(mockStore, times(1)).storeStatus(any(Protos.TaskStatus.class));
+        verify(mockStore).storeStatus(failed);
+        assertTrue(store.getDirtyTaskNames().isEmpty());
+    }
+
+    @Test
+    public void testVersionedStatusFlushesBufferedStatus() {
+        Protos.TaskStatus starting = createStatus(task, Protos.TaskState.TASK_STARTING);
+        Protos.TaskStatus running = createStatus(task, Protos.TaskState.TASK_RUNNING);
+        store.storeStatus(starting);
+        when(mockStore.storeStatus(running, 1)).thenReturn(2);
+
+        assertEquals(2, store.storeStatus(running, 1));
+        InOrder inOrder = inOrder(mockStore);
+        inOrder.verify(mockStore).storeStatus(starting);
+        inOrder.verify(mockStore).storeStatus(running, 1);
+        assertTrue(store.getDirtyTaskNames().isEmpty());
+    }
+
+    @Test(expected=StateStoreException.class)
+    public void testMismatchedStatusRejected() {
+        store.storeStatus(createStatus(createTask(TASK_NAME), Protos.TaskState.TASK_RUNNING));
+    }
+
+    @Test(expected=StateStoreException.class)
+    public void testStatusWithoutTaskRejected() {
+        when(mockStore.fetchTask(TASK_NAME)).thenThrow(new StateStoreException("not found"));
+        store.storeStatus(createStatus(task, Protos.TaskState.TASK_RUNNING));
+    }
+
+    @Test
+    public void testFailedFlushRetried() {
+        Protos.TaskStatus running = createStatus(task, Protos.TaskState.TASK_RUNNING);
+        doThrow(new StateStoreException("failed")).doNothing()
+                .when(mockStore).storeStatuses(Arrays.asList(running));
+        doThrow(new StateStoreException("failed")).when(mockStore).storeStatus(running);
+        when(mockStore.fetchTaskNames()).thenReturn(Arrays.asList(TASK_NAME));
+        store.storeStatus(running);
+
+        store.flush();
+        assertEquals(Arrays.asList(TASK_NAME), store.getDirtyTaskNames());
+        assertEquals(running, store.fetchStatus(TASK_NAME));
+
+        store.flush();
+        assertTrue(store.getDirtyTaskNames().isEmpty());
+        verify(mockStore, times(2)).storeStatuses(Arrays.asList(running));
+    }
+
+    @Test
+    public void testFlushDropsStatusOfClearedTask() {
+        Protos.TaskStatus running = createStatus(task, Protos.TaskState.TASK_RUNNING);
+        store.storeStatus(running);
+
+        // Cleared in the underlying store, rather than through this one
+        doThrow(new StateStoreException("not found")).when(mockStore).storeStatuses(Arrays.asList(running));
+        doThrow(new StateStoreException("not found")).when(mockStore).storeStatus(running);
+        when(mockStore.fetchTaskNames()).thenReturn(Collections.<String>emptyList());
+        store.flush();
+
+        assertTrue(store.getDirtyTaskNames().isEmpty());
+    }
+
+    @Test
+    public void testFlushDropsStatusOfReplacedTask() {
+        Protos.TaskInfo otherTask = createTask("other");
+        when(mockStore.fetchTask("other")).thenReturn(otherTask);
+        Protos.TaskStatus running = createStatus(task, Protos.TaskState.TASK_RUNNING);
+        Protos.TaskStatus otherRunning = createStatus(otherTask, Protos.TaskState.TASK_RUNNING);
+        store.storeStatus(running);
+        store.storeStatus(otherRunning);
+
+        // Replaced in the underlying store, with a new TaskID
+        doThrow(new StateStoreMismatchException("mismatch"))
+                .when(mockStore).storeStatuses(Arrays.asList(running, otherRunning));
+        doThrow(new StateStoreMismatchException("mismatch")).when(mockStore).storeStatus(running);
+        store.flush();
+
+        assertTrue(store.getDirtyTaskNames().isEmpty());
+        verify(mockStore).storeStatus(otherRunning);
+        verify(mockStore, never()).fetchTaskNames();
+    }
+
+    @Test
+    public void testStoreStatusesReplacesBuffered() {
+        Protos.TaskStatus starting = createStatus(task, Protos.TaskState.TASK_STARTING);
+        Protos.TaskStatus running = createStatus(task, Protos.TaskState.TASK_RUNNING);
+        store.storeStatus(starting);
+
+        store.storeStatuses(Arrays.asList(running));
+        verify(mockStore).storeStatuses(Arrays.asList(running));
+        assertTrue(store.getDirtyTaskNames().isEmpty());
+        store.flush();
+        verify(mockStore, never()).storeStatus(any(Protos.TaskStatus.class));
+    }
+
+    @Test
+    public void testFetchStatusesIncludesBuffered() {
+        Protos.TaskInfo otherTask = createTask("other");
+        Protos.TaskStatus storedRunning = createStatus(task, Protos.TaskState.TASK_STAGING);
+        Protos.TaskStatus otherRunning = createStatus(otherTask, Protos.TaskState.TASK_RUNNING);
+        when(mockStore.fetchStatuses()).thenReturn(Arrays.asList(storedRunning, otherRunning));
+
+        Protos.TaskStatus running = createStatus(task, Protos.TaskState.TASK_RUNNING);
+        store.storeStatus(running);
+        assertEquals(Arrays.asList(running, otherRunning), store.fetchStatuses());
+    }
+
+    @Test
+    public void testFetchStatusesIncludesBufferedWithoutStored() {
+        when(mockStore.fetchStatuses()).thenReturn(Collections.<Protos.TaskStatus>emptyList());
+        Protos.TaskStatus running = createStatus(task, Protos.TaskState.TASK_RUNNING);
+        store.storeStatus(running);
+        assertEquals(Arrays.asList(running), store.fetchStatuses());
+    }
+
+    @Test
+    public void testFetchTasksByStateIncludesBuffered() {
+        Protos.TaskInfo otherTask = createTask("other");
+        when(mockStore.fetchTask("other")).thenReturn(otherTask);
+        when(mockStore.fetchTasksByState(Protos.TaskState.TASK_RUNNING)).thenReturn(Arrays.asList(task));
+
+        store.storeStatus(createStatus(task, Protos.TaskState.TASK_KILLING));
+        store.storeStatus(createStatus(otherTask, Protos.TaskState.TASK_RUNNING));
+        assertEquals(Arrays.asList(otherTask), store.fetchTasksByState(Protos.TaskState.TASK_RUNNING));
+    }
+
+    @Test
+    public void testStoreTasksFlushesStatusFirst() {
+        Protos.TaskStatus running = createStatus(task, Protos.TaskState.TASK_RUNNING);
+        store.storeStatus(running);
+
+        Protos.TaskInfo newTask = createTask(TASK_NAME);
+        store.storeTasks(Arrays.asList(newTask));
+
+        InOrder inOrder = inOrder(mockStore);
+        inOrder.verify(mockStore).storeStatus(running);
+        inOrder.verify(mockStore).storeTasks(Arrays.asList(newTask));
+        assertTrue(store.getDirtyTaskNames().isEmpty());
+    }
+
+    @Test
+    public void testClearTaskDropsBufferedStatus() {
+        store.storeStatus(createStatus(task, Protos.TaskState.TASK_RUNNING));
+        store.clearTask(TASK_NAME);
+
+        verify(mockStore).clearTask(TASK_NAME);
+        store.flush();
+        verify(mockStore, never()).storeStatuses(anyCollectionOf(Protos.TaskStatus.class));
+    }
+
+    @Test
+    public void testCloseFlushes() {
+        Protos.TaskStatus running = createStatus(task, Protos.TaskState.TASK_RUNNING);
+        store.storeStatus(running);
+        store.close();
+        verify(mockStore).storeStatuses(Arrays.asList(running));
+    }
+
+    private static Protos.TaskStatus createStatus(Protos.TaskInfo task, Protos.TaskState state) {
+        return Protos.TaskStatus.newBuilder()
+                .setTaskId(task.getTaskId())
+                .setState(state)
+                .build();
+    }
+
+    private static Protos.TaskInfo createTask(String taskName) {
+        return Protos.TaskInfo.newBuilder()
+                .setName(taskName)
+                .setTaskId(TaskUtils.toTaskId(taskName))
+                .setSlaveId(SlaveID.newBuilder().setValue("ignored")) // proto field required
+                .build();
+    }
+}
@@ -1,11 +1,17 @@
 package org.apache.mesos.state;
 
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
 
+import com.google.protobuf.ByteString;
+import org.apache.curator.retry.RetryOneTime;
 import org.apache.curator.test.TestingServer;
 import org.apache.mesos.Protos;
 import org.apache.mesos.Protos.SlaveID;
 import org.apache.mesos.offer.TaskUtils;
+import org.apache.mesos.storage.CuratorPersister;
+import org.apache.mesos.storage.Persister;
+import org.apache.mesos.storage.Versioned;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -14,6 +20,8 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.UUID;
 
 /**
  * Tests to validate the operation of the {@link CuratorStateStore}.
@@ -34,8 +42,16 @@ public class CuratorStateStoreTest {
 
     @Before
     public void beforeEach() throws Exception {
+        store = createStore();
+    }
+
+    /**
+     * Creates the store under test. Subclasses override this to run these tests against other
+     * stores which share the same contract.
+     */
+    protected CuratorStateStore createStore() throws Exception {
         testZk = new TestingServer();
-        store = new CuratorStateStore(ROOT_ZK_PATH, testZk.getConnectString());
+        return new CuratorStateStore(ROOT_ZK_PATH, testZk.getConnectString());
     }
 
     @Test
@@ -106,6 +122,23 @@ public class CuratorStateStoreTest {
         assertEquals(tasks, store.fetchTasks());
     }
 
+    @Test
+    public void testStoreLargeTasks() throws Exception {
+        // Together the TaskInfos exceed ZK's 1 MB request limit, though each fits in a node.
+        List<Protos.TaskInfo> tasks = new ArrayList<>();
+        Random random = new Random(0);
+        for (String taskName : Arrays.asList("task-0", "task-1", "task-2")) {
+            byte[] data = new byte[450 * 1024];
+            random.nextBytes(data);
+            tasks.add(Protos.TaskInfo.newBuilder(createTask(taskName)).setData(ByteString.copyFrom(data)).build());
+        }
+        store.storeTasks(tasks);
+
+        for (Protos.TaskInfo task : tasks) {
+            assertEquals(task, store.fetchTask(task.getName()));
+        }
+    }
+
     @Test
     public void testStoreClearTask() throws Exception {
         store.storeTasks(createTasks(TASK_NAME));
@@ -404,6 +437,158 @@ public class CuratorStateStoreTest {
         assertTrue(store.fetchStatuses().isEmpty());
     }
 
+    @Test
+    public void testFetchManyTasksAndStatuses() throws Exception {
+        List<Protos.TaskInfo> tasks = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            tasks.add(createTask("task-" + i));
+        }
+        store.storeTasks(tasks);
+
+        List<Protos.TaskStatus> statuses = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i += 2) {
+            Protos.TaskStatus status = createTaskStatus(tasks.get(i).getTaskId());
+            store.storeStatus(status);
+            statuses.add(status);
+        }
+
+        // Results follow the order of the task names.
+        List<Protos.TaskInfo> expectedTasks = new ArrayList<>();
+        List<Protos.TaskStatus> expectedStatuses = new ArrayList<>();
+        for (String taskName : store.fetchTaskNames()) {
+            int i = Integer.parseInt(taskName.substring("task-".length()));
+            expectedTasks.add(tasks.get(i));
+            if (i % 2 == 0) {
+                expectedStatuses.add(statuses.get(i / 2));
+            }
+        }
+        assertEquals(expectedTasks, store.fetchTasks());
+        assertEquals(expectedStatuses, store.fetchStatuses());
+    }
+
+    @Test
+    public void testStoreFetchLargeCompressedTask() throws Exception {
+        assumeNotNull(testZk); // Only applies to stores backed by Zookeeper
+        CuratorStateStore compressingStore = new CuratorStateStore(ROOT_ZK_PATH + "-compressed",
+                new CuratorPersister(testZk.getConnectString(), new RetryOneTime(100), true));
+        char[] value = new char[2 * 1024 * 1024];
+        Arrays.fill(value, 'x');
+        Protos.TaskInfo task = createTask(TASK_NAME).toBuilder()
+                .setData(ByteString.copyFromUtf8(new String(value)))
+                .build();
+        compressingStore.storeTasks(Arrays.asList(task));
+        assertEquals(task, compressingStore.fetchTask(TASK_NAME));
+        assertEquals(Arrays.asList(task), compressingStore.fetchTasks());
+    }
+
+    @Test
+    public void testFetchTasksByQuery() throws Exception {
+        UUID configId = UUID.randomUUID();
+        Protos.TaskInfo taskA = TaskUtils.setTargetConfiguration(createTask("a"), configId);
+        Protos.TaskInfo taskB = createTask("b").toBuilder()
+                .setSlaveId(SlaveID.newBuilder().setValue("other-agent"))
+                .build();
+        Protos.TaskInfo taskC = createTask("c");
+        store.storeTasks(Arrays.asList(taskA, taskB, taskC));
+        store.storeStatus(createTaskStatus(taskA.getTaskId()));
+        store.storeStatus(createTaskStatus(taskB.getTaskId()).toBuilder()
+                .setState(Protos.TaskState.TASK_LOST)
+                .build());
+
+        assertEquals(Arrays.asList(taskB),
+                store.fetchTasksByAgent(SlaveID.newBuilder().setValue("other-agent").build()));
+        assertEquals(Arrays.asList(taskA), store.fetchTasksByState(TASK_STATE));
+        assertEquals(Arrays.asList(taskB), store.fetchTasksByState(Protos.TaskState.TASK_LOST));
+        assertTrue(store.fetchTasksByState(Protos.TaskState.TASK_RUNNING).isEmpty());
+        assertEquals(Arrays.asList(taskA), store.fetchTasksByConfig(configId));
+        assertTrue(store.fetchTasksByConfig(UUID.randomUUID()).isEmpty());
+    }
+
+    @Test
+    public void testStoreStatuses() throws Exception {
+        Protos.TaskInfo taskA = createTask("a");
+        Protos.TaskInfo taskB = createTask("b");
+        store.storeTasks(Arrays.asList(taskA, taskB));
+        Protos.TaskStatus statusA = createTaskStatus(taskA.getTaskId());
+        Protos.TaskStatus statusB = createTaskStatus(taskB.getTaskId());
+
+        store.storeStatuses(Arrays.asList(statusA, statusB));
+        assertEquals(statusA, store.fetchStatus("a"));
+        assertEquals(statusB, store.fetchStatus("b"));
+    }
+
+    @Test
+    public void testStoreStatusesMismatchStoresNone() throws Exception {
+        Protos.TaskInfo taskA = createTask("a");
+        store.storeTasks(Arrays.asList(taskA, createTask("b")));
+
+        try {
+            store.storeStatuses(Arrays.asList(
+                    createTaskStatus(taskA.getTaskId()),
+                    createTaskStatus(createTask("b").getTaskId())));
+            fail("Expected a mismatch");
+        } catch (StateStoreMismatchException e) {
+            // expected
+        }
+        assertTrue(store.fetchStatuses().isEmpty());
+    }
+
+    @Test(expected=StateStoreException.class)
+    public void testSubscribeUnsupported() {
+        store.subscribe(new StateStoreListener() {
+            @Override
+            public void onChange(TaskChange change) {
+            }
+
+            @Override
+            public void onChangesDropped(long version) {
+            }
+        });
+    }
+
+    @Test
+    public void testVersionedTaskWrites() throws Exception {
+        Protos.TaskInfo task = createTask(TASK_NAME);
+        assertEquals(0, store.storeTask(task, Persister.ABSENT_VERSION));
+        Versioned<Protos.TaskInfo> versioned = store.fetchVersionedTask(TASK_NAME);
+        assertEquals(task, versioned.getValue());
+
+        Protos.TaskInfo otherTask = createTask(TASK_NAME);
+        assertEquals(1, store.storeTask(otherTask, versioned.getVersion()));
+        try {
+            store.storeTask(task, versioned.getVersion());
+            fail("Expected a version conflict");
+        } catch (StateStoreConflictException e) {
+            // expected
+        }
+        assertEquals(otherTask, store.fetchTask(TASK_NAME));
+    }
+
+    @Test
+    public void testVersionedStatusWrites() throws Exception {
+        Protos.TaskInfo task = createTask(TASK_NAME);
+        store.storeTasks(Arrays.asList(task));
+        Protos.TaskStatus status = createTaskStatus(task.getTaskId());
+        assertEquals(0, store.storeStatus(status, Persister.ABSENT_VERSION));
+
+        Versioned<Protos.TaskStatus> versioned = store.fetchVersionedStatus(TASK_NAME);
+        assertEquals(status, versioned.getValue());
+        assertEquals(0, versioned.getVersion());
+        try {
+            store.storeStatus(status, Persister.ABSENT_VERSION);
+            fail("Expected a version conflict");
+        } catch (StateStoreConflictException e) {
+            // expected
+        }
+        assertEquals(1, store.storeStatus(status, 0));
+    }
+
+    @Test(expected=StateStoreException.class)
+    public void testVersionedStatusMismatchedTaskId() throws Exception {
+        store.storeTasks(Arrays.asList(createTask(TASK_NAME)));
+        store.storeStatus(createTaskStatus(createTask(TASK_NAME).getTaskId()), Persister.ABSENT_VERSION);
+    }
+
     private static Protos.TaskStatus createTaskStatus(Protos.TaskID taskId) {
         return TASK_STATUS.toBuilder().setTaskId(taskId).build();
     }
@@ -0,0 +1,69 @@
+package org.apache.mesos.state;
+
+import static org.junit.Assert.*;
+
+import org.apache.mesos.Protos;
+import org.apache.mesos.Protos.SlaveID;
+import org.apache.mesos.offer.TaskUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tests to validate the operation of the {@link FileStateStore}, which must also pass the tests of
+ * the {@link CuratorStateStore}.
+ */
+public class FileStateStoreTest extends CuratorStateStoreTest {
+    private static final String TASK_NAME = "test-task-name";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File directory;
+    private FileStateStore fileStore;
+
+    @Override
+    protected CuratorStateStore createStore() throws Exception {
+        directory = tempFolder.newFolder();
+        fileStore = new FileStateStore(directory);
+        return fileStore;
+    }
+
+    @After
+    public void afterEach() throws Exception {
+        fileStore.close();
+    }
+
+    @Test
+    public void testReopenedStoreHasData() throws Exception {
+        Protos.FrameworkID fwkId = Protos.FrameworkID.newBuilder().setValue("test-framework-id").build();
+        Protos.TaskInfo task = Protos.TaskInfo.newBuilder()
+                .setName(TASK_NAME)
+                .setTaskId(TaskUtils.toTaskId(TASK_NAME))
+                .setSlaveId(SlaveID.newBuilder().setValue("ignored")) // proto field required
+                .build();
+        Protos.TaskStatus status = Protos.TaskStatus.newBuilder()
+                .setTaskId(task.getTaskId())
+                .setState(Protos.TaskState.TASK_RUNNING)
+                .build();
+        fileStore.storeFrameworkId(fwkId);
+        fileStore.storeTasks(Arrays.asList(task));
+        fileStore.storeStatus(status);
+        fileStore.close();
+
+        fileStore = new FileStateStore(directory);
+        assertEquals(fwkId, fileStore.fetchFrameworkId());
+        assertEquals(task, fileStore.fetchTask(TASK_NAME));
+        assertEquals(status, fileStore.fetchStatus(TASK_NAME));
+    }
+
+    @Test(expected=IOException.class)
+    public void testDirectoryInUse() throws Exception {
+        new FileStateStore(directory);
+    }
+}
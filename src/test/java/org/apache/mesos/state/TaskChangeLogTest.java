@@ -0,0 +1,242 @@
+package org.apache.mesos.state;
+
+import static org.junit.Assert.*;
+
+import org.apache.mesos.Protos;
+import org.apache.mesos.Protos.SlaveID;
+import org.apache.mesos.offer.TaskUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests to validate the operation of the {@link TaskChangeLog}.
+ */
+public class TaskChangeLogTest {
+    private static final long WAIT_TIMEOUT_MS = 10 * 1000;
+
+    private TaskChangeLog changeLog;
+
+    @Before
+    public void beforeEach() {
+        changeLog = new TaskChangeLog(4);
+    }
+
+    @After
+    public void afterEach() {
+        changeLog.close();
+    }
+
+    @Test
+    public void testChangesDeliveredInOrder() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        StateStoreSubscription subscription = changeLog.subscribe(listener, -1);
+
+        Protos.TaskInfo task = createTask("a");
+        changeLog.taskUpdated(task);
+        changeLog.statusUpdated("a", Protos.TaskStatus.newBuilder()
+                .setTaskId(task.getTaskId())
+                .setState(Protos.TaskState.TASK_RUNNING)
+                .build());
+        changeLog.statusRemoved("a");
+        changeLog.taskRemoved("a");
+
+        listener.await(4);
+        assertEquals(Arrays.asList(
+                TaskChange.Type.TASK_UPDATED,
+                TaskChange.Type.STATUS_UPDATED,
+                TaskChange.Type.STATUS_REMOVED,
+                TaskChange.Type.TASK_REMOVED), listener.getTypes());
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L), listener.getVersions());
+        assertEquals(task, listener.getChanges().get(0).getTaskInfo());
+        awaitVersion(subscription, 4);
+    }
+
+    @Test
+    public void testSubscribeSkipsEarlierChanges() throws Exception {
+        changeLog.taskUpdated(createTask("a"));
+        RecordingListener listener = new RecordingListener();
+        changeLog.subscribe(listener, -1);
+        changeLog.taskRemoved("a");
+
+        listener.await(1);
+        assertEquals(Arrays.asList(2L), listener.getVersions());
+    }
+
+    @Test
+    public void testResumeFromVersion() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        StateStoreSubscription subscription = changeLog.subscribe(listener, -1);
+        changeLog.taskUpdated(createTask("a"));
+        listener.await(1);
+        awaitVersion(subscription, 1);
+        subscription.close();
+
+        changeLog.taskUpdated(createTask("b"));
+        changeLog.taskUpdated(createTask("c"));
+        RecordingListener resumedListener = new RecordingListener();
+        changeLog.subscribe(resumedListener, subscription.getVersion());
+
+        resumedListener.await(2);
+        assertEquals(Arrays.asList(2L, 3L), resumedListener.getVersions());
+        assertEquals(0, resumedListener.droppedVersion);
+    }
+
+    @Test
+    public void testResumeFromDroppedVersion() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            changeLog.taskRemoved("task-" + i);
+        }
+        RecordingListener listener = new RecordingListener();
+        changeLog.subscribe(listener, 0);
+
+        listener.await(4);
+        assertEquals(2, listener.droppedVersion);
+        assertEquals(Arrays.asList(3L, 4L, 5L, 6L), listener.getVersions());
+    }
+
+    @Test(expected=StateStoreException.class)
+    public void testResumeFromFutureVersion() {
+        changeLog.subscribe(new RecordingListener(), 1);
+    }
+
+    @Test
+    public void testSlowListenerDropsChanges() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            public void onChange(TaskChange change) {
+                if (change.getVersion() == 1) {
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.onChange(change);
+            }
+        };
+        changeLog.subscribe(listener, -1);
+
+        changeLog.taskRemoved("task-1");
+        assertTrue(blocked.await(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        for (int i = 2; i <= 10; i++) {
+            changeLog.taskRemoved("task-" + i);
+        }
+        release.countDown();
+
+        listener.await(5);
+        assertEquals(6, listener.droppedVersion);
+        assertEquals(Arrays.asList(1L, 7L, 8L, 9L, 10L), listener.getVersions());
+    }
+
+    @Test
+    public void testVersionAdvancesAfterChangeHandled() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            public void onChange(TaskChange change) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onChange(change);
+            }
+        };
+        StateStoreSubscription subscription = changeLog.subscribe(listener, -1);
+
+        changeLog.taskRemoved("a");
+        assertTrue(blocked.await(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(0, subscription.getVersion());
+
+        release.countDown();
+        listener.await(1);
+        awaitVersion(subscription, 1);
+    }
+
+    @Test
+    public void testClosedSubscriptionReceivesNothing() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        changeLog.subscribe(listener, -1).close();
+        RecordingListener otherListener = new RecordingListener();
+        changeLog.subscribe(otherListener, -1);
+
+        changeLog.taskRemoved("a");
+        otherListener.await(1);
+        assertTrue(listener.getChanges().isEmpty());
+    }
+
+    /**
+     * Waits for the subscription to reach a version, which happens once its listener has returned.
+     */
+    private static void awaitVersion(StateStoreSubscription subscription, long version) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MS;
+        while (subscription.getVersion() != version && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(version, subscription.getVersion());
+    }
+
+    private static Protos.TaskInfo createTask(String taskName) {
+        return Protos.TaskInfo.newBuilder()
+                .setName(taskName)
+                .setTaskId(TaskUtils.toTaskId(taskName))
+                .setSlaveId(SlaveID.newBuilder().setValue("ignored")) // proto field required
+                .build();
+    }
+
+    private static class RecordingListener implements StateStoreListener {
+        private final List<TaskChange> changes = new ArrayList<>();
+        private volatile long droppedVersion = 0;
+
+        @Override
+        public synchronized void onChange(TaskChange change) {
+            changes.add(change);
+            notifyAll();
+        }
+
+        @Override
+        public void onChangesDropped(long version) {
+            droppedVersion = version;
+        }
+
+        private synchronized void await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MS;
+            while (changes.size() < count && System.currentTimeMillis() < deadline) {
+                wait(10);
+            }
+            assertEquals(count, changes.size());
+        }
+
+        private synchronized List<TaskChange> getChanges() {
+            return new ArrayList<>(changes);
+        }
+
+        private List<TaskChange.Type> getTypes() {
+            List<TaskChange.Type> types = new ArrayList<>();
+            for (TaskChange change : getChanges()) {
+                types.add(change.getType());
+            }
+            return types;
+        }
+
+        private List<Long> getVersions() {
+            List<Long> versions = new ArrayList<>();
+            for (TaskChange change : getChanges()) {
+                versions.add(change.getVersion());
+            }
+            return versions;
+        }
+    }
+}
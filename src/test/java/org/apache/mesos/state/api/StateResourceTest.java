@@ -11,9 +11,13 @@ import org.apache.mesos.Protos.TaskStatus;
 import org.apache.mesos.offer.TaskUtils;
 import org.apache.mesos.state.StateStore;
 import org.apache.mesos.state.StateStoreException;
+import org.apache.mesos.state.StateStoreListener;
+import org.apache.mesos.state.StateStoreSubscription;
+import org.apache.mesos.state.TaskChange;
 import org.json.JSONArray;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -116,4 +120,69 @@ public class StateResourceTest {
         Response response = resource.getTaskStatus(taskName);
         assertEquals(500, response.getStatus());
     }
+
+    @Test
+    public void testGetTaskNamesNotModified() {
+        when(mockStateStore.fetchTaskNames()).thenReturn(Arrays.asList("task0"));
+        Response response = resource.getTaskNames();
+        String etag = response.getEntityTag().getValue();
+
+        response = resource.getTaskNames("\"" + etag + "\"");
+        assertEquals(304, response.getStatus());
+        assertNull(response.getEntity());
+
+        when(mockStateStore.fetchTaskNames()).thenReturn(Arrays.asList("task0", "task1"));
+        response = resource.getTaskNames("\"" + etag + "\"");
+        assertEquals(200, response.getStatus());
+        assertNotEquals(etag, response.getEntityTag().getValue());
+    }
+
+    @Test
+    public void testUncachedWithoutSubscription() {
+        when(mockStateStore.fetchTaskNames()).thenReturn(Arrays.asList("task0"));
+        resource.getTaskNames();
+        resource.getTaskNames();
+        verify(mockStateStore, times(2)).fetchTaskNames();
+        assertEquals(0, resource.getCachedCount());
+    }
+
+    @Test
+    public void testCachedUntilChanged() {
+        ArgumentCaptor<StateStoreListener> listener = ArgumentCaptor.forClass(StateStoreListener.class);
+        StateStoreSubscription mockSubscription = mock(StateStoreSubscription.class);
+        when(mockStateStore.subscribe(listener.capture())).thenReturn(mockSubscription);
+        resource = new StateResource(mockStateStore);
+
+        String taskName = "task1";
+        TaskStatus taskStatus = TaskStatus.newBuilder()
+                .setState(TaskState.TASK_RUNNING)
+                .setTaskId(TaskUtils.toTaskId(taskName))
+                .build();
+        when(mockStateStore.fetchStatus(taskName)).thenReturn(taskStatus);
+        when(mockStateStore.fetchTaskNames()).thenReturn(Arrays.asList(taskName));
+
+        resource.getTaskStatus(taskName);
+        resource.getTaskNames();
+        Response response = resource.getTaskStatus(taskName);
+        assertEquals(new JsonFormat().printToString(taskStatus), (String) response.getEntity());
+        verify(mockStateStore, times(1)).fetchStatus(taskName);
+        assertEquals(2, resource.getCachedCount());
+
+        TaskStatus updatedStatus = TaskStatus.newBuilder(taskStatus).setState(TaskState.TASK_FINISHED).build();
+        when(mockStateStore.fetchStatus(taskName)).thenReturn(updatedStatus);
+        TaskChange change = mock(TaskChange.class);
+        when(change.getType()).thenReturn(TaskChange.Type.STATUS_UPDATED);
+        when(change.getTaskName()).thenReturn(taskName);
+        listener.getValue().onChange(change);
+        response = resource.getTaskStatus(taskName);
+        assertEquals(new JsonFormat().printToString(updatedStatus), (String) response.getEntity());
+        resource.getTaskNames();
+        verify(mockStateStore, times(1)).fetchTaskNames();
+
+        listener.getValue().onChangesDropped(1);
+        assertEquals(0, resource.getCachedCount());
+
+        resource.close();
+        verify(mockSubscription).close();
+    }
 }
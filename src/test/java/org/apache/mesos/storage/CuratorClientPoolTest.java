@@ -0,0 +1,91 @@
+package org.apache.mesos.storage;
+
+import static org.junit.Assert.*;
+
+import org.apache.curator.framework.imps.CuratorFrameworkState;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.apache.mesos.Protos;
+import org.apache.mesos.state.CuratorStateStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests to validate the operation of the {@link CuratorClientPool}.
+ */
+public class CuratorClientPoolTest {
+    private TestingServer testZk;
+    private CuratorClientPool pool;
+
+    @Before
+    public void beforeEach() throws Exception {
+        testZk = new TestingServer();
+        pool = new CuratorClientPool();
+    }
+
+    @After
+    public void afterEach() throws Exception {
+        testZk.close();
+    }
+
+    @Test
+    public void testLeasesShareClient() throws Exception {
+        CuratorClientPool.Lease leaseA = pool.acquire(testZk.getConnectString(), new RetryOneTime(100));
+        CuratorClientPool.Lease leaseB = pool.acquire(testZk.getConnectString(), new RetryOneTime(100));
+        assertSame(leaseA.getClient(), leaseB.getClient());
+        assertEquals(1, pool.size());
+
+        leaseA.close();
+        assertEquals(CuratorFrameworkState.STARTED, leaseB.getClient().getState());
+        leaseB.getClient().create().forPath("/test", "data".getBytes());
+
+        leaseB.close();
+        assertEquals(CuratorFrameworkState.STOPPED, leaseB.getClient().getState());
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void testCloseLeaseTwice() throws Exception {
+        CuratorClientPool.Lease leaseA = pool.acquire(testZk.getConnectString(), new RetryOneTime(100));
+        CuratorClientPool.Lease leaseB = pool.acquire(testZk.getConnectString(), new RetryOneTime(100));
+        leaseA.close();
+        leaseA.close();
+        assertEquals(CuratorFrameworkState.STARTED, leaseB.getClient().getState());
+        leaseB.close();
+    }
+
+    @Test
+    public void testAcquireAfterClose() throws Exception {
+        CuratorClientPool.Lease lease = pool.acquire(testZk.getConnectString(), new RetryOneTime(100));
+        lease.close();
+
+        CuratorClientPool.Lease newLease = pool.acquire(testZk.getConnectString(), new RetryOneTime(100));
+        assertNotSame(lease.getClient(), newLease.getClient());
+        assertEquals(CuratorFrameworkState.STARTED, newLease.getClient().getState());
+        newLease.close();
+    }
+
+    @Test
+    public void testAcquireAfterClientClosedExternally() throws Exception {
+        CuratorClientPool.Lease lease = pool.acquire(testZk.getConnectString(), new RetryOneTime(100));
+        lease.getClient().close();
+
+        CuratorClientPool.Lease newLease = pool.acquire(testZk.getConnectString(), new RetryOneTime(100));
+        assertEquals(CuratorFrameworkState.STARTED, newLease.getClient().getState());
+        lease.close();
+        assertEquals(CuratorFrameworkState.STARTED, newLease.getClient().getState());
+        newLease.close();
+    }
+
+    @Test
+    public void testStoreLeavesProvidedClientOpen() throws Exception {
+        CuratorClientPool.Lease lease = pool.acquire(testZk.getConnectString(), new RetryOneTime(100));
+        CuratorStateStore storeA = new CuratorStateStore("/a", lease.getClient());
+        CuratorStateStore storeB = new CuratorStateStore("/b", lease.getClient());
+        storeA.close();
+        storeB.storeFrameworkId(Protos.FrameworkID.newBuilder().setValue("id").build());
+        assertEquals(CuratorFrameworkState.STARTED, lease.getClient().getState());
+        lease.close();
+    }
+}
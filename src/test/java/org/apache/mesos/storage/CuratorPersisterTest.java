@@ -0,0 +1,281 @@
+package org.apache.mesos.storage;
+
+import static org.junit.Assert.*;
+
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests to validate the operation of the {@link CuratorPersister}.
+ */
+public class CuratorPersisterTest {
+    private static final byte[] DATA_A = "a".getBytes();
+    private static final byte[] DATA_B = "b".getBytes();
+
+    private TestingServer testZk;
+    private CuratorPersister persister;
+
+    @Before
+    public void beforeEach() throws Exception {
+        testZk = new TestingServer();
+        persister = new CuratorPersister(testZk.getConnectString(), new RetryOneTime(100));
+    }
+
+    @After
+    public void afterEach() throws Exception {
+        persister.close();
+        testZk.close();
+    }
+
+    @Test
+    public void testStoreManyCreatesParents() throws Exception {
+        Map<String, byte[]> pathBytesMap = new LinkedHashMap<>();
+        pathBytesMap.put("/root/tasks/a/info", DATA_A);
+        pathBytesMap.put("/root/tasks/b/info", DATA_B);
+        persister.store(pathBytesMap);
+
+        assertArrayEquals(DATA_A, persister.fetch("/root/tasks/a/info"));
+        assertArrayEquals(DATA_B, persister.fetch("/root/tasks/b/info"));
+        assertEquals(2, persister.getChildren("/root/tasks").size());
+    }
+
+    @Test
+    public void testStoreManyUpdatesExisting() throws Exception {
+        persister.store("/root/a", DATA_A);
+
+        Map<String, byte[]> pathBytesMap = new LinkedHashMap<>();
+        pathBytesMap.put("/root/a", DATA_B);
+        pathBytesMap.put("/root/b", DATA_A);
+        persister.store(pathBytesMap);
+
+        assertArrayEquals(DATA_B, persister.fetch("/root/a"));
+        assertArrayEquals(DATA_A, persister.fetch("/root/b"));
+    }
+
+    @Test
+    public void testStoreManyIsAtomic() throws Exception {
+        // Ephemeral nodes may not have children, so the second write fails on the server.
+        persister.getClient().create().creatingParentsIfNeeded().withMode(CreateMode.EPHEMERAL)
+                .forPath("/root/ephemeral");
+
+        Map<String, byte[]> pathBytesMap = new LinkedHashMap<>();
+        pathBytesMap.put("/root/a", DATA_A);
+        pathBytesMap.put("/root/ephemeral/b", DATA_B);
+        try {
+            persister.store(pathBytesMap);
+            fail("Expected the transaction to fail");
+        } catch (KeeperException e) {
+            // expected
+        }
+
+        assertNull(persister.getClient().checkExists().forPath("/root/a"));
+    }
+
+    @Test
+    public void testStoreManyEmpty() throws Exception {
+        persister.store(new LinkedHashMap<String, byte[]>());
+        assertNull(persister.getClient().checkExists().forPath("/root"));
+    }
+
+    @Test
+    public void testCompressedRoundTrip() throws Exception {
+        CuratorPersister compressingPersister = createCompressingPersister();
+        byte[] data = new byte[64 * 1024];
+        Arrays.fill(data, (byte) 'x');
+        compressingPersister.store("/root/a", data);
+
+        assertTrue(persister.getClient().getData().forPath("/root/a").length < data.length / 10);
+        assertArrayEquals(data, compressingPersister.fetch("/root/a"));
+        // Values are readable whether or not the reader compresses.
+        assertArrayEquals(data, persister.fetch("/root/a"));
+        compressingPersister.close();
+    }
+
+    @Test
+    public void testUncompressedValuesReadable() throws Exception {
+        persister.getClient().create().creatingParentsIfNeeded().forPath("/root/a", DATA_A);
+
+        CuratorPersister compressingPersister = createCompressingPersister();
+        assertArrayEquals(DATA_A, compressingPersister.fetch("/root/a"));
+        compressingPersister.close();
+    }
+
+    @Test
+    public void testSmallValuesStoredAsIs() throws Exception {
+        CuratorPersister compressingPersister = createCompressingPersister();
+        compressingPersister.store("/root/a", DATA_A);
+        assertArrayEquals(DATA_A, persister.getClient().getData().forPath("/root/a"));
+        compressingPersister.close();
+    }
+
+    @Test
+    public void testLargeValueChunked() throws Exception {
+        byte[] data = createIncompressibleData(1536 * 1024);
+        persister.store("/root/a", data);
+
+        assertArrayEquals(data, persister.fetch("/root/a"));
+        assertEquals(3, persister.getClient().getChildren().forPath("/root/a").size());
+        // Chunks aren't listed as children.
+        assertTrue(persister.getChildren("/root/a").isEmpty());
+
+        // Replacing the value removes the chunks of the earlier one.
+        byte[] newData = createIncompressibleData(768 * 1024);
+        persister.store("/root/a", newData);
+        assertArrayEquals(newData, persister.fetch("/root/a"));
+        assertEquals(2, persister.getClient().getChildren().forPath("/root/a").size());
+
+        persister.store("/root/a", DATA_B);
+        assertArrayEquals(DATA_B, persister.fetch("/root/a"));
+        assertTrue(persister.getClient().getChildren().forPath("/root/a").isEmpty());
+    }
+
+    @Test
+    public void testLargeValueChunkedInStoreMany() throws Exception {
+        byte[] data = createIncompressibleData(1536 * 1024);
+        Map<String, byte[]> pathBytesMap = new LinkedHashMap<>();
+        pathBytesMap.put("/root/a", data);
+        pathBytesMap.put("/root/b", DATA_B);
+        persister.store(pathBytesMap);
+
+        Map<String, byte[]> results = persister.fetch(Arrays.asList("/root/a", "/root/b"));
+        assertArrayEquals(data, results.get("/root/a"));
+        assertArrayEquals(DATA_B, results.get("/root/b"));
+        assertEquals(Arrays.asList("a", "b"), sorted(persister.getChildren("/root")));
+    }
+
+    @Test
+    public void testStoreManyLargerThanTransactionLimit() throws Exception {
+        // Each value fits in a node, but together they exceed ZK's 1 MB request limit.
+        Map<String, byte[]> pathBytesMap = new LinkedHashMap<>();
+        for (int i = 0; i < 4; i++) {
+            pathBytesMap.put("/root/tasks/task-" + i, createIncompressibleData(500 * 1024 + i));
+        }
+        persister.store(pathBytesMap);
+
+        Map<String, byte[]> results = persister.fetch(pathBytesMap.keySet());
+        for (Map.Entry<String, byte[]> entry : pathBytesMap.entrySet()) {
+            assertArrayEquals(entry.getValue(), results.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testStoreManyTooManyPathsRejected() throws Exception {
+        // Even the headers of this many values exceed what one transaction can commit.
+        Map<String, byte[]> pathBytesMap = new LinkedHashMap<>();
+        for (int i = 0; i < 6000; i++) {
+            pathBytesMap.put(String.format("/root/tasks/task-%05d", i), DATA_A);
+        }
+        try {
+            persister.store(pathBytesMap);
+            fail("Expected the store to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        assertNull(persister.getClient().checkExists().forPath("/root"));
+    }
+
+    @Test
+    public void testStoreManyFailureRemovesChunks() throws Exception {
+        persister.getClient().create().creatingParentsIfNeeded().withMode(CreateMode.EPHEMERAL)
+                .forPath("/root/ephemeral");
+
+        Map<String, byte[]> pathBytesMap = new LinkedHashMap<>();
+        pathBytesMap.put("/root/a", createIncompressibleData(1536 * 1024));
+        pathBytesMap.put("/root/b", createIncompressibleData(600 * 1024));
+        pathBytesMap.put("/root/c", createIncompressibleData(600 * 1024));
+        pathBytesMap.put("/root/ephemeral/d", DATA_B);
+        try {
+            persister.store(pathBytesMap);
+            fail("Expected the transaction to fail");
+        } catch (KeeperException e) {
+            // expected
+        }
+
+        assertEquals(Arrays.asList("ephemeral"), persister.getClient().getChildren().forPath("/root"));
+    }
+
+    @Test
+    public void testFetchManyOmitsMissing() throws Exception {
+        persister.store("/root/b", DATA_B);
+        persister.store("/root/a", DATA_A);
+
+        Map<String, byte[]> results = persister.fetch(Arrays.asList("/root/a", "/root/missing", "/root/b"), 1);
+        assertEquals(Arrays.asList("/root/a", "/root/b"), Arrays.asList(results.keySet().toArray()));
+        assertArrayEquals(DATA_A, results.get("/root/a"));
+        assertArrayEquals(DATA_B, results.get("/root/b"));
+    }
+
+    @Test
+    public void testVersionedStore() throws Exception {
+        assertEquals(0, persister.store("/root/a", DATA_A, Persister.ABSENT_VERSION));
+        Versioned<byte[]> versioned = persister.fetchVersioned("/root/a");
+        assertArrayEquals(DATA_A, versioned.getValue());
+        assertEquals(0, versioned.getVersion());
+
+        assertEquals(1, persister.store("/root/a", DATA_B, 0));
+        assertArrayEquals(DATA_B, persister.fetch("/root/a"));
+        assertStoreConflicts("/root/a", DATA_A, 0);
+        assertStoreConflicts("/root/a", DATA_A, Persister.ABSENT_VERSION);
+        assertStoreConflicts("/root/missing", DATA_A, 0);
+        assertArrayEquals(DATA_B, persister.fetch("/root/a"));
+    }
+
+    @Test
+    public void testVersionedStoreChunked() throws Exception {
+        byte[] data = createIncompressibleData(1536 * 1024);
+        assertEquals(1, persister.store("/root/a", data, Persister.ABSENT_VERSION));
+        assertArrayEquals(data, persister.fetch("/root/a"));
+
+        byte[] newData = createIncompressibleData(768 * 1024);
+        assertStoreConflicts("/root/a", newData, 0);
+        // The chunks of the rejected value are removed.
+        assertEquals(3, persister.getClient().getChildren().forPath("/root/a").size());
+        assertArrayEquals(data, persister.fetch("/root/a"));
+
+        assertEquals(2, persister.store("/root/a", newData, 1));
+        assertArrayEquals(newData, persister.fetch("/root/a"));
+        assertEquals(2, persister.getClient().getChildren().forPath("/root/a").size());
+        assertStoreConflicts("/root/missing", newData, 0);
+        assertNull(persister.getClient().checkExists().forPath("/root/missing"));
+    }
+
+    private void assertStoreConflicts(String path, byte[] data, int expectedVersion) throws Exception {
+        try {
+            persister.store(path, data, expectedVersion);
+            fail("Expected a version conflict");
+        } catch (KeeperException.BadVersionException e) {
+            // expected
+        }
+    }
+
+    private CuratorPersister createCompressingPersister() {
+        return new CuratorPersister(testZk.getConnectString(), new RetryOneTime(100), true);
+    }
+
+    private static byte[] createIncompressibleData(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static List<String> sorted(Collection<String> values) {
+        List<String> list = new ArrayList<>(values);
+        Collections.sort(list);
+        return list;
+    }
+}
@@ -0,0 +1,388 @@
+package org.apache.mesos.storage;
+
+import static org.junit.Assert.*;
+
+import org.apache.zookeeper.KeeperException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tests to validate the operation of the {@link FilePersister}.
+ */
+public class FilePersisterTest {
+    private static final byte[] DATA_A = "a".getBytes();
+    private static final byte[] DATA_B = "b".getBytes();
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File directory;
+    private FilePersister persister;
+
+    @Before
+    public void beforeEach() throws Exception {
+        directory = tempFolder.newFolder();
+        persister = new FilePersister(directory);
+    }
+
+    @After
+    public void afterEach() throws Exception {
+        persister.close();
+    }
+
+    @Test
+    public void testStoreCreatesParents() throws Exception {
+        persister.store("/root/tasks/a", DATA_A);
+        assertArrayEquals(new byte[0], persister.fetch("/root/tasks"));
+        assertEquals(Arrays.asList("a"), persister.getChildren("/root/tasks"));
+        assertEquals(Arrays.asList("root"), persister.getChildren("/"));
+    }
+
+    @Test
+    public void testClearRemovesChildren() throws Exception {
+        persister.store("/root/tasks/a", DATA_A);
+        persister.store("/root/tasks/b", DATA_B);
+        persister.clear("/root/tasks");
+
+        assertTrue(persister.getChildren("/root").isEmpty());
+        assertTrue(persister.fetch(Arrays.asList("/root/tasks/a", "/root/tasks/b")).isEmpty());
+    }
+
+    @Test(expected=KeeperException.NoNodeException.class)
+    public void testFetchMissing() throws Exception {
+        persister.fetch("/root/missing");
+    }
+
+    @Test(expected=KeeperException.NoNodeException.class)
+    public void testClearMissing() throws Exception {
+        persister.clear("/root/missing");
+    }
+
+    @Test(expected=KeeperException.NoNodeException.class)
+    public void testGetChildrenMissing() throws Exception {
+        persister.getChildren("/root/missing");
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidPath() throws Exception {
+        persister.store("root/a", DATA_A);
+    }
+
+    @Test
+    public void testVersionedStore() throws Exception {
+        assertEquals(0, persister.store("/root/a", DATA_A, Persister.ABSENT_VERSION));
+        assertEquals(0, persister.fetchVersioned("/root").getVersion());
+        assertEquals(1, persister.store("/root/a", DATA_B, 0));
+        Versioned<byte[]> versioned = persister.fetchVersioned("/root/a");
+        assertArrayEquals(DATA_B, versioned.getValue());
+        assertEquals(1, versioned.getVersion());
+
+        for (int expectedVersion : new int[] {0, 2, Persister.ABSENT_VERSION}) {
+            try {
+                persister.store("/root/a", DATA_A, expectedVersion);
+                fail("Expected a version conflict");
+            } catch (KeeperException.BadVersionException e) {
+                // expected
+            }
+        }
+        assertEquals(1, persister.fetchVersioned("/root/a").getVersion());
+    }
+
+    @Test(expected=KeeperException.BadVersionException.class)
+    public void testVersionedStoreMissing() throws Exception {
+        persister.store("/root/a", DATA_A, 0);
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        Map<String, byte[]> pathBytesMap = new LinkedHashMap<>();
+        pathBytesMap.put("/root/a", DATA_A);
+        pathBytesMap.put("/root/b", DATA_B);
+        persister.store(pathBytesMap);
+        persister.store("/root/a", DATA_B);
+        persister.clear("/root/b");
+        persister.close();
+
+        persister = new FilePersister(directory);
+        assertArrayEquals(DATA_B, persister.fetch("/root/a"));
+        assertEquals(Arrays.asList("a"), persister.getChildren("/root"));
+    }
+
+    @Test
+    public void testTornRecordDiscarded() throws Exception {
+        persister.store("/root/a", DATA_A);
+        persister.store("/root/b", DATA_B);
+        persister.close();
+
+        // Cut the last record short, as a crash during the write would.
+        File logFile = new File(directory, "state.log");
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+            file.setLength(file.length() - 1);
+        }
+
+        persister = new FilePersister(directory);
+        assertArrayEquals(DATA_A, persister.fetch("/root/a"));
+        assertEquals(Arrays.asList("a"), persister.getChildren("/root"));
+
+        // The log remains usable after the torn record.
+        persister.store("/root/c", DATA_B);
+        persister.close();
+        persister = new FilePersister(directory);
+        assertArrayEquals(DATA_B, persister.fetch("/root/c"));
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        persister.close();
+        persister = new FilePersister(directory, 1024);
+        File logFile = new File(directory, "state.log");
+
+        byte[] data = new byte[100];
+        for (int i = 0; i < 100; i++) {
+            data[0] = (byte) i;
+            persister.store("/root/a", data);
+        }
+        persister.store("/root/b", DATA_B);
+        assertTrue(logFile.length() < 1024);
+
+        persister.close();
+        persister = new FilePersister(directory);
+        assertArrayEquals(data, persister.fetch("/root/a"));
+        assertArrayEquals(DATA_B, persister.fetch("/root/b"));
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            final String path = "/root/" + i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 50; j++) {
+                            persister.store(path, new byte[] {(byte) j});
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        persister.close();
+
+        persister = new FilePersister(directory);
+        assertEquals(threads.length, persister.getChildren("/root").size());
+        for (int i = 0; i < threads.length; i++) {
+            assertArrayEquals(new byte[] {49}, persister.fetch("/root/" + i));
+        }
+    }
+
+    @Test
+    public void testFailedWriteTruncated() throws Exception {
+        persister.close();
+        FailingFilePersister failing = new FailingFilePersister(directory);
+        persister = failing;
+        persister.store("/root/a", DATA_A);
+        File logFile = new File(directory, "state.log");
+        long logLength = logFile.length();
+
+        failing.channel.failWrites = true;
+        try {
+            persister.store("/root/b", new byte[1024]);
+            fail("Expected the store to fail");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(Arrays.asList("a"), persister.getChildren("/root"));
+        assertEquals(logLength, logFile.length());
+
+        // The partial record was truncated, so later records aren't discarded with it on replay.
+        failing.channel.failWrites = false;
+        persister.store("/root/c", DATA_B);
+        persister.close();
+        persister = new FilePersister(directory);
+        assertArrayEquals(DATA_A, persister.fetch("/root/a"));
+        assertArrayEquals(DATA_B, persister.fetch("/root/c"));
+        assertEquals(2, persister.getChildren("/root").size());
+    }
+
+    @Test
+    public void testFailedSyncFailsPersister() throws Exception {
+        persister.close();
+        FailingFilePersister failing = new FailingFilePersister(directory);
+        persister = failing;
+        persister.store("/root/a", DATA_A);
+
+        failing.channel.failForce = true;
+        try {
+            persister.store("/root/a", DATA_B);
+            fail("Expected the store to fail");
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            persister.fetch("/root/a");
+            fail("Expected the fetch to fail");
+        } catch (IOException e) {
+            // expected: the unsynced data mustn't be returned
+        }
+        try {
+            persister.store("/root/b", DATA_B);
+            fail("Expected the store to fail");
+        } catch (IOException e) {
+            // expected
+        }
+
+        failing.channel.failForce = false;
+        persister.close();
+        persister = new FilePersister(directory);
+        assertEquals(Arrays.asList("a"), persister.getChildren("/root"));
+    }
+
+    /**
+     * A FilePersister whose log fails on demand.
+     */
+    private static class FailingFilePersister extends FilePersister {
+        private FailingChannel channel;
+
+        private FailingFilePersister(File directory) throws IOException {
+            super(directory);
+        }
+
+        @Override
+        FileChannel openLog(File file) throws IOException {
+            channel = new FailingChannel(super.openLog(file));
+            return channel;
+        }
+    }
+
+    /**
+     * A FileChannel which writes half of a buffer before failing, or fails to sync, on demand.
+     */
+    private static class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        private volatile boolean failWrites = false;
+        private volatile boolean failForce = false;
+
+        private FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!failWrites) {
+                return delegate.write(src);
+            }
+            ByteBuffer half = src.duplicate();
+            half.limit(src.position() + src.remaining() / 2);
+            delegate.write(half);
+            throw new IOException("No space left on device");
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (failForce) {
+                throw new IOException("Input/output error");
+            }
+            delegate.force(metaData);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
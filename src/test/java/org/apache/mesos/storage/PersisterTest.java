@@ -0,0 +1,100 @@
+package org.apache.mesos.storage;
+
+import static org.junit.Assert.*;
+
+import org.apache.zookeeper.KeeperException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tests to validate the default methods of the {@link Persister} interface.
+ */
+public class PersisterTest {
+    private static final byte[] DATA_A = "a".getBytes();
+    private static final byte[] DATA_B = "b".getBytes();
+
+    private Persister persister;
+
+    @Before
+    public void beforeEach() {
+        persister = new MapPersister();
+    }
+
+    @Test
+    public void testStoreMany() throws Exception {
+        Map<String, byte[]> pathBytesMap = new LinkedHashMap<>();
+        pathBytesMap.put("/a", DATA_A);
+        pathBytesMap.put("/b", DATA_B);
+        persister.store(pathBytesMap);
+
+        assertArrayEquals(DATA_A, persister.fetch("/a"));
+        assertArrayEquals(DATA_B, persister.fetch("/b"));
+    }
+
+    @Test
+    public void testFetchManyOmitsMissing() throws Exception {
+        persister.store("/a", DATA_A);
+        persister.store("/b", DATA_B);
+
+        Map<String, byte[]> results = persister.fetch(Arrays.asList("/b", "/missing", "/a"));
+        assertEquals(Arrays.asList("/b", "/a"), new ArrayList<>(results.keySet()));
+        assertArrayEquals(DATA_B, results.get("/b"));
+        assertArrayEquals(DATA_A, results.get("/a"));
+    }
+
+    /**
+     * A Persister which only implements the required methods, over a flat map of paths.
+     */
+    private static class MapPersister implements Persister {
+        private final Map<String, byte[]> data = new HashMap<>();
+        private final Map<String, Integer> versions = new HashMap<>();
+
+        @Override
+        public void store(String path, byte[] bytes) {
+            data.put(path, bytes);
+            versions.merge(path, 0, (version, zero) -> version + 1);
+        }
+
+        @Override
+        public int store(String path, byte[] bytes, int expectedVersion) throws Exception {
+            Integer version = versions.get(path);
+            if ((version == null ? ABSENT_VERSION : version) != expectedVersion) {
+                throw new KeeperException.BadVersionException(path);
+            }
+            store(path, bytes);
+            return versions.get(path);
+        }
+
+        @Override
+        public Versioned<byte[]> fetchVersioned(String path) throws Exception {
+            return new Versioned<>(fetch(path), versions.get(path));
+        }
+
+        @Override
+        public byte[] fetch(String path) throws Exception {
+            byte[] bytes = data.get(path);
+            if (bytes == null) {
+                throw new KeeperException.NoNodeException(path);
+            }
+            return bytes;
+        }
+
+        @Override
+        public void clear(String path) {
+            data.remove(path);
+            versions.remove(path);
+        }
+
+        @Override
+        public Collection<String> getChildren(String path) {
+            return new ArrayList<>(data.keySet());
+        }
+    }
+}
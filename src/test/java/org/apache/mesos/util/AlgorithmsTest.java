@@ -0,0 +1,87 @@
+package org.apache.mesos.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.mesos.Protos.Value.Range;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AlgorithmsTest {
+
+  @Test
+  public void testMergeRanges() {
+    List<Range> merged = Algorithms.mergeRanges(
+            Arrays.asList(getRange(10, 20), getRange(1, 5)),
+            Arrays.asList(getRange(6, 8), getRange(15, 30)));
+
+    Assert.assertEquals(Arrays.asList(getRange(1, 8), getRange(10, 30)), merged);
+  }
+
+  @Test
+  public void testSubtractRanges() {
+    List<Range> difference = Algorithms.subtractRanges(
+            Arrays.asList(getRange(1, 100)),
+            Arrays.asList(getRange(10, 20), getRange(90, 200)));
+
+    Assert.assertEquals(Arrays.asList(getRange(1, 9), getRange(21, 89)), difference);
+    Assert.assertEquals(
+            0,
+            Algorithms.subtractRanges(Arrays.asList(getRange(5, 6)), Arrays.asList(getRange(1, 10))).size());
+  }
+
+  @Test
+  public void testRangesEqual() {
+    Assert.assertTrue(Algorithms.rangesEqual(
+            Arrays.asList(getRange(1, 5), getRange(6, 10)),
+            Arrays.asList(getRange(1, 10))));
+    Assert.assertFalse(Algorithms.rangesEqual(
+            Arrays.asList(getRange(1, 5)),
+            Arrays.asList(getRange(1, 6))));
+  }
+
+  @Test
+  public void testRangesContain() {
+    List<Range> container = Arrays.asList(getRange(1, 10), getRange(20, 30));
+
+    Assert.assertTrue(Algorithms.rangesContain(container, Arrays.asList(getRange(25, 30), getRange(2, 3))));
+    Assert.assertFalse(Algorithms.rangesContain(container, Arrays.asList(getRange(5, 25))));
+    Assert.assertTrue(Algorithms.rangesContain(container, Collections.emptyList()));
+  }
+
+  @Test
+  public void testCreateRanges() {
+    List<Integer> elements = new ArrayList<>();
+    for (int i = 40; i >= 0; i -= 2) {
+      elements.add(i);
+      elements.add(i + 1);
+    }
+    elements.add(100);
+
+    Assert.assertEquals(Arrays.asList(getRange(0, 41), getRange(100, 100)), Algorithms.createRanges(elements));
+  }
+
+  @Test
+  public void testCountValuesInRanges() {
+    Assert.assertEquals(16, Algorithms.countValuesInRanges(Arrays.asList(getRange(1, 10), getRange(5, 15), getRange(20, 20))));
+  }
+
+  @Test
+  public void testRangesAboveIntegerMaxValue() {
+    long begin = Integer.MAX_VALUE + 1L;
+    List<Range> difference = Algorithms.subtractRanges(
+            Arrays.asList(getRange(begin, begin + 10)),
+            Arrays.asList(getRange(begin, begin + 4)));
+
+    Assert.assertEquals(Arrays.asList(getRange(begin + 5, begin + 10)), difference);
+    Assert.assertEquals(3L * Integer.MAX_VALUE, Algorithms.countValuesInRanges(
+            Arrays.asList(getRange(1, 3L * Integer.MAX_VALUE))));
+  }
+
+  private static Range getRange(long begin, long end) {
+    return Range.newBuilder().setBegin(begin).setEnd(end).build();
+  }
+}
@@ -0,0 +1,42 @@
+package org.apache.mesos.util;
+
+import static org.junit.Assert.*;
+
+import javax.ws.rs.core.Response;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link EntityTags}.
+ */
+public class EntityTagsTest {
+
+  @Test
+  public void testFromContent() {
+    assertEquals(EntityTags.fromContent("a"), EntityTags.fromContent("a"));
+    assertNotEquals(EntityTags.fromContent("a"), EntityTags.fromContent("b"));
+  }
+
+  @Test
+  public void testMatches() {
+    assertFalse(EntityTags.matches("abc", null));
+    assertFalse(EntityTags.matches("abc", "\"abcd\""));
+    assertTrue(EntityTags.matches("abc", "\"abc\""));
+    assertTrue(EntityTags.matches("abc", "W/\"abc\""));
+    assertTrue(EntityTags.matches("abc", "\"xyz\", \"abc\""));
+    assertTrue(EntityTags.matches("abc", "*"));
+  }
+
+  @Test
+  public void testOkOrNotModified() {
+    Response response = EntityTags.okOrNotModified("{}", "abc", null);
+    assertEquals(200, response.getStatus());
+    assertEquals("{}", response.getEntity());
+    assertEquals("abc", response.getEntityTag().getValue());
+
+    response = EntityTags.okOrNotModified("{}", "abc", "\"abc\"");
+    assertEquals(304, response.getStatus());
+    assertNull(response.getEntity());
+    assertEquals("abc", response.getEntityTag().getValue());
+  }
+}